@@ -1,10 +1,10 @@
 package net.sourceforge.transfile.operations;
 
-import java.util.ArrayList;
-import java.util.Collection;
-
+import net.sourceforge.transfile.operations.messages.CompressionMessage;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
 import net.sourceforge.transfile.operations.messages.DisconnectMessage;
 import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.transfile.operations.messages.OperationMessage;
 
 /**
  * TODO doc
@@ -14,7 +14,7 @@ import net.sourceforge.transfile.operations.messages.Message;
  */
 public abstract class AbstractConnection implements Connection {
 	
-	private final Collection<Listener> listeners;
+	private final ListenerRegistry<Listener> listeners;
 	
 	private String localPeer;
 	
@@ -32,6 +32,24 @@ public abstract class AbstractConnection implements Connection {
 	
 	private final Object synchronizer;
 	
+	private final IntHashMap<Listener> streamListeners;
+	
+	private int lastStreamId;
+	
+	private boolean compressionEnabled;
+	
+	private boolean remoteCompressionEnabled;
+	
+	private final RateLimiter rateLimiter;
+	
+	private boolean asynchronousDispatch;
+	
+	private final AbstractEvent localPeerChangedEvent;
+	
+	private final AbstractEvent remotePeerChangedEvent;
+	
+	private final AbstractEvent stateChangedEvent;
+	
 	public AbstractConnection() {
 		this(DEFAULT_LOCAL_PEER, DEFAULT_REMOTE_PEER);
 	}
@@ -46,33 +64,126 @@ public abstract class AbstractConnection implements Connection {
 	 * <br>Shared parameter
 	 */
 	public AbstractConnection(final String localPeer, final String remotePeer) {
-		this.listeners = new ArrayList<Listener>();
+		this.listeners = new ListenerRegistry<Listener>(NO_LISTENERS);
 		this.localPeer = localPeer;
 		this.remotePeer = remotePeer;
 		this.state = State.DISCONNECTED;
 		this.synchronizer = new Object();
+		this.streamListeners = new IntHashMap<Listener>();
+		this.rateLimiter = new RateLimiter(RateLimiter.GLOBAL);
+		this.localPeerChangedEvent = this.new LocalPeerChangedEvent();
+		this.remotePeerChangedEvent = this.new RemotePeerChangedEvent();
+		this.stateChangedEvent = this.new StateChangedEvent();
 	}
 	
 	/**
 	 * 
 	 * @return
 	 * <br>A non-null value
-	 * <br>A new value
+	 * <br>A shared value that must not be modified
+	 * @see ListenerRegistry#getListeners()
 	 */
-	public final synchronized Listener[] getListeners() {
-		return this.listeners.toArray(new Listener[this.listeners.size()]);
+	public final Listener[] getListeners() {
+		return this.listeners.getListeners();
 	}
 	
 	@Override
-	public final synchronized void addConnectionListener(final Listener listener) {
+	public final void addConnectionListener(final Listener listener) {
 		this.listeners.add(listener);
 	}
 	
 	@Override
-	public final synchronized void removeConnectionListener(final Listener listener) {
+	public final void removeConnectionListener(final Listener listener) {
 		this.listeners.remove(listener);
 	}
 	
+	@Override
+	public final synchronized int newStreamId() {
+		if (this.lastStreamId == Integer.MAX_VALUE) {
+			throw new IllegalStateException("No more stream identifiers");
+		}
+		
+		return ++this.lastStreamId;
+	}
+	
+	@Override
+	public final synchronized void addStreamListener(final int streamId, final Listener listener) {
+		this.streamListeners.put(streamId, listener);
+	}
+	
+	@Override
+	public final synchronized void removeStreamListener(final int streamId) {
+		this.streamListeners.remove(streamId);
+	}
+	
+	/**
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * @return the listener of the stream of {@code message}, or null if there is none
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	private final synchronized Listener getStreamListener(final Message message) {
+		if (message instanceof OperationMessage) {
+			final int streamId = ((OperationMessage) message).getStreamId();
+			
+			if (streamId != 0) {
+				return this.streamListeners.get(streamId);
+			}
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public final synchronized boolean isCompressionEnabled() {
+		return this.compressionEnabled;
+	}
+	
+	@Override
+	public final synchronized void setCompressionEnabled(final boolean compressionEnabled) {
+		this.compressionEnabled = compressionEnabled;
+	}
+	
+	public final synchronized boolean isAsynchronousDispatch() {
+		return this.asynchronousDispatch;
+	}
+	
+	/**
+	 * When the dispatch is asynchronous, the messages of the streams are dispatched to the listeners
+	 * by {@link StripedExecutor#MESSAGE_DISPATCHER} with their stream identifier as key,
+	 * so that the thread receiving the messages doesn't wait for the operations:
+	 * the messages of an operation are still dispatched in order, but the operations process their messages in parallel.
+	 * <br>A single file offer carries the identifier of the stream it creates, so it is dispatched in the same stripe
+	 * as the later messages of that stream, which are therefore dispatched after the stream exists.
+	 * <br>The messages without a stream identifier, including the batches of file offers (which create several streams),
+	 * are dispatched in the receiving thread, so that their streams exist before the next message is read.
+	 * <br>A data offer whose payload is still in the connection (see {@link DataOfferMessage#isAttachedToPayloadSource()})
+	 * is also dispatched in its stripe, but the receiving thread waits until it has been processed,
+	 * which includes writing the payload to the destination file.
+	 * <br>This is a trade-off: the payload must be consumed before the next message can be read anyway,
+	 * and waiting lets it go straight from the socket to the destination file;
+	 * not waiting would require copying every payload to memory in the receiving thread.
+	 * With such connections, the receiving thread is therefore only released during the processing of the other messages.
+	 * 
+	 * @param asynchronousDispatch
+	 * <br>Range: any boolean
+	 */
+	public final synchronized void setAsynchronousDispatch(final boolean asynchronousDispatch) {
+		this.asynchronousDispatch = asynchronousDispatch;
+	}
+	
+	@Override
+	public final RateLimiter getRateLimiter() {
+		return this.rateLimiter;
+	}
+	
+	@Override
+	public final synchronized boolean isCompressionNegotiated() {
+		return this.isCompressionEnabled() && this.remoteCompressionEnabled;
+	}
+	
 	@Override
 	public final String getLocalPeer() {
 		return this.localPeer;
@@ -93,7 +204,7 @@ public abstract class AbstractConnection implements Connection {
 		if (!this.getLocalPeer().equals(localPeer)) {
 			this.localPeer = localPeer;
 			
-			this.new LocalPeerChangedEvent().fire();
+			this.localPeerChangedEvent.fire();
 		}
 	}
 	
@@ -117,7 +228,7 @@ public abstract class AbstractConnection implements Connection {
 		if (!this.getRemotePeer().equals(remotePeer)) {
 			this.remotePeer = remotePeer;
 			
-			this.new RemotePeerChangedEvent().fire();
+			this.remotePeerChangedEvent.fire();
 		}
 	}
 	
@@ -152,9 +263,18 @@ public abstract class AbstractConnection implements Connection {
 		if (this.getState() != state) {
 			synchronized (this) {
 				this.state = state;
+				
+				if (state == State.DISCONNECTED) {
+					this.remoteCompressionEnabled = false;
+				}
+			}
+			
+			// Sent before anything else, so that the remote peer knows as soon as possible that it can compress
+			if (state == State.CONNECTED && this.isCompressionEnabled()) {
+				this.sendMessage(new CompressionMessage());
 			}
 			
-			this.new StateChangedEvent().fire();
+			this.stateChangedEvent.fire();
 		}
 	}
 	
@@ -214,7 +334,8 @@ public abstract class AbstractConnection implements Connection {
 	}
 	
 	/**
-	 * TODO doc
+	 * Dispatches {@code message} to the listeners, in this thread or in a stripe of {@link StripedExecutor#MESSAGE_DISPATCHER}
+	 * (see {@link #setAsynchronousDispatch(boolean)}).
 	 * 
 	 * @param message
 	 * <br>Should not be null
@@ -223,14 +344,59 @@ public abstract class AbstractConnection implements Connection {
 	protected final void dispatchMessage(final Message message) {
 		synchronized (this.synchronizer) {
 			this.setLastMessageTime();
+		}
+		
+		final int streamId = message instanceof OperationMessage ? ((OperationMessage) message).getStreamId() : 0;
+		
+		if (streamId != 0 && this.isAsynchronousDispatch()) {
+			final Runnable task = new Runnable() {
+				
+				@Override
+				public final void run() {
+					AbstractConnection.this.notifyListeners(message);
+				}
+				
+			};
+			
+			if (message instanceof DataOfferMessage && ((DataOfferMessage) message).isAttachedToPayloadSource()) {
+				StripedExecutor.MESSAGE_DISPATCHER.executeAndWait(streamId, task);
+			} else {
+				StripedExecutor.MESSAGE_DISPATCHER.execute(streamId, task);
+			}
+		} else {
+			this.notifyListeners(message);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * <br>Maybe shared parameter
+	 */
+	final void notifyListeners(final Message message) {
+		synchronized (this.synchronizer) {
 			++this.receivedMessageCount;
 		}
 		
 		if (message instanceof DisconnectMessage) {
 			this.setState(State.DISCONNECTED);
+		} else if (message instanceof CompressionMessage) {
+			synchronized (this) {
+				this.remoteCompressionEnabled = true;
+			}
+		}
+		
+		// Retrieved before the event is fired, so that a stream created by a listener doesn't receive the message that created it
+		final Listener streamListener = this.getStreamListener(message);
+		
+		for (final Listener listener : this.getListeners()) {
+			listener.messageReceived(message);
 		}
 		
-		this.new MessageReceivedEvent(message).fire();
+		if (streamListener != null) {
+			streamListener.messageReceived(message);
+		}
 	}
 	
 	protected final void setLastMessageTime() {
@@ -333,38 +499,12 @@ public abstract class AbstractConnection implements Connection {
 		
 	}
 	
-	/**
-	 * 
-	 * TODO doc
-	 *
-	 * @author codistmonk (creation 2010-06-19)
-	 *
-	 */
-	private class MessageReceivedEvent extends AbstractEvent {
-		
-		private final Message message;
-		
-		/**
-		 * 
-		 * @param message
-		 * <br>Not null
-		 * <br>Shared
-		 */
-		MessageReceivedEvent(final Message message) {
-			this.message = message;
-		}
-		
-		@Override
-		protected final void notifyListener(final Listener listener) {
-			listener.messageReceived(this.message);
-		}
-		
-	}
-	
 	public static final String DEFAULT_LOCAL_PEER = getPeer("transfile", "0.0.0.0", "12345");
 	
 	public static final String DEFAULT_REMOTE_PEER = getPeer("transfile", "0.0.0.0", "54321");
 	
+	private static final Listener[] NO_LISTENERS = new Listener[0];
+	
 	/**
 	 * Converts a string {@code "protocol://host:port"} into an array { {@code "protocol"}, {@code "host"}, {@code "port"} },
 	 * and a string {@code "host:port"} into an array { {@code ""}, {@code "host"}, {@code "port"} }.
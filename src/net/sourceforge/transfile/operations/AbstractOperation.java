@@ -1,9 +1,9 @@
 package net.sourceforge.transfile.operations;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collection;
 
+import net.sourceforge.transfile.operations.messages.AbstractOperationMessage;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
 import net.sourceforge.transfile.operations.messages.Message;
 import net.sourceforge.transfile.operations.messages.OperationMessage;
 import net.sourceforge.transfile.operations.messages.StateMessage;
@@ -16,18 +16,32 @@ import net.sourceforge.transfile.operations.messages.StateMessage;
  */
 public abstract class AbstractOperation implements Operation {
 	
-	private final Collection<Listener> listeners;
+	private final ListenerRegistry<Listener> listeners;
 	
 	private final Connection connection;
 	
 	private final String fileName;
 	
-	private State state;
+	private final int streamId;
 	
-	private double progress;
+	private volatile State state;
+	
+	private volatile double progress;
+	
+	private volatile long progressByteCount;
+	
+	private volatile long totalByteCount;
 	
 	private File localFile;
 	
+	private long transferredByteCount;
+	
+	private long payloadByteCount;
+	
+	private OperationScheduler scheduler;
+	
+	private final RateLimiter rateLimiter;
+	
 	/**
 	 * 
 	 * @param connection
@@ -38,10 +52,28 @@ public abstract class AbstractOperation implements Operation {
 	 * <br>Shared parameter
 	 */
 	public AbstractOperation(final Connection connection, final String fileName) {
-		this.listeners = new ArrayList<Listener>();
+		this(connection, fileName, 0);
+	}
+	
+	/**
+	 * 
+	 * @param connection
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param fileName
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param streamId the stream identifier carried by the messages sent by this operation,
+	 * or {@code 0} if the operation is only identified by its source file
+	 * <br>Range: {@code [-Integer.MAX_VALUE .. Integer.MAX_VALUE]}
+	 */
+	public AbstractOperation(final Connection connection, final String fileName, final int streamId) {
+		this.listeners = new ListenerRegistry<Listener>(NO_LISTENERS);
 		this.connection = connection;
 		this.fileName = fileName;
+		this.streamId = streamId;
 		this.state = State.QUEUED;
+		this.rateLimiter = new RateLimiter(connection.getRateLimiter());
 	}
 	
 	@Override
@@ -53,22 +85,35 @@ public abstract class AbstractOperation implements Operation {
 	 * 
 	 * @return
 	 * <br>A non-null value
-	 * <br>A new value
+	 * <br>A shared value that must not be modified
+	 * @see ListenerRegistry#getListeners()
 	 */
-	public final synchronized Listener[] getListeners() {
-		return this.listeners.toArray(new Listener[this.listeners.size()]);
+	public final Listener[] getListeners() {
+		return this.listeners.getListeners();
 	}
 	
 	@Override
-	public final synchronized void addOperationListener(final Listener listener) {
+	public final void addOperationListener(final Listener listener) {
 		this.listeners.add(listener);
 	}
 	
 	@Override
-	public final synchronized void removeOperationListener(final Listener listener) {
+	public final void removeOperationListener(final Listener listener) {
 		this.listeners.remove(listener);
 	}
 	
+	/**
+	 * The messages received by this operation carry the opposite identifier.
+	 * 
+	 * @return the stream identifier carried by the messages sent by this operation,
+	 * or {@code 0} if the operation is only identified by its source file
+	 * <br>Range: {@code [-Integer.MAX_VALUE .. Integer.MAX_VALUE]}
+	 * @see OperationMessage#getStreamId()
+	 */
+	public final int getStreamId() {
+		return this.streamId;
+	}
+	
 	@Override
 	public final synchronized String getFileName() {
 		return this.fileName;
@@ -80,12 +125,70 @@ public abstract class AbstractOperation implements Operation {
 	}
 	
 	@Override
-	public final synchronized double getProgress() {
+	public final double getProgress() {
 		return this.progress;
 	}
 	
 	@Override
-	public final synchronized State getState() {
+	public final long getProgressByteCount() {
+		return this.progressByteCount;
+	}
+	
+	@Override
+	public final long getTotalByteCount() {
+		return this.totalByteCount;
+	}
+	
+	@Override
+	public final synchronized double getCompressionRatio() {
+		return this.payloadByteCount == 0L ? 1.0 : (double) this.transferredByteCount / this.payloadByteCount;
+	}
+	
+	/**
+	 * Updates the compression statistics with a data offer sent or received by this operation.
+	 * 
+	 * @param dataOffer
+	 * <br>Should not be null
+	 */
+	final synchronized void countDataOffer(final DataOfferMessage dataOffer) {
+		this.transferredByteCount += dataOffer.getByteCount();
+		this.payloadByteCount += dataOffer.getPayloadByteCount();
+	}
+	
+	/**
+	 * The data sent or requested by this operation goes through this limiter,
+	 * whose parent is the limiter of the connection.
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final RateLimiter getRateLimiter() {
+		return this.rateLimiter;
+	}
+	
+	/**
+	 * 
+	 * @return the scheduler that is notified when the remote peer sends the state of this operation
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	final synchronized OperationScheduler getScheduler() {
+		return this.scheduler;
+	}
+	
+	/**
+	 * 
+	 * @param scheduler
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 */
+	final synchronized void setScheduler(final OperationScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+	
+	@Override
+	public final State getState() {
 		return this.state;
 	}
 	
@@ -95,15 +198,33 @@ public abstract class AbstractOperation implements Operation {
 	}
 	
 	/**
+	 * Sets the progress to {@code progressByteCount / totalByteCount}, and keeps the byte counts
+	 * so that the throughput can be computed (see {@link ThroughputMeter}).
+	 * <br>The two counts are not updated atomically: a concurrent reader may see the new value of one
+	 * with the old value of the other.
+	 * 
+	 * @param progressByteCount
+	 * <br>Range: {@code [0L .. totalByteCount]}
+	 * @param totalByteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final void setProgress(final long progressByteCount, final long totalByteCount) {
+		this.totalByteCount = totalByteCount;
+		this.progressByteCount = progressByteCount;
+		
+		this.setProgress((double) progressByteCount / totalByteCount);
+	}
+	
+	/**
+	 * Doesn't lock {@code this}: the progress is volatile, and the listeners are notified
+	 * in the calling thread from a snapshot of the registry.
 	 * 
 	 * @param progress
 	 * <br>Range: {@code [0.0 .. 1.0]}
 	 */
 	public final void setProgress(final double progress) {
-		if (this.getProgress() != progress) {
-			synchronized (this) {
-				this.progress = progress;
-			}
+		if (this.progress != progress) {
+			this.progress = progress;
 			
 			for (final Listener listener : this.getListeners()) {
 				listener.progressChanged();
@@ -112,16 +233,15 @@ public abstract class AbstractOperation implements Operation {
 	}
 	
 	/**
+	 * Doesn't lock {@code this}, like {@link #setProgress(double)}.
 	 * 
 	 * @param state
 	 * <br>Should not be null
 	 * <br>Shared parameter
 	 */
 	public final void setState(final State state) {
-		if (this.getState() != state) {
-			synchronized (this) {
-				this.state = state;
-			}
+		if (this.state != state) {
+			this.state = state;
 			
 			for (final Listener listener : this.getListeners()) {
 				listener.stateChanged();
@@ -137,9 +257,9 @@ public abstract class AbstractOperation implements Operation {
 	 */
 	protected abstract class AbstractController implements Controller {
 		
-		private final Connection.Listener messageHandler;
+		private final MessageHandler messageHandler;
 		
-		private State remoteState;
+		private volatile State remoteState;
 		
 		public AbstractController() {
 			this.messageHandler = this.new MessageHandler();
@@ -177,7 +297,7 @@ public abstract class AbstractOperation implements Operation {
 		@Override
 		public final void remove() {
 			AbstractOperation.this.setState(State.REMOVED);
-			AbstractOperation.this.getConnection().removeConnectionListener(this.messageHandler);
+			this.messageHandler.detach();
 		}
 		
 		/** 
@@ -191,12 +311,13 @@ public abstract class AbstractOperation implements Operation {
 		}
 		
 		/**
+		 * Not synchronized, so that it can be called while holding the lock of an {@link OperationScheduler}.
 		 * 
 		 * @return
 		 * <br>A possibly null value
 		 * <br>A shared value
 		 */
-		public final synchronized State getRemoteState() {
+		public final State getRemoteState() {
 			return this.remoteState;
 		}
 		
@@ -218,6 +339,19 @@ public abstract class AbstractOperation implements Operation {
 			}
 		}
 		
+		/**
+		 * Sets the stream identifier of {@code operationMessage} and sends it.
+		 * 
+		 * @param operationMessage
+		 * <br>Should not be null
+		 * <br>Input-output parameter
+		 */
+		protected final void sendMessage(final AbstractOperationMessage operationMessage) {
+			operationMessage.setStreamId(AbstractOperation.this.getStreamId());
+			
+			AbstractOperation.this.getConnection().sendMessage(operationMessage);
+		}
+		
 		protected boolean canStart() {
 			return true;
 		}
@@ -262,7 +396,7 @@ public abstract class AbstractOperation implements Operation {
 			public final void stateChanged() {
 				final Operation operation = AbstractOperation.this;
 				
-				operation.getConnection().sendMessage(
+				AbstractController.this.sendMessage(
 						new StateMessage(AbstractController.this.getSourceFile(), operation.getState()));
 			}
 			
@@ -281,23 +415,61 @@ public abstract class AbstractOperation implements Operation {
 		 */
 		private class MessageHandler extends Connection.AbstractListener {
 			
+			/**
+			 * Operations with a stream identifier only receive the messages of their stream;
+			 * the others receive all the messages and keep those concerning their source file.
+			 */
 			MessageHandler() {
-				AbstractOperation.this.getConnection().addConnectionListener(this);
+				final int streamId = AbstractOperation.this.getStreamId();
+				
+				if (streamId == 0) {
+					AbstractOperation.this.getConnection().addConnectionListener(this);
+				} else {
+					AbstractOperation.this.getConnection().addStreamListener(-streamId, this);
+				}
+			}
+			
+			final void detach() {
+				final int streamId = AbstractOperation.this.getStreamId();
+				
+				if (streamId == 0) {
+					AbstractOperation.this.getConnection().removeConnectionListener(this);
+				} else {
+					AbstractOperation.this.getConnection().removeStreamListener(-streamId);
+				}
 			}
 			
 			@Override
 			protected final void doMessageReceived(final Message message) {
-				if (message instanceof OperationMessage && ((OperationMessage) message).getSourceFile().equals(AbstractController.this.getSourceFile())) {
+				if (message instanceof OperationMessage && this.concerns((OperationMessage) message)) {
 					if (message instanceof StateMessage) {
 						AbstractController.this.setRemoteState(((StateMessage) message).getState());
+						
+						final OperationScheduler scheduler = AbstractOperation.this.getScheduler();
+						
+						if (scheduler != null) {
+							scheduler.remoteStateChanged(AbstractOperation.this);
+						}
 					}
 					
 					AbstractController.this.operationMessageReceived((OperationMessage) message);
 				}
 			}
 			
+			/**
+			 * 
+			 * @param operationMessage
+			 * <br>Should not be null
+			 * @return {@code true} if {@code operationMessage} is addressed to this operation
+			 */
+			private final boolean concerns(final OperationMessage operationMessage) {
+				return AbstractOperation.this.getStreamId() != 0 || operationMessage.getSourceFile().equals(AbstractController.this.getSourceFile());
+			}
+			
 		}
 		
 	}
 	
+	private static final Listener[] NO_LISTENERS = new Listener[0];
+	
 }
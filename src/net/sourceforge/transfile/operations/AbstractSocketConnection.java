@@ -0,0 +1,309 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Establishes a socket connection between the local peer and the remote peer (both peers connect to each other),
+ * and lets subclasses decide how messages are written to and read from the socket.
+ *
+ * @author codistmonk (creation 2010-06-15)
+ *
+ */
+public abstract class AbstractSocketConnection extends AbstractConnection {
+	
+	private ExecutorService executor;
+	
+	public AbstractSocketConnection() {
+		// Do nothing
+	}
+	
+	/**
+	 * 
+	 * @param localPeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param remotePeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public AbstractSocketConnection(final String localPeer, final String remotePeer) {
+		super(localPeer, remotePeer);
+	}
+	
+	@Override
+	public final void connect() {
+		if (this.getState() == State.DISCONNECTED) {
+			this.setConnectionError(null);
+			this.setState(State.CONNECTING);
+			Tools.debugPrint("Connecting", this.getLocalPeer(), "to", this.getRemotePeer());
+			this.getExecutor().execute(this.new ConnectionTask());
+		}
+	}
+	
+	@Override
+	public final void disconnect() {
+		try {
+			if (this.hasOutput()) {
+				this.sendMessage(new DisconnectMessage());
+			}
+		} finally {
+			this.setExecutor(null);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return {@code true} if messages can be written to the socket
+	 */
+	protected abstract boolean hasOutput();
+	
+	/**
+	 * Called when the connection is closed.
+	 * <br>After this call, {@link #hasOutput()} must return {@code false}.
+	 */
+	protected abstract void closeOutput();
+	
+	/**
+	 * Called once the socket is connected; implementations must prepare the output,
+	 * start a reception task using {@link #startReceptionTask(Runnable)}
+	 * and then call {@link #setState(net.sourceforge.transfile.operations.Connection.State)} with {@link State#CONNECTED}.
+	 * <br>Blocking.
+	 * 
+	 * @param socket
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @throws IOException if an I/O error occurs
+	 */
+	protected abstract void prepareToReadAndWrite(Socket socket) throws IOException;
+	
+	/**
+	 * The default implementation returns a new unconnected {@link Socket}.
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if an I/O error occurs
+	 */
+	protected Socket createSocket() throws IOException {
+		return new Socket();
+	}
+	
+	/**
+	 * Executes {@code receptionTask} in this connection's thread;
+	 * the connection is closed when {@code receptionTask} terminates.
+	 * 
+	 * @param receptionTask
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	protected final void startReceptionTask(final Runnable receptionTask) {
+		this.getExecutor().execute(new Runnable() {
+			
+			@Override
+			public final void run() {
+				try {
+					receptionTask.run();
+				} finally {
+					AbstractSocketConnection.this.setExecutor(null);
+				}
+			}
+			
+		});
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	final synchronized ExecutorService getExecutor() {
+		if (this.executor == null) {
+			this.executor = Executors.newSingleThreadExecutor();
+		}
+		
+		return this.executor;
+	}
+	
+	/**
+	 * 
+	 * @param executor
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 */
+	final void setExecutor(final ExecutorService executor) {
+		if (executor != this.getExecutor() && this.getExecutor() != null) {
+			try {
+				synchronized (this) {
+					this.getExecutor().shutdownNow();
+				}
+				
+				this.setState(State.DISCONNECTED);
+			} finally {
+				this.closeOutput();
+			}
+		}
+		
+		this.executor = executor;
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author codistmonk (creation 2010-06-15)
+	 *
+	 */
+	private class ConnectionTask implements Runnable {
+		
+		/**
+		 * Package-private default constructor to suppress visibility warnings.
+		 */
+		ConnectionTask() {
+			// Do nothing
+		}
+		
+		@Override
+		public final void run() {
+			// TODO find a better fix
+			// If a connection is canceled (using disconnect()) while the socket is trying to connect,
+			// then the socket will still be able to connect before timing out, thus preventing a new
+			// connection with the same port to be established, and also making the peer connection
+			// unavailable (connected to an unused socket)
+			// The following call to sleep() is a quick fix to this problem encountered during testing
+			try {
+				Thread.sleep(2 * CONNECT_INTERVAL);
+			} catch (final InterruptedException exception1) {
+				return;
+			}
+			
+			final long maximumTime = System.currentTimeMillis() + CONNECT_TIMEOUT;
+			final InetSocketAddress localAddress = new InetSocketAddress(getPort(AbstractSocketConnection.this.getLocalPeer()));
+			final InetSocketAddress remoteAddress = getInetSocketAddress(AbstractSocketConnection.this.getRemotePeer());
+			
+			if (this.connect(maximumTime, localAddress, remoteAddress) == null) {
+				AbstractSocketConnection.this.setExecutor(null);
+			}
+		}
+		
+		/**
+		 * TODO doc
+		 * <br>Blocking.
+		 * 
+		 * @param maximumTime
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param localAddress
+		 * <br>Not null
+		 * <br>Shared
+		 * @param remoteAddress
+		 * <br>Not null
+		 * <br>Shared
+		 * @return
+		 * <br>Not null
+		 * <br>New
+		 */
+		private final Socket connect(final long maximumTime, final InetSocketAddress localAddress, final InetSocketAddress remoteAddress) {
+			do {
+				AbstractSocketConnection.this.setConnectionError(null);
+				
+				try {
+					final Socket result = this.connect(localAddress, remoteAddress);
+					
+					AbstractSocketConnection.this.prepareToReadAndWrite(result);
+					
+					return result;
+				} catch (final Exception exception) {
+					AbstractSocketConnection.this.setConnectionError(exception);
+				}
+			} while (System.currentTimeMillis() < maximumTime && !Thread.currentThread().isInterrupted());
+			
+			return null;
+		}
+		
+		/**
+		 * TODO doc
+		 * <br>Blocking.
+		 * 
+		 * @param localAddress
+		 * <br>Not null
+		 * <br>Shared
+		 * @param remoteAddress
+		 * <br>Not null
+		 * <br>Shared
+		 * @return
+		 * <br>Not null
+		 * <br>New
+		 * @throws Exception if an error occurs
+		 */
+		private final Socket connect(final InetSocketAddress localAddress, final InetSocketAddress remoteAddress) throws Exception {
+			final Socket result = AbstractSocketConnection.this.createSocket();
+			
+			result.setReuseAddress(true);
+			result.setSoTimeout(0);
+			result.bind(localAddress);
+			result.connect(remoteAddress, CONNECT_INTERVAL);
+			
+			Tools.debugPrint(AbstractSocketConnection.this, result);
+			
+			return result;
+		}
+		
+	}
+	
+	static final Object STOP = null;
+	
+	static final Object RETRY = "retry";
+	
+	/**
+	 * Time in milliseconds.
+	 */
+	public static final int CONNECT_INTERVAL = 100;
+	
+	/**
+	 * Time in milliseconds.
+	 */
+	public static final long CONNECT_TIMEOUT = 20000L;
+	
+	/**
+	 * TODO doc
+	 * 
+	 * @param peer
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public static final InetSocketAddress getInetSocketAddress(final String peer) {
+		final String[] protocolHostPort = getProtocolHostPort(peer);
+		final String host = protocolHostPort[1];
+		final int port = Integer.parseInt(protocolHostPort[2]);
+		
+		return new InetSocketAddress(host, port);
+	}
+	
+}
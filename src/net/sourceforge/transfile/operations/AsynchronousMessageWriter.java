@@ -0,0 +1,336 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+
+/**
+ * Writes messages to an object output stream in a dedicated thread, so that the threads sending messages don't wait for the socket.
+ * <br>The output stream should be buffered: it is only flushed when the queue becomes empty,
+ * so that messages sent in bursts are coalesced into large writes.
+ * <br>The queue is bounded: {@link #write(Message)} blocks while it contains {@link #MAXIMUM_QUEUED_MESSAGE_COUNT} messages
+ * or more than {@link #MAXIMUM_QUEUED_BYTE_COUNT} bytes of data offers.
+ * <br>The output stream is reset after a given number of messages or of data offer bytes,
+ * so that its handle table (and the remote input stream's, which is cleared by the reset marker)
+ * doesn't keep all the messages ever sent reachable.
+ * <br>After an I/O error, the writer stops accepting messages and calls {@link #writingFailed(IOException)} in the writer thread,
+ * so that the owner can close the connection instead of losing the messages sent afterwards.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class AsynchronousMessageWriter {
+	
+	private final ObjectOutputStream output;
+	
+	private final Queue<Message> queue;
+	
+	private final int resetMessageCount;
+	
+	private final long resetByteCount;
+	
+	private long queuedByteCount;
+	
+	private boolean closing;
+	
+	private IOException error;
+	
+	private final Thread thread;
+	
+	/**
+	 * Starts the writer thread, with the default reset policy.
+	 * 
+	 * @param output
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public AsynchronousMessageWriter(final ObjectOutputStream output) {
+		this(output, DEFAULT_RESET_MESSAGE_COUNT, DEFAULT_RESET_BYTE_COUNT);
+	}
+	
+	/**
+	 * Starts the writer thread.
+	 * 
+	 * @param output
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param resetMessageCount the number of messages after which the output stream is reset
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param resetByteCount the number of data offer bytes after which the output stream is reset
+	 * <br>Range: {@code [1L .. Long.MAX_VALUE]}
+	 */
+	public AsynchronousMessageWriter(final ObjectOutputStream output, final int resetMessageCount, final long resetByteCount) {
+		this.output = output;
+		this.queue = new ArrayDeque<Message>();
+		this.resetMessageCount = resetMessageCount;
+		this.resetByteCount = resetByteCount;
+		this.thread = new Thread(this.new WritingTask(), "AsynchronousMessageWriter");
+		
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+	
+	/**
+	 * Queues {@code message}, waiting while the queue is full.
+	 * <br>Does nothing if this writer is closed.
+	 * <br>Blocking.
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public final void write(final Message message) {
+		final long byteCount = getQueuedByteCount(message);
+		
+		if (message instanceof DataOfferMessage) {
+			// The payload source must not be read after the caller returns
+			((DataOfferMessage) message).detachFromPayloadSource();
+		}
+		
+		synchronized (this) {
+			try {
+				while (!this.closing && this.isFull()) {
+					this.wait();
+				}
+			} catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				
+				return;
+			}
+			
+			if (!this.closing) {
+				this.queue.add(message);
+				this.queuedByteCount += byteCount;
+				
+				this.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the error that stopped the writer thread, or null if there is none
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	public final synchronized IOException getError() {
+		return this.error;
+	}
+	
+	/**
+	 * Writes the queued messages, then closes the output stream;
+	 * if they cannot be written within {@code timeout} milliseconds, the output stream is closed anyway.
+	 * <br>Blocking.
+	 * 
+	 * @param timeout in milliseconds
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final void close(final long timeout) {
+		synchronized (this) {
+			this.closing = true;
+			
+			this.notifyAll();
+		}
+		
+		if (Thread.currentThread() != this.thread) {
+			try {
+				this.thread.join(timeout);
+			} catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		closeQuietly(this.output);
+	}
+	
+	/**
+	 * Called in the writer thread after an I/O error has stopped it.
+	 * <br>The default implementation does nothing.
+	 * 
+	 * @param error
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	protected void writingFailed(final IOException error) {
+		// Do nothing
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: any boolean
+	 */
+	private final boolean isFull() {
+		return MAXIMUM_QUEUED_MESSAGE_COUNT <= this.queue.size() ||
+				!this.queue.isEmpty() && MAXIMUM_QUEUED_BYTE_COUNT < this.queuedByteCount;
+	}
+	
+	/**
+	 * 
+	 * @return the next message, or null if this writer is closing and the queue is empty
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 * @throws InterruptedException if the writer thread is interrupted
+	 */
+	final synchronized Message take() throws InterruptedException {
+		while (this.queue.isEmpty() && !this.closing) {
+			this.wait();
+		}
+		
+		final Message result = this.queue.poll();
+		
+		if (result != null) {
+			this.queuedByteCount -= getQueuedByteCount(result);
+			
+			this.notifyAll();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: any boolean
+	 */
+	final synchronized boolean isQueueEmpty() {
+		return this.queue.isEmpty();
+	}
+	
+	/**
+	 * Stops accepting messages after an I/O error.
+	 * 
+	 * @param error
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	final synchronized void failed(final IOException error) {
+		this.error = error;
+		this.closing = true;
+		this.queue.clear();
+		this.queuedByteCount = 0L;
+		
+		this.notifyAll();
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class WritingTask implements Runnable {
+		
+		/**
+		 * Package-private default constructor to suppress visibility warnings.
+		 */
+		WritingTask() {
+			// Do nothing
+		}
+		
+		@Override
+		public final void run() {
+			final AsynchronousMessageWriter writer = AsynchronousMessageWriter.this;
+			int messageCount = 0;
+			long byteCount = 0L;
+			
+			try {
+				for (Message message = writer.take(); message != null; message = writer.take()) {
+					writer.output.writeObject(message);
+					
+					++messageCount;
+					byteCount += getQueuedByteCount(message);
+					
+					if (writer.resetMessageCount <= messageCount || writer.resetByteCount <= byteCount) {
+						writer.output.reset();
+						
+						messageCount = 0;
+						byteCount = 0L;
+					}
+					
+					if (writer.isQueueEmpty()) {
+						writer.output.flush();
+					}
+				}
+			} catch (final IOException exception) {
+				writer.failed(exception);
+				writer.writingFailed(exception);
+			} catch (final InterruptedException exception) {
+				final IOException error = new IOException("Interrupted");
+				
+				writer.failed(error);
+				writer.writingFailed(error);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Number of messages after which the output stream is reset, unless specified otherwise.
+	 */
+	public static final int DEFAULT_RESET_MESSAGE_COUNT = 1024;
+	
+	/**
+	 * Number of data offer bytes after which the output stream is reset, unless specified otherwise.
+	 */
+	public static final long DEFAULT_RESET_BYTE_COUNT = 1L << 20;
+	
+	/**
+	 * Maximum number of messages waiting to be written.
+	 */
+	public static final int MAXIMUM_QUEUED_MESSAGE_COUNT = 1024;
+	
+	/**
+	 * Maximum number of data offer bytes waiting to be written.
+	 */
+	public static final long MAXIMUM_QUEUED_BYTE_COUNT = 1L << 20;
+	
+	/**
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * @return
+	 * <br>Range: {@code [0L .. Integer.MAX_VALUE]}
+	 */
+	private static final long getQueuedByteCount(final Message message) {
+		return message instanceof DataOfferMessage ? ((DataOfferMessage) message).getPayloadByteCount() : 0L;
+	}
+	
+	/**
+	 * 
+	 * @param output
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 */
+	private static final void closeQuietly(final ObjectOutputStream output) {
+		try {
+			output.close();
+		} catch (final IOException exception) {
+			// Ignored: the socket is being closed anyway
+		}
+	}
+	
+}
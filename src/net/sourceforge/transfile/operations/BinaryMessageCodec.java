@@ -0,0 +1,926 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.transfile.operations.Operation.State;
+import net.sourceforge.transfile.operations.messages.AbstractOperationMessage;
+import net.sourceforge.transfile.operations.messages.BlockCopyMessage;
+import net.sourceforge.transfile.operations.messages.BlockSignaturesMessage;
+import net.sourceforge.transfile.operations.messages.DataCreditMessage;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DataRequestMessage;
+import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+import net.sourceforge.transfile.operations.messages.FileOfferMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.transfile.operations.messages.OperationMessage;
+import net.sourceforge.transfile.operations.messages.StateMessage;
+
+/**
+ * Compact binary encoding of messages, used by {@link BinarySocketConnection}.
+ * <br>Each message is sent as a frame made of the length of its header (as a varint), the header,
+ * and then the payload for data offers.
+ * <br>A header starts with a type tag followed by the fields of the message: offsets, counts and states
+ * are sent as unsigned varints (7 bits per byte, least significant group first);
+ * the first time a file is sent on a connection, it is sent as {@code 0} followed by its length-prefixed UTF-8 path,
+ * and afterwards as its index in the list of files already sent, plus one.
+ * <br>Operation messages end with their stream identifier, as a zigzag varint.
+ * <br>The bytes of data offers are not copied into the header, so they can be sent directly from
+ * the source file and received directly into the destination file;
+ * the header of a compressed data offer also contains the length of its payload (see {@link DataOfferMessage#isCompressed()}),
+ * and the header of a checksummed data offer ends with its checksum as 4 big-endian bytes (see {@link DataOfferMessage#isChecksummed()}).
+ * <br>The block signatures of delta mode are sent as varint counts followed by
+ * the weak checksums (4 big-endian bytes each) and the strong checksums.
+ * <br>Messages of other types are sent as Java-serialized objects with the tag {@link #SERIALIZED}.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public final class BinaryMessageCodec {
+	
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private BinaryMessageCodec() {
+		// Do nothing
+	}
+	
+	public static final byte SERIALIZED = 0;
+	
+	public static final byte DISCONNECT = 1;
+	
+	public static final byte FILE_OFFER = 2;
+	
+	public static final byte STATE = 3;
+	
+	public static final byte DATA_REQUEST = 4;
+	
+	public static final byte DATA_OFFER = 5;
+	
+	public static final byte DATA_CREDIT = 6;
+	
+	public static final byte COMPRESSED_DATA_OFFER = 7;
+	
+	public static final byte CHECKSUMMED_DATA_OFFER = 8;
+	
+	public static final byte CHECKSUMMED_COMPRESSED_DATA_OFFER = 9;
+	
+	public static final byte INTEGRITY_CHECKED_FILE_OFFER = 10;
+	
+	public static final byte DIRECTORY_OFFER = 11;
+	
+	public static final byte INTEGRITY_CHECKED_DIRECTORY_OFFER = 12;
+	
+	public static final byte BLOCK_COPY = 13;
+	
+	public static final byte BLOCK_SIGNATURES = 14;
+	
+	/**
+	 * Bytes; frames with a larger header are considered corrupted.
+	 */
+	public static final int MAXIMUM_HEADER_LENGTH = 1024 * 1024;
+	
+	/**
+	 * Maximum number of bytes in the varint encoding of an {@code int}.
+	 */
+	public static final int MAXIMUM_INT_VARINT_LENGTH = 5;
+	
+	/**
+	 * Maximum number of bytes in the varint encoding of a {@code long}.
+	 */
+	public static final int MAXIMUM_LONG_VARINT_LENGTH = 10;
+	
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/**
+	 * Appends the header of {@code message} to {@code buffer}.
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param fileIndices the files already sent with their indices
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return {@code buffer}, or a larger copy of it if it was too small
+	 * <br>A non-null value
+	 * <br>A possibly new value
+	 * @throws IOException if {@code message} has to be serialized and cannot be
+	 */
+	public static final ByteBuffer encodeHeader(final Message message, final ByteBuffer buffer, final Map<File, Integer> fileIndices) throws IOException {
+		ByteBuffer result = buffer;
+		
+		if (message instanceof DisconnectMessage) {
+			result = ensureRemaining(result, 1);
+			result.put(DISCONNECT);
+		} else if (message instanceof FileOfferMessage) {
+			final FileOfferMessage fileOffer = (FileOfferMessage) message;
+			
+			final byte tag = fileOffer.isDirectory() ?
+					(fileOffer.isIntegrityChecked() ? INTEGRITY_CHECKED_DIRECTORY_OFFER : DIRECTORY_OFFER) :
+					(fileOffer.isIntegrityChecked() ? INTEGRITY_CHECKED_FILE_OFFER : FILE_OFFER);
+			
+			result = putFile(ensureRemaining(result, 1).put(tag), fileOffer.getSourceFile(), fileIndices);
+			result = putVarint(result, fileOffer.getSourceByteCount());
+			result = putStreamId(result, fileOffer);
+		} else if (message instanceof StateMessage) {
+			final StateMessage stateMessage = (StateMessage) message;
+			
+			result = putFile(ensureRemaining(result, 1).put(STATE), stateMessage.getSourceFile(), fileIndices);
+			result = putVarint(result, stateMessage.getState().ordinal());
+			result = putStreamId(result, stateMessage);
+		} else if (message instanceof DataRequestMessage) {
+			final DataRequestMessage request = (DataRequestMessage) message;
+			
+			result = putFile(ensureRemaining(result, 1).put(DATA_REQUEST), request.getSourceFile(), fileIndices);
+			result = putVarint(result, request.getFirstByteOffset());
+			result = putVarint(result, request.getRequestedByteCount());
+			result = putStreamId(result, request);
+		} else if (message instanceof DataOfferMessage) {
+			final DataOfferMessage offer = (DataOfferMessage) message;
+			
+			result = putFile(ensureRemaining(result, 1).put(getTag(offer)), offer.getSourceFile(), fileIndices);
+			result = putVarint(result, offer.getFirstByteOffset());
+			result = putVarint(result, offer.getByteCount());
+			
+			if (offer.isCompressed()) {
+				result = putVarint(result, offer.getPayloadByteCount());
+			}
+			
+			result = putStreamId(result, offer);
+			
+			if (offer.isChecksummed()) {
+				result = ensureRemaining(result, 4);
+				result.putInt(offer.getChecksum());
+			}
+		} else if (message instanceof DataCreditMessage) {
+			final DataCreditMessage credit = (DataCreditMessage) message;
+			
+			result = putFile(ensureRemaining(result, 1).put(DATA_CREDIT), credit.getSourceFile(), fileIndices);
+			result = putVarint(result, credit.getFirstByteOffset());
+			result = putVarint(result, credit.getCreditLimit() - credit.getFirstByteOffset());
+			result = ensureRemaining(result, 1).put((byte) (credit.isRestarting() ? 1 : 0));
+			result = putStreamId(result, credit);
+		} else if (message instanceof BlockCopyMessage) {
+			final BlockCopyMessage copy = (BlockCopyMessage) message;
+			
+			result = putFile(ensureRemaining(result, 1).put(BLOCK_COPY), copy.getSourceFile(), fileIndices);
+			result = putVarint(result, copy.getFirstByteOffset());
+			result = putVarint(result, copy.getBlockIndex());
+			result = putVarint(result, copy.getByteCount());
+			result = putStreamId(result, copy);
+		} else if (message instanceof BlockSignaturesMessage) {
+			final BlockSignaturesMessage signatures = (BlockSignaturesMessage) message;
+			final int[] weakChecksums = signatures.getWeakChecksums();
+			final byte[] strongChecksums = signatures.getStrongChecksums();
+			
+			result = putFile(ensureRemaining(result, 1).put(BLOCK_SIGNATURES), signatures.getSourceFile(), fileIndices);
+			result = putVarint(result, signatures.getBlockSize());
+			result = putVarint(result, signatures.getBasisByteCount());
+			result = putVarint(result, signatures.getFirstBlockIndex());
+			result = putVarint(result, weakChecksums.length);
+			result = ensureRemaining(result, 4 * weakChecksums.length);
+			
+			for (final int weakChecksum : weakChecksums) {
+				result.putInt(weakChecksum);
+			}
+			
+			result = putVarint(result, strongChecksums.length);
+			result = ensureRemaining(result, strongChecksums.length);
+			result.put(strongChecksums);
+			result = putStreamId(result, signatures);
+		} else {
+			final byte[] serializedMessage = serialize(message);
+			
+			result = ensureRemaining(result, 1 + serializedMessage.length);
+			result.put(SERIALIZED);
+			result.put(serializedMessage);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * If the result is a data offer, its payload is not part of the header and must be read from {@code payloadSource}.
+	 * 
+	 * @param header
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param payloadSource
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param files the files already received, in order
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if the header is invalid
+	 * @throws ClassNotFoundException if the header contains a serialized message whose class cannot be found
+	 */
+	public static final Message decodeHeader(final ByteBuffer header, final ReadableByteChannel payloadSource, final List<File> files) throws IOException, ClassNotFoundException {
+		try {
+			final byte tag = header.get();
+			
+			switch (tag) {
+			case DISCONNECT:
+				return new DisconnectMessage();
+			case FILE_OFFER:
+				return getStreamId(header, new FileOfferMessage(getFile(header, files), getVarint(header)));
+			case INTEGRITY_CHECKED_FILE_OFFER:
+				return getStreamId(header, new FileOfferMessage(getFile(header, files), getVarint(header), true));
+			case DIRECTORY_OFFER:
+				return getStreamId(header, new FileOfferMessage(getFile(header, files), getVarint(header), false, true));
+			case INTEGRITY_CHECKED_DIRECTORY_OFFER:
+				return getStreamId(header, new FileOfferMessage(getFile(header, files), getVarint(header), true, true));
+			case STATE:
+				return getStreamId(header, new StateMessage(getFile(header, files), getState(header)));
+			case DATA_REQUEST:
+				return getStreamId(header, new DataRequestMessage(getFile(header, files), getVarint(header), getIntVarint(header)));
+			case DATA_OFFER:
+				return getStreamId(header, new DataOfferMessage(getFile(header, files), getVarint(header), getIntVarint(header), payloadSource));
+			case COMPRESSED_DATA_OFFER:
+				return getStreamId(header, new DataOfferMessage(getFile(header, files), getVarint(header), getIntVarint(header), getIntVarint(header), payloadSource));
+			case CHECKSUMMED_DATA_OFFER:
+				return getChecksum(header, getStreamId(header, new DataOfferMessage(getFile(header, files), getVarint(header), getIntVarint(header), payloadSource)));
+			case CHECKSUMMED_COMPRESSED_DATA_OFFER:
+				return getChecksum(header, getStreamId(header, new DataOfferMessage(getFile(header, files), getVarint(header), getIntVarint(header), getIntVarint(header), payloadSource)));
+			case DATA_CREDIT:
+				return getStreamId(header, getDataCredit(header, files));
+			case BLOCK_COPY:
+				return getStreamId(header, new BlockCopyMessage(getFile(header, files), getVarint(header), getIntVarint(header), getIntVarint(header)));
+			case BLOCK_SIGNATURES:
+				return getStreamId(header, getBlockSignatures(header, files));
+			case SERIALIZED:
+				final byte[] serializedMessage = new byte[header.remaining()];
+				
+				header.get(serializedMessage);
+				
+				return (Message) deserialize(serializedMessage);
+			default:
+				throw new StreamCorruptedException("Invalid type tag: " + tag);
+			}
+		} catch (final RuntimeException exception) {
+			final StreamCorruptedException streamCorruptedException = new StreamCorruptedException("Invalid header");
+			
+			streamCorruptedException.initCause(exception);
+			
+			throw streamCorruptedException;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param header
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param files
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws StreamCorruptedException if the header is invalid
+	 */
+	private static final DataCreditMessage getDataCredit(final ByteBuffer header, final List<File> files) throws StreamCorruptedException {
+		final File sourceFile = getFile(header, files);
+		final long firstByteOffset = getVarint(header);
+		final long creditLimit = firstByteOffset + getVarint(header);
+		
+		return new DataCreditMessage(sourceFile, firstByteOffset, creditLimit, header.get() != 0);
+	}
+	
+	/**
+	 * 
+	 * @param header
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param files
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws StreamCorruptedException if the header is invalid
+	 */
+	private static final BlockSignaturesMessage getBlockSignatures(final ByteBuffer header, final List<File> files) throws StreamCorruptedException {
+		final File sourceFile = getFile(header, files);
+		final int blockSize = getIntVarint(header);
+		final long basisByteCount = getVarint(header);
+		final int firstBlockIndex = getIntVarint(header);
+		final int[] weakChecksums = new int[getCount(header, 4)];
+		
+		for (int i = 0; i < weakChecksums.length; ++i) {
+			weakChecksums[i] = header.getInt();
+		}
+		
+		final byte[] strongChecksums = new byte[getCount(header, 1)];
+		
+		header.get(strongChecksums);
+		
+		return new BlockSignaturesMessage(sourceFile, blockSize, basisByteCount, firstBlockIndex, weakChecksums, strongChecksums);
+	}
+	
+	/**
+	 * Reads the number of elements of an array, checking that the header contains them,
+	 * so that a corrupted count doesn't cause a large allocation.
+	 * 
+	 * @param header
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param elementByteCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @return
+	 * <br>Range: {@code [0 .. header.remaining() / elementByteCount]}
+	 * @throws StreamCorruptedException if the count is invalid
+	 */
+	private static final int getCount(final ByteBuffer header, final int elementByteCount) throws StreamCorruptedException {
+		final int result = getIntVarint(header);
+		
+		if (header.remaining() / elementByteCount < result) {
+			throw new StreamCorruptedException("Invalid count: " + result);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Appends the stream identifier of {@code operationMessage} as a zigzag varint,
+	 * so that small negative identifiers are as short as small positive ones.
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param operationMessage
+	 * <br>Should not be null
+	 * @return {@code buffer}, or a larger copy of it if it was too small
+	 * <br>A non-null value
+	 * <br>A possibly new value
+	 */
+	private static final ByteBuffer putStreamId(final ByteBuffer buffer, final OperationMessage operationMessage) {
+		final int streamId = operationMessage.getStreamId();
+		
+		return putVarint(buffer, ((streamId << 1) ^ (streamId >> 31)) & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Reads a stream identifier written by {@link #putStreamId(ByteBuffer, OperationMessage)}.
+	 * 
+	 * @param <M> the type of the message
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param operationMessage
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return {@code operationMessage}
+	 * <br>A non-null value
+	 * <br>A shared value
+	 * @throws StreamCorruptedException if the varint is invalid
+	 */
+	private static final <M extends AbstractOperationMessage> M getStreamId(final ByteBuffer buffer, final M operationMessage) throws StreamCorruptedException {
+		final long zigzag = getVarint(buffer);
+		
+		if ((zigzag & ~0xFFFFFFFFL) != 0L) {
+			throw new StreamCorruptedException("Invalid stream identifier: " + zigzag);
+		}
+		
+		operationMessage.setStreamId((int) (zigzag >>> 1) ^ -(int) (zigzag & 1L));
+		
+		return operationMessage;
+	}
+	
+	/**
+	 * 
+	 * @param offer
+	 * <br>Should not be null
+	 * @return
+	 * <br>Range: {@code {DATA_OFFER, COMPRESSED_DATA_OFFER, CHECKSUMMED_DATA_OFFER, CHECKSUMMED_COMPRESSED_DATA_OFFER}}
+	 */
+	private static final byte getTag(final DataOfferMessage offer) {
+		if (offer.isChecksummed()) {
+			return offer.isCompressed() ? CHECKSUMMED_COMPRESSED_DATA_OFFER : CHECKSUMMED_DATA_OFFER;
+		}
+		
+		return offer.isCompressed() ? COMPRESSED_DATA_OFFER : DATA_OFFER;
+	}
+	
+	/**
+	 * Reads the checksum at the end of the header of a checksummed data offer.
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param offer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return {@code offer}
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	private static final DataOfferMessage getChecksum(final ByteBuffer buffer, final DataOfferMessage offer) {
+		offer.setChecksum(buffer.getInt());
+		
+		return offer;
+	}
+	
+	/**
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param value
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @return {@code buffer}, or a larger copy of it if it was too small
+	 * <br>A non-null value
+	 * <br>A possibly new value
+	 */
+	public static final ByteBuffer putVarint(final ByteBuffer buffer, final long value) {
+		final ByteBuffer result = ensureRemaining(buffer, MAXIMUM_LONG_VARINT_LENGTH);
+		
+		writeVarint(result, value);
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param value
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @throws java.nio.BufferOverflowException if {@code buffer} is too small
+	 */
+	static final void writeVarint(final ByteBuffer buffer, final long value) {
+		long remainingBits = value;
+		
+		while ((remainingBits & ~0x7FL) != 0L) {
+			buffer.put((byte) ((remainingBits & 0x7FL) | 0x80L));
+			remainingBits >>>= 7;
+		}
+		
+		buffer.put((byte) remainingBits);
+	}
+	
+	/**
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>Range: any long
+	 * @throws StreamCorruptedException if the varint is too long
+	 * @throws java.nio.BufferUnderflowException if the varint is incomplete
+	 */
+	public static final long getVarint(final ByteBuffer buffer) throws StreamCorruptedException {
+		long result = 0L;
+		
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			final byte b = buffer.get();
+			
+			result |= (b & 0x7FL) << shift;
+			
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		
+		throw new StreamCorruptedException("Varint too long");
+	}
+	
+	/**
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @throws StreamCorruptedException if the varint is too long or too large
+	 * @throws java.nio.BufferUnderflowException if the varint is incomplete
+	 */
+	public static final int getIntVarint(final ByteBuffer buffer) throws StreamCorruptedException {
+		final long result = getVarint(buffer);
+		
+		if (result < 0L || Integer.MAX_VALUE < result) {
+			throw new StreamCorruptedException("Invalid int varint: " + result);
+		}
+		
+		return (int) result;
+	}
+	
+	/**
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @return {@code buffer} if it has at least {@code byteCount} bytes remaining, or else a larger copy of it
+	 * <br>A non-null value
+	 * <br>A possibly new value
+	 */
+	static final ByteBuffer ensureRemaining(final ByteBuffer buffer, final int byteCount) {
+		if (byteCount <= buffer.remaining()) {
+			return buffer;
+		}
+		
+		final ByteBuffer result = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + byteCount));
+		
+		buffer.flip();
+		result.put(buffer);
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param file
+	 * <br>Should not be null
+	 * @param fileIndices
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return {@code buffer}, or a larger copy of it if it was too small
+	 * <br>A non-null value
+	 * <br>A possibly new value
+	 */
+	private static final ByteBuffer putFile(final ByteBuffer buffer, final File file, final Map<File, Integer> fileIndices) {
+		final Integer index = fileIndices.get(file);
+		
+		if (index != null) {
+			return putVarint(buffer, index + 1L);
+		}
+		
+		fileIndices.put(file, fileIndices.size());
+		
+		final byte[] path = file.getPath().getBytes(UTF8);
+		final ByteBuffer result = ensureRemaining(putVarint(putVarint(buffer, 0L), path.length), path.length);
+		
+		result.put(path);
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param files
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>A non-null value
+	 * <br>A possibly shared value
+	 * @throws StreamCorruptedException if the file index or the path length is invalid
+	 */
+	private static final File getFile(final ByteBuffer buffer, final List<File> files) throws StreamCorruptedException {
+		final int index = getIntVarint(buffer);
+		
+		if (index != 0) {
+			if (files.size() < index) {
+				throw new StreamCorruptedException("Invalid file index: " + index);
+			}
+			
+			return files.get(index - 1);
+		}
+		
+		final byte[] path = new byte[getIntVarint(buffer)];
+		
+		buffer.get(path);
+		
+		final File result = new File(new String(path, UTF8));
+		
+		files.add(result);
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>A non-null value
+	 * @throws StreamCorruptedException if the state is invalid
+	 */
+	private static final State getState(final ByteBuffer buffer) throws StreamCorruptedException {
+		final int ordinal = getIntVarint(buffer);
+		final State[] states = State.values();
+		
+		if (states.length <= ordinal) {
+			throw new StreamCorruptedException("Invalid state: " + ordinal);
+		}
+		
+		return states[ordinal];
+	}
+	
+	/**
+	 * 
+	 * @param object
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if {@code object} cannot be serialized
+	 */
+	private static final byte[] serialize(final Object object) throws IOException {
+		final ByteArrayOutputStream result = new ByteArrayOutputStream();
+		final ObjectOutputStream output = new ObjectOutputStream(result);
+		
+		output.writeObject(object);
+		output.close();
+		
+		return result.toByteArray();
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @return
+	 * <br>Maybe null
+	 * <br>A new value
+	 * @throws IOException if {@code bytes} are not a valid serialized object
+	 * @throws ClassNotFoundException if the class of the object cannot be found
+	 */
+	private static final Object deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+		final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		
+		try {
+			return input.readObject();
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Writes messages to a channel; the header buffer is reused from one message to the next.
+	 * <br>Not thread-safe.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	public static final class Encoder {
+		
+		private final WritableByteChannel output;
+		
+		private final Map<File, Integer> fileIndices;
+		
+		private ByteBuffer buffer;
+		
+		/**
+		 * 
+		 * @param output
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		public Encoder(final WritableByteChannel output) {
+			this.output = output;
+			this.fileIndices = new HashMap<File, Integer>();
+			this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		public final WritableByteChannel getOutput() {
+			return this.output;
+		}
+		
+		/**
+		 * Blocking.
+		 * 
+		 * @param message
+		 * <br>Should not be null
+		 * @throws IOException if an I/O error occurs
+		 */
+		public final void write(final Message message) throws IOException {
+			this.buffer.clear();
+			this.buffer.position(MAXIMUM_INT_VARINT_LENGTH);
+			this.buffer = encodeHeader(message, this.buffer, this.fileIndices);
+			
+			final int headerLength = this.buffer.position() - MAXIMUM_INT_VARINT_LENGTH;
+			final int headerLengthLength = getVarintLength(headerLength);
+			final int frameStart = MAXIMUM_INT_VARINT_LENGTH - headerLengthLength;
+			
+			this.buffer.flip();
+			this.buffer.position(frameStart);
+			writeVarint(this.buffer.duplicate(), headerLength);
+			
+			while (this.buffer.hasRemaining()) {
+				this.output.write(this.buffer);
+			}
+			
+			if (message instanceof DataOfferMessage) {
+				((DataOfferMessage) message).transferBytesTo(this.output);
+			}
+		}
+		
+		/**
+		 * 
+		 * @param value
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @return
+		 * <br>Range: {@code [1 .. 10]}
+		 */
+		private static final int getVarintLength(final long value) {
+			int result = 1;
+			long remainingBits = value >>> 7;
+			
+			while (remainingBits != 0L) {
+				++result;
+				remainingBits >>>= 7;
+			}
+			
+			return result;
+		}
+		
+	}
+	
+	/**
+	 * Reads messages from a channel through a buffer.
+	 * <br>The decoder is also a channel, from which the bytes of the last data offer are read:
+	 * they must be consumed (or loaded with {@link DataOfferMessage#detachFromPayloadSource()})
+	 * before the next message is read.
+	 * <br>Not thread-safe.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	public static final class Decoder implements ReadableByteChannel {
+		
+		private final ReadableByteChannel input;
+		
+		private final List<File> files;
+		
+		private ByteBuffer buffer;
+		
+		/**
+		 * 
+		 * @param input
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		public Decoder(final ReadableByteChannel input) {
+			this.input = input;
+			this.files = new ArrayList<File>();
+			this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+			this.buffer.flip();
+		}
+		
+		/**
+		 * Blocking.
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A new value
+		 * @throws EOFException if the end of the stream is reached before the end of the header
+		 * @throws IOException if an I/O error occurs or if the frame is corrupted
+		 * @throws ClassNotFoundException if the header contains a serialized message whose class cannot be found
+		 */
+		public final Message read() throws IOException, ClassNotFoundException {
+			long headerLength = 0L;
+			int shift = 0;
+			byte b;
+			
+			do {
+				this.require(1);
+				b = this.buffer.get();
+				headerLength |= (b & 0x7FL) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0 && shift < 7 * MAXIMUM_INT_VARINT_LENGTH);
+			
+			if ((b & 0x80) != 0 || headerLength < 1L || MAXIMUM_HEADER_LENGTH < headerLength) {
+				throw new StreamCorruptedException("Invalid header length: " + headerLength);
+			}
+			
+			this.require((int) headerLength);
+			
+			final ByteBuffer header = this.buffer.slice();
+			
+			header.limit((int) headerLength);
+			this.buffer.position(this.buffer.position() + (int) headerLength);
+			
+			final Message result = decodeHeader(header, this, this.files);
+			
+			if (header.hasRemaining()) {
+				throw new StreamCorruptedException("Invalid header: " + header.remaining() + " unexpected bytes");
+			}
+			
+			return result;
+		}
+		
+		/**
+		 * Reads the bytes that remain in the buffer first, and then reads directly from the input channel.
+		 * <br>Blocking.
+		 */
+		@Override
+		public final int read(final ByteBuffer destination) throws IOException {
+			if (this.buffer.hasRemaining()) {
+				final int result = Math.min(this.buffer.remaining(), destination.remaining());
+				final ByteBuffer source = this.buffer.duplicate();
+				
+				source.limit(source.position() + result);
+				destination.put(source);
+				this.buffer.position(source.position());
+				
+				return result;
+			}
+			
+			return this.input.read(destination);
+		}
+		
+		@Override
+		public final boolean isOpen() {
+			return this.input.isOpen();
+		}
+		
+		@Override
+		public final void close() throws IOException {
+			this.input.close();
+		}
+		
+		/**
+		 * Reads from the input channel until at least {@code byteCount} bytes are available in the buffer.
+		 * <br>Blocking.
+		 * 
+		 * @param byteCount
+		 * <br>Range: {@code [1 .. MAXIMUM_HEADER_LENGTH]}
+		 * @throws EOFException if the end of the stream is reached first
+		 * @throws IOException if an I/O error occurs
+		 */
+		private final void require(final int byteCount) throws IOException {
+			if (byteCount <= this.buffer.remaining()) {
+				return;
+			}
+			
+			this.buffer.compact();
+			
+			if (this.buffer.capacity() < byteCount) {
+				final ByteBuffer newBuffer = ByteBuffer.allocate(byteCount);
+				
+				this.buffer.flip();
+				newBuffer.put(this.buffer);
+				this.buffer = newBuffer;
+			}
+			
+			while (this.buffer.position() < byteCount) {
+				if (this.input.read(this.buffer) < 0) {
+					this.buffer.flip();
+					
+					throw new EOFException();
+				}
+			}
+			
+			this.buffer.flip();
+		}
+		
+	}
+	
+	/**
+	 * Bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	
+}
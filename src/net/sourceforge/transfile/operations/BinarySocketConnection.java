@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sends messages through a {@link SocketChannel} using the compact binary encoding of {@link BinaryMessageCodec}
+ * instead of Java serialization.
+ * <br>Like {@link ChannelSocketConnection}, the bytes of data offers go directly from the source file to the socket,
+ * and received data offers are dispatched before their bytes are read from the socket.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class BinarySocketConnection extends AbstractSocketConnection {
+	
+	private BinaryMessageCodec.Encoder output;
+	
+	public BinarySocketConnection() {
+		// Do nothing
+	}
+	
+	/**
+	 * 
+	 * @param localPeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param remotePeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public BinarySocketConnection(final String localPeer, final String remotePeer) {
+		super(localPeer, remotePeer);
+	}
+	
+	@Override
+	protected final synchronized boolean hasOutput() {
+		return this.output != null;
+	}
+	
+	@Override
+	protected final void closeOutput() {
+		this.setOutput(null);
+	}
+	
+	@Override
+	protected final Socket createSocket() throws IOException {
+		return SocketChannel.open().socket();
+	}
+	
+	@Override
+	protected final void prepareToReadAndWrite(final Socket socket) throws IOException {
+		this.setOutput(new BinaryMessageCodec.Encoder(socket.getChannel()));
+		this.startReceptionTask(this.new ReceptionTask(socket.getChannel()));
+	}
+	
+	@Override
+	public final synchronized void doSendMessage(final Message message) {
+		try {
+			if (this.output != null) {
+				this.output.write(message);
+			}
+		} catch (final IOException exception) {
+			Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot send " + message, exception);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param output
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 */
+	final void setOutput(final BinaryMessageCodec.Encoder output) {
+		synchronized (this) {
+			if (output != this.output && this.output != null) {
+				try {
+					this.output.getOutput().close();
+				} catch (final Exception exception) {
+					this.setConnectionError(exception);
+				}
+			}
+			
+			this.output = output;
+		}
+		
+		if (this.output != null) {
+			this.setState(State.CONNECTED);
+		}
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class ReceptionTask implements Runnable {
+		
+		private final BinaryMessageCodec.Decoder input;
+		
+		/**
+		 * @param input
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		ReceptionTask(final SocketChannel input) {
+			this.input = new BinaryMessageCodec.Decoder(input);
+		}
+		
+		@Override
+		public final void run() {
+			Object object = null;
+			
+			do {
+				try {
+					object = this.input.read();
+					
+					BinarySocketConnection.this.dispatchMessage((Message) object);
+					
+					if (object instanceof DataOfferMessage) {
+						// The bytes that haven't been written to a file by a listener must be read before the next message
+						((DataOfferMessage) object).detachFromPayloadSource();
+					}
+				} catch (final IOException exception) {
+					object = STOP;
+				} catch (final ClassNotFoundException exception) {
+					System.err.println(Tools.debug(2, exception.getMessage()));
+					object = RETRY;
+				}
+			} while (object != STOP && !(object instanceof DisconnectMessage));
+		}
+		
+	}
+	
+}
@@ -0,0 +1,646 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sourceforge.jenerics.Tools;
+import net.sourceforge.transfile.operations.messages.AbstractDataMessage;
+import net.sourceforge.transfile.operations.messages.BlockCopyMessage;
+import net.sourceforge.transfile.operations.messages.BlockSignaturesMessage;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+
+/**
+ * The signatures of the consecutive blocks of a file (the basis) used by delta transfers:
+ * each block has a weak checksum that can be rolled over a byte array one byte at a time (as in rsync),
+ * and a strong checksum ({@link #ALGORITHM}) that confirms the matches of the weak checksum.
+ * <br>The last block is shorter than the others if the size of the basis is not a multiple of the block size.
+ * <br>The receiver computes the signatures of its basis with {@link #compute(File)} and sends them
+ * with {@link #toMessages(File)}; the sender assembles them with {@link #add(BlockSignaturesMessage)}
+ * and describes each requested region of the source file with {@link #encode(File, long, byte[], int)}.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class BlockSignatures {
+	
+	private final int blockSize;
+	
+	private final long basisByteCount;
+	
+	private final int[] weakChecksums;
+	
+	private final byte[] strongChecksums;
+	
+	private final MessageDigest messageDigest;
+	
+	private int knownBlockCount;
+	
+	private int[] firstBlockIndices;
+	
+	private int[] nextBlockIndices;
+	
+	/**
+	 * 
+	 * @param blockSize
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param basisByteCount
+	 * <br>Range: {@code [0L .. blockSize * (long) Integer.MAX_VALUE]}
+	 */
+	public BlockSignatures(final int blockSize, final long basisByteCount) {
+		final int blockCount = (int) ((basisByteCount + blockSize - 1L) / blockSize);
+		MessageDigest messageDigest = null;
+		
+		try {
+			messageDigest = MessageDigest.getInstance(ALGORITHM);
+		} catch (final NoSuchAlgorithmException exception) {
+			// Every Java platform supports ALGORITHM
+			Tools.throwUnchecked(exception);
+		}
+		
+		this.blockSize = blockSize;
+		this.basisByteCount = basisByteCount;
+		this.weakChecksums = new int[blockCount];
+		this.strongChecksums = new byte[blockCount * STRONG_CHECKSUM_LENGTH];
+		this.messageDigest = messageDigest;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final int getBlockSize() {
+		return this.blockSize;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final long getBasisByteCount() {
+		return this.basisByteCount;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int getBlockCount() {
+		return this.weakChecksums.length;
+	}
+	
+	/**
+	 * 
+	 * @param blockIndex
+	 * <br>Range: {@code [0 .. this.getBlockCount() - 1]}
+	 * @return
+	 * <br>Range: {@code [1 .. this.getBlockSize()]}
+	 */
+	public final int getBlockByteCount(final int blockIndex) {
+		return (int) Math.min(this.getBlockSize(), this.getBasisByteCount() - (long) blockIndex * this.getBlockSize());
+	}
+	
+	/**
+	 * 
+	 * @return {@code true} if the signatures of all the blocks are known
+	 */
+	public final synchronized boolean isComplete() {
+		return this.knownBlockCount == this.getBlockCount();
+	}
+	
+	/**
+	 * Adds the signatures contained in {@code message} if they follow the ones already known;
+	 * the other messages are ignored.
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 */
+	public final synchronized void add(final BlockSignaturesMessage message) {
+		final int n = message.getWeakChecksums().length;
+		
+		if (message.getFirstBlockIndex() != this.knownBlockCount || this.getBlockCount() < this.knownBlockCount + n) {
+			return;
+		}
+		
+		System.arraycopy(message.getWeakChecksums(), 0, this.weakChecksums, this.knownBlockCount, n);
+		System.arraycopy(message.getStrongChecksums(), 0, this.strongChecksums, this.knownBlockCount * STRONG_CHECKSUM_LENGTH, n * STRONG_CHECKSUM_LENGTH);
+		
+		this.knownBlockCount += n;
+	}
+	
+	/**
+	 * Splits the signatures into messages of at most {@link #MESSAGE_BLOCK_COUNT} blocks.
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public final List<BlockSignaturesMessage> toMessages(final File sourceFile) {
+		final List<BlockSignaturesMessage> result = new ArrayList<BlockSignaturesMessage>();
+		
+		for (int i = 0; i < this.getBlockCount(); i += MESSAGE_BLOCK_COUNT) {
+			final int end = Math.min(this.getBlockCount(), i + MESSAGE_BLOCK_COUNT);
+			
+			result.add(new BlockSignaturesMessage(sourceFile, this.getBlockSize(), this.getBasisByteCount(), i,
+					Arrays.copyOfRange(this.weakChecksums, i, end),
+					Arrays.copyOfRange(this.strongChecksums, i * STRONG_CHECKSUM_LENGTH, end * STRONG_CHECKSUM_LENGTH)));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param weakChecksum the weak checksum of the {@code length} bytes of {@code bytes} starting at {@code offset}
+	 * <br>Range: any int
+	 * @param bytes
+	 * <br>Should not be null
+	 * @param offset
+	 * <br>Range: {@code [0 .. bytes.length - length]}
+	 * @param length
+	 * <br>Range: {@code [1 .. this.getBlockSize()]}
+	 * @param preferredBlockIndex the block that is returned if several blocks match, typically the block following the last match
+	 * <br>Range: any int
+	 * @return the index of a block of the basis containing the same bytes, or {@code -1}
+	 * <br>Range: {@code [-1 .. this.getBlockCount() - 1]}
+	 */
+	public final synchronized int find(final int weakChecksum, final byte[] bytes, final int offset, final int length, final int preferredBlockIndex) {
+		if (0 <= preferredBlockIndex && preferredBlockIndex < this.knownBlockCount &&
+				this.matches(preferredBlockIndex, weakChecksum, bytes, offset, length)) {
+			return preferredBlockIndex;
+		}
+		
+		this.updateIndex();
+		
+		for (int i = this.firstBlockIndices[hash(weakChecksum) & (this.firstBlockIndices.length - 1)]; 0 <= i; i = this.nextBlockIndices[i]) {
+			if (this.matches(i, weakChecksum, bytes, offset, length)) {
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Describes a region of the source file with references to the blocks of the basis that it contains
+	 * and literal data for the other bytes, in offset order:
+	 * the full blocks are looked for at every offset with the rolling weak checksum,
+	 * consecutive matching blocks are merged into one {@link BlockCopyMessage},
+	 * and the last block of the basis (if it is shorter than the others) is only looked for at the end of the region.
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset the offset of the region in the source file
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param bytes the bytes of the region
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param maximumLiteralByteCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @return block copies and data offers containing at most {@code maximumLiteralByteCount} bytes
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public final List<AbstractDataMessage> encode(final File sourceFile, final long firstByteOffset, final byte[] bytes, final int maximumLiteralByteCount) {
+		return this.encode(sourceFile, firstByteOffset, bytes, bytes.length, maximumLiteralByteCount);
+	}
+	
+	/**
+	 * Describes the region made of the first {@code byteCount} bytes of {@code bytes} like {@link #encode(File, long, byte[], int)},
+	 * so that a buffer can be reused for several regions: the data offers don't refer to {@code bytes}.
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset the offset of the region in the source file
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param bytes
+	 * <br>Should not be null
+	 * @param byteCount the size of the region
+	 * <br>Range: {@code [0 .. bytes.length]}
+	 * @param maximumLiteralByteCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @return block copies and data offers containing at most {@code maximumLiteralByteCount} bytes
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public final List<AbstractDataMessage> encode(final File sourceFile, final long firstByteOffset, final byte[] bytes, final int byteCount, final int maximumLiteralByteCount) {
+		final Encoder encoder = this.new Encoder(sourceFile, firstByteOffset, bytes, byteCount, maximumLiteralByteCount);
+		final int blockSize = this.getBlockSize();
+		int weakChecksum = 0;
+		boolean weakChecksumValid = false;
+		int i = 0;
+		
+		while (i + blockSize <= byteCount) {
+			if (!weakChecksumValid) {
+				weakChecksum = weakChecksum(bytes, i, blockSize);
+				weakChecksumValid = true;
+			}
+			
+			final int blockIndex = this.find(weakChecksum, bytes, i, blockSize, encoder.getNextBlockIndex());
+			
+			if (0 <= blockIndex) {
+				encoder.matched(i, blockIndex, blockSize);
+				i += blockSize;
+				weakChecksumValid = false;
+			} else {
+				if (i + blockSize < byteCount) {
+					weakChecksum = roll(weakChecksum, bytes[i], bytes[i + blockSize], blockSize);
+				}
+				
+				++i;
+			}
+		}
+		
+		final int lastBlockIndex = this.getBlockCount() - 1;
+		
+		if (0 <= lastBlockIndex) {
+			final int lastBlockByteCount = this.getBlockByteCount(lastBlockIndex);
+			final int start = byteCount - lastBlockByteCount;
+			
+			if (lastBlockByteCount < blockSize && encoder.getLiteralStart() <= start &&
+					this.find(weakChecksum(bytes, start, lastBlockByteCount), bytes, start, lastBlockByteCount, lastBlockIndex) == lastBlockIndex) {
+				encoder.matched(start, lastBlockIndex, lastBlockByteCount);
+			}
+		}
+		
+		return encoder.finish();
+	}
+	
+	/**
+	 * 
+	 * @param blockIndex
+	 * <br>Range: {@code [0 .. this.knownBlockCount - 1]}
+	 * @param weakChecksum
+	 * <br>Range: any int
+	 * @param bytes
+	 * <br>Should not be null
+	 * @param offset
+	 * <br>Range: {@code [0 .. bytes.length - length]}
+	 * @param length
+	 * <br>Range: {@code [1 .. this.getBlockSize()]}
+	 * @return {@code true} if the block has the specified size and the same signature as the bytes
+	 */
+	private final boolean matches(final int blockIndex, final int weakChecksum, final byte[] bytes, final int offset, final int length) {
+		if (this.weakChecksums[blockIndex] != weakChecksum || this.getBlockByteCount(blockIndex) != length) {
+			return false;
+		}
+		
+		this.messageDigest.update(bytes, offset, length);
+		
+		final byte[] strongChecksum = this.messageDigest.digest();
+		final int start = blockIndex * STRONG_CHECKSUM_LENGTH;
+		
+		for (int i = 0; i < STRONG_CHECKSUM_LENGTH; ++i) {
+			if (strongChecksum[i] != this.strongChecksums[start + i]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Indexes the known blocks by weak checksum in a chained hash table the first time it is needed,
+	 * and again if blocks have been added since;
+	 * the blocks of a chain are in increasing order so that the earliest block of the basis is found first.
+	 */
+	private final void updateIndex() {
+		if (this.nextBlockIndices != null && this.nextBlockIndices.length == this.knownBlockCount) {
+			return;
+		}
+		
+		int tableSize = 1;
+		
+		while (tableSize < 2 * this.knownBlockCount) {
+			tableSize *= 2;
+		}
+		
+		this.firstBlockIndices = new int[tableSize];
+		this.nextBlockIndices = new int[this.knownBlockCount];
+		
+		Arrays.fill(this.firstBlockIndices, -1);
+		
+		for (int i = this.knownBlockCount - 1; 0 <= i; --i) {
+			final int bucket = hash(this.weakChecksums[i]) & (tableSize - 1);
+			
+			this.nextBlockIndices[i] = this.firstBlockIndices[bucket];
+			this.firstBlockIndices[bucket] = i;
+		}
+	}
+	
+	/**
+	 * Accumulates the messages produced by {@link BlockSignatures#encode(File, long, byte[], int)}.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class Encoder {
+		
+		private final File sourceFile;
+		
+		private final long firstByteOffset;
+		
+		private final byte[] bytes;
+		
+		private final int byteCount;
+		
+		private final int maximumLiteralByteCount;
+		
+		private final List<AbstractDataMessage> messages;
+		
+		private int literalStart;
+		
+		private int copyStart;
+		
+		private int copyBlockIndex;
+		
+		private int copyByteCount;
+		
+		/**
+		 * 
+		 * @param sourceFile
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @param firstByteOffset
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param bytes
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @param byteCount
+		 * <br>Range: {@code [0 .. bytes.length]}
+		 * @param maximumLiteralByteCount
+		 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+		 */
+		Encoder(final File sourceFile, final long firstByteOffset, final byte[] bytes, final int byteCount, final int maximumLiteralByteCount) {
+			this.sourceFile = sourceFile;
+			this.firstByteOffset = firstByteOffset;
+			this.bytes = bytes;
+			this.byteCount = byteCount;
+			this.maximumLiteralByteCount = maximumLiteralByteCount;
+			this.messages = new ArrayList<AbstractDataMessage>();
+			this.copyBlockIndex = -1;
+		}
+		
+		/**
+		 * 
+		 * @return the offset in the region of the first byte that is not described yet
+		 * <br>Range: {@code [0 .. this.byteCount]}
+		 */
+		final int getLiteralStart() {
+			return this.literalStart;
+		}
+		
+		/**
+		 * 
+		 * @return the block following the last matching block, or {@code -1}
+		 * <br>Range: {@code [-1 .. Integer.MAX_VALUE]}
+		 */
+		final int getNextBlockIndex() {
+			return this.copyBlockIndex < 0 ? -1 : this.copyBlockIndex + this.copyByteCount / BlockSignatures.this.getBlockSize();
+		}
+		
+		/**
+		 * 
+		 * @param offset the offset in the region of the matching bytes
+		 * <br>Range: {@code [this.getLiteralStart() .. this.byteCount - byteCount]}
+		 * @param blockIndex
+		 * <br>Range: {@code [0 .. BlockSignatures.this.getBlockCount() - 1]}
+		 * @param byteCount
+		 * <br>Range: {@code [1 .. BlockSignatures.this.getBlockSize()]}
+		 */
+		final void matched(final int offset, final int blockIndex, final int byteCount) {
+			if (offset == this.literalStart && 0 < this.copyByteCount && blockIndex == this.getNextBlockIndex() &&
+					this.copyByteCount % BlockSignatures.this.getBlockSize() == 0) {
+				this.copyByteCount += byteCount;
+			} else {
+				this.flushCopy();
+				this.addLiterals(offset);
+				this.copyStart = offset;
+				this.copyBlockIndex = blockIndex;
+				this.copyByteCount = byteCount;
+			}
+			
+			this.literalStart = offset + byteCount;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		final List<AbstractDataMessage> finish() {
+			this.flushCopy();
+			this.addLiterals(this.byteCount);
+			
+			return this.messages;
+		}
+		
+		private final void flushCopy() {
+			if (0 < this.copyByteCount) {
+				this.messages.add(new BlockCopyMessage(this.sourceFile, this.firstByteOffset + this.copyStart, this.copyBlockIndex, this.copyByteCount));
+			}
+		}
+		
+		/**
+		 * 
+		 * @param end
+		 * <br>Range: {@code [this.getLiteralStart() .. this.byteCount]}
+		 */
+		private final void addLiterals(final int end) {
+			for (int start = this.literalStart; start < end; start += this.maximumLiteralByteCount) {
+				this.messages.add(new DataOfferMessage(this.sourceFile, this.firstByteOffset + start,
+						Arrays.copyOfRange(this.bytes, start, Math.min(end, start + this.maximumLiteralByteCount))));
+			}
+			
+			this.literalStart = end;
+		}
+		
+	}
+	
+	/**
+	 * The strong checksum size in bytes.
+	 */
+	public static final int STRONG_CHECKSUM_LENGTH = 16;
+	
+	public static final String ALGORITHM = "MD5";
+	
+	public static final int MINIMUM_BLOCK_SIZE = 512;
+	
+	public static final int MAXIMUM_BLOCK_SIZE = 128 * 1024;
+	
+	/**
+	 * The maximum number of blocks described by one {@link BlockSignaturesMessage},
+	 * so that each message stays small compared to the data offers.
+	 */
+	public static final int MESSAGE_BLOCK_COUNT = 4096;
+	
+	/**
+	 * Bytes read at once by {@link #compute(File)}.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * The block size grows with the square root of the file size, which balances the size of the signatures
+	 * and the number of bytes sent again around each modification.
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @return
+	 * <br>Range: {@code [MINIMUM_BLOCK_SIZE .. Integer.MAX_VALUE]}
+	 */
+	public static final int getBlockSize(final long byteCount) {
+		int result = (int) Math.max(MINIMUM_BLOCK_SIZE, Math.min(MAXIMUM_BLOCK_SIZE, (long) Math.sqrt(byteCount)));
+		
+		while (Integer.MAX_VALUE / STRONG_CHECKSUM_LENGTH < (byteCount + result - 1L) / result) {
+			result *= 2;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Reads {@code file} and computes the signatures of its blocks.
+	 * <br>Blocking.
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if {@code file} cannot be read
+	 */
+	public static final BlockSignatures compute(final File file) throws IOException {
+		final long byteCount = file.length();
+		final BlockSignatures result = new BlockSignatures(getBlockSize(byteCount), byteCount);
+		final int blockSize = result.getBlockSize();
+		final FileInputStream input = new FileInputStream(file);
+		
+		try {
+			final byte[] buffer = new byte[Math.max(blockSize, BUFFER_SIZE - BUFFER_SIZE % blockSize)];
+			
+			while (result.knownBlockCount < result.getBlockCount()) {
+				int n = 0;
+				
+				while (n < buffer.length) {
+					final int read = input.read(buffer, n, buffer.length - n);
+					
+					if (read < 0) {
+						break;
+					}
+					
+					n += read;
+				}
+				
+				if (n == 0) {
+					throw new IOException(file + " is shorter than " + byteCount + " bytes");
+				}
+				
+				for (int offset = 0; offset < n && result.knownBlockCount < result.getBlockCount(); offset += blockSize) {
+					final int length = Math.min(blockSize, n - offset);
+					final int blockIndex = result.knownBlockCount;
+					
+					result.weakChecksums[blockIndex] = weakChecksum(buffer, offset, length);
+					result.messageDigest.update(buffer, offset, length);
+					System.arraycopy(result.messageDigest.digest(), 0, result.strongChecksums, blockIndex * STRONG_CHECKSUM_LENGTH, STRONG_CHECKSUM_LENGTH);
+					++result.knownBlockCount;
+				}
+			}
+		} finally {
+			input.close();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Computes the rsync weak checksum of a byte sequence:
+	 * the low 16 bits are the sum of the bytes, and the high 16 bits are the sum of the partial sums.
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @param offset
+	 * <br>Range: {@code [0 .. bytes.length - length]}
+	 * @param length
+	 * <br>Range: {@code [0 .. bytes.length - offset]}
+	 * @return
+	 * <br>Range: any int
+	 */
+	public static final int weakChecksum(final byte[] bytes, final int offset, final int length) {
+		int a = 0;
+		int b = 0;
+		
+		for (int i = offset; i < offset + length; ++i) {
+			a += bytes[i] & 0xFF;
+			b += a;
+		}
+		
+		return (a & 0xFFFF) | (b << 16);
+	}
+	
+	/**
+	 * Computes the weak checksum of the byte sequence obtained by removing the first byte of a sequence of {@code length} bytes
+	 * and appending a byte at its end.
+	 * 
+	 * @param weakChecksum the weak checksum of the sequence
+	 * <br>Range: any int
+	 * @param removedByte
+	 * <br>Range: any byte
+	 * @param addedByte
+	 * <br>Range: any byte
+	 * @param length
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @return
+	 * <br>Range: any int
+	 */
+	public static final int roll(final int weakChecksum, final byte removedByte, final byte addedByte, final int length) {
+		final int a = weakChecksum - (removedByte & 0xFF) + (addedByte & 0xFF);
+		final int b = (weakChecksum >>> 16) - length * (removedByte & 0xFF) + a;
+		
+		return (a & 0xFFFF) | (b << 16);
+	}
+	
+	/**
+	 * 
+	 * @param weakChecksum
+	 * <br>Range: any int
+	 * @return
+	 * <br>Range: any int
+	 */
+	private static final int hash(final int weakChecksum) {
+		return weakChecksum ^ (weakChecksum >>> 16) * 0x9E3779B1;
+	}
+	
+}
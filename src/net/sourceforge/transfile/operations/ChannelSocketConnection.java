@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sends messages through a {@link SocketChannel} using {@link MessageFramer}.
+ * <br>The bytes of data offers made by a {@link SendOperation} go directly from the source file to the socket
+ * (using {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}),
+ * without being copied into the Java heap or serialized.
+ * <br>Likewise, received data offers are dispatched before their bytes are read from the socket,
+ * so that a {@link ReceiveOperation} can write them directly to the destination file.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ChannelSocketConnection extends AbstractSocketConnection {
+	
+	private SocketChannel output;
+	
+	public ChannelSocketConnection() {
+		// Do nothing
+	}
+	
+	/**
+	 * 
+	 * @param localPeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param remotePeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public ChannelSocketConnection(final String localPeer, final String remotePeer) {
+		super(localPeer, remotePeer);
+	}
+	
+	@Override
+	protected final synchronized boolean hasOutput() {
+		return this.output != null;
+	}
+	
+	@Override
+	protected final void closeOutput() {
+		this.setOutput(null);
+	}
+	
+	@Override
+	protected final Socket createSocket() throws IOException {
+		return SocketChannel.open().socket();
+	}
+	
+	@Override
+	protected final void prepareToReadAndWrite(final Socket socket) throws IOException {
+		this.setOutput(socket.getChannel());
+		this.startReceptionTask(this.new ReceptionTask(socket.getChannel()));
+	}
+	
+	@Override
+	public final synchronized void doSendMessage(final Message message) {
+		try {
+			if (this.output != null) {
+				MessageFramer.writeMessage(message, this.output);
+			}
+		} catch (final IOException exception) {
+			Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot send " + message, exception);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param output
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 */
+	final void setOutput(final SocketChannel output) {
+		synchronized (this) {
+			if (output != this.output && this.output != null) {
+				try {
+					this.output.close();
+				} catch (final Exception exception) {
+					this.setConnectionError(exception);
+				}
+			}
+			
+			this.output = output;
+		}
+		
+		if (this.output != null) {
+			this.setState(State.CONNECTED);
+		}
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class ReceptionTask implements Runnable {
+		
+		private final SocketChannel input;
+		
+		/**
+		 * @param input
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		ReceptionTask(final SocketChannel input) {
+			this.input = input;
+		}
+		
+		@Override
+		public final void run() {
+			Object object = null;
+			
+			do {
+				try {
+					object = MessageFramer.readMessage(this.input);
+					
+					ChannelSocketConnection.this.dispatchMessage((Message) object);
+					
+					if (object instanceof DataOfferMessage) {
+						// The bytes that haven't been written to a file by a listener must be read before the next message
+						((DataOfferMessage) object).detachFromPayloadSource();
+					}
+				} catch (final IOException exception) {
+					object = STOP;
+				} catch (final ClassNotFoundException exception) {
+					System.err.println(Tools.debug(2, exception.getMessage()));
+					object = RETRY;
+				}
+			} while (object != STOP && !(object instanceof DisconnectMessage));
+		}
+		
+	}
+	
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+/**
+ * Chooses the number of bytes to ask for in each data request, from measurements made by the receiver.
+ * <br>The chunk size starts small and is doubled as long as doubling it increases the measured throughput,
+ * which brings it close to the bandwidth-delay product of the connection.
+ * <br>It is halved when the throughput drops, or when writing a chunk to disk takes longer than a round trip.
+ * <br>The bytes requested at the same time never exceed a memory cap.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ChunkSizer {
+	
+	private final int minimumChunkSize;
+	
+	private final int maximumChunkSize;
+	
+	private final long maximumRequestedByteCount;
+	
+	private int chunkSize;
+	
+	private double roundTripTime;
+	
+	private double writeTime;
+	
+	private double previousThroughput;
+	
+	private long sampleStartTime;
+	
+	private long sampleByteCount;
+	
+	private int sampleChunkCount;
+	
+	public ChunkSizer() {
+		this(DEFAULT_MINIMUM_CHUNK_SIZE, DEFAULT_MAXIMUM_CHUNK_SIZE, DEFAULT_MAXIMUM_REQUESTED_BYTE_COUNT);
+	}
+	
+	/**
+	 * 
+	 * @param minimumChunkSize
+	 * <br>Range: {@code [1 .. maximumChunkSize]}
+	 * @param maximumChunkSize
+	 * <br>Range: {@code [minimumChunkSize .. Integer.MAX_VALUE]}
+	 * @param maximumRequestedByteCount the memory cap, ie the maximum number of bytes that can be requested
+	 * without having been received yet
+	 * <br>Range: {@code [minimumChunkSize .. Long.MAX_VALUE]}
+	 * @throws IllegalArgumentException if the parameters are not in their ranges
+	 */
+	public ChunkSizer(final int minimumChunkSize, final int maximumChunkSize, final long maximumRequestedByteCount) {
+		if (minimumChunkSize < 1 || maximumChunkSize < minimumChunkSize || maximumRequestedByteCount < minimumChunkSize) {
+			throw new IllegalArgumentException("Invalid chunk size bounds: [" + minimumChunkSize + " .. " +
+					maximumChunkSize + "], memory cap: " + maximumRequestedByteCount);
+		}
+		
+		this.minimumChunkSize = minimumChunkSize;
+		this.maximumChunkSize = maximumChunkSize;
+		this.maximumRequestedByteCount = maximumRequestedByteCount;
+		this.chunkSize = minimumChunkSize;
+		this.sampleStartTime = -1L;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final int getMinimumChunkSize() {
+		return this.minimumChunkSize;
+	}
+	
+	/**
+	 * 
+	 * @param requestWindowSize
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @return the number of bytes to ask for in the next data request
+	 * <br>Range: {@code [this.minimumChunkSize .. this.maximumChunkSize]}
+	 */
+	public final synchronized int getChunkSize(final int requestWindowSize) {
+		final long cappedChunkSize = this.maximumRequestedByteCount / requestWindowSize;
+		
+		return (int) Math.max(this.minimumChunkSize, Math.min(this.chunkSize, cappedChunkSize));
+	}
+	
+	/**
+	 * 
+	 * @return the smoothed time between a data request and the matching data offer, in nanoseconds
+	 * <br>Range: {@code [0.0 .. Double.MAX_VALUE]}
+	 */
+	public final synchronized double getRoundTripTime() {
+		return this.roundTripTime;
+	}
+	
+	/**
+	 * 
+	 * @return the smoothed time needed to write a chunk to disk, in nanoseconds
+	 * <br>Range: {@code [0.0 .. Double.MAX_VALUE]}
+	 */
+	public final synchronized double getWriteTime() {
+		return this.writeTime;
+	}
+	
+	/**
+	 * 
+	 * @return the throughput measured during the last complete sample, in bytes per second
+	 * <br>Range: {@code [0.0 .. Double.MAX_VALUE]}
+	 */
+	public final synchronized double getThroughput() {
+		return this.previousThroughput;
+	}
+	
+	/**
+	 * Takes a new measurement into account, and adjusts the chunk size at the end of each sample.
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @param roundTripTime the time between the data request and the matching data offer, in nanoseconds
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param writeTime the time needed to write the chunk, in nanoseconds
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param time the time at which the chunk has been received, in nanoseconds
+	 * <br>Range: any long
+	 */
+	public final synchronized void chunkReceived(final int byteCount, final long roundTripTime, final long writeTime, final long time) {
+		this.roundTripTime = smooth(this.roundTripTime, roundTripTime);
+		this.writeTime = smooth(this.writeTime, writeTime);
+		
+		if (this.sampleStartTime < 0L) {
+			// The first chunk of a sample only marks its beginning
+			this.sampleStartTime = time;
+			
+			return;
+		}
+		
+		this.sampleByteCount += byteCount;
+		
+		if (++this.sampleChunkCount < SAMPLE_CHUNK_COUNT || time <= this.sampleStartTime) {
+			return;
+		}
+		
+		final double throughput = this.sampleByteCount * 1.0E9 / (time - this.sampleStartTime);
+		
+		if (this.writeTime > 2.0 * this.roundTripTime || throughput < this.previousThroughput * (1.0 - SIGNIFICANT_VARIATION)) {
+			this.chunkSize = Math.max(this.minimumChunkSize, this.chunkSize / 2);
+		} else if (this.writeTime <= this.roundTripTime && throughput > this.previousThroughput * (1.0 + SIGNIFICANT_VARIATION)) {
+			this.chunkSize = (int) Math.min(this.maximumChunkSize, 2L * this.chunkSize);
+		}
+		
+		this.previousThroughput = throughput;
+		this.sampleStartTime = time;
+		this.sampleByteCount = 0L;
+		this.sampleChunkCount = 0;
+	}
+	
+	/**
+	 * Forgets about the current sample; must be called when the transfer is interrupted.
+	 */
+	public final synchronized void reset() {
+		this.sampleStartTime = -1L;
+		this.sampleByteCount = 0L;
+		this.sampleChunkCount = 0;
+	}
+	
+	/**
+	 * Number of chunks over which the throughput is measured before the chunk size can change.
+	 */
+	public static final int SAMPLE_CHUNK_COUNT = 4;
+	
+	/**
+	 * Relative throughput variation above which the chunk size is changed.
+	 */
+	public static final double SIGNIFICANT_VARIATION = 0.1;
+	
+	/**
+	 * Weight of a new measurement in the smoothed round-trip and write times.
+	 */
+	public static final double SMOOTHING_FACTOR = 0.125;
+	
+	public static final int DEFAULT_MINIMUM_CHUNK_SIZE = 4096;
+	
+	public static final int DEFAULT_MAXIMUM_CHUNK_SIZE = 4 * 1024 * 1024;
+	
+	public static final long DEFAULT_MAXIMUM_REQUESTED_BYTE_COUNT = 16L * 1024L * 1024L;
+	
+	/**
+	 * 
+	 * @param average
+	 * <br>Range: {@code [0.0 .. Double.MAX_VALUE]}
+	 * @param value
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @return
+	 * <br>Range: {@code [0.0 .. Double.MAX_VALUE]}
+	 */
+	private static final double smooth(final double average, final long value) {
+		return average == 0.0 ? value : average + SMOOTHING_FACTOR * (value - average);
+	}
+	
+}
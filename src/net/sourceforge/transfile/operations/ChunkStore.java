@@ -0,0 +1,797 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.logging.Level;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * A bounded on-disk cache of file chunks identified by their {@link #HASH_ALGORITHM} hash,
+ * used by receive operations in deduplication mode.
+ * <br>The chunks are stored in fixed-size slots, in one file per size class (powers of two
+ * from {@link #MINIMUM_SLOT_SIZE} to {@link ContentDefinedChunker#MAXIMUM_CHUNK_SIZE} bytes);
+ * the slot files grow until their total size reaches the capacity of the store, and then a new chunk replaces
+ * the least recently used chunk of its size class.
+ * <br>The index is kept in memory in primitive arrays (a chained hash table and one doubly linked LRU list per size class),
+ * which takes about 60 bytes per chunk; it is loaded when the store is created and saved by {@link #save()}.
+ * <br>The chunks read from the store are checked against their hash, so an index that is older than the slot files
+ * (after a crash) can only cause misses.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ChunkStore {
+	
+	private final File directory;
+	
+	private final long capacity;
+	
+	private final RandomAccessFile[] slotFiles;
+	
+	private final int[] slotCounts;
+	
+	private final int[][] freeSlots;
+	
+	private final int[] freeSlotCounts;
+	
+	private final int[] leastRecentlyUsedEntries;
+	
+	private final int[] mostRecentlyUsedEntries;
+	
+	private final MessageDigest messageDigest;
+	
+	private byte[] hashes;
+	
+	private int[] byteCounts;
+	
+	private int[] slots;
+	
+	private byte[] sizeClasses;
+	
+	private int[] previousEntries;
+	
+	private int[] nextEntries;
+	
+	private int[] nextEntriesInBucket;
+	
+	private int[] buckets;
+	
+	private int allocatedEntryCount;
+	
+	private int firstFreeEntry;
+	
+	private int chunkCount;
+	
+	private long allocatedByteCount;
+	
+	private boolean modified;
+	
+	/**
+	 * Loads the index saved in {@code directory}, if any.
+	 * 
+	 * @param directory created if necessary when the first chunk is stored
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param capacity the maximum total size of the slot files, in bytes
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public ChunkStore(final File directory, final long capacity) {
+		MessageDigest messageDigest = null;
+		
+		try {
+			messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (final NoSuchAlgorithmException exception) {
+			// Every Java platform supports HASH_ALGORITHM
+			Tools.throwUnchecked(exception);
+		}
+		
+		this.directory = directory;
+		this.capacity = capacity;
+		this.slotFiles = new RandomAccessFile[SIZE_CLASS_COUNT];
+		this.slotCounts = new int[SIZE_CLASS_COUNT];
+		this.freeSlots = new int[SIZE_CLASS_COUNT][];
+		this.freeSlotCounts = new int[SIZE_CLASS_COUNT];
+		this.leastRecentlyUsedEntries = new int[SIZE_CLASS_COUNT];
+		this.mostRecentlyUsedEntries = new int[SIZE_CLASS_COUNT];
+		this.messageDigest = messageDigest;
+		
+		this.clear();
+		
+		try {
+			this.load();
+		} catch (final IOException exception) {
+			Tools.getLoggerForThisMethod().log(Level.WARNING, "Ignoring the unreadable index of the chunk store " + directory, exception);
+			
+			this.clear();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final File getDirectory() {
+		return this.directory;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final long getCapacity() {
+		return this.capacity;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getChunkCount() {
+		return this.chunkCount;
+	}
+	
+	/**
+	 * 
+	 * @return the total size of the slot files, in bytes
+	 * <br>Range: {@code [0L .. this.getCapacity()]}
+	 */
+	public final synchronized long getAllocatedByteCount() {
+		return this.allocatedByteCount;
+	}
+	
+	/**
+	 * 
+	 * @return {@code true} if the index has changed since it was loaded or saved
+	 */
+	public final synchronized boolean isModified() {
+		return this.modified;
+	}
+	
+	/**
+	 * 
+	 * @param hash
+	 * <br>Should not be null
+	 * @return {@code true} if the store contains a chunk with this hash
+	 */
+	public final synchronized boolean contains(final byte[] hash) {
+		return 0 <= this.find(hash);
+	}
+	
+	/**
+	 * Reads a chunk, which becomes the most recently used chunk of its size class.
+	 * <br>Blocking.
+	 * 
+	 * @param hash
+	 * <br>Should not be null
+	 * @return the bytes of the chunk, or null if the store doesn't contain it (or if the stored bytes don't match the hash anymore)
+	 * <br>A possibly null value
+	 * <br>A new value
+	 * @throws IOException if the slot file cannot be read
+	 */
+	public final synchronized byte[] get(final byte[] hash) throws IOException {
+		final int entry = this.find(hash);
+		
+		if (entry < 0) {
+			return null;
+		}
+		
+		final int sizeClass = this.sizeClasses[entry];
+		final byte[] result = new byte[this.byteCounts[entry]];
+		final RandomAccessFile slotFile = this.getSlotFile(sizeClass);
+		
+		slotFile.seek((long) this.slots[entry] * getSlotSize(sizeClass));
+		slotFile.readFully(result);
+		
+		if (!Arrays.equals(hash, this.messageDigest.digest(result))) {
+			this.remove(entry);
+			
+			return null;
+		}
+		
+		this.unlink(entry);
+		this.linkAsMostRecentlyUsed(entry);
+		
+		return result;
+	}
+	
+	/**
+	 * Stores a chunk unless the store already contains it, in which case it becomes the most recently used chunk of its size class.
+	 * <br>If the slot files have reached the capacity of the store, the chunk replaces the least recently used chunk of its size class;
+	 * if there is none (or if the chunk is larger than {@link ContentDefinedChunker#MAXIMUM_CHUNK_SIZE}), the chunk is not stored.
+	 * <br>Blocking.
+	 * 
+	 * @param hash the hash of {@code bytes}
+	 * <br>Should not be null
+	 * @param bytes
+	 * <br>Should not be null
+	 * @return {@code true} if the store contains the chunk after this call
+	 * @throws IOException if the slot file cannot be written
+	 */
+	public final synchronized boolean put(final byte[] hash, final byte[] bytes) throws IOException {
+		int entry = this.find(hash);
+		
+		if (0 <= entry) {
+			this.unlink(entry);
+			this.linkAsMostRecentlyUsed(entry);
+			
+			return true;
+		}
+		
+		final int sizeClass = getSizeClass(bytes.length);
+		
+		if (sizeClass < 0) {
+			return false;
+		}
+		
+		final int slot = this.allocateSlot(sizeClass);
+		
+		if (slot < 0) {
+			return false;
+		}
+		
+		final RandomAccessFile slotFile = this.getSlotFile(sizeClass);
+		
+		slotFile.seek((long) slot * getSlotSize(sizeClass));
+		slotFile.write(bytes);
+		
+		entry = this.allocateEntry();
+		
+		System.arraycopy(hash, 0, this.hashes, entry * HASH_LENGTH, HASH_LENGTH);
+		this.byteCounts[entry] = bytes.length;
+		this.slots[entry] = slot;
+		this.sizeClasses[entry] = (byte) sizeClass;
+		
+		this.linkAsMostRecentlyUsed(entry);
+		this.addToBucket(entry);
+		++this.chunkCount;
+		this.modified = true;
+		
+		return true;
+	}
+	
+	/**
+	 * Saves the index in the directory of the store (through a temporary file that is then renamed),
+	 * from the least recently used chunk to the most recently used chunk of each size class.
+	 * <br>Blocking.
+	 * 
+	 * @throws IOException if the index cannot be saved
+	 */
+	public final synchronized void save() throws IOException {
+		this.createDirectory();
+		
+		final File indexFile = new File(this.getDirectory(), INDEX_FILE_NAME);
+		final File temporaryFile = new File(indexFile.getPath() + ".tmp");
+		final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+		
+		try {
+			output.writeInt(INDEX_VERSION);
+			output.writeInt(this.chunkCount);
+			
+			for (int sizeClass = 0; sizeClass < SIZE_CLASS_COUNT; ++sizeClass) {
+				output.writeInt(this.slotCounts[sizeClass]);
+				
+				for (int entry = this.leastRecentlyUsedEntries[sizeClass]; 0 <= entry; entry = this.nextEntries[entry]) {
+					output.writeByte(sizeClass);
+					output.writeInt(this.slots[entry]);
+					output.writeInt(this.byteCounts[entry]);
+					output.write(this.hashes, entry * HASH_LENGTH, HASH_LENGTH);
+				}
+			}
+		} finally {
+			output.close();
+		}
+		
+		// On some platforms, renaming doesn't replace an existing file
+		if (!temporaryFile.renameTo(indexFile) && !(indexFile.delete() && temporaryFile.renameTo(indexFile))) {
+			throw new IOException("Cannot replace chunk store index " + indexFile);
+		}
+		
+		this.modified = false;
+	}
+	
+	/**
+	 * Closes the slot files; they are opened again if the store is used afterwards.
+	 */
+	public final synchronized void close() {
+		for (int sizeClass = 0; sizeClass < SIZE_CLASS_COUNT; ++sizeClass) {
+			if (this.slotFiles[sizeClass] != null) {
+				try {
+					this.slotFiles[sizeClass].close();
+				} catch (final IOException exception) {
+					Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot close the slot file of size class " + sizeClass, exception);
+				}
+				
+				this.slotFiles[sizeClass] = null;
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param hash
+	 * <br>Should not be null
+	 * @return
+	 * <br>Range: {@code [-1 .. this.allocatedEntryCount - 1]}
+	 */
+	private final int find(final byte[] hash) {
+		if (hash.length != HASH_LENGTH) {
+			return -1;
+		}
+		
+		for (int entry = this.buckets[this.getBucket(hash, 0)]; 0 <= entry; entry = this.nextEntriesInBucket[entry]) {
+			if (this.hashEquals(entry, hash)) {
+				return entry;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * 
+	 * @param entry
+	 * <br>Range: {@code [0 .. this.allocatedEntryCount - 1]}
+	 * @param hash
+	 * <br>Should not be null
+	 * @return {@code true} if the hash of {@code entry} is {@code hash}
+	 */
+	private final boolean hashEquals(final int entry, final byte[] hash) {
+		final int start = entry * HASH_LENGTH;
+		
+		for (int i = 0; i < HASH_LENGTH; ++i) {
+			if (this.hashes[start + i] != hash[i]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * 
+	 * @param hashes
+	 * <br>Should not be null
+	 * @param start the offset of the hash in {@code hashes}
+	 * <br>Range: {@code [0 .. hashes.length - HASH_LENGTH]}
+	 * @return
+	 * <br>Range: {@code [0 .. this.buckets.length - 1]}
+	 */
+	private final int getBucket(final byte[] hashes, final int start) {
+		// The bytes of a hash are uniformly distributed already
+		final int result = (hashes[start] & 0xFF) | (hashes[start + 1] & 0xFF) << 8 | (hashes[start + 2] & 0xFF) << 16 | (hashes[start + 3] & 0xFF) << 24;
+		
+		return result & (this.buckets.length - 1);
+	}
+	
+	/**
+	 * 
+	 * @param entry
+	 * <br>Range: {@code [0 .. this.allocatedEntryCount - 1]}
+	 */
+	private final void addToBucket(final int entry) {
+		if (this.buckets.length < this.chunkCount + 1) {
+			this.buckets = new int[2 * this.buckets.length];
+			
+			Arrays.fill(this.buckets, -1);
+			
+			for (int sizeClass = 0; sizeClass < SIZE_CLASS_COUNT; ++sizeClass) {
+				for (int i = this.leastRecentlyUsedEntries[sizeClass]; 0 <= i; i = this.nextEntries[i]) {
+					if (i != entry) {
+						final int bucket = this.getBucket(this.hashes, i * HASH_LENGTH);
+						
+						this.nextEntriesInBucket[i] = this.buckets[bucket];
+						this.buckets[bucket] = i;
+					}
+				}
+			}
+		}
+		
+		final int bucket = this.getBucket(this.hashes, entry * HASH_LENGTH);
+		
+		this.nextEntriesInBucket[entry] = this.buckets[bucket];
+		this.buckets[bucket] = entry;
+	}
+	
+	/**
+	 * Removes {@code entry} from the index and frees its slot.
+	 * 
+	 * @param entry
+	 * <br>Range: {@code [0 .. this.allocatedEntryCount - 1]}
+	 */
+	private final void remove(final int entry) {
+		final int sizeClass = this.sizeClasses[entry];
+		final int bucket = this.getBucket(this.hashes, entry * HASH_LENGTH);
+		
+		if (this.buckets[bucket] == entry) {
+			this.buckets[bucket] = this.nextEntriesInBucket[entry];
+		} else {
+			int i = this.buckets[bucket];
+			
+			while (this.nextEntriesInBucket[i] != entry) {
+				i = this.nextEntriesInBucket[i];
+			}
+			
+			this.nextEntriesInBucket[i] = this.nextEntriesInBucket[entry];
+		}
+		
+		this.unlink(entry);
+		this.freeSlot(sizeClass, this.slots[entry]);
+		
+		this.nextEntries[entry] = this.firstFreeEntry;
+		this.firstFreeEntry = entry;
+		--this.chunkCount;
+		this.modified = true;
+	}
+	
+	/**
+	 * 
+	 * @param entry
+	 * <br>Range: {@code [0 .. this.allocatedEntryCount - 1]}
+	 */
+	private final void linkAsMostRecentlyUsed(final int entry) {
+		final int sizeClass = this.sizeClasses[entry];
+		final int last = this.mostRecentlyUsedEntries[sizeClass];
+		
+		this.previousEntries[entry] = last;
+		this.nextEntries[entry] = -1;
+		
+		if (last < 0) {
+			this.leastRecentlyUsedEntries[sizeClass] = entry;
+		} else {
+			this.nextEntries[last] = entry;
+		}
+		
+		this.mostRecentlyUsedEntries[sizeClass] = entry;
+	}
+	
+	/**
+	 * 
+	 * @param entry
+	 * <br>Range: {@code [0 .. this.allocatedEntryCount - 1]}
+	 */
+	private final void unlink(final int entry) {
+		final int sizeClass = this.sizeClasses[entry];
+		final int previous = this.previousEntries[entry];
+		final int next = this.nextEntries[entry];
+		
+		if (previous < 0) {
+			this.leastRecentlyUsedEntries[sizeClass] = next;
+		} else {
+			this.nextEntries[previous] = next;
+		}
+		
+		if (next < 0) {
+			this.mostRecentlyUsedEntries[sizeClass] = previous;
+		} else {
+			this.previousEntries[next] = previous;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return a free entry
+	 * <br>Range: {@code [0 .. this.allocatedEntryCount - 1]}
+	 */
+	private final int allocateEntry() {
+		if (0 <= this.firstFreeEntry) {
+			final int result = this.firstFreeEntry;
+			
+			this.firstFreeEntry = this.nextEntries[result];
+			
+			return result;
+		}
+		
+		if (this.allocatedEntryCount == this.byteCounts.length) {
+			final int n = 2 * this.byteCounts.length;
+			
+			this.hashes = Arrays.copyOf(this.hashes, n * HASH_LENGTH);
+			this.byteCounts = Arrays.copyOf(this.byteCounts, n);
+			this.slots = Arrays.copyOf(this.slots, n);
+			this.sizeClasses = Arrays.copyOf(this.sizeClasses, n);
+			this.previousEntries = Arrays.copyOf(this.previousEntries, n);
+			this.nextEntries = Arrays.copyOf(this.nextEntries, n);
+			this.nextEntriesInBucket = Arrays.copyOf(this.nextEntriesInBucket, n);
+		}
+		
+		return this.allocatedEntryCount++;
+	}
+	
+	/**
+	 * Takes a free slot, or a new slot at the end of the slot file if the capacity allows it,
+	 * or the slot of the least recently used chunk of the size class.
+	 * 
+	 * @param sizeClass
+	 * <br>Range: {@code [0 .. SIZE_CLASS_COUNT - 1]}
+	 * @return
+	 * <br>Range: {@code [-1 .. Integer.MAX_VALUE]}
+	 */
+	private final int allocateSlot(final int sizeClass) {
+		if (this.freeSlotCounts[sizeClass] == 0) {
+			if (this.allocatedByteCount + getSlotSize(sizeClass) <= this.getCapacity()) {
+				this.allocatedByteCount += getSlotSize(sizeClass);
+				
+				return this.slotCounts[sizeClass]++;
+			}
+			
+			if (this.leastRecentlyUsedEntries[sizeClass] < 0) {
+				return -1;
+			}
+			
+			this.remove(this.leastRecentlyUsedEntries[sizeClass]);
+		}
+		
+		return this.freeSlots[sizeClass][--this.freeSlotCounts[sizeClass]];
+	}
+	
+	/**
+	 * 
+	 * @param sizeClass
+	 * <br>Range: {@code [0 .. SIZE_CLASS_COUNT - 1]}
+	 * @param slot
+	 * <br>Range: {@code [0 .. this.slotCounts[sizeClass] - 1]}
+	 */
+	private final void freeSlot(final int sizeClass, final int slot) {
+		if (this.freeSlotCounts[sizeClass] == this.freeSlots[sizeClass].length) {
+			this.freeSlots[sizeClass] = Arrays.copyOf(this.freeSlots[sizeClass], 2 * this.freeSlots[sizeClass].length);
+		}
+		
+		this.freeSlots[sizeClass][this.freeSlotCounts[sizeClass]++] = slot;
+	}
+	
+	/**
+	 * Opens the slot file of {@code sizeClass} the first time it is needed.
+	 * 
+	 * @param sizeClass
+	 * <br>Range: {@code [0 .. SIZE_CLASS_COUNT - 1]}
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 * @throws IOException if the file cannot be opened
+	 */
+	private final RandomAccessFile getSlotFile(final int sizeClass) throws IOException {
+		if (this.slotFiles[sizeClass] == null) {
+			this.createDirectory();
+			
+			this.slotFiles[sizeClass] = new RandomAccessFile(this.getSlotFileName(sizeClass), "rw");
+		}
+		
+		return this.slotFiles[sizeClass];
+	}
+	
+	/**
+	 * 
+	 * @param sizeClass
+	 * <br>Range: {@code [0 .. SIZE_CLASS_COUNT - 1]}
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private final File getSlotFileName(final int sizeClass) {
+		return new File(this.getDirectory(), "slots-" + getSlotSize(sizeClass) + ".chunks");
+	}
+	
+	/**
+	 * 
+	 * @throws IOException if the directory cannot be created
+	 */
+	private final void createDirectory() throws IOException {
+		if (!this.getDirectory().isDirectory() && !this.getDirectory().mkdirs()) {
+			throw new IOException("Cannot create chunk store directory " + this.getDirectory());
+		}
+	}
+	
+	/**
+	 * Empties the index.
+	 */
+	private final void clear() {
+		this.hashes = new byte[INITIAL_ENTRY_CAPACITY * HASH_LENGTH];
+		this.byteCounts = new int[INITIAL_ENTRY_CAPACITY];
+		this.slots = new int[INITIAL_ENTRY_CAPACITY];
+		this.sizeClasses = new byte[INITIAL_ENTRY_CAPACITY];
+		this.previousEntries = new int[INITIAL_ENTRY_CAPACITY];
+		this.nextEntries = new int[INITIAL_ENTRY_CAPACITY];
+		this.nextEntriesInBucket = new int[INITIAL_ENTRY_CAPACITY];
+		this.buckets = new int[INITIAL_ENTRY_CAPACITY];
+		this.allocatedEntryCount = 0;
+		this.firstFreeEntry = -1;
+		this.chunkCount = 0;
+		this.allocatedByteCount = 0L;
+		this.modified = false;
+		
+		Arrays.fill(this.buckets, -1);
+		Arrays.fill(this.slotCounts, 0);
+		Arrays.fill(this.freeSlotCounts, 0);
+		Arrays.fill(this.leastRecentlyUsedEntries, -1);
+		Arrays.fill(this.mostRecentlyUsedEntries, -1);
+		
+		for (int sizeClass = 0; sizeClass < SIZE_CLASS_COUNT; ++sizeClass) {
+			this.freeSlots[sizeClass] = new int[INITIAL_ENTRY_CAPACITY];
+		}
+	}
+	
+	/**
+	 * Reads the saved index, if any; the slots beyond the end of their file are ignored,
+	 * and the slots that are not used by the index are free.
+	 * <br>Blocking.
+	 * 
+	 * @throws IOException if the index cannot be read
+	 */
+	private final void load() throws IOException {
+		final File indexFile = new File(this.getDirectory(), INDEX_FILE_NAME);
+		
+		if (!indexFile.isFile()) {
+			return;
+		}
+		
+		final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		
+		try {
+			if (input.readInt() != INDEX_VERSION) {
+				throw new IOException("Unknown chunk store index version");
+			}
+			
+			final int savedChunkCount = input.readInt();
+			final boolean[][] usedSlots = new boolean[SIZE_CLASS_COUNT][];
+			final byte[] hash = new byte[HASH_LENGTH];
+			int remainingChunkCount = savedChunkCount;
+			
+			for (int sizeClass = 0; sizeClass < SIZE_CLASS_COUNT; ++sizeClass) {
+				final long slotSize = getSlotSize(sizeClass);
+				final long slotFileLength = this.getSlotFileName(sizeClass).length();
+				// The last slot of a file is only written up to the end of its chunk
+				final int slotCount = (int) Math.min(input.readInt(), (slotFileLength + slotSize - 1L) / slotSize);
+				final int allowedSlotCount = (int) Math.min(slotCount, (this.getCapacity() - this.allocatedByteCount) / slotSize);
+				
+				this.slotCounts[sizeClass] = allowedSlotCount;
+				this.allocatedByteCount += allowedSlotCount * slotSize;
+				usedSlots[sizeClass] = new boolean[allowedSlotCount];
+				
+				while (0 < remainingChunkCount) {
+					input.mark(1);
+					
+					if (input.readByte() != sizeClass) {
+						input.reset();
+						break;
+					}
+					
+					final int slot = input.readInt();
+					final int byteCount = input.readInt();
+					
+					input.readFully(hash);
+					--remainingChunkCount;
+					
+					if (slot < allowedSlotCount && !usedSlots[sizeClass][slot] && this.find(hash) < 0 && byteCount <= slotSize &&
+							slot * slotSize + byteCount <= slotFileLength) {
+						final int entry = this.allocateEntry();
+						
+						System.arraycopy(hash, 0, this.hashes, entry * HASH_LENGTH, HASH_LENGTH);
+						this.byteCounts[entry] = byteCount;
+						this.slots[entry] = slot;
+						this.sizeClasses[entry] = (byte) sizeClass;
+						
+						this.linkAsMostRecentlyUsed(entry);
+						this.addToBucket(entry);
+						++this.chunkCount;
+						usedSlots[sizeClass][slot] = true;
+					}
+				}
+				
+				for (int slot = allowedSlotCount - 1; 0 <= slot; --slot) {
+					if (!usedSlots[sizeClass][slot]) {
+						this.freeSlot(sizeClass, slot);
+					}
+				}
+			}
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * The size of a chunk hash, in bytes.
+	 */
+	public static final int HASH_LENGTH = 32;
+	
+	public static final String HASH_ALGORITHM = "SHA-256";
+	
+	/**
+	 * The slot size of the smallest size class, in bytes.
+	 */
+	public static final int MINIMUM_SLOT_SIZE = 1024;
+	
+	public static final int SIZE_CLASS_COUNT = 1 + Integer.numberOfTrailingZeros(ContentDefinedChunker.MAXIMUM_CHUNK_SIZE / MINIMUM_SLOT_SIZE);
+	
+	public static final String INDEX_FILE_NAME = "index.chunks";
+	
+	private static final int INDEX_VERSION = 1;
+	
+	private static final int INITIAL_ENTRY_CAPACITY = 16;
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @param offset
+	 * <br>Range: {@code [0 .. bytes.length]}
+	 * @param length
+	 * <br>Range: {@code [0 .. bytes.length - offset]}
+	 * @return the {@link #HASH_ALGORITHM} hash of the {@code length} bytes of {@code bytes} starting at {@code offset}
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public static final byte[] computeHash(final byte[] bytes, final int offset, final int length) {
+		try {
+			final MessageDigest messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+			
+			messageDigest.update(bytes, offset, length);
+			
+			return messageDigest.digest();
+		} catch (final NoSuchAlgorithmException exception) {
+			// Every Java platform supports HASH_ALGORITHM
+			return Tools.throwUnchecked(exception);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @return the smallest size class whose slots can contain {@code byteCount} bytes, or {@code -1}
+	 * <br>Range: {@code [-1 .. SIZE_CLASS_COUNT - 1]}
+	 */
+	public static final int getSizeClass(final int byteCount) {
+		for (int result = 0; result < SIZE_CLASS_COUNT; ++result) {
+			if (byteCount <= getSlotSize(result)) {
+				return result;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * 
+	 * @param sizeClass
+	 * <br>Range: {@code [0 .. SIZE_CLASS_COUNT - 1]}
+	 * @return
+	 * <br>Range: {@code [MINIMUM_SLOT_SIZE .. ContentDefinedChunker.MAXIMUM_CHUNK_SIZE]}
+	 */
+	public static final int getSlotSize(final int sizeClass) {
+		return MINIMUM_SLOT_SIZE << sizeClass;
+	}
+	
+}
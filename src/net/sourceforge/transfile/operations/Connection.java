@@ -19,7 +19,9 @@
 
 package net.sourceforge.transfile.operations;
 
+import net.sourceforge.transfile.operations.messages.CompressionMessage;
 import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.transfile.operations.messages.OperationMessage;
 
 /**
  * TODO doc
@@ -114,6 +116,68 @@ public interface Connection {
 	 */
 	public abstract void sendMessage(Message message);
 	
+	/**
+	 * 
+	 * @return {@code true} if this peer accepts compressed data offers on this connection
+	 */
+	public abstract boolean isCompressionEnabled();
+	
+	/**
+	 * A peer that has enabled compression announces it with a {@link CompressionMessage}
+	 * when the connection is established; the change takes effect at the next connection.
+	 * 
+	 * @param compressionEnabled
+	 * <br>Range: any boolean
+	 */
+	public abstract void setCompressionEnabled(boolean compressionEnabled);
+	
+	/**
+	 * Data offers may only be compressed on a connection where compression has been negotiated.
+	 * 
+	 * @return {@code true} if both peers have enabled compression on this connection since it was established
+	 */
+	public abstract boolean isCompressionNegotiated();
+	
+	/**
+	 * The rate limiters of the operations on this connection are children of this limiter,
+	 * whose parent is {@link RateLimiter#GLOBAL}.
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public abstract RateLimiter getRateLimiter();
+	
+	/**
+	 * Allocates the identifier of a new stream, to be used by an operation offering a file on this connection.
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @see OperationMessage#getStreamId()
+	 */
+	public abstract int newStreamId();
+	
+	/**
+	 * Operation messages whose stream identifier is {@code streamId} are only dispatched to {@code listener},
+	 * after the listeners added with {@link #addConnectionListener(Listener)}.
+	 * <br>Only the {@link Listener#messageReceived(Message)} method of {@code listener} is called.
+	 * 
+	 * @param streamId
+	 * <br>Range: any non-zero integer
+	 * @param listener
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @see OperationMessage#getStreamId()
+	 */
+	public abstract void addStreamListener(int streamId, Listener listener);
+	
+	/**
+	 * 
+	 * @param streamId
+	 * <br>Range: any non-zero integer
+	 */
+	public abstract void removeStreamListener(int streamId);
+	
 	/**
 	 * TODO doc
 	 *
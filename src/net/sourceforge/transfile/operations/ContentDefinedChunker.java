@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.util.Random;
+
+/**
+ * Splits files into chunks whose boundaries depend on their contents (FastCDC with a Gear rolling hash),
+ * so that a modification only changes the chunks around it, and identical regions of different files
+ * (or of different versions of a file) produce identical chunks even if they are not at the same offsets.
+ * <br>A boundary only depends on the bytes following the start of its chunk, and the chunks contain
+ * between {@link #MINIMUM_CHUNK_SIZE} and {@link #MAXIMUM_CHUNK_SIZE} bytes ({@link #AVERAGE_CHUNK_SIZE} on average),
+ * except the last chunk of a file, which can be smaller.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public final class ContentDefinedChunker {
+	
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private ContentDefinedChunker() {
+		// Do nothing
+	}
+	
+	public static final int MINIMUM_CHUNK_SIZE = 2 * 1024;
+	
+	public static final int AVERAGE_CHUNK_SIZE = 8 * 1024;
+	
+	public static final int MAXIMUM_CHUNK_SIZE = 64 * 1024;
+	
+	/**
+	 * Hash bits tested before {@link #AVERAGE_CHUNK_SIZE} bytes: two more bits than the average chunk size needs,
+	 * so that small chunks are less likely (normalized chunking).
+	 */
+	private static final long SMALL_CHUNK_MASK = 0xFFFE000000000000L;
+	
+	/**
+	 * Hash bits tested after {@link #AVERAGE_CHUNK_SIZE} bytes: two fewer bits than the average chunk size needs,
+	 * so that large chunks are less likely.
+	 */
+	private static final long LARGE_CHUNK_MASK = 0xFFE0000000000000L;
+	
+	/**
+	 * One random value per byte value, the same for all the instances of the application.
+	 */
+	private static final long[] GEAR = new long[256];
+	
+	static {
+		final Random random = new Random(0x5472616E7346696CL);
+		
+		for (int i = 0; i < GEAR.length; ++i) {
+			GEAR[i] = random.nextLong();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @param start the offset of the beginning of the chunk
+	 * <br>Range: {@code [0 .. end]}
+	 * @param end the offset after the last available byte
+	 * <br>Range: {@code [start .. bytes.length]}
+	 * @param endOfFile {@code true} if the last available byte is the last byte of the file
+	 * <br>Range: any boolean
+	 * @return the offset after the last byte of the chunk, or {@code -1} if more bytes are needed to find it
+	 * <br>Range: {@code [-1 .. end]}
+	 */
+	public static final int getChunkEnd(final byte[] bytes, final int start, final int end, final boolean endOfFile) {
+		final int maximumEnd = (int) Math.min(end, (long) start + MAXIMUM_CHUNK_SIZE);
+		final int averageEnd = (int) Math.min(maximumEnd, (long) start + AVERAGE_CHUNK_SIZE);
+		long hash = 0L;
+		int i = (int) Math.min(maximumEnd, (long) start + MINIMUM_CHUNK_SIZE);
+		
+		for (; i < averageEnd; ++i) {
+			hash = (hash << 1) + GEAR[bytes[i] & 0xFF];
+			
+			if ((hash & SMALL_CHUNK_MASK) == 0L) {
+				return i + 1;
+			}
+		}
+		
+		for (; i < maximumEnd; ++i) {
+			hash = (hash << 1) + GEAR[bytes[i] & 0xFF];
+			
+			if ((hash & LARGE_CHUNK_MASK) == 0L) {
+				return i + 1;
+			}
+		}
+		
+		return maximumEnd - start == MAXIMUM_CHUNK_SIZE || endOfFile ? maximumEnd : -1;
+	}
+	
+}
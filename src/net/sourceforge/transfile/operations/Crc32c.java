@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli polynomial, as used by iSCSI and SCTP), computed 8 bytes at a time with lookup tables.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class Crc32c implements Checksum {
+	
+	private int crc;
+	
+	public Crc32c() {
+		this.crc = 0xFFFFFFFF;
+	}
+	
+	@Override
+	public final void update(final int b) {
+		this.crc = (this.crc >>> 8) ^ TABLES[0][(this.crc ^ b) & 0xFF];
+	}
+	
+	@Override
+	public final void update(final byte[] bytes, final int offset, final int length) {
+		final int[] t0 = TABLES[0];
+		final int[] t1 = TABLES[1];
+		final int[] t2 = TABLES[2];
+		final int[] t3 = TABLES[3];
+		final int[] t4 = TABLES[4];
+		final int[] t5 = TABLES[5];
+		final int[] t6 = TABLES[6];
+		final int[] t7 = TABLES[7];
+		final int end = offset + length;
+		int crc = this.crc;
+		int i = offset;
+		
+		for (; i + 8 <= end; i += 8) {
+			final int low = crc
+					^ (bytes[i] & 0xFF)
+					^ (bytes[i + 1] & 0xFF) << 8
+					^ (bytes[i + 2] & 0xFF) << 16
+					^ (bytes[i + 3] & 0xFF) << 24;
+			
+			crc = t7[low & 0xFF]
+					^ t6[(low >>> 8) & 0xFF]
+					^ t5[(low >>> 16) & 0xFF]
+					^ t4[low >>> 24]
+					^ t3[bytes[i + 4] & 0xFF]
+					^ t2[bytes[i + 5] & 0xFF]
+					^ t1[bytes[i + 6] & 0xFF]
+					^ t0[bytes[i + 7] & 0xFF];
+		}
+		
+		for (; i < end; ++i) {
+			crc = (crc >>> 8) ^ t0[(crc ^ bytes[i]) & 0xFF];
+		}
+		
+		this.crc = crc;
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 */
+	public final void update(final byte[] bytes) {
+		this.update(bytes, 0, bytes.length);
+	}
+	
+	@Override
+	public final long getValue() {
+		return ~this.crc & 0xFFFFFFFFL;
+	}
+	
+	@Override
+	public final void reset() {
+		this.crc = 0xFFFFFFFF;
+	}
+	
+	/**
+	 * Reversed representation of the Castagnoli polynomial.
+	 */
+	public static final int POLYNOMIAL = 0x82F63B78;
+	
+	/**
+	 * {@code TABLES[k][b]} is the CRC of byte {@code b} followed by {@code k} zero bytes.
+	 */
+	private static final int[][] TABLES = new int[8][256];
+	
+	static {
+		for (int b = 0; b < 256; ++b) {
+			int crc = b;
+			
+			for (int bit = 0; bit < 8; ++bit) {
+				crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+			}
+			
+			TABLES[0][b] = crc;
+		}
+		
+		for (int b = 0; b < 256; ++b) {
+			for (int k = 1; k < 8; ++k) {
+				TABLES[k][b] = (TABLES[k - 1][b] >>> 8) ^ TABLES[0][TABLES[k - 1][b] & 0xFF];
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @return the CRC-32C of {@code bytes}, as the bits of an {@code int}
+	 * <br>Range: any int
+	 */
+	public static final int compute(final byte[] bytes) {
+		final Crc32c crc = new Crc32c();
+		
+		crc.update(bytes);
+		
+		return (int) crc.getValue();
+	}
+	
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Keeps read-only file channels open between successive reads of the same files.
+ * <br>Reads are positional, so a channel can be shared by several threads.
+ * <br>A channel is closed when it hasn't been used for a while, when too many files are open
+ * (least recently used first), or when {@link #close(File)} is called.
+ * <br>A channel that is being used is never closed before the end of the read.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileChannelCache {
+	
+	private final int maximumOpenFileCount;
+	
+	private final long idleTimeout;
+	
+	private final Map<File, Entry> entries;
+	
+	private Timer idleFileCloser;
+	
+	/**
+	 * 
+	 * @param maximumOpenFileCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param idleTimeout time in milliseconds after which an unused file is closed
+	 * <br>Range: {@code [1L .. Long.MAX_VALUE]}
+	 */
+	public FileChannelCache(final int maximumOpenFileCount, final long idleTimeout) {
+		this.maximumOpenFileCount = maximumOpenFileCount;
+		this.idleTimeout = idleTimeout;
+		this.entries = new LinkedHashMap<File, Entry>(16, 0.75F, true);
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getOpenFileCount() {
+		return this.entries.size();
+	}
+	
+	/**
+	 * Reads bytes from {@code file} starting at {@code position} until {@code buffer} is full
+	 * or the end of the file is reached.
+	 * <br>Blocking.
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * @param position
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return the number of bytes read, or {@code -1} if {@code position} is at or after the end of the file
+	 * <br>Range: {@code [-1 .. buffer.remaining()]}
+	 * @throws IOException if the file doesn't exist or cannot be read
+	 */
+	public final int read(final File file, final long position, final ByteBuffer buffer) throws IOException {
+		final Entry entry = this.acquire(file);
+		
+		try {
+			int result = 0;
+			
+			while (buffer.hasRemaining()) {
+				final int readByteCount = entry.getChannel().read(buffer, position + result);
+				
+				if (readByteCount < 0) {
+					return result == 0 ? -1 : result;
+				}
+				
+				result += readByteCount;
+			}
+			
+			return result;
+		} finally {
+			this.release(entry);
+		}
+	}
+	
+	/**
+	 * Sends {@code byteCount} bytes from {@code file} starting at {@code position} to {@code target}
+	 * without copying them into the Java heap when the platform allows it.
+	 * <br>Blocking.
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * @param position
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param target
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws IOException if the file doesn't exist or cannot be read, if the end of the file is reached
+	 * before {@code byteCount} bytes have been sent, or if an I/O error occurs while writing to {@code target}
+	 */
+	public final void transferTo(final File file, final long position, final long byteCount, final WritableByteChannel target) throws IOException {
+		final Entry entry = this.acquire(file);
+		
+		try {
+			final FileChannel channel = entry.getChannel();
+			long transferredByteCount = 0L;
+			
+			while (transferredByteCount < byteCount) {
+				final long n = channel.transferTo(position + transferredByteCount, byteCount - transferredByteCount, target);
+				
+				if (n <= 0L && channel.size() <= position + transferredByteCount) {
+					throw new EOFException(file + ": " + (byteCount - transferredByteCount) + " bytes missing after offset " + (position + transferredByteCount));
+				}
+				
+				transferredByteCount += n;
+			}
+		} finally {
+			this.release(entry);
+		}
+	}
+	
+	/**
+	 * Closes the channel associated with {@code file} as soon as it is no longer used.
+	 * <br>Does nothing if {@code file} is not open.
+	 * 
+	 * @param file
+	 * <br>Can be null
+	 */
+	public final synchronized void close(final File file) {
+		final Entry entry = this.entries.remove(file);
+		
+		if (entry != null) {
+			entry.close();
+		}
+	}
+	
+	/**
+	 * Closes all the channels that are not used and haven't been used for at least {@code this.idleTimeout} milliseconds.
+	 */
+	final synchronized void closeIdleFiles() {
+		final long now = System.currentTimeMillis();
+		final Iterator<Entry> iterator = this.entries.values().iterator();
+		
+		while (iterator.hasNext()) {
+			final Entry entry = iterator.next();
+			
+			if (entry.isIdle(now - this.idleTimeout)) {
+				iterator.remove();
+				entry.close();
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 * @throws IOException if the file cannot be opened
+	 */
+	private final synchronized Entry acquire(final File file) throws IOException {
+		Entry result = this.entries.get(file);
+		
+		if (result == null) {
+			this.closeLeastRecentlyUsedFiles(this.maximumOpenFileCount - 1);
+			
+			result = new Entry(new FileInputStream(file).getChannel());
+			
+			this.entries.put(file, result);
+			this.scheduleIdleFileCloser();
+		}
+		
+		result.acquire();
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param entry
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 */
+	private final synchronized void release(final Entry entry) {
+		entry.release();
+	}
+	
+	/**
+	 * Closes unused channels, least recently used first, until at most {@code maximumOpenFileCount} remain open,
+	 * or all remaining channels are being used.
+	 * 
+	 * @param maximumOpenFileCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	private final void closeLeastRecentlyUsedFiles(final int maximumOpenFileCount) {
+		final Iterator<Entry> iterator = this.entries.values().iterator();
+		
+		while (this.entries.size() > maximumOpenFileCount && iterator.hasNext()) {
+			final Entry entry = iterator.next();
+			
+			if (!entry.isUsed()) {
+				iterator.remove();
+				entry.close();
+			}
+		}
+	}
+	
+	private final void scheduleIdleFileCloser() {
+		if (this.idleFileCloser == null) {
+			this.idleFileCloser = new Timer(this.getClass().getSimpleName(), true);
+			
+			this.idleFileCloser.schedule(new TimerTask() {
+				
+				@Override
+				public final void run() {
+					FileChannelCache.this.closeIdleFiles();
+				}
+				
+			}, this.idleTimeout, this.idleTimeout);
+		}
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private static final class Entry {
+		
+		private final FileChannel channel;
+		
+		private int userCount;
+		
+		private long lastUseTime;
+		
+		private boolean closeRequested;
+		
+		/**
+		 * 
+		 * @param channel
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		Entry(final FileChannel channel) {
+			this.channel = channel;
+			this.lastUseTime = System.currentTimeMillis();
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		final FileChannel getChannel() {
+			return this.channel;
+		}
+		
+		final boolean isUsed() {
+			return this.userCount > 0;
+		}
+		
+		/**
+		 * 
+		 * @param time
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @return {@code true} if this entry is not used and hasn't been used since {@code time}
+		 */
+		final boolean isIdle(final long time) {
+			return !this.isUsed() && this.lastUseTime <= time;
+		}
+		
+		final void acquire() {
+			++this.userCount;
+		}
+		
+		final void release() {
+			--this.userCount;
+			this.lastUseTime = System.currentTimeMillis();
+			
+			if (this.closeRequested) {
+				this.close();
+			}
+		}
+		
+		/**
+		 * Closes the channel now if it is not used, or else when it is released.
+		 */
+		final void close() {
+			this.closeRequested = true;
+			
+			if (!this.isUsed()) {
+				try {
+					this.channel.close();
+				} catch (final IOException exception) {
+					Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot close a cached file channel", exception);
+				}
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Computes the {@link #ALGORITHM} digest of a file from its chunks as they go through an operation,
+ * so that the bytes already in memory don't have to be read again.
+ * <br>Only the bytes directly following the ones already digested can be used;
+ * the others are ignored, and the gaps they leave are filled by reading the file with {@link #update(File, long)}.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileDigest {
+	
+	private final MessageDigest messageDigest;
+	
+	private long digestedByteCount;
+	
+	public FileDigest() {
+		MessageDigest messageDigest = null;
+		
+		try {
+			messageDigest = MessageDigest.getInstance(ALGORITHM);
+		} catch (final NoSuchAlgorithmException exception) {
+			// Every Java platform supports ALGORITHM
+			Tools.throwUnchecked(exception);
+		}
+		
+		this.messageDigest = messageDigest;
+	}
+	
+	/**
+	 * 
+	 * @return the number of bytes at the beginning of the file that have been digested
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final synchronized long getDigestedByteCount() {
+		return this.digestedByteCount;
+	}
+	
+	/**
+	 * Digests the bytes of the chunk that follow the bytes already digested, if the chunk contains any.
+	 * 
+	 * @param firstByteOffset the offset of the chunk in the file
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param bytes
+	 * <br>Should not be null
+	 */
+	public final void update(final long firstByteOffset, final byte[] bytes) {
+		this.update(firstByteOffset, bytes, bytes.length);
+	}
+	
+	/**
+	 * Digests the first {@code byteCount} bytes of {@code bytes} like {@link #update(long, byte[])},
+	 * so that a buffer can be reused for several chunks.
+	 * 
+	 * @param firstByteOffset the offset of the chunk in the file
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param bytes
+	 * <br>Should not be null
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. bytes.length]}
+	 */
+	public final synchronized void update(final long firstByteOffset, final byte[] bytes, final int byteCount) {
+		final long start = this.digestedByteCount - firstByteOffset;
+		
+		if (0L <= start && start < byteCount) {
+			this.messageDigest.update(bytes, (int) start, (int) (byteCount - start));
+			this.digestedByteCount = firstByteOffset + byteCount;
+		}
+	}
+	
+	/**
+	 * Reads and digests the bytes of {@code file} that follow the bytes already digested, up to {@code end};
+	 * does nothing if {@code end <= this.getDigestedByteCount()}.
+	 * <br>Blocking.
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * @param end
+	 * <br>Range: {@code [0L .. file.length()]}
+	 * @throws IOException if {@code file} cannot be read or is too short
+	 */
+	public final synchronized void update(final File file, final long end) throws IOException {
+		if (end <= this.digestedByteCount) {
+			return;
+		}
+		
+		final FileInputStream input = new FileInputStream(file);
+		
+		try {
+			final byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, end - this.digestedByteCount)];
+			
+			input.getChannel().position(this.digestedByteCount);
+			
+			while (this.digestedByteCount < end) {
+				final int n = input.read(buffer, 0, (int) Math.min(buffer.length, end - this.digestedByteCount));
+				
+				if (n < 0) {
+					throw new IOException(file + " is shorter than " + end + " bytes");
+				}
+				
+				this.messageDigest.update(buffer, 0, n);
+				this.digestedByteCount += n;
+			}
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Completes the digest; this object must not be used afterwards.
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public final synchronized byte[] digest() {
+		return this.messageDigest.digest();
+	}
+	
+	public static final String ALGORITHM = "SHA-256";
+	
+	/**
+	 * Bytes read at once by {@link #update(File, long)}.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sourceforge.transfile.operations.messages.ManifestMessage;
+
+/**
+ * The entries of the file tree of a directory offer, in the order of the manifest;
+ * the tree may be incomplete while it is being scanned or received.
+ * <br>The bytes of the files are transferred as a single stream, in which each file follows the previous one:
+ * a data offer can contain the bytes of several small files, so that their number doesn't matter.
+ * <br>The directories and the empty files have no bytes in the stream.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileTree {
+	
+	private final List<String> paths;
+	
+	private long[] byteCounts;
+	
+	private long[] offsets;
+	
+	private long byteCount;
+	
+	private boolean complete;
+	
+	public FileTree() {
+		this.paths = new ArrayList<String>();
+		this.byteCounts = new long[INITIAL_CAPACITY];
+		this.offsets = new long[INITIAL_CAPACITY];
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getEntryCount() {
+		return this.paths.size();
+	}
+	
+	/**
+	 * 
+	 * @param entryIndex
+	 * <br>Range: {@code [0 .. this.getEntryCount() - 1]}
+	 * @return the path relative to the root of the tree, with {@code '/'} as separator
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final synchronized String getPath(final int entryIndex) {
+		return this.paths.get(entryIndex);
+	}
+	
+	/**
+	 * 
+	 * @param entryIndex
+	 * <br>Range: {@code [0 .. this.getEntryCount() - 1]}
+	 * @return {@code -1L} for a directory
+	 * <br>Range: {@code [-1L .. Long.MAX_VALUE]}
+	 */
+	public final synchronized long getByteCount(final int entryIndex) {
+		return this.byteCounts[entryIndex];
+	}
+	
+	/**
+	 * 
+	 * @param entryIndex
+	 * <br>Range: {@code [0 .. this.getEntryCount() - 1]}
+	 * @return the offset of the first byte of the entry in the stream
+	 * <br>Range: {@code [0L .. this.getByteCount()]}
+	 */
+	public final synchronized long getOffset(final int entryIndex) {
+		return this.offsets[entryIndex];
+	}
+	
+	/**
+	 * 
+	 * @param entryIndex
+	 * <br>Range: {@code [0 .. this.getEntryCount() - 1]}
+	 * @return
+	 * <br>Range: any boolean
+	 */
+	public final synchronized boolean isDirectory(final int entryIndex) {
+		return this.byteCounts[entryIndex] < 0L;
+	}
+	
+	/**
+	 * 
+	 * @return the total size of the files of the tree
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final synchronized long getByteCount() {
+		return this.byteCount;
+	}
+	
+	/**
+	 * 
+	 * @return {@code true} if the tree has no other entries
+	 */
+	public final synchronized boolean isComplete() {
+		return this.complete;
+	}
+	
+	public final synchronized void setComplete() {
+		this.complete = true;
+	}
+	
+	/**
+	 * 
+	 * @param path
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param byteCount {@code -1L} for a directory
+	 * <br>Range: {@code [-1L .. Long.MAX_VALUE]}
+	 * @throws IllegalArgumentException if {@code path} is not a relative path without {@code "."} or {@code ".."} elements,
+	 * or if {@code byteCount < -1L}
+	 * @throws IllegalStateException if the tree is complete
+	 */
+	public final synchronized void add(final String path, final long byteCount) {
+		checkPath(path);
+		
+		if (byteCount < -1L) {
+			throw new IllegalArgumentException("Invalid byte count for " + path + ": " + byteCount);
+		}
+		
+		if (this.isComplete()) {
+			throw new IllegalStateException("Complete tree");
+		}
+		
+		final int entryIndex = this.paths.size();
+		
+		if (entryIndex == this.byteCounts.length) {
+			this.byteCounts = Arrays.copyOf(this.byteCounts, 2 * entryIndex);
+			this.offsets = Arrays.copyOf(this.offsets, 2 * entryIndex);
+		}
+		
+		this.paths.add(path);
+		this.byteCounts[entryIndex] = byteCount;
+		this.offsets[entryIndex] = this.byteCount;
+		
+		if (0L < byteCount) {
+			this.byteCount += byteCount;
+		}
+	}
+	
+	/**
+	 * Adds the entries of {@code manifest} if it starts with the first unknown entry.
+	 * 
+	 * @param manifest
+	 * <br>Should not be null
+	 * @return {@code false} if {@code manifest} has been ignored
+	 * @throws IllegalArgumentException if an entry of {@code manifest} is invalid
+	 */
+	public final synchronized boolean add(final ManifestMessage manifest) {
+		if (this.isComplete() || manifest.getFirstEntryIndex() != this.getEntryCount()) {
+			return false;
+		}
+		
+		for (int i = 0; i < manifest.getPaths().length; ++i) {
+			this.add(manifest.getPaths()[i], manifest.getByteCounts()[i]);
+		}
+		
+		if (manifest.isLast()) {
+			this.setComplete();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstEntryIndex
+	 * <br>Range: {@code [0 .. this.getEntryCount()]}
+	 * @param maximumEntryCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @return a manifest describing at most {@code maximumEntryCount} entries starting at {@code firstEntryIndex},
+	 * or null if there is no such entry yet and the tree is not complete
+	 * <br>A possibly null value
+	 * <br>A new value
+	 */
+	public final synchronized ManifestMessage toMessage(final File sourceFile, final int firstEntryIndex, final int maximumEntryCount) {
+		final int end = Math.min(this.getEntryCount(), firstEntryIndex + maximumEntryCount);
+		
+		if (end <= firstEntryIndex && !this.isComplete()) {
+			return null;
+		}
+		
+		final int entryCount = Math.max(0, end - firstEntryIndex);
+		
+		return new ManifestMessage(sourceFile, firstEntryIndex,
+				this.paths.subList(firstEntryIndex, firstEntryIndex + entryCount).toArray(new String[entryCount]),
+				Arrays.copyOfRange(this.byteCounts, firstEntryIndex, firstEntryIndex + entryCount),
+				this.isComplete() && end == this.getEntryCount());
+	}
+	
+	/**
+	 * 
+	 * @param offset
+	 * <br>Range: {@code [0L .. this.getByteCount() - 1L]}
+	 * @return the index of the file containing the byte at {@code offset} in the stream
+	 * <br>Range: {@code [0 .. this.getEntryCount() - 1]}
+	 */
+	public final synchronized int getEntryIndex(final long offset) {
+		// The last entry starting before offset; the empty entries starting at offset come before the file containing it
+		int low = 0;
+		int high = this.getEntryCount() - 1;
+		
+		while (low < high) {
+			final int middle = (low + high + 1) >>> 1;
+			
+			if (this.offsets[middle] <= offset) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * Fills {@code buffer} with the bytes of the stream starting at {@code offset}, reading them from the files of the tree.
+	 * <br>Blocking.
+	 * 
+	 * @param root
+	 * <br>Should not be null
+	 * @param offset
+	 * <br>Range: {@code [0L .. this.getByteCount() - buffer.remaining()]}
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param sourceFileChannels
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws IOException if a file cannot be read or is shorter than when it was scanned
+	 */
+	public final void read(final File root, final long offset, final ByteBuffer buffer, final FileChannelCache sourceFileChannels) throws IOException {
+		long position = offset;
+		int entryIndex = this.getEntryIndex(position);
+		
+		while (buffer.hasRemaining()) {
+			final long entryOffset = this.getOffset(entryIndex);
+			final long entryByteCount = this.getByteCount(entryIndex);
+			
+			if (entryOffset + entryByteCount <= position) {
+				++entryIndex;
+				
+				continue;
+			}
+			
+			final File file = getFile(root, this.getPath(entryIndex));
+			final int limit = buffer.limit();
+			
+			buffer.limit((int) Math.min(limit, buffer.position() + entryOffset + entryByteCount - position));
+			
+			try {
+				final int readByteCount = buffer.remaining();
+				
+				if (sourceFileChannels.read(file, position - entryOffset, buffer) < readByteCount) {
+					throw new IOException(file + " is shorter than " + entryByteCount + " bytes");
+				}
+				
+				position += readByteCount;
+			} finally {
+				buffer.limit(limit);
+			}
+			
+			++entryIndex;
+		}
+	}
+	
+	/**
+	 * Maximum number of entries described by a manifest message.
+	 */
+	public static final int MANIFEST_MESSAGE_ENTRY_COUNT = 1024;
+	
+	/**
+	 * Initial number of entries that can be stored without growing the arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+	
+	/**
+	 * 
+	 * @param root
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param path
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public static final File getFile(final File root, final String path) {
+		return new File(root, path.replace('/', File.separatorChar));
+	}
+	
+	/**
+	 * Since the paths come from the remote peer, they must not designate a file outside the root of the tree.
+	 * 
+	 * @param path
+	 * <br>Should not be null
+	 * @throws IllegalArgumentException if {@code path} is not a relative path without {@code "."} or {@code ".."} elements
+	 */
+	public static final void checkPath(final String path) {
+		if (path.isEmpty() || path.indexOf('\\') >= 0 || path.indexOf(':') >= 0 || path.indexOf('\0') >= 0) {
+			throw new IllegalArgumentException("Invalid path: " + path);
+		}
+		
+		for (final String element : path.split("/", -1)) {
+			if (element.isEmpty() || ".".equals(element) || "..".equals(element)) {
+				throw new IllegalArgumentException("Invalid path: " + path);
+			}
+		}
+	}
+	
+}
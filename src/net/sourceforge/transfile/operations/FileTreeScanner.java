@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Walks a directory in parallel and adds its entries to a {@link FileTree}:
+ * each directory is listed by a separate task, and the tasks of its subdirectories are submitted
+ * after the subdirectories have been added, so that a directory always comes before its entries.
+ * <br>The entries of a directory are added in the order of their names, but the directories are listed in any order.
+ * <br>The directories that are symbolic links are added but not walked, to avoid cycles.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileTreeScanner {
+	
+	private final File root;
+	
+	private final FileTree fileTree;
+	
+	private final Runnable entriesAdded;
+	
+	private int pendingDirectoryCount;
+	
+	private boolean started;
+	
+	private boolean stopped;
+	
+	/**
+	 * 
+	 * @param root
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param fileTree
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * <br>Shared parameter
+	 * @param entriesAdded called (from a scanning thread) every time entries have been added, and when the tree is complete
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public FileTreeScanner(final File root, final FileTree fileTree, final Runnable entriesAdded) {
+		this.root = root;
+		this.fileTree = fileTree;
+		this.entriesAdded = entriesAdded;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final File getRoot() {
+		return this.root;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final FileTree getFileTree() {
+		return this.fileTree;
+	}
+	
+	/**
+	 * Starts walking the tree; does nothing if it has already been started.
+	 */
+	public final synchronized void start() {
+		if (!this.started) {
+			this.started = true;
+			
+			this.submit(this.getRoot(), "");
+		}
+	}
+	
+	/**
+	 * The directories that haven't been listed are ignored, and the tree is never completed.
+	 */
+	public final synchronized void stop() {
+		this.stopped = true;
+	}
+	
+	public final synchronized boolean isStopped() {
+		return this.stopped;
+	}
+	
+	/**
+	 * 
+	 * @param directory
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param prefix the path of {@code directory} relative to the root followed by {@code '/'}, or {@code ""} for the root
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	private final synchronized void submit(final File directory, final String prefix) {
+		++this.pendingDirectoryCount;
+		
+		EXECUTOR.execute(new Runnable() {
+			
+			@Override
+			public final void run() {
+				try {
+					if (!FileTreeScanner.this.isStopped()) {
+						FileTreeScanner.this.list(directory, prefix);
+					}
+				} finally {
+					FileTreeScanner.this.directoryListed();
+				}
+			}
+			
+		});
+	}
+	
+	/**
+	 * Adds the entries of {@code directory} and submits the tasks listing its subdirectories.
+	 * <br>Blocking.
+	 * 
+	 * @param directory
+	 * <br>Should not be null
+	 * @param prefix
+	 * <br>Should not be null
+	 */
+	final void list(final File directory, final String prefix) {
+		final File[] files = directory.listFiles();
+		
+		if (files == null) {
+			Tools.getLoggerForThisMethod().log(Level.WARNING, "Cannot list " + directory);
+			
+			return;
+		}
+		
+		Arrays.sort(files);
+		
+		for (final File file : files) {
+			final String path = prefix + file.getName();
+			
+			if (file.isDirectory()) {
+				this.getFileTree().add(path, -1L);
+				
+				if (!isSymbolicLink(file)) {
+					this.submit(file, path + "/");
+				}
+			} else if (file.isFile()) {
+				this.getFileTree().add(path, file.length());
+			}
+		}
+		
+		if (0 < files.length) {
+			this.entriesAdded.run();
+		}
+	}
+	
+	final void directoryListed() {
+		synchronized (this) {
+			if (--this.pendingDirectoryCount != 0 || this.isStopped()) {
+				return;
+			}
+		}
+		
+		this.getFileTree().setComplete();
+		this.entriesAdded.run();
+	}
+	
+	/**
+	 * Threads listing directories; since listing is mostly waiting for the file system,
+	 * there are several threads per processor.
+	 */
+	public static final int THREAD_COUNT = 4 * Runtime.getRuntime().availableProcessors();
+	
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+		
+		@Override
+		public final Thread newThread(final Runnable task) {
+			final Thread result = new Thread(task, "FileTreeScanner");
+			
+			result.setDaemon(true);
+			
+			return result;
+		}
+		
+	});
+	
+	/**
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * @return {@code true} if the canonical form of {@code file} is not in its parent directory
+	 */
+	private static final boolean isSymbolicLink(final File file) {
+		try {
+			final File canonicalFile = file.getCanonicalFile();
+			
+			return canonicalFile.getParentFile() == null || !canonicalFile.getName().equals(file.getName()) ||
+					!canonicalFile.getParentFile().equals(file.getParentFile().getCanonicalFile());
+		} catch (final IOException exception) {
+			return true;
+		}
+	}
+	
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Recreates a {@link FileTree} in a destination directory: the entries are created in parallel as soon as they are known
+ * (the files with their final size), and the bytes of the stream are then written into the files.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileTreeWriter {
+	
+	private final File root;
+	
+	private final FileTree fileTree;
+	
+	private int currentEntryIndex;
+	
+	private FileChannel currentFile;
+	
+	/**
+	 * 
+	 * @param root
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param fileTree
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public FileTreeWriter(final File root, final FileTree fileTree) {
+		this.root = root;
+		this.fileTree = fileTree;
+		this.currentEntryIndex = -1;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final File getRoot() {
+		return this.root;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final FileTree getFileTree() {
+		return this.fileTree;
+	}
+	
+	/**
+	 * Creates the root and the entries in {@code [start .. end - 1]}:
+	 * the directories are created first, and then the files, in parallel;
+	 * existing files are resized.
+	 * <br>Blocking.
+	 * 
+	 * @param start
+	 * <br>Range: {@code [0 .. end]}
+	 * @param end
+	 * <br>Range: {@code [start .. this.getFileTree().getEntryCount()]}
+	 * @throws IOException if an entry cannot be created
+	 */
+	public final void createEntries(final int start, final int end) throws IOException {
+		createDirectory(this.getRoot());
+		
+		final List<Callable<Void>> directoryCreations = new ArrayList<Callable<Void>>();
+		final List<Callable<Void>> fileCreations = new ArrayList<Callable<Void>>();
+		
+		for (int entryIndex = start; entryIndex < end; ++entryIndex) {
+			final File file = FileTree.getFile(this.getRoot(), this.getFileTree().getPath(entryIndex));
+			final long byteCount = this.getFileTree().getByteCount(entryIndex);
+			
+			if (byteCount < 0L) {
+				directoryCreations.add(new Callable<Void>() {
+					
+					@Override
+					public final Void call() throws IOException {
+						createDirectory(file);
+						
+						return null;
+					}
+					
+				});
+			} else {
+				fileCreations.add(new Callable<Void>() {
+					
+					@Override
+					public final Void call() throws IOException {
+						final RandomAccessFile output = new RandomAccessFile(file, "rw");
+						
+						try {
+							output.setLength(byteCount);
+						} finally {
+							output.close();
+						}
+						
+						return null;
+					}
+					
+				});
+			}
+		}
+		
+		invokeAll(directoryCreations);
+		invokeAll(fileCreations);
+	}
+	
+	/**
+	 * Writes bytes of the stream into the files containing them.
+	 * <br>Blocking.
+	 * 
+	 * @param offset
+	 * <br>Range: {@code [0L .. this.getFileTree().getByteCount() - bytes.remaining()]}
+	 * @param bytes
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws IOException if a file cannot be written
+	 */
+	public final synchronized void write(final long offset, final ByteBuffer bytes) throws IOException {
+		long position = offset;
+		
+		while (bytes.hasRemaining()) {
+			final int entryIndex = this.getFileTree().getEntryIndex(position);
+			final long entryOffset = this.getFileTree().getOffset(entryIndex);
+			final long entryEnd = entryOffset + this.getFileTree().getByteCount(entryIndex);
+			final int limit = bytes.limit();
+			
+			if (entryEnd <= position) {
+				throw new IOException("No file contains the byte at " + position);
+			}
+			
+			bytes.limit((int) Math.min(limit, bytes.position() + entryEnd - position));
+			
+			try {
+				final FileChannel file = this.getFile(entryIndex);
+				
+				while (bytes.hasRemaining()) {
+					position += file.write(bytes, position - entryOffset);
+				}
+			} finally {
+				bytes.limit(limit);
+			}
+		}
+	}
+	
+	/**
+	 * Closes the file being written, if any.
+	 */
+	public final synchronized void close() {
+		if (this.currentFile != null) {
+			try {
+				this.currentFile.close();
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot close the file of entry " + this.currentEntryIndex, exception);
+			}
+			
+			this.currentFile = null;
+			this.currentEntryIndex = -1;
+		}
+	}
+	
+	/**
+	 * Only one file is open at a time, since the bytes of the stream are written in order.
+	 * 
+	 * @param entryIndex
+	 * <br>Range: {@code [0 .. this.getFileTree().getEntryCount() - 1]}
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 * @throws IOException if the file cannot be opened
+	 */
+	private final FileChannel getFile(final int entryIndex) throws IOException {
+		if (entryIndex != this.currentEntryIndex) {
+			this.close();
+			
+			this.currentFile = new RandomAccessFile(FileTree.getFile(this.getRoot(), this.getFileTree().getPath(entryIndex)), "rw").getChannel();
+			this.currentEntryIndex = entryIndex;
+		}
+		
+		return this.currentFile;
+	}
+	
+	/**
+	 * Threads creating entries; since creating a file is mostly waiting for the file system,
+	 * there are several threads per processor.
+	 */
+	public static final int THREAD_COUNT = 4 * Runtime.getRuntime().availableProcessors();
+	
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+		
+		@Override
+		public final Thread newThread(final Runnable task) {
+			final Thread result = new Thread(task, "FileTreeWriter");
+			
+			result.setDaemon(true);
+			
+			return result;
+		}
+		
+	});
+	
+	/**
+	 * 
+	 * @param directory
+	 * <br>Should not be null
+	 * @throws IOException if {@code directory} doesn't exist and cannot be created
+	 */
+	static final void createDirectory(final File directory) throws IOException {
+		// Another thread may create the same parent directory at the same time
+		if (!directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+	}
+	
+	/**
+	 * Runs the tasks in parallel and waits until they are all done.
+	 * <br>Blocking.
+	 * 
+	 * @param tasks
+	 * <br>Should not be null
+	 * @throws IOException if a task has failed
+	 */
+	private static final void invokeAll(final Collection<Callable<Void>> tasks) throws IOException {
+		if (tasks.isEmpty()) {
+			return;
+		}
+		
+		try {
+			for (final Future<Void> result : EXECUTOR.invokeAll(tasks)) {
+				result.get();
+			}
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			
+			throw new IOException("Interrupted while creating entries");
+		} catch (final ExecutionException exception) {
+			if (exception.getCause() instanceof IOException) {
+				throw (IOException) exception.getCause();
+			}
+			
+			throw new IOException(exception.getCause().toString());
+		}
+	}
+	
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+/**
+ * Hash map with primitive int keys, using open addressing with linear probing
+ * so that lookups neither box the key nor allocate.
+ * <br>The key {@code 0} marks the empty slots and cannot be used.
+ * <br>Not thread-safe.
+ * 
+ * @param <V> the type of the values
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class IntHashMap<V> {
+	
+	private int[] keys;
+	
+	private Object[] values;
+	
+	private int size;
+	
+	public IntHashMap() {
+		this.keys = new int[INITIAL_CAPACITY];
+		this.values = new Object[INITIAL_CAPACITY];
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Removes all the entries and shrinks the table back to its initial capacity.
+	 */
+	public final void clear() {
+		this.keys = new int[INITIAL_CAPACITY];
+		this.values = new Object[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * <br>Range: any non-zero integer
+	 * @return the value associated with {@code key}, or null if there is none
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	@SuppressWarnings("unchecked")
+	public final V get(final int key) {
+		final int slot = this.getSlot(key);
+		
+		return this.keys[slot] == key ? (V) this.values[slot] : null;
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * <br>Range: any non-zero integer
+	 * @param value
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @return the value previously associated with {@code key}, or null if there was none
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 * @throws IllegalArgumentException if {@code key == 0}
+	 */
+	@SuppressWarnings("unchecked")
+	public final V put(final int key, final V value) {
+		if (key == EMPTY) {
+			throw new IllegalArgumentException("Invalid key: " + key);
+		}
+		
+		final int slot = this.getSlot(key);
+		final V result = (V) this.values[slot];
+		
+		this.values[slot] = value;
+		
+		if (this.keys[slot] == EMPTY) {
+			this.keys[slot] = key;
+			
+			// Keeps the load factor below 1/2
+			if (this.keys.length <= 2 * ++this.size) {
+				this.resize(2 * this.keys.length);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * <br>Range: any non-zero integer
+	 * @return the value previously associated with {@code key}, or null if there was none
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	@SuppressWarnings("unchecked")
+	public final V remove(final int key) {
+		int slot = this.getSlot(key);
+		
+		if (this.keys[slot] != key || key == EMPTY) {
+			return null;
+		}
+		
+		final V result = (V) this.values[slot];
+		final int mask = this.keys.length - 1;
+		
+		// Moves back the following entries of the cluster that would not be found anymore once the slot is emptied
+		for (int next = (slot + 1) & mask; this.keys[next] != EMPTY; next = (next + 1) & mask) {
+			final int home = hash(this.keys[next]) & mask;
+			
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				this.keys[slot] = this.keys[next];
+				this.values[slot] = this.values[next];
+				slot = next;
+			}
+		}
+		
+		this.keys[slot] = EMPTY;
+		this.values[slot] = null;
+		--this.size;
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * <br>Range: any integer
+	 * @return the slot containing {@code key}, or the empty slot where it would be inserted
+	 * <br>Range: {@code [0 .. this.keys.length - 1]}
+	 */
+	private final int getSlot(final int key) {
+		final int mask = this.keys.length - 1;
+		int result = hash(key) & mask;
+		
+		while (this.keys[result] != key && this.keys[result] != EMPTY) {
+			result = (result + 1) & mask;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param capacity
+	 * <br>Range: a power of 2 greater than {@code 2 * this.size()}
+	 */
+	private final void resize(final int capacity) {
+		final int[] oldKeys = this.keys;
+		final Object[] oldValues = this.values;
+		
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldKeys[i] != EMPTY) {
+				final int slot = this.getSlot(oldKeys[i]);
+				
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+	}
+	
+	/**
+	 * Must be a power of 2.
+	 */
+	public static final int INITIAL_CAPACITY = 16;
+	
+	private static final int EMPTY = 0;
+	
+	/**
+	 * Spreads consecutive keys over the table.
+	 * 
+	 * @param key
+	 * <br>Range: any integer
+	 * @return
+	 * <br>Range: any integer
+	 */
+	private static final int hash(final int key) {
+		final int result = key * 0x9E3779B9;
+		
+		return result ^ (result >>> 16);
+	}
+	
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+/**
+ * Chooses how many lanes of a {@link StripedConnection} carry data, from the throughput measured with each lane count.
+ * <br>Starting with one lane, a lane is added after each measurement interval
+ * as long as the last added lane increased the throughput by at least {@link #MINIMUM_GAIN};
+ * otherwise that lane is removed, and adding lanes is tried again after {@link #HOLD_INTERVAL_COUNT} intervals.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class LaneTuner {
+	
+	private final int maximumLaneCount;
+	
+	private final long interval;
+	
+	private final double[] throughputs;
+	
+	private int laneCount;
+	
+	private long intervalStartTime;
+	
+	private long intervalByteCount;
+	
+	private int remainingHoldIntervalCount;
+	
+	/**
+	 * 
+	 * @param maximumLaneCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public LaneTuner(final int maximumLaneCount) {
+		this(maximumLaneCount, DEFAULT_INTERVAL);
+	}
+	
+	/**
+	 * 
+	 * @param maximumLaneCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param interval in nanoseconds
+	 * <br>Range: {@code [1L .. Long.MAX_VALUE]}
+	 */
+	public LaneTuner(final int maximumLaneCount, final long interval) {
+		this.maximumLaneCount = maximumLaneCount;
+		this.interval = interval;
+		this.throughputs = new double[maximumLaneCount + 1];
+		this.laneCount = 1;
+		this.intervalStartTime = -1L;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final int getMaximumLaneCount() {
+		return this.maximumLaneCount;
+	}
+	
+	/**
+	 * 
+	 * @return the number of lanes that should carry data
+	 * <br>Range: {@code [1 .. this.getMaximumLaneCount()]}
+	 */
+	public final synchronized int getLaneCount() {
+		return this.laneCount;
+	}
+	
+	/**
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param time in nanoseconds, as returned by {@link System#nanoTime()}
+	 * <br>Range: any long
+	 */
+	public final synchronized void bytesSent(final long byteCount, final long time) {
+		if (this.intervalStartTime == -1L) {
+			this.intervalStartTime = time;
+		}
+		
+		this.intervalByteCount += byteCount;
+		
+		final long elapsedTime = time - this.intervalStartTime;
+		
+		if (this.interval <= elapsedTime) {
+			this.measured((double) this.intervalByteCount / elapsedTime);
+			
+			this.intervalStartTime = time;
+			this.intervalByteCount = 0L;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param throughput in bytes per nanosecond
+	 * <br>Range: {@code [0.0 .. Double.POSITIVE_INFINITY[}
+	 */
+	private final void measured(final double throughput) {
+		final int n = this.laneCount;
+		
+		this.throughputs[n] = throughput;
+		
+		if (1 < n && throughput < this.throughputs[n - 1] * (1.0 + MINIMUM_GAIN)) {
+			this.laneCount = n - 1;
+			this.remainingHoldIntervalCount = HOLD_INTERVAL_COUNT;
+		} else if (0 < this.remainingHoldIntervalCount) {
+			--this.remainingHoldIntervalCount;
+		} else if (n < this.getMaximumLaneCount()) {
+			this.laneCount = n + 1;
+		}
+	}
+	
+	/**
+	 * Nanoseconds.
+	 */
+	public static final long DEFAULT_INTERVAL = 1000000000L;
+	
+	/**
+	 * Relative throughput increase.
+	 */
+	public static final double MINIMUM_GAIN = 0.1;
+	
+	public static final int HOLD_INTERVAL_COUNT = 10;
+	
+}
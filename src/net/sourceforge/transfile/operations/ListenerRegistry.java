@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+import java.util.Arrays;
+
+/**
+ * Copy-on-write list of listeners: adding or removing a listener replaces the array of listeners,
+ * so that the listeners can be notified without locking and without allocating anything,
+ * by iterating over the array returned by {@link #getListeners()}.
+ * <br>A listener added or removed during a notification doesn't change the array being iterated,
+ * so it is only taken into account by the next notifications.
+ * <br>A listener can be added several times; it is then notified as many times.
+ * 
+ * @param <L> the type of the listeners
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ListenerRegistry<L> {
+	
+	private volatile L[] listeners;
+	
+	/**
+	 * 
+	 * @param emptyListeners an empty array used to create the arrays of listeners
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @throws IllegalArgumentException if {@code emptyListeners} is not empty
+	 */
+	public ListenerRegistry(final L[] emptyListeners) {
+		if (emptyListeners.length != 0) {
+			throw new IllegalArgumentException("Not empty: " + Arrays.toString(emptyListeners));
+		}
+		
+		this.listeners = emptyListeners;
+	}
+	
+	/**
+	 * 
+	 * @return the current listeners, in the order in which they were added
+	 * <br>A non-null value
+	 * <br>A shared value that must not be modified
+	 */
+	public final L[] getListeners() {
+		return this.listeners;
+	}
+	
+	/**
+	 * 
+	 * @param listener
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public final synchronized void add(final L listener) {
+		final L[] oldListeners = this.listeners;
+		final L[] newListeners = Arrays.copyOf(oldListeners, oldListeners.length + 1);
+		
+		newListeners[oldListeners.length] = listener;
+		
+		this.listeners = newListeners;
+	}
+	
+	/**
+	 * Removes the first occurrence of {@code listener}, if there is one.
+	 * 
+	 * @param listener
+	 * <br>Can be null
+	 * @return {@code true} if {@code listener} was removed
+	 */
+	public final synchronized boolean remove(final Object listener) {
+		final L[] oldListeners = this.listeners;
+		
+		for (int i = 0; i < oldListeners.length; ++i) {
+			if (oldListeners[i].equals(listener)) {
+				final L[] newListeners = Arrays.copyOf(oldListeners, oldListeners.length - 1);
+				
+				System.arraycopy(oldListeners, i + 1, newListeners, i, newListeners.length - i);
+				
+				this.listeners = newListeners;
+				
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Writes data offers at their offsets in a destination file that is preallocated to its final size
+ * and mapped into memory in windows of {@link #WINDOW_SIZE} bytes.
+ * <br>At most {@link #MAXIMUM_WINDOW_COUNT} windows are kept, the least recently used window being dropped first.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class MappedDestinationFile {
+	
+	private final RandomAccessFile file;
+	
+	private final long byteCount;
+	
+	private final Map<Long, MappedByteBuffer> windows;
+	
+	/**
+	 * Truncates or extends {@code file} to {@code byteCount} bytes.
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @throws IOException if the file cannot be opened or resized
+	 */
+	public MappedDestinationFile(final File file, final long byteCount) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		this.byteCount = byteCount;
+		this.windows = new LinkedHashMap<Long, MappedByteBuffer>(MAXIMUM_WINDOW_COUNT, 0.75F, true);
+		
+		try {
+			this.file.setLength(byteCount);
+		} catch (final IOException exception) {
+			this.file.close();
+			
+			throw exception;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final long getByteCount() {
+		return this.byteCount;
+	}
+	
+	/**
+	 * Writes the bytes of {@code dataOffer} at {@code dataOffer.getFirstByteOffset()}.
+	 * <br>Blocking.
+	 * 
+	 * @param dataOffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws IOException if an I/O error occurs
+	 * @throws IndexOutOfBoundsException if the offered bytes are not all inside the file
+	 */
+	public final synchronized void write(final DataOfferMessage dataOffer) throws IOException {
+		final long offset = dataOffer.getFirstByteOffset();
+		final int byteCount = dataOffer.getByteCount();
+		
+		if (offset < 0L || this.getByteCount() < offset + byteCount) {
+			throw new IndexOutOfBoundsException("Invalid range: [" + offset + " .. " + (offset + byteCount) + "[");
+		}
+		
+		if (byteCount == 0) {
+			return;
+		}
+		
+		final long windowStart = this.getWindowStart(offset, byteCount);
+		// get() also marks the window as the most recently used one
+		final ByteBuffer target = this.windows.get(windowStart).duplicate();
+		
+		target.position((int) (offset - windowStart));
+		
+		dataOffer.transferBytesTo(target);
+	}
+	
+	/**
+	 * Writes the modified windows to the storage device and closes the file.
+	 */
+	public final synchronized void close() {
+		try {
+			for (final MappedByteBuffer window : this.windows.values()) {
+				window.force();
+			}
+			
+			this.windows.clear();
+			this.file.close();
+		} catch (final IOException exception) {
+			Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot close the mapped destination file", exception);
+		}
+	}
+	
+	/**
+	 * Maps a new window if no existing window contains the specified range.
+	 * 
+	 * @param offset
+	 * <br>Range: {@code [0L .. this.getByteCount()]}
+	 * @param byteCount
+	 * <br>Range: {@code [1 .. this.getByteCount() - offset]}
+	 * @return the offset of a window containing the specified range
+	 * <br>Range: {@code [0L .. offset]}
+	 * @throws IOException if the new window cannot be mapped
+	 */
+	private final long getWindowStart(final long offset, final int byteCount) throws IOException {
+		for (final Map.Entry<Long, MappedByteBuffer> entry : this.windows.entrySet()) {
+			final long windowStart = entry.getKey();
+			
+			if (windowStart <= offset && offset + byteCount <= windowStart + entry.getValue().capacity()) {
+				return windowStart;
+			}
+		}
+		
+		if (MAXIMUM_WINDOW_COUNT <= this.windows.size()) {
+			final Iterator<MappedByteBuffer> iterator = this.windows.values().iterator();
+			
+			iterator.next().force();
+			iterator.remove();
+		}
+		
+		final long result = offset - offset % PAGE_SIZE;
+		final long windowSize = Math.min(this.getByteCount() - result, Math.max(WINDOW_SIZE, offset + byteCount - result));
+		
+		this.windows.put(result, this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, result, windowSize));
+		
+		return result;
+	}
+	
+	/**
+	 * Bytes; windows start at multiples of this value.
+	 */
+	public static final long PAGE_SIZE = 64L * 1024L;
+	
+	/**
+	 * Bytes.
+	 */
+	public static final long WINDOW_SIZE = 64L * 1024L * 1024L;
+	
+	public static final int MAXIMUM_WINDOW_COUNT = 4;
+	
+}
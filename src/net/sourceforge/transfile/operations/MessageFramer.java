@@ -0,0 +1,263 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+
+/**
+ * Writes messages to byte channels and reads them back.
+ * <br>Each message is sent as a frame made of a header and a payload, both preceded by their length:
+ * the header is the serialized message, and the payload is only used for the bytes of data offers,
+ * which are not serialized so that they can be sent directly from the source file.
+ * <br>The header of a compressed data offer is a compressed offer without compressed bytes, which carries the number of offered bytes,
+ * and its payload is made of the compressed bytes.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public final class MessageFramer {
+	
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private MessageFramer() {
+		// Do nothing
+	}
+	
+	/**
+	 * Bytes; frames with a larger header are considered corrupted.
+	 */
+	public static final int MAXIMUM_HEADER_LENGTH = 1024 * 1024;
+	
+	/**
+	 * Writes {@code message} as one frame.
+	 * <br>Blocking.
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * @param output
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static final void writeMessage(final Message message, final WritableByteChannel output) throws IOException {
+		if (message instanceof DataOfferMessage) {
+			final DataOfferMessage offer = (DataOfferMessage) message;
+			
+			final DataOfferMessage header = offer.isCompressed() ?
+					new DataOfferMessage(offer.getSourceFile(), offer.getFirstByteOffset(), offer.getByteCount(), NO_BYTES) :
+					new DataOfferMessage(offer.getSourceFile(), offer.getFirstByteOffset());
+			
+			if (offer.isChecksummed()) {
+				header.setChecksum(offer.getChecksum());
+			}
+			
+			writeFully(frame(header, offer.getPayloadByteCount()), output);
+			offer.transferBytesTo(output);
+		} else {
+			writeFully(frame(message, 0), output);
+		}
+	}
+	
+	/**
+	 * Reads one frame.
+	 * <br>The bytes of a data offer are left in {@code input} (see {@link DataOfferMessage#transferBytesTo(java.nio.channels.FileChannel, long)}),
+	 * and they must be consumed or loaded with {@link DataOfferMessage#detachFromPayloadSource()} before the next frame is read.
+	 * <br>Blocking.
+	 * 
+	 * @param input
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws EOFException if the end of the stream is reached before the end of the frame
+	 * @throws IOException if an I/O error occurs or if the frame is corrupted
+	 * @throws ClassNotFoundException if the class of the message cannot be found
+	 */
+	public static final Message readMessage(final ReadableByteChannel input) throws IOException, ClassNotFoundException {
+		final int headerLength = readInt(input);
+		
+		if (headerLength < 0 || MAXIMUM_HEADER_LENGTH < headerLength) {
+			throw new StreamCorruptedException("Invalid header length: " + headerLength);
+		}
+		
+		final Object header = deserialize(readFully(input, ByteBuffer.allocate(headerLength)).array());
+		
+		if (!(header instanceof Message)) {
+			throw new StreamCorruptedException("Invalid header: " + header);
+		}
+		
+		final int payloadLength = readInt(input);
+		
+		if (payloadLength < 0 || payloadLength != 0 && !(header instanceof DataOfferMessage)) {
+			throw new StreamCorruptedException("Invalid payload length: " + payloadLength);
+		}
+		
+		if (header instanceof DataOfferMessage) {
+			final DataOfferMessage offer = (DataOfferMessage) header;
+			final int byteCount = offer.isCompressed() ? offer.getByteCount() : payloadLength;
+			
+			final DataOfferMessage result = new DataOfferMessage(offer.getSourceFile(), offer.getFirstByteOffset(), byteCount, payloadLength, input);
+			
+			if (offer.isChecksummed()) {
+				result.setChecksum(offer.getChecksum());
+			}
+			
+			return result;
+		}
+		
+		return (Message) header;
+	}
+	
+	/**
+	 * 
+	 * @param header
+	 * <br>Should not be null
+	 * @param payloadLength
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @return everything in the frame but the payload, ready to be written
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if {@code header} cannot be serialized
+	 */
+	private static final ByteBuffer frame(final Message header, final int payloadLength) throws IOException {
+		final byte[] serializedHeader = serialize(header);
+		final ByteBuffer result = ByteBuffer.allocate(INT_SIZE + serializedHeader.length + INT_SIZE);
+		
+		result.putInt(serializedHeader.length);
+		result.put(serializedHeader);
+		result.putInt(payloadLength);
+		result.flip();
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param object
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if {@code object} cannot be serialized
+	 */
+	private static final byte[] serialize(final Object object) throws IOException {
+		final ByteArrayOutputStream result = new ByteArrayOutputStream();
+		final ObjectOutputStream output = new ObjectOutputStream(result);
+		
+		output.writeObject(object);
+		output.close();
+		
+		return result.toByteArray();
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @return
+	 * <br>Maybe null
+	 * <br>A new value
+	 * @throws IOException if {@code bytes} are not a valid serialized object
+	 * @throws ClassNotFoundException if the class of the object cannot be found
+	 */
+	private static final Object deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+		final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		
+		try {
+			return input.readObject();
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Blocking.
+	 * 
+	 * @param input
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>Range: any integer
+	 * @throws IOException if an I/O error occurs or if the end of the stream is reached
+	 */
+	private static final int readInt(final ReadableByteChannel input) throws IOException {
+		return readFully(input, ByteBuffer.allocate(INT_SIZE)).getInt(0);
+	}
+	
+	/**
+	 * Blocking.
+	 * 
+	 * @param input
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return {@code buffer}
+	 * <br>A non-null value
+	 * @throws EOFException if the end of the stream is reached before {@code buffer} is full
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static final ByteBuffer readFully(final ReadableByteChannel input, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (input.read(buffer) < 0) {
+				throw new EOFException();
+			}
+		}
+		
+		return buffer;
+	}
+	
+	/**
+	 * Blocking.
+	 * 
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param output
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static final void writeFully(final ByteBuffer buffer, final WritableByteChannel output) throws IOException {
+		while (buffer.hasRemaining()) {
+			output.write(buffer);
+		}
+	}
+	
+	private static final int INT_SIZE = Integer.SIZE / Byte.SIZE;
+	
+	private static final byte[] NO_BYTES = {};
+	
+}
@@ -0,0 +1,1026 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static net.sourceforge.transfile.operations.AbstractSocketConnection.CONNECT_INTERVAL;
+import static net.sourceforge.transfile.operations.AbstractSocketConnection.CONNECT_TIMEOUT;
+import static net.sourceforge.transfile.operations.AbstractSocketConnection.getInetSocketAddress;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sends messages with the encoding of {@link BinaryMessageCodec} through a non-blocking {@link SocketChannel}
+ * whose I/O is performed by a {@link NioReactor} shared with other connections,
+ * so that many connections don't need a thread each.
+ * <br>Sent messages are encoded into a write queue that the selector thread empties when the socket is writable;
+ * {@link #sendMessage(Message)} blocks while more than {@link #MAXIMUM_QUEUED_BYTE_COUNT} bytes are queued.
+ * <br>Received messages are dispatched in order by the dispatch threads of the reactor;
+ * the connection stops reading while more than {@link #MAXIMUM_PENDING_BYTE_COUNT} received bytes are waiting to be dispatched.
+ * <br>Unlike {@link BinarySocketConnection}, the bytes of a received data offer are buffered before it is dispatched.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class NioConnection extends AbstractConnection {
+	
+	private final NioReactor reactor;
+	
+	private final LinkedList<Runnable> serialTasks;
+	
+	private boolean runningSerialTasks;
+	
+	private Link link;
+	
+	private long generation;
+	
+	public NioConnection() {
+		this(NioReactor.getDefaultInstance());
+	}
+	
+	/**
+	 * 
+	 * @param reactor
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public NioConnection(final NioReactor reactor) {
+		this.reactor = reactor;
+		this.serialTasks = new LinkedList<Runnable>();
+	}
+	
+	/**
+	 * 
+	 * @param localPeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param remotePeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public NioConnection(final String localPeer, final String remotePeer) {
+		this(localPeer, remotePeer, NioReactor.getDefaultInstance());
+	}
+	
+	/**
+	 * 
+	 * @param localPeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param remotePeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param reactor
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public NioConnection(final String localPeer, final String remotePeer, final NioReactor reactor) {
+		super(localPeer, remotePeer);
+		this.reactor = reactor;
+		this.serialTasks = new LinkedList<Runnable>();
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final NioReactor getReactor() {
+		return this.reactor;
+	}
+	
+	@Override
+	public final void connect() {
+		final long generation;
+		
+		synchronized (this) {
+			if (this.getState() != State.DISCONNECTED) {
+				return;
+			}
+			
+			generation = ++this.generation;
+		}
+		
+		this.setConnectionError(null);
+		this.setState(State.CONNECTING);
+		Tools.debugPrint("Connecting", this.getLocalPeer(), "to", this.getRemotePeer());
+		
+		// Like AbstractSocketConnection, lets a previous connection between the same ports time out
+		this.getReactor().schedule(this.new ConnectionAttempt(generation, System.currentTimeMillis() + CONNECT_TIMEOUT), 2L * CONNECT_INTERVAL);
+	}
+	
+	@Override
+	public final void disconnect() {
+		final Link link;
+		
+		switch (this.getState()) {
+		case CONNECTING:
+		case CONNECTED:
+			this.sendMessage(new DisconnectMessage());
+			
+			synchronized (this) {
+				++this.generation;
+				link = this.link;
+				this.link = null;
+			}
+			
+			if (link != null) {
+				link.closeWhenFlushed();
+			}
+			
+			this.setState(State.DISCONNECTED);
+			break;
+		default:
+			break;
+		}
+	}
+	
+	@Override
+	protected final void doSendMessage(final Message message) {
+		final Link link = this.getLink();
+		
+		if (link != null) {
+			try {
+				link.send(message);
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot send " + message, exception);
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	final synchronized Link getLink() {
+		return this.link;
+	}
+	
+	/**
+	 * 
+	 * @param generation
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @return {@code true} if {@link #connect()} or {@link #disconnect()} haven't been called since the generation was taken
+	 */
+	final synchronized boolean isCurrent(final long generation) {
+		return this.generation == generation;
+	}
+	
+	/**
+	 * Called in the selector thread when a link is established.
+	 * 
+	 * @param link
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @return {@code false} if the connection has been canceled or reestablished since the link was created
+	 */
+	final synchronized boolean attach(final Link link) {
+		if (this.generation != link.getGeneration() || this.link != null) {
+			return false;
+		}
+		
+		this.link = link;
+		
+		return true;
+	}
+	
+	/**
+	 * Called in the selector thread when a link is lost.
+	 * 
+	 * @param link
+	 * <br>Should not be null
+	 * @return {@code true} if {@code link} was the current link
+	 */
+	final synchronized boolean detach(final Link link) {
+		if (this.link != link) {
+			return false;
+		}
+		
+		this.link = null;
+		
+		return true;
+	}
+	
+	/**
+	 * Runs {@code task} in a dispatch thread of the reactor, after the tasks previously submitted by this method.
+	 * 
+	 * @param task
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	final void runSerially(final Runnable task) {
+		synchronized (this.serialTasks) {
+			this.serialTasks.add(task);
+			
+			if (this.runningSerialTasks) {
+				return;
+			}
+			
+			this.runningSerialTasks = true;
+		}
+		
+		this.getReactor().getDispatchExecutor().execute(new Runnable() {
+			
+			@Override
+			public final void run() {
+				NioConnection.this.runSerialTasks();
+			}
+			
+		});
+	}
+	
+	final void runSerialTasks() {
+		while (true) {
+			final Runnable task;
+			
+			synchronized (this.serialTasks) {
+				task = this.serialTasks.poll();
+				
+				if (task == null) {
+					this.runningSerialTasks = false;
+					
+					return;
+				}
+			}
+			
+			try {
+				task.run();
+			} catch (final RuntimeException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Task " + task + " failed", exception);
+			}
+		}
+	}
+	
+	/**
+	 * Called in the selector thread.
+	 * 
+	 * @param generation
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param deadline
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	final void retry(final long generation, final long deadline) {
+		if (!this.isCurrent(generation)) {
+			return;
+		}
+		
+		if (System.currentTimeMillis() < deadline) {
+			this.getReactor().schedule(this.new ConnectionAttempt(generation, deadline), RETRY_DELAY);
+		} else {
+			this.changeState(generation, State.DISCONNECTED);
+		}
+	}
+	
+	/**
+	 * Changes the state in a dispatch thread, so that the listeners are not notified in the selector thread.
+	 * 
+	 * @param generation
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param state
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	final void changeState(final long generation, final State state) {
+		this.runSerially(new Runnable() {
+			
+			@Override
+			public final void run() {
+				if (NioConnection.this.isCurrent(generation)) {
+					NioConnection.this.setState(state);
+				}
+			}
+			
+		});
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class ConnectionAttempt implements Runnable {
+		
+		private final long generation;
+		
+		private final long deadline;
+		
+		/**
+		 * 
+		 * @param generation
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param deadline
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		ConnectionAttempt(final long generation, final long deadline) {
+			this.generation = generation;
+			this.deadline = deadline;
+		}
+		
+		@Override
+		public final void run() {
+			final NioConnection connection = NioConnection.this;
+			
+			if (!connection.isCurrent(this.generation)) {
+				return;
+			}
+			
+			connection.setConnectionError(null);
+			
+			SocketChannel channel = null;
+			
+			try {
+				channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				channel.socket().setReuseAddress(true);
+				channel.socket().bind(new InetSocketAddress(getPort(connection.getLocalPeer())));
+				
+				final Link link = connection.new Link(channel, this.generation, this.deadline);
+				
+				if (channel.connect(getInetSocketAddress(connection.getRemotePeer()))) {
+					link.connected();
+				} else {
+					link.waitForConnection();
+				}
+			} catch (final IOException exception) {
+				connection.setConnectionError(exception);
+				
+				close(channel);
+				
+				connection.retry(this.generation, this.deadline);
+			}
+		}
+		
+	}
+	
+	/**
+	 * The state of one socket channel.
+	 * <br>The reception fields are only used in the selector thread.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class Link implements NioReactor.Handler {
+		
+		private final SocketChannel channel;
+		
+		private final long generation;
+		
+		private final long deadline;
+		
+		private final BinaryMessageCodec.Encoder encoder;
+		
+		private final LinkedList<ByteBuffer> writeQueue;
+		
+		private SelectionKey key;
+		
+		private long queuedByteCount;
+		
+		private boolean open;
+		
+		private boolean connected;
+		
+		private boolean flushing;
+		
+		private boolean closingWhenFlushed;
+		
+		private long pendingByteCount;
+		
+		private boolean readingSuspended;
+		
+		private ByteBuffer readBuffer;
+		
+		private final List<File> receivedFiles;
+		
+		private DataOfferMessage pendingOffer;
+		
+		private Payload pendingPayload;
+		
+		/**
+		 * 
+		 * @param channel
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @param generation
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param deadline
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		Link(final SocketChannel channel, final long generation, final long deadline) {
+			this.channel = channel;
+			this.generation = generation;
+			this.deadline = deadline;
+			this.encoder = new BinaryMessageCodec.Encoder(new WritableByteChannel() {
+				
+				@Override
+				public final int write(final ByteBuffer source) {
+					return Link.this.enqueue(source);
+				}
+				
+				@Override
+				public final boolean isOpen() {
+					return Link.this.isOpen();
+				}
+				
+				@Override
+				public final void close() {
+					// Do nothing
+				}
+				
+			});
+			this.writeQueue = new LinkedList<ByteBuffer>();
+			this.open = true;
+			this.readBuffer = ByteBuffer.allocate(BinaryMessageCodec.DEFAULT_BUFFER_SIZE);
+			this.receivedFiles = new ArrayList<File>();
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		final long getGeneration() {
+			return this.generation;
+		}
+		
+		/**
+		 * Called in the selector thread.
+		 * 
+		 * @throws IOException if the channel cannot be registered
+		 */
+		final void waitForConnection() throws IOException {
+			this.key = NioConnection.this.getReactor().register(this.channel, SelectionKey.OP_CONNECT, this);
+			
+			// The connection attempt is abandoned after CONNECT_INTERVAL, like in AbstractSocketConnection
+			NioConnection.this.getReactor().schedule(new Runnable() {
+				
+				@Override
+				public final void run() {
+					if (!Link.this.isConnected() && Link.this.isOpen()) {
+						Link.this.close();
+						NioConnection.this.retry(Link.this.generation, Link.this.deadline);
+					}
+				}
+				
+			}, CONNECT_INTERVAL);
+		}
+		
+		/**
+		 * Called in the selector thread.
+		 * 
+		 * @throws IOException if the channel cannot be registered
+		 */
+		final void connected() throws IOException {
+			synchronized (this) {
+				this.connected = true;
+			}
+			
+			if (this.key == null) {
+				this.key = NioConnection.this.getReactor().register(this.channel, SelectionKey.OP_READ, this);
+			} else {
+				this.key.interestOps(SelectionKey.OP_READ);
+			}
+			
+			if (!NioConnection.this.attach(this)) {
+				this.close();
+				
+				return;
+			}
+			
+			Tools.debugPrint(NioConnection.this, this.channel);
+			
+			NioConnection.this.changeState(this.generation, State.CONNECTED);
+		}
+		
+		final synchronized boolean isConnected() {
+			return this.connected;
+		}
+		
+		final synchronized boolean isOpen() {
+			return this.open;
+		}
+		
+		/**
+		 * Called in the selector thread.
+		 */
+		final void close() {
+			synchronized (this) {
+				this.open = false;
+				this.notifyAll();
+			}
+			
+			if (this.key != null) {
+				this.key.cancel();
+			}
+			
+			NioConnection.close(this.channel);
+		}
+		
+		/**
+		 * Called in the selector thread when the connection is lost.
+		 * 
+		 * @param error
+		 * <br>Can be null
+		 * <br>Shared parameter
+		 */
+		final void lost(final Exception error) {
+			this.close();
+			
+			if (NioConnection.this.detach(this)) {
+				NioConnection.this.setConnectionError(error);
+				NioConnection.this.changeState(this.generation, State.DISCONNECTED);
+			}
+		}
+		
+		/**
+		 * Closes the channel once the queued messages are written, and stops reading.
+		 */
+		final void closeWhenFlushed() {
+			NioConnection.this.getReactor().execute(new Runnable() {
+				
+				@Override
+				public final void run() {
+					final Link link = Link.this;
+					
+					synchronized (link) {
+						link.closingWhenFlushed = true;
+					}
+					
+					if (!link.isOpen()) {
+						return;
+					}
+					
+					if (!link.isConnected()) {
+						link.close();
+					} else {
+						link.key.interestOps(SelectionKey.OP_WRITE);
+						link.flush();
+					}
+				}
+				
+			});
+		}
+		
+		/**
+		 * Blocks while the write queue is full.
+		 * 
+		 * @param message
+		 * <br>Should not be null
+		 * @throws IOException if an I/O error occurs
+		 */
+		final synchronized void send(final Message message) throws IOException {
+			while (this.isOpen() && MAXIMUM_QUEUED_BYTE_COUNT < this.queuedByteCount) {
+				try {
+					this.wait();
+				} catch (final InterruptedException exception) {
+					throw new InterruptedIOException();
+				}
+			}
+			
+			if (!this.isOpen() || this.closingWhenFlushed) {
+				return;
+			}
+			
+			this.encoder.write(message);
+			
+			if (!this.flushing) {
+				this.flushing = true;
+				
+				NioConnection.this.getReactor().execute(new Runnable() {
+					
+					@Override
+					public final void run() {
+						Link.this.flush();
+					}
+					
+				});
+			}
+		}
+		
+		/**
+		 * Called by the encoder to queue the bytes of a message.
+		 * 
+		 * @param source
+		 * <br>Should not be null
+		 * <br>Input-output parameter
+		 * @return the number of bytes queued
+		 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+		 */
+		final synchronized int enqueue(final ByteBuffer source) {
+			final int result = source.remaining();
+			final ByteBuffer copy = ByteBuffer.allocate(result);
+			
+			copy.put(source);
+			copy.flip();
+			
+			this.writeQueue.add(copy);
+			this.queuedByteCount += result;
+			
+			return result;
+		}
+		
+		/**
+		 * Called in the selector thread.
+		 */
+		final void flush() {
+			if (!this.isOpen() || !this.isConnected()) {
+				return;
+			}
+			
+			final boolean done;
+			
+			synchronized (this) {
+				try {
+					while (!this.writeQueue.isEmpty()) {
+						final ByteBuffer buffer = this.writeQueue.peek();
+						
+						this.queuedByteCount -= this.channel.write(buffer);
+						
+						if (buffer.hasRemaining()) {
+							break;
+						}
+						
+						this.writeQueue.poll();
+					}
+				} catch (final IOException exception) {
+					this.lost(exception);
+					
+					return;
+				}
+				
+				this.notifyAll();
+				
+				done = this.writeQueue.isEmpty();
+				this.flushing = !done;
+			}
+			
+			if (done && this.closingWhenFlushed) {
+				this.close();
+			} else if (done) {
+				this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+			} else {
+				this.key.interestOps(this.key.interestOps() | SelectionKey.OP_WRITE);
+			}
+		}
+		
+		@Override
+		public final void failed(final SelectionKey key, final Exception error) {
+			this.lost(error);
+		}
+		
+		@Override
+		public final void ready(final SelectionKey key) {
+			if (key.isConnectable()) {
+				try {
+					if (this.channel.finishConnect()) {
+						this.connected();
+					}
+				} catch (final IOException exception) {
+					NioConnection.this.setConnectionError(exception);
+					this.close();
+					NioConnection.this.retry(this.generation, this.deadline);
+				}
+				
+				return;
+			}
+			
+			if (key.isValid() && key.isWritable()) {
+				this.flush();
+			}
+			
+			if (key.isValid() && key.isReadable()) {
+				this.read();
+			}
+		}
+		
+		/**
+		 * Called in the selector thread.
+		 */
+		private final void read() {
+			try {
+				if (this.channel.read(this.readBuffer) < 0) {
+					throw new EOFException();
+				}
+				
+				this.readBuffer.flip();
+				
+				try {
+					this.decodeMessages();
+				} finally {
+					this.readBuffer.compact();
+				}
+			} catch (final IOException exception) {
+				this.lost(exception);
+			}
+		}
+		
+		/**
+		 * Extracts the complete messages from the read buffer.
+		 * 
+		 * @throws IOException if the received bytes are invalid
+		 */
+		private final void decodeMessages() throws IOException {
+			while (this.isOpen()) {
+				if (this.pendingOffer != null) {
+					if (!this.pendingPayload.fill(this.readBuffer)) {
+						return;
+					}
+					
+					final DataOfferMessage offer = this.pendingOffer;
+					
+					this.pendingOffer = null;
+					this.pendingPayload = null;
+					
+					this.received(offer);
+					
+					continue;
+				}
+				
+				if (!this.readBuffer.hasRemaining()) {
+					return;
+				}
+				
+				this.readBuffer.mark();
+				
+				final long headerLength;
+				
+				try {
+					headerLength = BinaryMessageCodec.getVarint(this.readBuffer);
+				} catch (final BufferUnderflowException exception) {
+					this.readBuffer.reset();
+					
+					return;
+				}
+				
+				if (headerLength < 1L || BinaryMessageCodec.MAXIMUM_HEADER_LENGTH < headerLength) {
+					throw new StreamCorruptedException("Invalid header length: " + headerLength);
+				}
+				
+				if (this.readBuffer.remaining() < headerLength) {
+					this.readBuffer.reset();
+					this.ensureReadBufferCapacity((int) headerLength + BinaryMessageCodec.MAXIMUM_INT_VARINT_LENGTH);
+					
+					return;
+				}
+				
+				final ByteBuffer header = this.readBuffer.slice();
+				
+				header.limit((int) headerLength);
+				this.readBuffer.position(this.readBuffer.position() + (int) headerLength);
+				
+				final Payload payload = new Payload();
+				final Message message;
+				
+				try {
+					message = BinaryMessageCodec.decodeHeader(header, payload, this.receivedFiles);
+				} catch (final ClassNotFoundException exception) {
+					System.err.println(Tools.debug(2, exception.getMessage()));
+					
+					continue;
+				}
+				
+				if (message instanceof DataOfferMessage) {
+					this.pendingOffer = (DataOfferMessage) message;
+					this.pendingPayload = payload;
+					payload.allocate(this.pendingOffer.getPayloadByteCount());
+				} else {
+					this.received(message);
+					
+					if (message instanceof DisconnectMessage) {
+						this.close();
+						NioConnection.this.detach(this);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Called in the selector thread.
+		 * 
+		 * @param minimumCapacity
+		 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+		 */
+		private final void ensureReadBufferCapacity(final int minimumCapacity) {
+			if (this.readBuffer.capacity() < minimumCapacity) {
+				final ByteBuffer newBuffer = ByteBuffer.allocate(minimumCapacity);
+				
+				// The buffer is compacted after decodeMessages() returns, so it must be left in read mode
+				newBuffer.put(this.readBuffer);
+				newBuffer.flip();
+				
+				this.readBuffer = newBuffer;
+			}
+		}
+		
+		/**
+		 * Called in the selector thread.
+		 * 
+		 * @param message
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		private final void received(final Message message) {
+			final int byteCount = message instanceof DataOfferMessage ? ((DataOfferMessage) message).getByteCount() : 0;
+			
+			synchronized (this) {
+				this.pendingByteCount += byteCount;
+				
+				if (MAXIMUM_PENDING_BYTE_COUNT < this.pendingByteCount && !this.readingSuspended) {
+					this.readingSuspended = true;
+					this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+				}
+			}
+			
+			NioConnection.this.runSerially(new Runnable() {
+				
+				@Override
+				public final void run() {
+					NioConnection.this.dispatchMessage(message);
+					
+					if (message instanceof DataOfferMessage) {
+						((DataOfferMessage) message).detachFromPayloadSource();
+						Link.this.dispatched(byteCount);
+					}
+				}
+				
+			});
+		}
+		
+		/**
+		 * Called in a dispatch thread.
+		 * 
+		 * @param byteCount
+		 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+		 */
+		final synchronized void dispatched(final int byteCount) {
+			this.pendingByteCount -= byteCount;
+			
+			if (this.readingSuspended && this.pendingByteCount <= MAXIMUM_PENDING_BYTE_COUNT / 2L) {
+				this.readingSuspended = false;
+				
+				NioConnection.this.getReactor().execute(new Runnable() {
+					
+					@Override
+					public final void run() {
+						final SelectionKey key = Link.this.key;
+						
+						if (key.isValid()) {
+							key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+						}
+					}
+					
+				});
+			}
+		}
+		
+	}
+	
+	/**
+	 * The bytes of a received data offer.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private static final class Payload implements ReadableByteChannel {
+		
+		private ByteBuffer bytes;
+		
+		/**
+		 * Package-private default constructor to suppress visibility warnings.
+		 */
+		Payload() {
+			// Do nothing
+		}
+		
+		/**
+		 * 
+		 * @param byteCount
+		 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+		 */
+		final void allocate(final int byteCount) {
+			this.bytes = ByteBuffer.allocate(byteCount);
+		}
+		
+		/**
+		 * 
+		 * @param source
+		 * <br>Should not be null
+		 * <br>Input-output parameter
+		 * @return {@code true} if all the bytes have been received
+		 */
+		final boolean fill(final ByteBuffer source) {
+			final int byteCount = Math.min(source.remaining(), this.bytes.remaining());
+			final ByteBuffer slice = source.slice();
+			
+			slice.limit(byteCount);
+			this.bytes.put(slice);
+			source.position(source.position() + byteCount);
+			
+			if (this.bytes.hasRemaining()) {
+				return false;
+			}
+			
+			this.bytes.flip();
+			
+			return true;
+		}
+		
+		@Override
+		public final int read(final ByteBuffer destination) {
+			if (!this.bytes.hasRemaining()) {
+				return -1;
+			}
+			
+			final int result = Math.min(destination.remaining(), this.bytes.remaining());
+			final ByteBuffer slice = this.bytes.slice();
+			
+			slice.limit(result);
+			destination.put(slice);
+			this.bytes.position(this.bytes.position() + result);
+			
+			return result;
+		}
+		
+		@Override
+		public final boolean isOpen() {
+			return true;
+		}
+		
+		@Override
+		public final void close() {
+			// Do nothing
+		}
+		
+	}
+	
+	/**
+	 * Time in milliseconds between the failure of a connection attempt and the next attempt.
+	 */
+	public static final long RETRY_DELAY = 10L;
+	
+	/**
+	 * Bytes.
+	 */
+	public static final long MAXIMUM_QUEUED_BYTE_COUNT = 1024L * 1024L;
+	
+	/**
+	 * Bytes.
+	 */
+	public static final long MAXIMUM_PENDING_BYTE_COUNT = 4L * 1024L * 1024L;
+	
+	/**
+	 * 
+	 * @param channel
+	 * <br>Can be null
+	 * <br>Input-output parameter
+	 */
+	static final void close(final SocketChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot close " + channel, exception);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Performs the non-blocking I/O of any number of {@link NioConnection}s with a single selector thread,
+ * and lets a small fixed pool of threads dispatch the received messages.
+ * <br>Tasks submitted with {@link #execute(Runnable)} and {@link #schedule(Runnable, long)}
+ * are run in the selector thread, so they must not block.
+ * <br>If a handler throws an exception, its key is canceled and the handler is told with {@link Handler#failed(SelectionKey, Exception)};
+ * if the selector itself fails, all the handlers are told and the reactor is closed.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class NioReactor {
+	
+	private final Selector selector;
+	
+	private final ExecutorService dispatchExecutor;
+	
+	private final List<Runnable> pendingTasks;
+	
+	private final PriorityQueue<ScheduledTask> scheduledTasks;
+	
+	private long scheduledTaskCount;
+	
+	/**
+	 * 
+	 * @param dispatchThreadCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @throws IOException if the selector cannot be opened
+	 */
+	public NioReactor(final int dispatchThreadCount) throws IOException {
+		this.selector = Selector.open();
+		this.dispatchExecutor = Executors.newFixedThreadPool(dispatchThreadCount, DAEMON_THREAD_FACTORY);
+		this.pendingTasks = new ArrayList<Runnable>();
+		this.scheduledTasks = new PriorityQueue<ScheduledTask>();
+		
+		DAEMON_THREAD_FACTORY.newThread(this.new SelectionLoop()).start();
+	}
+	
+	/**
+	 * 
+	 * @return {@code false} if the selector thread has stopped after a selector failure
+	 */
+	public final boolean isOpen() {
+		return this.selector.isOpen();
+	}
+	
+	/**
+	 * The tasks submitted to this executor for a given connection must be serialized by the connection itself.
+	 * 
+	 * @return the executor used to dispatch the received messages
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final ExecutorService getDispatchExecutor() {
+		return this.dispatchExecutor;
+	}
+	
+	/**
+	 * Runs {@code task} in the selector thread as soon as possible.
+	 * 
+	 * @param task
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public final void execute(final Runnable task) {
+		synchronized (this.pendingTasks) {
+			this.pendingTasks.add(task);
+		}
+		
+		this.selector.wakeup();
+	}
+	
+	/**
+	 * Runs {@code task} in the selector thread after {@code delay} milliseconds.
+	 * 
+	 * @param task
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param delay
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final void schedule(final Runnable task, final long delay) {
+		this.execute(new Runnable() {
+			
+			@Override
+			public final void run() {
+				NioReactor.this.scheduledTasks.add(NioReactor.this.new ScheduledTask(task, System.currentTimeMillis() + delay));
+			}
+			
+		});
+	}
+	
+	/**
+	 * Must be called in the selector thread.
+	 * 
+	 * @param channel
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param interestOps
+	 * <br>Range: a combination of the {@link SelectionKey} operations
+	 * @param handler
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 * @throws ClosedChannelException if {@code channel} is closed
+	 */
+	final SelectionKey register(final SelectableChannel channel, final int interestOps, final Handler handler) throws ClosedChannelException {
+		return channel.register(this.selector, interestOps, handler);
+	}
+	
+	/**
+	 * 
+	 * @return the time in milliseconds until the next scheduled task, or {@code 0L} if there is none
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	private final long runTasks() {
+		final Runnable[] tasks;
+		
+		synchronized (this.pendingTasks) {
+			tasks = this.pendingTasks.toArray(new Runnable[this.pendingTasks.size()]);
+			this.pendingTasks.clear();
+		}
+		
+		for (final Runnable task : tasks) {
+			run(task);
+		}
+		
+		final long now = System.currentTimeMillis();
+		
+		while (!this.scheduledTasks.isEmpty() && this.scheduledTasks.peek().getTime() <= now) {
+			run(this.scheduledTasks.poll().getTask());
+		}
+		
+		return this.scheduledTasks.isEmpty() ? 0L : Math.max(1L, this.scheduledTasks.peek().getTime() - now);
+	}
+	
+	/**
+	 * 
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class SelectionLoop implements Runnable {
+		
+		/**
+		 * Package-private default constructor to suppress visibility warnings.
+		 */
+		SelectionLoop() {
+			// Do nothing
+		}
+		
+		@Override
+		public final void run() {
+			final Selector selector = NioReactor.this.selector;
+			
+			while (selector.isOpen()) {
+				try {
+					selector.select(NioReactor.this.runTasks());
+				} catch (final ClosedSelectorException exception) {
+					return;
+				} catch (final IOException exception) {
+					// Retrying would fail again at once, so the connections are closed instead
+					Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot select, closing the reactor", exception);
+					
+					this.close(exception);
+					
+					return;
+				}
+				
+				for (final SelectionKey key : selector.selectedKeys()) {
+					if (key.isValid()) {
+						try {
+							((Handler) key.attachment()).ready(key);
+						} catch (final RuntimeException exception) {
+							Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot handle " + key.channel(), exception);
+							
+							fail(key, exception);
+						}
+					}
+				}
+				
+				selector.selectedKeys().clear();
+			}
+		}
+		
+		/**
+		 * Tells all the handlers about {@code error}, and closes the selector.
+		 * 
+		 * @param error
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		private final void close(final Exception error) {
+			final Selector selector = NioReactor.this.selector;
+			
+			for (final SelectionKey key : selector.keys().toArray(new SelectionKey[0])) {
+				fail(key, error);
+			}
+			
+			try {
+				selector.close();
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot close the selector", exception);
+			}
+		}
+		
+	}
+	
+	/**
+	 * 
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class ScheduledTask implements Comparable<ScheduledTask> {
+		
+		private final Runnable task;
+		
+		private final long time;
+		
+		private final long rank;
+		
+		/**
+		 * 
+		 * @param task
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @param time
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		ScheduledTask(final Runnable task, final long time) {
+			this.task = task;
+			this.time = time;
+			this.rank = NioReactor.this.scheduledTaskCount++;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		public final Runnable getTask() {
+			return this.task;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		public final long getTime() {
+			return this.time;
+		}
+		
+		@Override
+		public final int compareTo(final ScheduledTask that) {
+			// Tasks scheduled for the same time are run in submission order
+			if (this.getTime() != that.getTime()) {
+				return this.getTime() < that.getTime() ? -1 : 1;
+			}
+			
+			return this.rank < that.rank ? -1 : this.rank == that.rank ? 0 : 1;
+		}
+		
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	static interface Handler {
+		
+		/**
+		 * Called in the selector thread when some operations of {@code key} are ready.
+		 * 
+		 * @param key
+		 * <br>Should not be null
+		 * <br>Input-output parameter
+		 */
+		public abstract void ready(SelectionKey key);
+		
+		/**
+		 * Called in the selector thread after {@code key} has been canceled
+		 * because {@link #ready(SelectionKey)} or the selector failed.
+		 * 
+		 * @param key
+		 * <br>Should not be null
+		 * <br>Input-output parameter
+		 * @param error
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		public abstract void failed(SelectionKey key, Exception error);
+		
+	}
+	
+	/**
+	 * Number of threads used by {@link #getDefaultInstance()} to dispatch messages.
+	 */
+	public static final int DEFAULT_DISPATCH_THREAD_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+	
+	private static final ThreadFactory DAEMON_THREAD_FACTORY = new ThreadFactory() {
+		
+		@Override
+		public final Thread newThread(final Runnable task) {
+			final Thread result = new Thread(task, "NioReactor");
+			
+			result.setDaemon(true);
+			
+			return result;
+		}
+		
+	};
+	
+	private static NioReactor defaultInstance;
+	
+	/**
+	 * 
+	 * @return the reactor shared by the connections created without an explicit reactor
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public static final synchronized NioReactor getDefaultInstance() {
+		if (defaultInstance == null || !defaultInstance.isOpen()) {
+			try {
+				defaultInstance = new NioReactor(DEFAULT_DISPATCH_THREAD_COUNT);
+			} catch (final IOException exception) {
+				Tools.throwUnchecked(exception);
+			}
+		}
+		
+		return defaultInstance;
+	}
+	
+	/**
+	 * Runs {@code task} and logs its exceptions, so that they don't stop the selector thread.
+	 * 
+	 * @param task
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 */
+	private static final void run(final Runnable task) {
+		try {
+			task.run();
+		} catch (final RuntimeException exception) {
+			Tools.getLoggerForThisMethod().log(Level.SEVERE, "Task " + task + " failed", exception);
+		}
+	}
+	
+	/**
+	 * Cancels {@code key} and tells its handler about {@code error}.
+	 * 
+	 * @param key
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param error
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	static final void fail(final SelectionKey key, final Exception error) {
+		key.cancel();
+		
+		try {
+			((Handler) key.attachment()).failed(key, error);
+		} catch (final RuntimeException exception) {
+			Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot close " + key.channel(), exception);
+		}
+	}
+	
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+
+/**
+ * Compresses the data offers of one send operation with Deflate, and stops trying when the data doesn't shrink.
+ * <br>An offer is only sent compressed if that saves at least {@link #MINIMUM_SAVING} of its bytes;
+ * the compression output is bounded accordingly, so that little time is spent on data that doesn't compress.
+ * <br>After {@link #INCOMPRESSIBLE_OFFER_COUNT} consecutive offers that didn't shrink enough (already compressed media or archives),
+ * the next {@link #SKIPPED_OFFER_COUNT} offers are sent as they are, and then compression is tried again,
+ * in case the rest of the file is different.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class OfferCompressor {
+	
+	private final int level;
+	
+	private Deflater deflater;
+	
+	private byte[] buffer;
+	
+	private int incompressibleOfferCount;
+	
+	private int skippedOfferCount;
+	
+	public OfferCompressor() {
+		this(Deflater.BEST_SPEED);
+	}
+	
+	/**
+	 * 
+	 * @param level
+	 * <br>Range: {@code [Deflater.NO_COMPRESSION .. Deflater.BEST_COMPRESSION]}
+	 */
+	public OfferCompressor(final int level) {
+		this.level = level;
+		this.buffer = new byte[0];
+	}
+	
+	/**
+	 * 
+	 * @return {@code false} if compression is currently switched off because the last offers didn't shrink
+	 */
+	public final synchronized boolean isCompressing() {
+		return this.skippedOfferCount == 0;
+	}
+	
+	/**
+	 * Loads the bytes of {@code offer} if they are to be compressed.
+	 * 
+	 * @param offer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @return a compressed copy of {@code offer} with the same offset and stream, or {@code offer} itself
+	 * <br>A non-null value
+	 * <br>A possibly new value
+	 */
+	public final synchronized DataOfferMessage compress(final DataOfferMessage offer) {
+		if (offer.isCompressed() || offer.getByteCount() < MINIMUM_BYTE_COUNT) {
+			return offer;
+		}
+		
+		if (0 < this.skippedOfferCount) {
+			--this.skippedOfferCount;
+			
+			return offer;
+		}
+		
+		final byte[] compressedBytes = this.deflate(offer.getBytes());
+		
+		if (compressedBytes == null) {
+			if (INCOMPRESSIBLE_OFFER_COUNT <= ++this.incompressibleOfferCount) {
+				this.incompressibleOfferCount = 0;
+				this.skippedOfferCount = SKIPPED_OFFER_COUNT;
+			}
+			
+			return offer;
+		}
+		
+		this.incompressibleOfferCount = 0;
+		
+		final DataOfferMessage result = new DataOfferMessage(offer.getSourceFile(), offer.getFirstByteOffset(), offer.getByteCount(), compressedBytes);
+		
+		result.setStreamId(offer.getStreamId());
+		
+		return result;
+	}
+	
+	/**
+	 * Releases the memory used by the compressor; it is allocated again if another offer is compressed.
+	 */
+	public final synchronized void end() {
+		if (this.deflater != null) {
+			this.deflater.end();
+			this.deflater = null;
+		}
+		
+		this.buffer = new byte[0];
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @return the compressed bytes, or null if they are not at least {@link #MINIMUM_SAVING} smaller than {@code bytes}
+	 * <br>A possibly null value
+	 * <br>A new value
+	 */
+	private final byte[] deflate(final byte[] bytes) {
+		final int maximumCompressedByteCount = (int) (bytes.length * (1.0 - MINIMUM_SAVING));
+		
+		if (this.deflater == null) {
+			this.deflater = new Deflater(this.level);
+		}
+		
+		if (this.buffer.length < maximumCompressedByteCount) {
+			this.buffer = new byte[maximumCompressedByteCount];
+		}
+		
+		this.deflater.reset();
+		this.deflater.setInput(bytes);
+		this.deflater.finish();
+		
+		int compressedByteCount = 0;
+		
+		// Stops as soon as the output is too large, without compressing the rest of the input
+		while (!this.deflater.finished() && compressedByteCount < maximumCompressedByteCount) {
+			compressedByteCount += this.deflater.deflate(this.buffer, compressedByteCount, maximumCompressedByteCount - compressedByteCount);
+		}
+		
+		return this.deflater.finished() ? Arrays.copyOf(this.buffer, compressedByteCount) : null;
+	}
+	
+	/**
+	 * Offers with fewer bytes are not compressed.
+	 */
+	public static final int MINIMUM_BYTE_COUNT = 256;
+	
+	/**
+	 * Fraction of the bytes of an offer that compression must save.
+	 */
+	public static final double MINIMUM_SAVING = 0.125;
+	
+	public static final int INCOMPRESSIBLE_OFFER_COUNT = 4;
+	
+	public static final int SKIPPED_OFFER_COUNT = 64;
+	
+}
@@ -63,6 +63,28 @@ public interface Operation {
 	 */
 	public abstract double getProgress();
 	
+	/**
+	 * 
+	 * @return the number of bytes of the file that have been transferred or verified, from which the progress is computed
+	 * <br>Range: {@code [0L .. this.getTotalByteCount()]}
+	 */
+	public abstract long getProgressByteCount();
+	
+	/**
+	 * 
+	 * @return the number of bytes of the file, or {@code 0L} if no progress has been made yet
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public abstract long getTotalByteCount();
+	
+	/**
+	 * 
+	 * @return the number of data bytes transferred so far divided by the number of bytes used to send them,
+	 * or {@code 1.0} if no data has been transferred
+	 * <br>Range: {@code ]0.0 .. Double.POSITIVE_INFINITY[}
+	 */
+	public abstract double getCompressionRatio();
+	
 	/**
 	 * 
 	 * @return
@@ -0,0 +1,648 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.File;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import net.sourceforge.transfile.operations.Operation.State;
+
+/**
+ * Starts the scheduled operations of a connection as slots become free, so that they don't all compete
+ * for the connection and the disk at the same time.
+ * <br>The waiting operations are started by priority class, then by increasing byte count if {@link #isShortestFirst()},
+ * then in the order in which they were scheduled.
+ * <br>An operation can only transfer data once the remote peer has started it too, and the remote peer may have a scheduler as well:
+ * to prevent both schedulers from waiting for each other, a waiting operation that the remote peer has already started
+ * is started first, and it only needs one of the slots that are not used by operations transferring data.
+ * <br>The operations started or paused directly with their controllers are taken into account, but they are never started by the scheduler
+ * unless they are scheduled.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class OperationScheduler {
+	
+	private final Map<Operation, Entry> entries;
+	
+	private SortedSet<Entry> waitingEntries;
+	
+	private SortedSet<Entry> admittedEntries;
+	
+	private int maximumProgressingOperationCount;
+	
+	private boolean shortestFirst;
+	
+	private long scheduledOperationCount;
+	
+	private int progressingOperationCount;
+	
+	private int transferringOperationCount;
+	
+	private int startingOperationCount;
+	
+	public OperationScheduler() {
+		this(DEFAULT_MAXIMUM_PROGRESSING_OPERATION_COUNT);
+	}
+	
+	/**
+	 * 
+	 * @param maximumProgressingOperationCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @throws IllegalArgumentException if {@code maximumProgressingOperationCount < 1}
+	 */
+	public OperationScheduler(final int maximumProgressingOperationCount) {
+		this.entries = new HashMap<Operation, Entry>();
+		
+		this.sortWaitingEntries();
+		this.setMaximumProgressingOperationCount(maximumProgressingOperationCount);
+	}
+	
+	/**
+	 * 
+	 * @return the maximum number of operations started by this scheduler that can progress at the same time
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getMaximumProgressingOperationCount() {
+		return this.maximumProgressingOperationCount;
+	}
+	
+	/**
+	 * Operations that are already progressing are not paused if there are more of them than {@code maximumProgressingOperationCount},
+	 * but no operation is started until enough of them have stopped progressing.
+	 * 
+	 * @param maximumProgressingOperationCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @throws IllegalArgumentException if {@code maximumProgressingOperationCount < 1}
+	 */
+	public final void setMaximumProgressingOperationCount(final int maximumProgressingOperationCount) {
+		if (maximumProgressingOperationCount < 1) {
+			throw new IllegalArgumentException("Invalid maximum progressing operation count: " + maximumProgressingOperationCount);
+		}
+		
+		synchronized (this) {
+			this.maximumProgressingOperationCount = maximumProgressingOperationCount;
+		}
+		
+		this.startWaitingOperations();
+	}
+	
+	public final synchronized boolean isShortestFirst() {
+		return this.shortestFirst;
+	}
+	
+	/**
+	 * 
+	 * @param shortestFirst {@code true} if the waiting operations of the same priority class
+	 * are started by increasing byte count (see {@link #getByteCount(Operation)})
+	 * <br>Range: any boolean
+	 */
+	public final synchronized void setShortestFirst(final boolean shortestFirst) {
+		if (this.shortestFirst != shortestFirst) {
+			this.shortestFirst = shortestFirst;
+			
+			this.sortWaitingEntries();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the number of operations of this scheduler that are progressing,
+	 * including the ones that have not been started by this scheduler
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getProgressingOperationCount() {
+		return this.progressingOperationCount;
+	}
+	
+	/**
+	 * 
+	 * @return the number of scheduled operations that have not been started yet
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getWaitingOperationCount() {
+		return this.waitingEntries.size();
+	}
+	
+	/**
+	 * 
+	 * @param operation
+	 * <br>Can be null
+	 * @return {@code true} if {@code operation} is scheduled and has not been started yet
+	 */
+	public final synchronized boolean isWaiting(final Operation operation) {
+		final Entry entry = this.entries.get(operation);
+		
+		return entry != null && entry.isWaiting();
+	}
+	
+	/**
+	 * 
+	 * @return the operations that have been added and not removed yet, in no particular order
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public final synchronized Operation[] getOperations() {
+		return this.entries.keySet().toArray(new Operation[this.entries.size()]);
+	}
+	
+	/**
+	 * Takes the state of {@code operation} into account until it is removed,
+	 * without scheduling it; does nothing if {@code operation} has already been added.
+	 * 
+	 * @param operation
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public final void add(final Operation operation) {
+		this.getEntry(operation);
+	}
+	
+	/**
+	 * Schedules {@code operation} in the {@link Priority#NORMAL} class.
+	 * 
+	 * @param operation
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @see #schedule(Operation, Priority)
+	 */
+	public final void schedule(final Operation operation) {
+		this.schedule(operation, Priority.NORMAL);
+	}
+	
+	/**
+	 * Adds {@code operation} if necessary, and starts it as soon as a slot is free;
+	 * the operation must be queued, paused or canceled.
+	 * <br>If the operation is already waiting, it is only moved to the other priority class.
+	 * <br>An operation that cannot start when the scheduler tries to start it (see {@link Operation.Controller#start()})
+	 * is not scheduled anymore.
+	 * <br>The operation may be started in the current thread before this method returns,
+	 * and the other operations are started in the threads that change the states of the operations.
+	 * 
+	 * @param operation
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param priority
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @throws IllegalStateException if {@code operation} cannot be started
+	 */
+	public final void schedule(final Operation operation, final Priority priority) {
+		final State state = operation.getState();
+		
+		if (state != State.QUEUED && state != State.PAUSED && state != State.CANCELED) {
+			throw new IllegalStateException("Cannot schedule an operation in state " + state);
+		}
+		
+		final Entry entry = this.getEntry(operation);
+		
+		synchronized (this) {
+			this.setWaiting(entry, false);
+			entry.setPriority(priority);
+			entry.setSequenceNumber(this.scheduledOperationCount++);
+			this.setWaiting(entry, true);
+		}
+		
+		this.startWaitingOperations();
+	}
+	
+	/**
+	 * Called when the remote peer has sent the state of {@code operation}.
+	 * 
+	 * @param operation
+	 * <br>Should not be null
+	 */
+	final void remoteStateChanged(final Operation operation) {
+		final Entry entry;
+		
+		synchronized (this) {
+			entry = this.entries.get(operation);
+		}
+		
+		if (entry != null) {
+			this.update(entry, false);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param operation
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	private final Entry getEntry(final Operation operation) {
+		Entry result;
+		
+		synchronized (this) {
+			result = this.entries.get(operation);
+			
+			if (result != null) {
+				return result;
+			}
+			
+			result = this.new Entry(operation);
+			
+			this.entries.put(operation, result);
+		}
+		
+		if (operation instanceof AbstractOperation) {
+			((AbstractOperation) operation).setScheduler(this);
+		}
+		
+		operation.addOperationListener(result);
+		
+		this.update(result, false);
+		
+		return result;
+	}
+	
+	/**
+	 * Updates the counters with the states of the operation of {@code entry},
+	 * and starts the waiting operations that can be started.
+	 * 
+	 * @param entry
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param stateChanged {@code true} if the local state of the operation has changed,
+	 * in which case it is not waiting anymore
+	 * <br>Range: any boolean
+	 */
+	final void update(final Entry entry, final boolean stateChanged) {
+		final Operation operation = entry.getOperation();
+		final State state;
+		
+		synchronized (this) {
+			// Read while holding the lock, so that an update with older states cannot be applied after a newer one
+			state = operation.getState();
+			
+			final boolean progressing = state == State.PROGRESSING;
+			final boolean transferring = progressing && getRemoteState(operation) == State.PROGRESSING;
+			
+			if (stateChanged) {
+				this.setWaiting(entry, false);
+			}
+			
+			if (entry.isProgressing() != progressing) {
+				entry.setProgressing(progressing);
+				this.progressingOperationCount += progressing ? 1 : -1;
+			}
+			
+			if (entry.isTransferring() != transferring) {
+				entry.setTransferring(transferring);
+				this.transferringOperationCount += transferring ? 1 : -1;
+			}
+			
+			// An operation that has not been started yet may have been started by the remote peer
+			if (entry.isWaiting()) {
+				this.setWaiting(entry, false);
+				this.setWaiting(entry, true);
+			}
+			
+			if (state == State.REMOVED) {
+				this.entries.remove(operation);
+			}
+		}
+		
+		if (state == State.REMOVED) {
+			operation.removeOperationListener(entry);
+		}
+		
+		this.startWaitingOperations();
+	}
+	
+	/**
+	 * Starts waiting operations until there is no free slot or no waiting operation;
+	 * the states of the operations are not locked while they are started.
+	 */
+	private final void startWaitingOperations() {
+		for (Entry entry = this.nextEntry(); entry != null; entry = this.nextEntry()) {
+			try {
+				entry.getOperation().getController().start();
+			} finally {
+				synchronized (this) {
+					--this.startingOperationCount;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes the next operation to start from the waiting operations, and reserves a slot for it.
+	 * 
+	 * @return
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	private final synchronized Entry nextEntry() {
+		final int maximumProgressingOperationCount = this.getMaximumProgressingOperationCount();
+		Entry result = null;
+		
+		if (!this.admittedEntries.isEmpty() && this.transferringOperationCount + this.startingOperationCount < maximumProgressingOperationCount) {
+			result = this.admittedEntries.first();
+		} else if (!this.waitingEntries.isEmpty() && this.progressingOperationCount + this.startingOperationCount < maximumProgressingOperationCount) {
+			result = this.waitingEntries.first();
+		}
+		
+		if (result != null) {
+			this.setWaiting(result, false);
+			++this.startingOperationCount;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Does nothing if {@code entry.isWaiting() == waiting}:
+	 * the sets of waiting entries only compare the entries, so they could remove another entry with the same order.
+	 * 
+	 * @param entry
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param waiting
+	 * <br>Range: any boolean
+	 */
+	private final synchronized void setWaiting(final Entry entry, final boolean waiting) {
+		if (entry.isWaiting() == waiting) {
+			return;
+		}
+		
+		if (waiting) {
+			this.waitingEntries.add(entry);
+			
+			if (getRemoteState(entry.getOperation()) == State.PROGRESSING) {
+				this.admittedEntries.add(entry);
+			}
+		} else {
+			this.waitingEntries.remove(entry);
+			this.admittedEntries.remove(entry);
+		}
+		
+		entry.setWaiting(waiting);
+	}
+	
+	/**
+	 * Creates the sets of waiting operations with the current order.
+	 */
+	private final synchronized void sortWaitingEntries() {
+		final Comparator<Entry> comparator = this.isShortestFirst() ? SHORTEST_FIRST_ORDER : SCHEDULING_ORDER;
+		final SortedSet<Entry> waitingEntries = new TreeSet<Entry>(comparator);
+		final SortedSet<Entry> admittedEntries = new TreeSet<Entry>(comparator);
+		
+		if (this.waitingEntries != null) {
+			waitingEntries.addAll(this.waitingEntries);
+			admittedEntries.addAll(this.admittedEntries);
+		}
+		
+		this.waitingEntries = waitingEntries;
+		this.admittedEntries = admittedEntries;
+	}
+	
+	/**
+	 * 
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	public static enum Priority {
+		
+		HIGH, NORMAL, LOW;
+		
+	}
+	
+	/**
+	 * Keeps the scheduling information of an operation, and listens to its state.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private final class Entry implements Operation.Listener {
+		
+		private final Operation operation;
+		
+		private final long byteCount;
+		
+		private Priority priority;
+		
+		private long sequenceNumber;
+		
+		private boolean waiting;
+		
+		private boolean progressing;
+		
+		private boolean transferring;
+		
+		/**
+		 * 
+		 * @param operation
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		Entry(final Operation operation) {
+			this.operation = operation;
+			this.byteCount = OperationScheduler.getByteCount(operation);
+			this.priority = Priority.NORMAL;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		public final Operation getOperation() {
+			return this.operation;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		public final long getByteCount() {
+			return this.byteCount;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		public final Priority getPriority() {
+			return this.priority;
+		}
+		
+		/**
+		 * Must not be called while the entry is waiting, because the order of the waiting entries depends on it.
+		 * 
+		 * @param priority
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		public final void setPriority(final Priority priority) {
+			this.priority = priority;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		public final long getSequenceNumber() {
+			return this.sequenceNumber;
+		}
+		
+		/**
+		 * Must not be called while the entry is waiting, because the order of the waiting entries depends on it.
+		 * 
+		 * @param sequenceNumber
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		public final void setSequenceNumber(final long sequenceNumber) {
+			this.sequenceNumber = sequenceNumber;
+		}
+		
+		public final boolean isWaiting() {
+			return this.waiting;
+		}
+		
+		/**
+		 * 
+		 * @param waiting
+		 * <br>Range: any boolean
+		 */
+		public final void setWaiting(final boolean waiting) {
+			this.waiting = waiting;
+		}
+		
+		public final boolean isProgressing() {
+			return this.progressing;
+		}
+		
+		/**
+		 * 
+		 * @param progressing
+		 * <br>Range: any boolean
+		 */
+		public final void setProgressing(final boolean progressing) {
+			this.progressing = progressing;
+		}
+		
+		public final boolean isTransferring() {
+			return this.transferring;
+		}
+		
+		/**
+		 * 
+		 * @param transferring
+		 * <br>Range: any boolean
+		 */
+		public final void setTransferring(final boolean transferring) {
+			this.transferring = transferring;
+		}
+		
+		@Override
+		public final void stateChanged() {
+			OperationScheduler.this.update(this, true);
+		}
+		
+		@Override
+		public final void progressChanged() {
+			// Do nothing
+		}
+		
+	}
+	
+	/**
+	 * 
+	 * @param operation
+	 * <br>Should not be null
+	 * @return the number of bytes to transfer, or {@code Long.MAX_VALUE} if it is unknown (for a directory, for instance)
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public static final long getByteCount(final Operation operation) {
+		if (operation instanceof ReceiveOperation) {
+			final ReceiveOperation receiveOperation = (ReceiveOperation) operation;
+			
+			return receiveOperation.getFileOffer().isDirectory() ? Long.MAX_VALUE : receiveOperation.getFileOffer().getSourceByteCount();
+		}
+		
+		final File localFile = operation.getLocalFile();
+		
+		return localFile == null || localFile.isDirectory() ? Long.MAX_VALUE : localFile.length();
+	}
+	
+	/**
+	 * 
+	 * @param operation
+	 * <br>Should not be null
+	 * @return the last state sent by the remote peer for {@code operation}
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	static final State getRemoteState(final Operation operation) {
+		final Operation.Controller controller = operation.getController();
+		
+		return controller instanceof AbstractOperation.AbstractController ? ((AbstractOperation.AbstractController) controller).getRemoteState() : null;
+	}
+	
+	public static final int DEFAULT_MAXIMUM_PROGRESSING_OPERATION_COUNT = 4;
+	
+	/**
+	 * By priority class, then in scheduling order.
+	 */
+	private static final Comparator<Entry> SCHEDULING_ORDER = new Comparator<Entry>() {
+		
+		@Override
+		public final int compare(final Entry entry1, final Entry entry2) {
+			final int result = entry1.getPriority().compareTo(entry2.getPriority());
+			
+			return result != 0 ? result : Long.signum(entry1.getSequenceNumber() - entry2.getSequenceNumber());
+		}
+		
+	};
+	
+	/**
+	 * By priority class, then by byte count, then in scheduling order.
+	 */
+	private static final Comparator<Entry> SHORTEST_FIRST_ORDER = new Comparator<Entry>() {
+		
+		@Override
+		public final int compare(final Entry entry1, final Entry entry2) {
+			int result = entry1.getPriority().compareTo(entry2.getPriority());
+			
+			if (result == 0) {
+				result = entry1.getByteCount() < entry2.getByteCount() ? -1 : entry1.getByteCount() > entry2.getByteCount() ? 1 : 0;
+			}
+			
+			return result != 0 ? result : Long.signum(entry1.getSequenceNumber() - entry2.getSequenceNumber());
+		}
+		
+	};
+	
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that limits the number of bytes transferred per second.
+ * <br>The limiters form a hierarchy: each operation has a limiter whose parent is the limiter of its connection,
+ * whose parent is {@link #GLOBAL}; bytes are only allowed when every limiter of the chain allows them.
+ * <br>Bytes that are not used by an idle operation remain available in the buckets of its connection and of the JVM,
+ * so that the busy operations can use them.
+ * <br>The buckets can go into debt: a transfer is allowed as soon as no bucket of the chain is empty,
+ * and the following transfers wait until the debt is paid back, which keeps the chunks whole.
+ * <br>The rate of a limiter can be changed at any time, and it can follow a {@link RateSchedule}.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class RateLimiter {
+	
+	private final RateLimiter parent;
+	
+	private long rate;
+	
+	private RateSchedule schedule;
+	
+	private long currentRate;
+	
+	private double availableByteCount;
+	
+	private long lastRefillTime;
+	
+	public RateLimiter() {
+		this(null);
+	}
+	
+	/**
+	 * 
+	 * @param parent
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 */
+	public RateLimiter(final RateLimiter parent) {
+		this.parent = parent;
+		this.lastRefillTime = System.nanoTime();
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	public final RateLimiter getParent() {
+		return this.parent;
+	}
+	
+	/**
+	 * 
+	 * @return the rate in bytes per second used when there is no schedule, or {@code 0L} for no limit
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final long getRate() {
+		synchronized (LOCK) {
+			return this.rate;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param rate in bytes per second, or {@code 0L} for no limit
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @throws IllegalArgumentException if {@code rate < 0L}
+	 */
+	public final void setRate(final long rate) {
+		if (rate < 0L) {
+			throw new IllegalArgumentException("Invalid rate: " + rate);
+		}
+		
+		synchronized (LOCK) {
+			this.rate = rate;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	public final RateSchedule getSchedule() {
+		synchronized (LOCK) {
+			return this.schedule;
+		}
+	}
+	
+	/**
+	 * While the schedule is not empty, its rates replace {@link #getRate()}.
+	 * 
+	 * @param schedule
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 */
+	public final void setSchedule(final RateSchedule schedule) {
+		synchronized (LOCK) {
+			this.schedule = schedule;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the rate that applies now, in bytes per second, or {@code 0L} for no limit
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final long getCurrentRate() {
+		synchronized (LOCK) {
+			final RateSchedule schedule = this.getSchedule();
+			
+			return schedule != null && schedule.getEntryCount() > 0 ? schedule.getRateAt(System.currentTimeMillis()) : this.getRate();
+		}
+	}
+	
+	/**
+	 * Takes {@code byteCount} bytes from this limiter and its ancestors if none of them is empty,
+	 * otherwise takes nothing.
+	 * <br>The caller must not transfer the bytes if the result is positive; it should try again after the returned delay.
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @return {@code 0L} if the bytes can be transferred now, otherwise the delay before the next try in nanoseconds
+	 * <br>Range: {@code [0L .. MAXIMUM_DELAY]}
+	 */
+	public final long acquire(final int byteCount) {
+		synchronized (LOCK) {
+			final long now = System.nanoTime();
+			long result = 0L;
+			
+			for (RateLimiter limiter = this; limiter != null; limiter = limiter.getParent()) {
+				result = Math.max(result, limiter.refill(now));
+			}
+			
+			if (result == 0L) {
+				for (RateLimiter limiter = this; limiter != null; limiter = limiter.getParent()) {
+					limiter.take(byteCount);
+				}
+			}
+			
+			return Math.min(MAXIMUM_DELAY, result);
+		}
+	}
+	
+	/**
+	 * Adds the bytes accumulated since the last refill, up to {@link #BURST_DURATION} worth of bytes.
+	 * <br>Must be called while holding {@link #LOCK}.
+	 * 
+	 * @param now in nanoseconds
+	 * <br>Range: any long
+	 * @return {@code 0L} if this bucket is not empty, otherwise the time needed to pay back the debt in nanoseconds
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	private final long refill(final long now) {
+		this.currentRate = this.getCurrentRate();
+		
+		if (this.currentRate == 0L) {
+			this.availableByteCount = 0.0;
+		} else {
+			this.availableByteCount = Math.min((double) this.currentRate * BURST_DURATION / NANOSECONDS_PER_SECOND,
+					this.availableByteCount + (double) this.currentRate * (now - this.lastRefillTime) / NANOSECONDS_PER_SECOND);
+		}
+		
+		this.lastRefillTime = now;
+		
+		return this.availableByteCount < 0.0 ? (long) Math.ceil(-this.availableByteCount * NANOSECONDS_PER_SECOND / this.currentRate) : 0L;
+	}
+	
+	/**
+	 * Must be called while holding {@link #LOCK}, after {@link #refill(long)}.
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	private final void take(final int byteCount) {
+		if (this.currentRate != 0L) {
+			this.availableByteCount -= byteCount;
+		}
+	}
+	
+	/**
+	 * The limiter shared by all the connections of the JVM.
+	 */
+	public static final RateLimiter GLOBAL = new RateLimiter();
+	
+	/**
+	 * Maximum delay returned by {@link #acquire(int)} in nanoseconds,
+	 * so that the changes of rates are taken into account quickly by the waiting transfers.
+	 */
+	public static final long MAXIMUM_DELAY = 100000000L;
+	
+	/**
+	 * Bytes that have not been used during this number of nanoseconds are lost.
+	 */
+	public static final long BURST_DURATION = 250000000L;
+	
+	/**
+	 * A single lock for all the limiters, so that the bytes taken from a chain of limiters are taken atomically.
+	 */
+	private static final Object LOCK = new Object();
+	
+	private static final double NANOSECONDS_PER_SECOND = 1.0E9;
+	
+	/**
+	 * Number of threads running the tasks passed to {@link #defer(Runnable, long)}.
+	 */
+	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	
+	private static final ScheduledExecutorService TIMER = Executors.newScheduledThreadPool(THREAD_COUNT, new ThreadFactory() {
+		
+		@Override
+		public final Thread newThread(final Runnable task) {
+			final Thread result = new Thread(task, "RateLimiter");
+			
+			result.setDaemon(true);
+			
+			return result;
+		}
+		
+	});
+	
+	/**
+	 * Runs {@code task} in another thread after {@code delay}, typically to try again a transfer refused by {@link #acquire(int)}.
+	 * 
+	 * @param task
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param delay in nanoseconds
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public static final void defer(final Runnable task, final long delay) {
+		TIMER.schedule(task, delay, TimeUnit.NANOSECONDS);
+	}
+	
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Daily schedule of the rates of a {@link RateLimiter}, for example to allow higher rates at night.
+ * <br>Each entry gives the rate that applies from its time of day until the time of the next entry;
+ * the last entry of the day still applies after midnight until the first one.
+ * <br>The text form of a schedule is a comma-separated list of {@code HH:mm=rate} entries,
+ * for example {@code "07:00=1048576,22:00=0"} (1 MiB/s during the day, unlimited at night).
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class RateSchedule {
+	
+	private final SortedMap<Integer, Long> rates;
+	
+	public RateSchedule() {
+		this.rates = new TreeMap<Integer, Long>();
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. MINUTES_PER_DAY]}
+	 */
+	public final synchronized int getEntryCount() {
+		return this.rates.size();
+	}
+	
+	/**
+	 * 
+	 * @param minuteOfDay
+	 * <br>Range: {@code [0 .. MINUTES_PER_DAY - 1]}
+	 * @param rate in bytes per second, or {@code 0L} for no limit
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @throws IllegalArgumentException if {@code minuteOfDay} or {@code rate} is out of range
+	 */
+	public final synchronized void put(final int minuteOfDay, final long rate) {
+		if (minuteOfDay < 0 || MINUTES_PER_DAY <= minuteOfDay) {
+			throw new IllegalArgumentException("Invalid minute of day: " + minuteOfDay);
+		}
+		
+		if (rate < 0L) {
+			throw new IllegalArgumentException("Invalid rate: " + rate);
+		}
+		
+		this.rates.put(minuteOfDay, rate);
+	}
+	
+	/**
+	 * 
+	 * @param minuteOfDay
+	 * <br>Range: {@code [0 .. MINUTES_PER_DAY - 1]}
+	 * @return the rate in bytes per second, or {@code 0L} for no limit or if this schedule is empty
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final synchronized long getRate(final int minuteOfDay) {
+		if (this.rates.isEmpty()) {
+			return 0L;
+		}
+		
+		final SortedMap<Integer, Long> previousRates = this.rates.headMap(minuteOfDay + 1);
+		
+		return previousRates.isEmpty() ? this.rates.get(this.rates.lastKey()) : previousRates.get(previousRates.lastKey());
+	}
+	
+	/**
+	 * 
+	 * @param time in milliseconds since the epoch (see {@link System#currentTimeMillis()})
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @return the rate at {@code time} in the default time zone
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final long getRateAt(final long time) {
+		final long localTime = time + TimeZone.getDefault().getOffset(time);
+		
+		return this.getRate((int) (localTime / MILLISECONDS_PER_MINUTE % MINUTES_PER_DAY));
+	}
+	
+	@Override
+	public final synchronized String toString() {
+		final StringBuilder result = new StringBuilder();
+		
+		for (final Map.Entry<Integer, Long> entry : this.rates.entrySet()) {
+			if (result.length() > 0) {
+				result.append(',');
+			}
+			
+			result.append(String.format("%02d:%02d=%d", entry.getKey() / 60, entry.getKey() % 60, entry.getValue()));
+		}
+		
+		return result.toString();
+	}
+	
+	/**
+	 * Number of minutes in a day.
+	 */
+	public static final int MINUTES_PER_DAY = 24 * 60;
+	
+	private static final long MILLISECONDS_PER_MINUTE = 60L * 1000L;
+	
+	/**
+	 * 
+	 * @param text the text form of a schedule (see {@link #toString()}), possibly empty
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IllegalArgumentException if {@code text} is not a valid schedule
+	 */
+	public static final RateSchedule parse(final String text) {
+		final RateSchedule result = new RateSchedule();
+		
+		for (final String entry : text.split(",")) {
+			if (entry.trim().length() == 0) {
+				continue;
+			}
+			
+			final String[] timeAndRate = entry.trim().split("=");
+			final String[] hoursAndMinutes = timeAndRate[0].trim().split(":");
+			
+			if (timeAndRate.length != 2 || hoursAndMinutes.length != 2) {
+				throw new IllegalArgumentException("Invalid schedule entry: " + entry);
+			}
+			
+			try {
+				final int hours = Integer.parseInt(hoursAndMinutes[0].trim());
+				final int minutes = Integer.parseInt(hoursAndMinutes[1].trim());
+				
+				if (hours < 0 || 24 <= hours || minutes < 0 || 60 <= minutes) {
+					throw new IllegalArgumentException("Invalid schedule entry: " + entry);
+				}
+				
+				result.put(hours * 60 + minutes, Long.parseLong(timeAndRate[1].trim()));
+			} catch (final NumberFormatException exception) {
+				throw new IllegalArgumentException("Invalid schedule entry: " + entry, exception);
+			}
+		}
+		
+		return result;
+	}
+	
+}
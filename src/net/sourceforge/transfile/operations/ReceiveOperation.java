@@ -21,11 +21,34 @@ package net.sourceforge.transfile.operations;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
 
+import net.sourceforge.transfile.operations.messages.AbstractDataMessage;
+import net.sourceforge.transfile.operations.messages.BlockCopyMessage;
+import net.sourceforge.transfile.operations.messages.BlockSignaturesMessage;
+import net.sourceforge.transfile.operations.messages.ChunkHashesMessage;
+import net.sourceforge.transfile.operations.messages.ChunkHashesRequestMessage;
+import net.sourceforge.transfile.operations.messages.DataCreditMessage;
 import net.sourceforge.transfile.operations.messages.DataOfferMessage;
 import net.sourceforge.transfile.operations.messages.DataRequestMessage;
+import net.sourceforge.transfile.operations.messages.FileDigestMessage;
 import net.sourceforge.transfile.operations.messages.FileOfferMessage;
+import net.sourceforge.transfile.operations.messages.ManifestMessage;
+import net.sourceforge.transfile.operations.messages.ManifestRequestMessage;
 import net.sourceforge.transfile.operations.messages.OperationMessage;
+import net.sourceforge.jenerics.Tools;
 
 /**
  * TODO doc
@@ -41,12 +64,32 @@ public class ReceiveOperation extends AbstractOperation {
 	
 	private final DestinationFileProvider destinationFileProvider;
 	
+	private int requestWindowSize;
+	
+	private ChunkSizer chunkSizer;
+	
+	private boolean destinationMapped;
+	
+	private boolean pushMode;
+	
+	private TransferJournal transferJournal;
+	
+	private int corruptedChunkCount;
+	
+	private boolean deltaEnabled;
+	
+	private long copiedByteCount;
+	
+	private ChunkStore chunkStore;
+	
+	private long deduplicatedByteCount;
+	
 	/**
 	 * 
 	 * @param connection
 	 * <br>Should not be null
 	 * <br>Shared parameter
-	 * @param fileOffer
+	 * @param fileOffer if it has a stream identifier, the operation uses the same stream
 	 * <br>Should not be null
 	 * <br>Shared parameter
 	 * @param destinationFileProvider
@@ -54,10 +97,220 @@ public class ReceiveOperation extends AbstractOperation {
 	 * <br>Shared parameter
 	 */
 	public ReceiveOperation(final Connection connection, final FileOfferMessage fileOffer, final DestinationFileProvider destinationFileProvider) {
-		super(connection, fileOffer.getSourceFile().getName());
+		super(connection, fileOffer.getSourceFile().getName(), -fileOffer.getStreamId());
 		this.fileOffer = fileOffer;
 		this.controller = this.new Controller();
 		this.destinationFileProvider = destinationFileProvider;
+		this.requestWindowSize = DEFAULT_REQUEST_WINDOW_SIZE;
+	}
+	
+	/**
+	 * 
+	 * @return the maximum number of data requests that can be waiting for an answer at the same time
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getRequestWindowSize() {
+		return this.requestWindowSize;
+	}
+	
+	/**
+	 * With a window size greater than {@code 1}, requests for consecutive offsets are sent
+	 * without waiting for the matching data offers, so that the transfer rate is not limited
+	 * by the round-trip time of the connection.
+	 * 
+	 * @param requestWindowSize
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @throws IllegalArgumentException if {@code requestWindowSize < 1}
+	 */
+	public final synchronized void setRequestWindowSize(final int requestWindowSize) {
+		if (requestWindowSize < 1) {
+			throw new IllegalArgumentException("Invalid request window size: " + requestWindowSize);
+		}
+		
+		this.requestWindowSize = requestWindowSize;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	public final synchronized ChunkSizer getChunkSizer() {
+		return this.chunkSizer;
+	}
+	
+	/**
+	 * If {@code chunkSizer} is null, each request asks for {@link #PREFERRED_TRANSFERRED_BYTE_COUNT} bytes.
+	 * 
+	 * @param chunkSizer
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 */
+	public final synchronized void setChunkSizer(final ChunkSizer chunkSizer) {
+		this.chunkSizer = chunkSizer;
+	}
+	
+	public final synchronized boolean isDestinationMapped() {
+		return this.destinationMapped;
+	}
+	
+	/**
+	 * In mapped mode, the destination file is preallocated to the size of the source file and mapped into memory
+	 * (see {@link MappedDestinationFile}), and the data offers are written at their offsets in any order,
+	 * so that several requests can be answered out of order; the blocks that have been received are tracked
+	 * with {@link ReceivedRanges}.
+	 * <br>Otherwise, the data offers are appended to the destination file in order.
+	 * <br>The mode must not be changed once data has been received.
+	 * 
+	 * @param destinationMapped
+	 * <br>Range: any boolean
+	 */
+	public final synchronized void setDestinationMapped(final boolean destinationMapped) {
+		this.destinationMapped = destinationMapped;
+	}
+	
+	public final synchronized boolean isPushMode() {
+		return this.pushMode;
+	}
+	
+	/**
+	 * In push mode, the remote send operation streams the file without waiting for data requests,
+	 * as long as it has credit: this operation grants it {@code this.getRequestWindowSize() * this.getChunkSize()} bytes
+	 * after the last byte received in order, with a {@link DataCreditMessage} sent every time half of that credit has been used.
+	 * <br>This removes the data requests and the gaps between them, while the bytes in flight stay bounded by the credit.
+	 * <br>The mode must not be changed once data has been received.
+	 * 
+	 * @param pushMode
+	 * <br>Range: any boolean
+	 */
+	public final synchronized void setPushMode(final boolean pushMode) {
+		this.pushMode = pushMode;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	public final synchronized TransferJournal getTransferJournal() {
+		return this.transferJournal;
+	}
+	
+	/**
+	 * With a journal, the length and checksum of the received prefix of the destination file are saved regularly
+	 * (every {@link #JOURNAL_INTERVAL} bytes and when the operation is paused), and the entry is removed when the operation ends;
+	 * when the same source file is offered again for the same destination file, the saved prefix is checked
+	 * and the transfer resumes after it instead of starting over.
+	 * <br>Without a journal, an existing destination file is appended to (or overwritten in mapped mode).
+	 * <br>The journal must be set before the operation is started.
+	 * 
+	 * @param transferJournal
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 */
+	public final synchronized void setTransferJournal(final TransferJournal transferJournal) {
+		this.transferJournal = transferJournal;
+	}
+	
+	/**
+	 * 
+	 * @return the number of data offers that have been ignored and requested again because their checksum was wrong
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getCorruptedChunkCount() {
+		return this.corruptedChunkCount;
+	}
+	
+	final synchronized void incrementCorruptedChunkCount() {
+		++this.corruptedChunkCount;
+	}
+	
+	public final synchronized boolean isDeltaEnabled() {
+		return this.deltaEnabled;
+	}
+	
+	/**
+	 * In delta mode, if the destination file already exists (typically an older version of the source file),
+	 * the signatures of its blocks are sent to the remote send operation (see {@link BlockSignatures}),
+	 * which answers the requests with references to the blocks that the source file also contains
+	 * and with literal data for the other bytes.
+	 * <br>The new version is built in a separate file (the destination file followed by {@link #DELTA_FILE_SUFFIX})
+	 * that replaces the destination file when the operation is done, so the destination file is left unchanged
+	 * if the operation is canceled.
+	 * <br>Delta mode is not used if the destination is mapped, in push mode, or if the journal allows resuming
+	 * a transfer of the same source file to the destination file.
+	 * <br>The mode must be set before the operation is started.
+	 * 
+	 * @param deltaEnabled
+	 * <br>Range: any boolean
+	 */
+	public final synchronized void setDeltaEnabled(final boolean deltaEnabled) {
+		this.deltaEnabled = deltaEnabled;
+	}
+	
+	/**
+	 * 
+	 * @return the number of bytes that have been copied from the existing destination file in delta mode
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final synchronized long getCopiedByteCount() {
+		return this.copiedByteCount;
+	}
+	
+	final synchronized void addCopiedByteCount(final int byteCount) {
+		this.copiedByteCount += byteCount;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	public final synchronized ChunkStore getChunkStore() {
+		return this.chunkStore;
+	}
+	
+	/**
+	 * With a chunk store, the operation is in deduplication mode: the remote send operation splits the source file
+	 * into content-defined chunks (see {@link ContentDefinedChunker}) and sends their hashes,
+	 * and only the chunks that are not in the store are requested; the others are read from the store.
+	 * <br>The received chunks are added to the store, so that later transfers of files sharing them don't need them anymore.
+	 * <br>Deduplication mode is not used if the destination is mapped, in push mode, or in delta mode.
+	 * <br>The chunk store must be set before the operation is started.
+	 * 
+	 * @param chunkStore
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 */
+	public final synchronized void setChunkStore(final ChunkStore chunkStore) {
+		this.chunkStore = chunkStore;
+	}
+	
+	/**
+	 * 
+	 * @return the number of bytes that have been read from the chunk store in deduplication mode
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final synchronized long getDeduplicatedByteCount() {
+		return this.deduplicatedByteCount;
+	}
+	
+	final synchronized void addDeduplicatedByteCount(final int byteCount) {
+		this.deduplicatedByteCount += byteCount;
+	}
+	
+	/**
+	 * 
+	 * @return the number of bytes to ask for in the next data request
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final int getChunkSize() {
+		final ChunkSizer chunkSizer = this.getChunkSizer();
+		
+		return chunkSizer == null ? PREFERRED_TRANSFERRED_BYTE_COUNT : chunkSizer.getChunkSize(this.getRequestWindowSize());
 	}
 	
 	/**
@@ -99,16 +352,94 @@ public class ReceiveOperation extends AbstractOperation {
 		
 		private long receivedByteCount;
 		
+		private long requestedByteCount;
+		
+		private long creditLimit;
+		
+		private final Map<Long, Long> requestTimes;
+		
+		private FileChannel destination;
+		
+		private MappedDestinationFile mappedDestination;
+		
+		private ReceivedRanges receivedRanges;
+		
+		private final Map<Long, Integer> requestedChunkSizes;
+		
+		private boolean resumeChecked;
+		
+		private final CRC32 journalChecksum;
+		
+		private long journaledByteCount;
+		
+		private final FileDigest fileDigest;
+		
+		private boolean completionRequested;
+		
+		private boolean deltaChecked;
+		
+		private BlockSignatures basisSignatures;
+		
+		private FileChannel basis;
+		
+		private FileChannel deltaDestination;
+		
+		private final TreeMap<Long, AbstractDataMessage> pendingInstructions;
+		
+		private boolean deduplicating;
+		
+		private long hashedByteCount;
+		
+		private boolean hashRequestPending;
+		
+		private final ArrayDeque<Chunk> chunks;
+		
+		private final Set<ByteBuffer> requestedHashes;
+		
+		private final FileTree fileTree;
+		
+		private FileTreeWriter fileTreeWriter;
+		
+		private boolean manifestRequestPending;
+		
+		private boolean requestDelayed;
+		
 		/**
 		 * Package-private default constructor to suppress visibility warnings.
 		 */
 		Controller() {
+			this.requestTimes = new HashMap<Long, Long>();
+			this.requestedChunkSizes = new HashMap<Long, Integer>();
+			this.journalChecksum = new CRC32();
+			this.pendingInstructions = new TreeMap<Long, AbstractDataMessage>();
+			this.chunks = new ArrayDeque<Chunk>();
+			this.requestedHashes = new HashSet<ByteBuffer>();
+			this.fileTree = ReceiveOperation.this.getFileOffer().isDirectory() ? new FileTree() : null;
+			// The digest of a tree is not computed, but its data offers are checksummed
+			this.fileDigest = ReceiveOperation.this.getFileOffer().isIntegrityChecked() && this.fileTree == null ? new FileDigest() : null;
+			
 			ReceiveOperation.this.addOperationListener(new Listener() {
 				
 				@Override
 				public void stateChanged() {
+					switch (ReceiveOperation.this.getState()) {
+					case PAUSED:
+						Controller.this.updateJournal(true);
+						break;
+					case CANCELED:
+					case DONE:
+					case REMOVED:
+						Controller.this.closeDestination();
+						Controller.this.removeJournalEntry();
+						Controller.this.finishDelta(ReceiveOperation.this.getState() == State.DONE);
+						Controller.this.saveChunkStore();
+						break;
+					default:
+						break;
+					}
+					
 					if (Controller.this.canTransferData()) {
-						Controller.this.requestData();
+						Controller.this.restartRequests();
 					}
 				}
 				
@@ -129,39 +460,42 @@ public class ReceiveOperation extends AbstractOperation {
 						receiveOperation.getDestinationFileProvider().getDestinationFile(receiveOperation.getFileName()));
 			}
 			
-			return receiveOperation.getLocalFile() != null;
+			if (receiveOperation.getLocalFile() == null) {
+				return false;
+			}
+			
+			if (this.fileTree != null) {
+				this.startFileTree();
+			} else if (!this.startDelta()) {
+				this.resume();
+				this.startDeduplication();
+			}
+			
+			return true;
 		}
 		
 		@Override
 		protected final void operationMessageReceived(final OperationMessage operationMessage) {
-			if (operationMessage instanceof DataOfferMessage && this.canTransferData()) {
-				if (ReceiveOperation.this.getLocalFile() == null) {
-					throw new IllegalStateException("Destination file is null but the following message has been received: " + operationMessage);
+			if (operationMessage instanceof DataOfferMessage) {
+				if (this.canTransferData()) {
+					this.dataOfferReceived((DataOfferMessage) operationMessage);
 				}
-				
-				try {
-					FileOutputStream output = null;
-					
-					try {
-						output = new FileOutputStream(ReceiveOperation.this.getLocalFile(), true);
-						final byte[] data = ((DataOfferMessage) operationMessage).getBytes();
-						
-						output.write(data);
-						
-						this.dataReceived(data.length, ReceiveOperation.this.getFileOffer().getSourceByteCount());
-					} finally {
-						if (output != null) {
-							output.close();
-						}
-					}
-				} catch (final Exception exception) {
-					// TODO better error handling
-					exception.printStackTrace();
+			} else if (operationMessage instanceof BlockCopyMessage) {
+				if (this.canTransferData()) {
+					this.deltaInstructionReceived((BlockCopyMessage) operationMessage);
 				}
-			}
-			
-			if (!(operationMessage instanceof DataRequestMessage) && this.canTransferData()) {
-				this.requestData();
+			} else if (operationMessage instanceof ChunkHashesMessage) {
+				if (this.canTransferData()) {
+					this.chunkHashesReceived((ChunkHashesMessage) operationMessage);
+				}
+			} else if (operationMessage instanceof ManifestMessage) {
+				if (this.canTransferData()) {
+					this.manifestReceived((ManifestMessage) operationMessage);
+				}
+			} else if (operationMessage instanceof FileDigestMessage) {
+				this.fileDigestReceived((FileDigestMessage) operationMessage);
+			} else if (!(operationMessage instanceof DataRequestMessage) && this.canTransferData()) {
+				this.restartRequests();
 			}
 		}
 		
@@ -170,34 +504,1265 @@ public class ReceiveOperation extends AbstractOperation {
 			return ReceiveOperation.this.getFileOffer().getSourceFile();
 		}
 		
-		final void requestData() {
-			if (this.canTransferData()) {
-				ReceiveOperation.this.getConnection().sendMessage(new DataRequestMessage(this.getSourceFile(), this.receivedByteCount, PREFERRED_TRANSFERRED_BYTE_COUNT));
+		/**
+		 * Called once, when the destination file is known:
+		 * if delta mode can be used, the signatures of the existing destination file are computed and sent,
+		 * and the file receiving the new version is created.
+		 * <br>Blocking.
+		 * 
+		 * @return {@code true} if the operation is in delta mode
+		 */
+		private final synchronized boolean startDelta() {
+			if (this.deltaChecked) {
+				return this.basisSignatures != null;
+			}
+			
+			this.deltaChecked = true;
+			
+			final ReceiveOperation receiveOperation = ReceiveOperation.this;
+			final File destinationFile = receiveOperation.getLocalFile();
+			final TransferJournal journal = receiveOperation.getTransferJournal();
+			final TransferJournal.Entry entry = journal == null ? null : journal.get(destinationFile);
+			
+			if (!receiveOperation.isDeltaEnabled() || receiveOperation.isDestinationMapped() || receiveOperation.isPushMode() ||
+					destinationFile.length() == 0L || receiveOperation.getFileOffer().getSourceByteCount() == 0L ||
+					entry != null && entry.concerns(receiveOperation.getFileOffer())) {
+				return false;
+			}
+			
+			try {
+				final BlockSignatures basisSignatures = BlockSignatures.compute(destinationFile);
+				
+				this.basis = new RandomAccessFile(destinationFile, "r").getChannel();
+				this.deltaDestination = new RandomAccessFile(this.getDeltaFile(), "rw").getChannel();
+				this.deltaDestination.truncate(0L);
+				this.basisSignatures = basisSignatures;
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot prepare the delta transfer into " + destinationFile, exception);
+				
+				this.closeDestination();
+				
+				return false;
 			}
+			
+			for (final BlockSignaturesMessage message : this.basisSignatures.toMessages(this.getSourceFile())) {
+				this.sendMessage(message);
+			}
+			
+			return true;
 		}
 		
 		/**
-		 * TODO doc
 		 * 
-		 * @param byteCount
-		 * <br>Range: {@code [0 .. totalByteCount - this.sentByteCount]}
-		 * @param totalByteCount 
-		 * <br>Range: {@code [0 .. Long.MAX_VALUE]}
+		 * @return the file in which the new version is built in delta mode
+		 * <br>A non-null value
+		 * <br>A new value
 		 */
-		private final void dataReceived(final int byteCount, final long totalByteCount) {
-			this.receivedByteCount += byteCount;
+		private final File getDeltaFile() {
+			return new File(ReceiveOperation.this.getLocalFile().getPath() + DELTA_FILE_SUFFIX);
+		}
+		
+		/**
+		 * In delta mode, replaces the destination file with the new version if the operation is done,
+		 * or deletes the new version otherwise.
+		 * <br>Must be called after the files have been closed.
+		 * 
+		 * @param done
+		 * <br>Range: any boolean
+		 */
+		final synchronized void finishDelta(final boolean done) {
+			final File deltaFile = this.basisSignatures == null ? null : this.getDeltaFile();
+			
+			if (deltaFile == null || !deltaFile.exists()) {
+				return;
+			}
 			
-			ReceiveOperation.this.setProgress((double) this.receivedByteCount / totalByteCount);
+			if (!done) {
+				deltaFile.delete();
+				
+				return;
+			}
 			
-			if (this.receivedByteCount == totalByteCount) {
-				ReceiveOperation.this.getConnection().sendMessage(new DataRequestMessage(this.getSourceFile(), this.receivedByteCount, PREFERRED_TRANSFERRED_BYTE_COUNT));
-				this.done();
+			final File destinationFile = ReceiveOperation.this.getLocalFile();
+			
+			// Renaming onto an existing file fails on some platforms
+			if (!deltaFile.renameTo(destinationFile) && !(destinationFile.delete() && deltaFile.renameTo(destinationFile))) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Could not replace " + destinationFile + " with " + deltaFile);
 			}
 		}
 		
-	}
-	
-	public static final int PREFERRED_TRANSFERRED_BYTE_COUNT = 1;
+		/**
+		 * 
+		 * @return the size of the source file, or the size of the entries of the tree that are known if it is a directory
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		private final long getSourceByteCount() {
+			return this.fileTree == null ? ReceiveOperation.this.getFileOffer().getSourceByteCount() : this.fileTree.getByteCount();
+		}
+		
+		/**
+		 * Called once, when the destination directory of a directory offer is known:
+		 * the bytes of the tree are received in order, so push mode and mapped mode are not used.
+		 * <br>The tree is requested in adaptive chunks even if no chunk sizer has been set,
+		 * because its files are packed in a single stream.
+		 */
+		private final synchronized void startFileTree() {
+			ReceiveOperation.this.setPushMode(false);
+			ReceiveOperation.this.setDestinationMapped(false);
+			
+			if (ReceiveOperation.this.getChunkSizer() == null) {
+				ReceiveOperation.this.setChunkSizer(new ChunkSizer());
+			}
+			
+			if (this.fileTreeWriter == null) {
+				this.fileTreeWriter = new FileTreeWriter(ReceiveOperation.this.getLocalFile(), this.fileTree);
+			}
+		}
+		
+		/**
+		 * Asks for the entries of the tree following the known ones, unless a request is waiting for an answer
+		 * or the tree is complete.
+		 */
+		private final void requestManifest() {
+			if (!this.manifestRequestPending && !this.fileTree.isComplete()) {
+				this.manifestRequestPending = true;
+				
+				this.sendMessage(new ManifestRequestMessage(this.getSourceFile(), this.fileTree.getEntryCount()));
+			}
+		}
+		
+		/**
+		 * Adds the entries of {@code manifest} to the tree and creates them in the destination directory,
+		 * and then requests the next entries and the bytes of the new files.
+		 * <br>Manifests for other entries are answers to requests that have been restarted, and they are ignored;
+		 * the operation is canceled if an entry is invalid or cannot be created.
+		 * 
+		 * @param manifest
+		 * <br>Should not be null
+		 */
+		private final synchronized void manifestReceived(final ManifestMessage manifest) {
+			if (this.fileTree == null || manifest.getFirstEntryIndex() != this.fileTree.getEntryCount()) {
+				return;
+			}
+			
+			this.manifestRequestPending = false;
+			
+			try {
+				this.fileTree.add(manifest);
+				this.fileTreeWriter.createEntries(manifest.getFirstEntryIndex(), this.fileTree.getEntryCount());
+			} catch (final Exception exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot create the entries of " + manifest, exception);
+				
+				this.cancel();
+				
+				return;
+			}
+			
+			this.requestData();
+		}
+		
+		/**
+		 * Called once, after {@link #resume()}: enters deduplication mode if it can be used,
+		 * in which case the chunk hashes are requested instead of the data.
+		 */
+		private final synchronized void startDeduplication() {
+			final ReceiveOperation receiveOperation = ReceiveOperation.this;
+			
+			this.deduplicating = receiveOperation.getChunkStore() != null && !receiveOperation.isDestinationMapped() && !receiveOperation.isPushMode();
+			this.hashedByteCount = this.receivedByteCount;
+		}
+		
+		/**
+		 * Saves the index of the chunk store if chunks have been stored by this operation.
+		 */
+		final synchronized void saveChunkStore() {
+			final ChunkStore chunkStore = ReceiveOperation.this.getChunkStore();
+			
+			if (this.deduplicating && chunkStore.isModified()) {
+				try {
+					chunkStore.save();
+				} catch (final IOException exception) {
+					Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot save the index of the chunk store", exception);
+				}
+			}
+		}
+		
+		/**
+		 * Called once, when the destination file is known:
+		 * if the journal has an entry for the same source file and destination file,
+		 * and if the checksum of the prefix it describes still matches the destination file,
+		 * the bytes of that prefix are considered received and the first request will ask for the bytes following it;
+		 * otherwise, the transfer starts from the beginning of the file.
+		 */
+		private final synchronized void resume() {
+			final TransferJournal journal = ReceiveOperation.this.getTransferJournal();
+			
+			if (this.resumeChecked || journal == null) {
+				return;
+			}
+			
+			this.resumeChecked = true;
+			
+			final File destinationFile = ReceiveOperation.this.getLocalFile();
+			final long totalByteCount = this.getSourceByteCount();
+			final TransferJournal.Entry entry = journal.get(destinationFile);
+			long verifiedByteCount = 0L;
+			
+			if (entry != null && entry.concerns(ReceiveOperation.this.getFileOffer()) && entry.getVerifiedByteCount() <= destinationFile.length()) {
+				try {
+					TransferJournal.updateChecksum(this.journalChecksum, destinationFile, 0L, entry.getVerifiedByteCount());
+					
+					if (this.journalChecksum.getValue() == entry.getChecksum()) {
+						verifiedByteCount = entry.getVerifiedByteCount();
+					}
+				} catch (final IOException exception) {
+					Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot verify the journaled bytes of " + destinationFile, exception);
+				}
+			}
+			
+			try {
+				if (ReceiveOperation.this.isDestinationMapped()) {
+					this.receivedByteCount = this.getReceivedRanges().add(0L, verifiedByteCount);
+					
+					if (this.receivedByteCount != verifiedByteCount) {
+						// The prefix ends inside a block that will be received again
+						verifiedByteCount = this.receivedByteCount;
+						this.journalChecksum.reset();
+						TransferJournal.updateChecksum(this.journalChecksum, destinationFile, 0L, verifiedByteCount);
+					}
+				} else {
+					this.truncateDestination(destinationFile, verifiedByteCount);
+					this.receivedByteCount = verifiedByteCount;
+				}
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot resume the transfer into " + destinationFile, exception);
+			}
+			
+			if (verifiedByteCount == 0L) {
+				this.journalChecksum.reset();
+			}
+			
+			this.journaledByteCount = verifiedByteCount;
+			this.requestedByteCount = verifiedByteCount;
+			
+			if (0L < verifiedByteCount) {
+				ReceiveOperation.this.setProgress(verifiedByteCount, totalByteCount);
+			}
+		}
+		
+		/**
+		 * Removes the bytes of {@code destinationFile} after {@code byteCount}, so that appending continues from there.
+		 * 
+		 * @param destinationFile
+		 * <br>Should not be null
+		 * @param byteCount
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @throws IOException if the file cannot be resized
+		 */
+		private final void truncateDestination(final File destinationFile, final long byteCount) throws IOException {
+			if (destinationFile.length() <= byteCount) {
+				return;
+			}
+			
+			final RandomAccessFile file = new RandomAccessFile(destinationFile, "rw");
+			
+			try {
+				file.setLength(byteCount);
+			} finally {
+				file.close();
+			}
+		}
+		
+		/**
+		 * Saves the length and checksum of the received prefix of the destination file
+		 * if it has grown by at least {@link #JOURNAL_INTERVAL} bytes since the last update,
+		 * or if it has grown at all and {@code force} is {@code true}.
+		 * <br>The checksum is updated by reading back the new bytes of the prefix,
+		 * so the entry describes what the destination file really contains.
+		 * 
+		 * @param force
+		 * <br>Range: any boolean
+		 */
+		final synchronized void updateJournal(final boolean force) {
+			final TransferJournal journal = ReceiveOperation.this.getTransferJournal();
+			
+			if (!this.resumeChecked || journal == null) {
+				return;
+			}
+			
+			final long totalByteCount = this.getSourceByteCount();
+			final long verifiedByteCount = this.getFirstMissingOffset();
+			final long newByteCount = verifiedByteCount - this.journaledByteCount;
+			
+			if (verifiedByteCount == totalByteCount || newByteCount <= 0L || !force && newByteCount < JOURNAL_INTERVAL) {
+				return;
+			}
+			
+			final File destinationFile = ReceiveOperation.this.getLocalFile();
+			
+			try {
+				TransferJournal.updateChecksum(this.journalChecksum, destinationFile, this.journaledByteCount, verifiedByteCount);
+				this.journaledByteCount = verifiedByteCount;
+				
+				journal.put(new TransferJournal.Entry(this.getSourceFile(), totalByteCount, destinationFile, verifiedByteCount, this.journalChecksum.getValue()));
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot journal the progress of the transfer into " + destinationFile, exception);
+			}
+		}
+		
+		final synchronized void removeJournalEntry() {
+			final TransferJournal journal = ReceiveOperation.this.getTransferJournal();
+			
+			if (this.resumeChecked && journal != null) {
+				journal.remove(ReceiveOperation.this.getLocalFile());
+			}
+		}
+		
+		/**
+		 * Forgets about the requests that are still waiting for an answer
+		 * (the remote operation may have ignored them) and fills the request window again
+		 * starting from the first missing byte.
+		 */
+		final synchronized void restartRequests() {
+			this.completionRequested = false;
+			this.pendingInstructions.clear();
+			
+			if (ReceiveOperation.this.isPushMode()) {
+				this.grantCredit(true);
+				
+				return;
+			}
+			
+			this.requestedByteCount = this.getFirstMissingOffset();
+			this.requestTimes.clear();
+			this.requestedChunkSizes.clear();
+			this.hashedByteCount = this.receivedByteCount;
+			this.hashRequestPending = false;
+			this.chunks.clear();
+			this.requestedHashes.clear();
+			this.manifestRequestPending = false;
+			
+			final ChunkSizer chunkSizer = ReceiveOperation.this.getChunkSizer();
+			
+			if (chunkSizer != null) {
+				chunkSizer.reset();
+			}
+			
+			this.requestData();
+		}
+		
+		/**
+		 * Sends requests for the bytes following {@code this.requestedByteCount}
+		 * until the request window is full or the end of the file has been requested.
+		 */
+		final synchronized void requestData() {
+			if (!this.canTransferData()) {
+				return;
+			}
+			
+			if (ReceiveOperation.this.isPushMode()) {
+				this.grantCredit(false);
+				
+				return;
+			}
+			
+			final long totalByteCount = this.getSourceByteCount();
+			final int chunkSize = this.getRequestedChunkSize();
+			final long windowByteCount = (long) ReceiveOperation.this.getRequestWindowSize() * chunkSize;
+			
+			if (this.receivedByteCount == totalByteCount) {
+				this.dataReceived(0, totalByteCount);
+			}
+			
+			if (this.deduplicating) {
+				this.requestChunkHashes();
+				
+				return;
+			}
+			
+			if (this.fileTree != null) {
+				this.requestManifest();
+			}
+			
+			final long firstMissingOffset = this.getFirstMissingOffset();
+			
+			while (this.requestedByteCount < totalByteCount && this.requestedByteCount - firstMissingOffset < windowByteCount) {
+				long byteCount = Math.min(chunkSize, totalByteCount - this.requestedByteCount);
+				
+				if (ReceiveOperation.this.isDestinationMapped()) {
+					// Skips the blocks that have already been received
+					this.requestedByteCount = this.getReceivedRanges().getFirstMissingOffset(this.requestedByteCount);
+					byteCount = Math.min(byteCount, this.getReceivedRanges().getNextReceivedOffset(this.requestedByteCount) - this.requestedByteCount);
+					
+					if (byteCount <= 0L) {
+						break;
+					}
+				}
+				
+				if (!this.acquire((int) byteCount)) {
+					break;
+				}
+				
+				this.request(this.requestedByteCount, (int) byteCount);
+				
+				this.requestedByteCount += byteCount;
+			}
+		}
+		
+		/**
+		 * Takes {@code byteCount} bytes from the rate limiter of the operation;
+		 * if they are refused, {@link #requestData()} is called again later.
+		 * 
+		 * @param byteCount
+		 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+		 * @return {@code true} if the bytes can be requested now
+		 */
+		private final boolean acquire(final int byteCount) {
+			if (this.requestDelayed) {
+				return false;
+			}
+			
+			final long delay = ReceiveOperation.this.getRateLimiter().acquire(byteCount);
+			
+			if (delay == 0L) {
+				return true;
+			}
+			
+			this.requestDelayed = true;
+			
+			RateLimiter.defer(new Runnable() {
+				
+				@Override
+				public final void run() {
+					Controller.this.delayedRequestData();
+				}
+				
+			}, delay);
+			
+			return false;
+		}
+		
+		/**
+		 * Fills the request window again after a refusal of the rate limiter.
+		 */
+		final synchronized void delayedRequestData() {
+			this.requestDelayed = false;
+			
+			this.requestData();
+		}
+		
+		/**
+		 * Asks for the hashes of the chunks following the ones already known,
+		 * unless a request is waiting for an answer or the known chunks that haven't been written
+		 * already cover {@link #DEDUPLICATION_REQUEST_BYTE_COUNT} bytes.
+		 */
+		private final void requestChunkHashes() {
+			final long totalByteCount = this.getSourceByteCount();
+			
+			if (!this.hashRequestPending && this.hashedByteCount < totalByteCount &&
+					this.hashedByteCount - this.receivedByteCount < DEDUPLICATION_REQUEST_BYTE_COUNT) {
+				this.hashRequestPending = true;
+				
+				this.sendMessage(new ChunkHashesRequestMessage(this.getSourceFile(), this.hashedByteCount,
+						(int) Math.min(DEDUPLICATION_REQUEST_BYTE_COUNT, totalByteCount - this.hashedByteCount)));
+			}
+		}
+		
+		/**
+		 * Queues the announced chunks, requests the ones that are neither in the chunk store nor already requested,
+		 * and writes the chunks that can be written.
+		 * <br>Hashes for other offsets are answers to requests that have been restarted, and they are ignored.
+		 * 
+		 * @param chunkHashes
+		 * <br>Should not be null
+		 */
+		private final synchronized void chunkHashesReceived(final ChunkHashesMessage chunkHashes) {
+			if (!this.deduplicating || chunkHashes.getFirstByteOffset() != this.hashedByteCount) {
+				return;
+			}
+			
+			final ChunkStore chunkStore = ReceiveOperation.this.getChunkStore();
+			final int[] chunkByteCounts = chunkHashes.getChunkByteCounts();
+			
+			this.hashRequestPending = false;
+			
+			for (int i = 0; i < chunkByteCounts.length; ++i) {
+				final byte[] hash = Arrays.copyOfRange(chunkHashes.getHashes(), i * ChunkStore.HASH_LENGTH, (i + 1) * ChunkStore.HASH_LENGTH);
+				
+				this.chunks.add(new Chunk(this.hashedByteCount, chunkByteCounts[i], hash));
+				
+				// A chunk appearing several times is only requested once
+				if (!chunkStore.contains(hash) && this.requestedHashes.add(ByteBuffer.wrap(hash))) {
+					this.request(this.hashedByteCount, chunkByteCounts[i]);
+				}
+				
+				this.hashedByteCount += chunkByteCounts[i];
+			}
+			
+			this.writeChunks();
+		}
+		
+		/**
+		 * Keeps the offered chunk until the chunks preceding it have been written, and writes the chunks that can be written.
+		 * <br>Offers for bytes that have already been received answer requests that have been restarted, and they are ignored.
+		 * 
+		 * @param dataOffer
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		private final synchronized void deduplicatedDataOfferReceived(final DataOfferMessage dataOffer) {
+			if (dataOffer.getFirstByteOffset() < this.receivedByteCount) {
+				return;
+			}
+			
+			dataOffer.detachFromPayloadSource();
+			
+			this.pendingInstructions.put(dataOffer.getFirstByteOffset(), dataOffer);
+			
+			this.writeChunks();
+		}
+		
+		/**
+		 * Appends the queued chunks to the destination file in order, taking their bytes from the received data offers
+		 * or from the chunk store, until a chunk is missing; the received chunks are added to the chunk store.
+		 * <br>A chunk that has left the chunk store since its hash was received is requested,
+		 * and a received chunk that doesn't match its hash is requested again.
+		 * <br>The request window is then refilled.
+		 */
+		private final void writeChunks() {
+			final ChunkStore chunkStore = ReceiveOperation.this.getChunkStore();
+			final long totalByteCount = this.getSourceByteCount();
+			
+			try {
+				while (!this.chunks.isEmpty()) {
+					final Chunk chunk = this.chunks.peek();
+					final DataOfferMessage dataOffer = (DataOfferMessage) this.pendingInstructions.remove(chunk.getOffset());
+					byte[] bytes;
+					
+					if (dataOffer != null) {
+						if (dataOffer.getByteCount() != chunk.getByteCount()) {
+							this.request(chunk.getOffset(), chunk.getByteCount());
+							
+							break;
+						}
+						
+						if (!this.checkIntegrity(dataOffer)) {
+							break;
+						}
+						
+						bytes = dataOffer.getBytes();
+						
+						if (!Arrays.equals(chunk.getHash(), ChunkStore.computeHash(bytes, 0, bytes.length))) {
+							ReceiveOperation.this.incrementCorruptedChunkCount();
+							
+							Tools.getLoggerForThisMethod().log(Level.WARNING, "Chunk not matching its hash received at offset " + chunk.getOffset() +
+									" (" + chunk.getByteCount() + " bytes), requesting it again");
+							
+							this.request(chunk.getOffset(), chunk.getByteCount());
+							
+							break;
+						}
+						
+						this.requestTimes.remove(chunk.getOffset());
+						this.requestedChunkSizes.remove(chunk.getOffset());
+						this.requestedHashes.remove(ByteBuffer.wrap(chunk.getHash()));
+						ReceiveOperation.this.countDataOffer(dataOffer);
+						chunkStore.put(chunk.getHash(), bytes);
+					} else {
+						bytes = chunkStore.get(chunk.getHash());
+						
+						if (bytes == null) {
+							if (!this.requestTimes.containsKey(chunk.getOffset())) {
+								this.request(chunk.getOffset(), chunk.getByteCount());
+							}
+							
+							break;
+						}
+						
+						ReceiveOperation.this.addDeduplicatedByteCount(bytes.length);
+					}
+					
+					final FileChannel destination = this.getDestination();
+					final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+					
+					while (buffer.hasRemaining()) {
+						destination.write(buffer);
+					}
+					
+					if (this.fileDigest != null) {
+						this.fileDigest.update(chunk.getOffset(), bytes);
+					}
+					
+					this.chunks.remove();
+					this.dataReceived(bytes.length, totalByteCount);
+				}
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot write the received chunks into " + ReceiveOperation.this.getLocalFile(), exception);
+			}
+			
+			this.requestData();
+		}
+		
+		/**
+		 * Sends a new credit if it is restarting, or if less than half of the credit window remains.
+		 * 
+		 * @param restarting
+		 * <br>Range: any boolean
+		 */
+		private final synchronized void grantCredit(final boolean restarting) {
+			if (!this.canTransferData()) {
+				return;
+			}
+			
+			final long totalByteCount = this.getSourceByteCount();
+			
+			if (this.receivedByteCount == totalByteCount) {
+				this.dataReceived(0, totalByteCount);
+				
+				return;
+			}
+			
+			final long firstMissingOffset = this.getFirstMissingOffset();
+			final long windowByteCount = (long) ReceiveOperation.this.getRequestWindowSize() * ReceiveOperation.this.getChunkSize();
+			final long creditLimit = Math.min(totalByteCount, firstMissingOffset + windowByteCount);
+			
+			if (restarting || this.creditLimit - firstMissingOffset <= windowByteCount / 2L && this.creditLimit < creditLimit) {
+				this.creditLimit = creditLimit;
+				
+				this.sendMessage(new DataCreditMessage(this.getSourceFile(), firstMissingOffset, creditLimit, restarting));
+			}
+		}
+		
+		/**
+		 * 
+		 * @param firstByteOffset
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param byteCount
+		 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+		 */
+		private final void request(final long firstByteOffset, final int byteCount) {
+			this.requestTimes.put(firstByteOffset, System.nanoTime());
+			this.requestedChunkSizes.put(firstByteOffset, byteCount);
+			
+			this.sendMessage(new DataRequestMessage(this.getSourceFile(), firstByteOffset, byteCount));
+		}
+		
+		/**
+		 * In mapped mode, the chunk size is rounded down to a multiple of the block size.
+		 * <br>In delta mode, the requests are for {@link #DELTA_REQUEST_BYTE_COUNT} bytes.
+		 * 
+		 * @return
+		 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+		 */
+		private final int getRequestedChunkSize() {
+			if (this.basisSignatures != null) {
+				return DELTA_REQUEST_BYTE_COUNT;
+			}
+			
+			final int result = ReceiveOperation.this.getChunkSize();
+			
+			if (ReceiveOperation.this.isDestinationMapped()) {
+				final int blockSize = this.getReceivedRanges().getBlockSize();
+				
+				return Math.max(blockSize, result - result % blockSize);
+			}
+			
+			return result;
+		}
+		
+		/**
+		 * 
+		 * @return the offset of the first byte that hasn't been received
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		private final long getFirstMissingOffset() {
+			return ReceiveOperation.this.isDestinationMapped() ? this.getReceivedRanges().getFirstMissingOffset(0L) : this.receivedByteCount;
+		}
+		
+		/**
+		 * The block size is the smallest chunk size, or a multiple of it if the file has too many blocks.
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		private final ReceivedRanges getReceivedRanges() {
+			if (this.receivedRanges == null) {
+				final long totalByteCount = this.getSourceByteCount();
+				final ChunkSizer chunkSizer = ReceiveOperation.this.getChunkSizer();
+				int blockSize = chunkSizer == null ? PREFERRED_TRANSFERRED_BYTE_COUNT : chunkSizer.getMinimumChunkSize();
+				
+				while (Integer.MAX_VALUE < (totalByteCount + blockSize - 1L) / blockSize) {
+					blockSize *= 2;
+				}
+				
+				this.receivedRanges = new ReceivedRanges(totalByteCount, blockSize);
+			}
+			
+			return this.receivedRanges;
+		}
+		
+		/**
+		 * Writes the offered bytes at the end of the destination file if they are the next expected bytes
+		 * (directly from the connection if it allows it),
+		 * and then refills the request window.
+		 * <br>Offers for other offsets are answers to requests that have been restarted, and they are ignored.
+		 * <br>If the offer contains fewer bytes than requested, the requests are restarted after it.
+		 * 
+		 * @param dataOffer
+		 * <br>Should not be null
+		 */
+		private final synchronized void dataOfferReceived(final DataOfferMessage dataOffer) {
+			if (ReceiveOperation.this.getLocalFile() == null) {
+				throw new IllegalStateException("Destination file is null but the following message has been received: " + dataOffer);
+			}
+			
+			if (ReceiveOperation.this.isDestinationMapped()) {
+				this.mappedDataOfferReceived(dataOffer);
+				
+				return;
+			}
+			
+			if (this.basisSignatures != null) {
+				this.deltaInstructionReceived(dataOffer);
+				
+				return;
+			}
+			
+			if (this.deduplicating) {
+				this.deduplicatedDataOfferReceived(dataOffer);
+				
+				return;
+			}
+			
+			if (dataOffer.getFirstByteOffset() != this.receivedByteCount) {
+				return;
+			}
+			
+			if (!this.checkIntegrity(dataOffer)) {
+				return;
+			}
+			
+			final Long requestTime = this.requestTimes.remove(dataOffer.getFirstByteOffset());
+			final int byteCount = dataOffer.getByteCount();
+			
+			this.requestedChunkSizes.remove(dataOffer.getFirstByteOffset());
+			ReceiveOperation.this.countDataOffer(dataOffer);
+			
+			try {
+				final long writeStartTime = System.nanoTime();
+				
+				if (this.fileTree != null) {
+					this.fileTreeWriter.write(dataOffer.getFirstByteOffset(), ByteBuffer.wrap(dataOffer.getBytes()));
+				} else {
+					final FileChannel destination = this.getDestination();
+					
+					dataOffer.transferBytesTo(destination, destination.size());
+				}
+				
+				this.updateFileDigest(dataOffer, dataOffer.getFirstByteOffset() + byteCount);
+				
+				final long writeEndTime = System.nanoTime();
+				final ChunkSizer chunkSizer = ReceiveOperation.this.getChunkSizer();
+				
+				if (chunkSizer != null && requestTime != null) {
+					chunkSizer.chunkReceived(byteCount, writeStartTime - requestTime, writeEndTime - writeStartTime, writeEndTime);
+				}
+				
+				this.dataReceived(byteCount, this.getSourceByteCount());
+			} catch (final Exception exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot write the received bytes into " + ReceiveOperation.this.getLocalFile(), exception);
+			}
+			
+			if (ReceiveOperation.this.isPushMode()) {
+				this.grantCredit(false);
+			} else if (this.receivedByteCount < this.requestedByteCount && !this.requestTimes.containsKey(this.receivedByteCount)) {
+				this.restartRequests();
+			} else {
+				this.requestData();
+			}
+		}
+		
+		/**
+		 * Writes the offered bytes at their offset in the mapped destination file, unless they have already been received,
+		 * and then refills the request window.
+		 * <br>If the offer contains fewer bytes than requested, the missing bytes are requested again at once.
+		 * 
+		 * @param dataOffer
+		 * <br>Should not be null
+		 */
+		private final synchronized void mappedDataOfferReceived(final DataOfferMessage dataOffer) {
+			final long totalByteCount = this.getSourceByteCount();
+			final long offset = dataOffer.getFirstByteOffset();
+			final int byteCount = dataOffer.getByteCount();
+			
+			if (offset < 0L || totalByteCount < offset + byteCount || this.getReceivedRanges().contains(offset, byteCount)) {
+				return;
+			}
+			
+			if (!this.checkIntegrity(dataOffer)) {
+				return;
+			}
+			
+			final Long requestTime = this.requestTimes.remove(offset);
+			final Integer requestedChunkSize = this.requestedChunkSizes.remove(offset);
+			
+			ReceiveOperation.this.countDataOffer(dataOffer);
+			
+			try {
+				final long writeStartTime = System.nanoTime();
+				
+				this.getMappedDestination().write(dataOffer);
+				
+				final long writeEndTime = System.nanoTime();
+				final ChunkSizer chunkSizer = ReceiveOperation.this.getChunkSizer();
+				
+				if (chunkSizer != null && requestTime != null) {
+					chunkSizer.chunkReceived(byteCount, writeStartTime - requestTime, writeEndTime - writeStartTime, writeEndTime);
+				}
+				
+				final int newByteCount = (int) this.getReceivedRanges().add(offset, byteCount);
+				
+				this.updateFileDigest(dataOffer, this.getFirstMissingOffset());
+				this.dataReceived(newByteCount, totalByteCount);
+			} catch (final Exception exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot write the received bytes into " + ReceiveOperation.this.getLocalFile(), exception);
+			}
+			
+			if (!ReceiveOperation.this.isPushMode() && requestedChunkSize != null && byteCount < requestedChunkSize && this.canTransferData()) {
+				final long missingOffset = this.getReceivedRanges().getFirstMissingOffset(offset + byteCount);
+				final long requestEnd = offset + requestedChunkSize;
+				
+				if (missingOffset < requestEnd) {
+					this.request(missingOffset, (int) (requestEnd - missingOffset));
+				}
+			}
+			
+			this.requestData();
+		}
+		
+		/**
+		 * Applies the block copies and literal data offers in offset order:
+		 * the instructions for bytes that have already been received answer requests that have been restarted, and they are ignored;
+		 * the instructions arriving before the ones for the previous bytes are kept until then.
+		 * <br>The request window is then refilled.
+		 * 
+		 * @param instruction a block copy or a data offer
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		private final synchronized void deltaInstructionReceived(final AbstractDataMessage instruction) {
+			final long offset = instruction.getFirstByteOffset();
+			
+			if (this.basisSignatures == null || offset < this.receivedByteCount) {
+				return;
+			}
+			
+			if (this.receivedByteCount < offset) {
+				if (instruction instanceof DataOfferMessage) {
+					((DataOfferMessage) instruction).detachFromPayloadSource();
+				}
+				
+				this.pendingInstructions.put(offset, instruction);
+				
+				return;
+			}
+			
+			AbstractDataMessage nextInstruction = instruction;
+			
+			while (nextInstruction != null && this.applyDeltaInstruction(nextInstruction)) {
+				this.pendingInstructions.headMap(this.receivedByteCount).clear();
+				nextInstruction = this.pendingInstructions.remove(this.receivedByteCount);
+			}
+			
+			this.requestData();
+		}
+		
+		/**
+		 * Writes the bytes described by {@code instruction} at its offset in the new version,
+		 * reading them from the existing destination file for a block copy.
+		 * 
+		 * @param instruction a block copy or a data offer for the first missing byte
+		 * <br>Should not be null
+		 * @return {@code false} if {@code instruction} has been ignored
+		 */
+		private final boolean applyDeltaInstruction(final AbstractDataMessage instruction) {
+			final long totalByteCount = this.getSourceByteCount();
+			final long offset = instruction.getFirstByteOffset();
+			
+			try {
+				if (instruction instanceof DataOfferMessage) {
+					final DataOfferMessage dataOffer = (DataOfferMessage) instruction;
+					
+					if (totalByteCount < offset + dataOffer.getByteCount() || !this.checkIntegrity(dataOffer)) {
+						return false;
+					}
+					
+					ReceiveOperation.this.countDataOffer(dataOffer);
+					dataOffer.transferBytesTo(this.deltaDestination, offset);
+					
+					if (this.fileDigest != null) {
+						this.fileDigest.update(offset, dataOffer.getBytes());
+					}
+					
+					this.dataReceived(dataOffer.getByteCount(), totalByteCount);
+				} else {
+					final BlockCopyMessage blockCopy = (BlockCopyMessage) instruction;
+					
+					if (totalByteCount < offset + blockCopy.getByteCount()) {
+						return false;
+					}
+					
+					this.copyBlocks(blockCopy);
+					ReceiveOperation.this.addCopiedByteCount(blockCopy.getByteCount());
+					this.dataReceived(blockCopy.getByteCount(), totalByteCount);
+				}
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot apply the delta to " + ReceiveOperation.this.getLocalFile(), exception);
+				
+				return false;
+			}
+			
+			return true;
+		}
+		
+		/**
+		 * Copies the bytes designated by {@code blockCopy} from the existing destination file to the new version,
+		 * {@link #COPY_BUFFER_SIZE} bytes at a time, and adds them to the digest of the destination file.
+		 * 
+		 * @param blockCopy
+		 * <br>Should not be null
+		 * @throws IOException if the blocks are not in the existing destination file, or if a file cannot be read or written
+		 */
+		private final void copyBlocks(final BlockCopyMessage blockCopy) throws IOException {
+			final long basisOffset = (long) blockCopy.getBlockIndex() * this.basisSignatures.getBlockSize();
+			final long offset = blockCopy.getFirstByteOffset();
+			final int byteCount = blockCopy.getByteCount();
+			
+			if (this.basisSignatures.getBasisByteCount() < basisOffset + byteCount) {
+				throw new IOException("Invalid block copy: " + blockCopy);
+			}
+			
+			for (int copiedByteCount = 0; copiedByteCount < byteCount;) {
+				final ByteBuffer buffer = ByteBuffer.allocate(Math.min(COPY_BUFFER_SIZE, byteCount - copiedByteCount));
+				
+				while (buffer.hasRemaining()) {
+					if (this.basis.read(buffer, basisOffset + copiedByteCount + buffer.position()) < 0) {
+						throw new IOException(ReceiveOperation.this.getLocalFile() + " is shorter than " + (basisOffset + byteCount) + " bytes");
+					}
+				}
+				
+				if (this.fileDigest != null) {
+					this.fileDigest.update(offset + copiedByteCount, buffer.array());
+				}
+				
+				buffer.flip();
+				
+				while (buffer.hasRemaining()) {
+					this.deltaDestination.write(buffer, offset + copiedByteCount + buffer.position());
+				}
+				
+				copiedByteCount += buffer.limit();
+			}
+		}
+		
+		/**
+		 * If {@code dataOffer} is checksummed and its checksum doesn't match its bytes,
+		 * it is counted as corrupted and its bytes are requested again at once (or the credit is restarted in push mode).
+		 * <br>When the bytes are received in order, the requests are restarted from the corrupted offset instead,
+		 * because the answers already in flight after it will be ignored.
+		 * 
+		 * @param dataOffer
+		 * <br>Should not be null
+		 * <br>Input-output parameter
+		 * @return {@code false} if {@code dataOffer} is corrupted and must be ignored
+		 */
+		private final boolean checkIntegrity(final DataOfferMessage dataOffer) {
+			if (this.fileDigest == null && !dataOffer.isChecksummed()) {
+				return true;
+			}
+			
+			// The bytes must be verified before they are written, so a checksummed offer is never written
+			// straight from the connection; they are also kept in memory for the digest of the destination file
+			final byte[] bytes = dataOffer.getBytes();
+			
+			if (!dataOffer.isChecksummed() || Crc32c.compute(bytes) == dataOffer.getChecksum()) {
+				return true;
+			}
+			
+			ReceiveOperation.this.incrementCorruptedChunkCount();
+			
+			Tools.getLoggerForThisMethod().log(Level.WARNING, "Corrupted chunk received at offset " + dataOffer.getFirstByteOffset() +
+					" (" + dataOffer.getByteCount() + " bytes), requesting it again");
+			
+			if (ReceiveOperation.this.isPushMode()) {
+				this.grantCredit(true);
+			} else if (!ReceiveOperation.this.isDestinationMapped() && this.basisSignatures == null && !this.deduplicating) {
+				this.restartRequests();
+			} else {
+				final long offset = dataOffer.getFirstByteOffset();
+				final Integer requestedChunkSize = this.requestedChunkSizes.get(offset);
+				
+				this.request(offset, requestedChunkSize != null ? requestedChunkSize : dataOffer.getByteCount());
+			}
+			
+			return false;
+		}
+		
+		/**
+		 * Adds the bytes of {@code dataOffer} to the digest of the destination file if they follow the bytes already digested;
+		 * the received bytes that are not in memory anymore (because they were received before the bytes preceding them,
+		 * or because they were already in the destination file when the transfer was resumed) are read back from the destination file.
+		 * 
+		 * @param dataOffer
+		 * <br>Should not be null
+		 * @param receivedEnd the offset of the first byte that hasn't been received, including the bytes of {@code dataOffer}
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @throws IOException if the destination file cannot be read
+		 */
+		private final void updateFileDigest(final DataOfferMessage dataOffer, final long receivedEnd) throws IOException {
+			final FileDigest fileDigest = this.fileDigest;
+			
+			if (fileDigest == null) {
+				return;
+			}
+			
+			final File destinationFile = ReceiveOperation.this.getLocalFile();
+			
+			fileDigest.update(destinationFile, Math.min(dataOffer.getFirstByteOffset(), receivedEnd));
+			fileDigest.update(dataOffer.getFirstByteOffset(), dataOffer.getBytes());
+			fileDigest.update(destinationFile, receivedEnd);
+		}
+		
+		/**
+		 * Compares the digest of the source file with the digest of the destination file once all the bytes have been received:
+		 * the operation is done if they are equal, and canceled otherwise.
+		 * 
+		 * @param fileDigestMessage
+		 * <br>Should not be null
+		 */
+		private final synchronized void fileDigestReceived(final FileDigestMessage fileDigestMessage) {
+			final long totalByteCount = this.getSourceByteCount();
+			
+			if (this.fileDigest == null || this.receivedByteCount != totalByteCount || ReceiveOperation.this.getState() != State.PROGRESSING) {
+				return;
+			}
+			
+			byte[] digest = null;
+			
+			try {
+				this.closeDestination();
+				this.fileDigest.update(ReceiveOperation.this.getLocalFile(), totalByteCount);
+				
+				digest = this.fileDigest.digest();
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot digest " + ReceiveOperation.this.getLocalFile(), exception);
+			}
+			
+			if (Arrays.equals(fileDigestMessage.getDigest(), digest)) {
+				this.done();
+			} else {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "The digest of " + ReceiveOperation.this.getLocalFile() +
+						" doesn't match the digest of the source file: " + fileDigestMessage);
+				
+				this.cancel();
+			}
+		}
+		
+		/**
+		 * Creates the mapped destination file the first time it is needed.
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 * @throws IOException if the destination file cannot be opened or resized
+		 */
+		private final synchronized MappedDestinationFile getMappedDestination() throws IOException {
+			if (this.mappedDestination == null) {
+				this.mappedDestination = new MappedDestinationFile(ReceiveOperation.this.getLocalFile(), this.getSourceByteCount());
+			}
+			
+			return this.mappedDestination;
+		}
+		
+		/**
+		 * Opens the destination file in append mode the first time it is needed;
+		 * the same channel is then used for all the chunks until the operation ends.
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 * @throws IOException if the destination file cannot be opened
+		 */
+		private final synchronized FileChannel getDestination() throws IOException {
+			if (this.destination == null) {
+				this.destination = new FileOutputStream(ReceiveOperation.this.getLocalFile(), true).getChannel();
+			}
+			
+			return this.destination;
+		}
+		
+		final synchronized void closeDestination() {
+			if (this.fileTreeWriter != null) {
+				this.fileTreeWriter.close();
+			}
+			
+			if (this.mappedDestination != null) {
+				this.mappedDestination.close();
+				this.mappedDestination = null;
+			}
+			
+			if (this.destination != null) {
+				try {
+					this.destination.close();
+				} catch (final IOException exception) {
+					Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot close " + ReceiveOperation.this.getLocalFile(), exception);
+				}
+				
+				this.destination = null;
+			}
+			
+			try {
+				if (this.basis != null) {
+					this.basis.close();
+					this.basis = null;
+				}
+				
+				if (this.deltaDestination != null) {
+					this.deltaDestination.close();
+					this.deltaDestination = null;
+				}
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot close the delta transfer files of " + ReceiveOperation.this.getLocalFile(), exception);
+			}
+		}
+		
+		/**
+		 * TODO doc
+		 * 
+		 * @param byteCount
+		 * <br>Range: {@code [0 .. totalByteCount - this.sentByteCount]}
+		 * @param totalByteCount 
+		 * <br>Range: {@code [0 .. Long.MAX_VALUE]}
+		 */
+		private final void dataReceived(final int byteCount, final long totalByteCount) {
+			this.receivedByteCount += byteCount;
+			
+			if (!ReceiveOperation.this.isDestinationMapped() && this.requestedByteCount < this.receivedByteCount) {
+				this.requestedByteCount = this.receivedByteCount;
+			}
+			
+			if (byteCount > 0) {
+				ReceiveOperation.this.setProgress(this.receivedByteCount, totalByteCount);
+				this.updateJournal(false);
+			}
+			
+			if (this.receivedByteCount == totalByteCount && !this.completionRequested && (this.fileTree == null || this.fileTree.isComplete())) {
+				this.completionRequested = true;
+				this.sendMessage(new DataRequestMessage(this.getSourceFile(), this.receivedByteCount, PREFERRED_TRANSFERRED_BYTE_COUNT));
+				
+				// With an integrity check, the operation is done when the digest of the source file has been verified
+				if (this.fileDigest == null) {
+					this.done();
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * The number of data requests that can be waiting for an answer at the same time, unless specified otherwise.
+	 */
+	public static final int DEFAULT_REQUEST_WINDOW_SIZE = 1;
+	
+	public static final int PREFERRED_TRANSFERRED_BYTE_COUNT = 1;
+	
+	/**
+	 * The number of received bytes after which the journal is updated.
+	 */
+	public static final long JOURNAL_INTERVAL = 16L * 1024L * 1024L;
+	
+	/**
+	 * The number of bytes asked for by each data request in delta mode;
+	 * the remote send operation reads that many bytes at once to look for the blocks of the existing destination file.
+	 */
+	public static final int DELTA_REQUEST_BYTE_COUNT = 16 * 1024 * 1024;
+	
+	/**
+	 * The number of bytes described by each chunk hash request in deduplication mode;
+	 * a new request is sent when fewer bytes than that are known but not written yet.
+	 */
+	public static final int DEDUPLICATION_REQUEST_BYTE_COUNT = 16 * 1024 * 1024;
+	
+	/**
+	 * Appended to the name of the destination file to name the file in which the new version is built in delta mode.
+	 */
+	public static final String DELTA_FILE_SUFFIX = ".transfile-delta";
+	
+	/**
+	 * Bytes copied at once from the existing destination file in delta mode.
+	 */
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * A content-defined chunk of the source file announced in deduplication mode.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private static final class Chunk {
+		
+		private final long offset;
+		
+		private final int byteCount;
+		
+		private final byte[] hash;
+		
+		/**
+		 * 
+		 * @param offset
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param byteCount
+		 * <br>Range: {@code [1 .. ContentDefinedChunker.MAXIMUM_CHUNK_SIZE]}
+		 * @param hash
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		Chunk(final long offset, final int byteCount, final byte[] hash) {
+			this.offset = offset;
+			this.byteCount = byteCount;
+			this.hash = hash;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		public final long getOffset() {
+			return this.offset;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>Range: {@code [1 .. ContentDefinedChunker.MAXIMUM_CHUNK_SIZE]}
+		 */
+		public final int getByteCount() {
+			return this.byteCount;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		public final byte[] getHash() {
+			return this.hash;
+		}
+		
+	}
 	
 	/**
 	 * TODO doc
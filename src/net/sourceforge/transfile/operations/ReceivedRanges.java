@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.util.BitSet;
+
+/**
+ * Keeps track of the parts of a file that have been received, using one bit per block of {@code blockSize} bytes.
+ * <br>A block is only considered received when all its bytes have been received at once;
+ * the last block of the file can be shorter than the others.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ReceivedRanges {
+	
+	private final long byteCount;
+	
+	private final int blockSize;
+	
+	private final BitSet receivedBlocks;
+	
+	private long receivedByteCount;
+	
+	/**
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. blockSize * Integer.MAX_VALUE]}
+	 * @param blockSize
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @throws IllegalArgumentException if the parameters are not in their ranges
+	 */
+	public ReceivedRanges(final long byteCount, final int blockSize) {
+		if (byteCount < 0L || blockSize < 1 || Integer.MAX_VALUE < (byteCount + blockSize - 1L) / blockSize) {
+			throw new IllegalArgumentException("Invalid byte count or block size: " + byteCount + ", " + blockSize);
+		}
+		
+		this.byteCount = byteCount;
+		this.blockSize = blockSize;
+		this.receivedBlocks = new BitSet(this.getBlockCount());
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final long getByteCount() {
+		return this.byteCount;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final int getBlockSize() {
+		return this.blockSize;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int getBlockCount() {
+		return (int) ((this.getByteCount() + this.getBlockSize() - 1L) / this.getBlockSize());
+	}
+	
+	/**
+	 * 
+	 * @return the number of bytes in the received blocks
+	 * <br>Range: {@code [0L .. this.getByteCount()]}
+	 */
+	public final synchronized long getReceivedByteCount() {
+		return this.receivedByteCount;
+	}
+	
+	public final synchronized boolean isComplete() {
+		return this.getReceivedByteCount() == this.getByteCount();
+	}
+	
+	/**
+	 * Marks the blocks entirely contained in the specified range as received.
+	 * 
+	 * @param offset
+	 * <br>Range: {@code [0L .. this.getByteCount()]}
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. this.getByteCount() - offset]}
+	 * @return the number of bytes in the blocks that weren't already received
+	 * <br>Range: {@code [0L .. byteCount]}
+	 */
+	public final synchronized long add(final long offset, final long byteCount) {
+		final long end = offset + byteCount;
+		final int firstBlock = (int) ((offset + this.getBlockSize() - 1L) / this.getBlockSize());
+		final int endBlock = end == this.getByteCount() ? this.getBlockCount() : (int) (end / this.getBlockSize());
+		long result = 0L;
+		
+		for (int block = this.receivedBlocks.nextClearBit(firstBlock); block < endBlock; block = this.receivedBlocks.nextClearBit(block + 1)) {
+			this.receivedBlocks.set(block);
+			result += this.getBlockByteCount(block);
+		}
+		
+		this.receivedByteCount += result;
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param offset
+	 * <br>Range: {@code [0L .. this.getByteCount()]}
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. this.getByteCount() - offset]}
+	 * @return {@code true} if all the blocks intersecting the specified range have been received
+	 */
+	public final synchronized boolean contains(final long offset, final long byteCount) {
+		if (byteCount == 0L) {
+			return true;
+		}
+		
+		final int firstBlock = (int) (offset / this.getBlockSize());
+		final int lastBlock = (int) ((offset + byteCount - 1L) / this.getBlockSize());
+		
+		return lastBlock < this.receivedBlocks.nextClearBit(firstBlock);
+	}
+	
+	/**
+	 * 
+	 * @param offset
+	 * <br>Range: {@code [0L .. this.getByteCount()]}
+	 * @return the offset of the first block that hasn't been received among the blocks starting at or containing {@code offset},
+	 * or {@code this.getByteCount()} if there is none
+	 * <br>Range: {@code [0L .. this.getByteCount()]}
+	 */
+	public final synchronized long getFirstMissingOffset(final long offset) {
+		final int block = this.receivedBlocks.nextClearBit((int) (offset / this.getBlockSize()));
+		
+		return Math.min(this.getByteCount(), (long) block * this.getBlockSize());
+	}
+	
+	/**
+	 * 
+	 * @param offset
+	 * <br>Range: {@code [0L .. this.getByteCount()]}
+	 * @return the offset of the first received block starting at or after {@code offset},
+	 * or {@code this.getByteCount()} if there is none
+	 * <br>Range: {@code [offset .. this.getByteCount()]}
+	 */
+	public final synchronized long getNextReceivedOffset(final long offset) {
+		final int block = this.receivedBlocks.nextSetBit((int) ((offset + this.getBlockSize() - 1L) / this.getBlockSize()));
+		
+		return block < 0 ? this.getByteCount() : Math.min(this.getByteCount(), (long) block * this.getBlockSize());
+	}
+	
+	/**
+	 * 
+	 * @param block
+	 * <br>Range: {@code [0 .. this.getBlockCount() - 1]}
+	 * @return
+	 * <br>Range: {@code [1 .. this.getBlockSize()]}
+	 */
+	private final long getBlockByteCount(final int block) {
+		return Math.min(this.getBlockSize(), this.getByteCount() - (long) block * this.getBlockSize());
+	}
+	
+}
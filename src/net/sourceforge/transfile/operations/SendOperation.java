@@ -19,14 +19,26 @@
 
 package net.sourceforge.transfile.operations;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.logging.Level;
 
+import net.sourceforge.transfile.operations.messages.AbstractDataMessage;
+import net.sourceforge.transfile.operations.messages.BlockSignaturesMessage;
+import net.sourceforge.transfile.operations.messages.ChunkHashesMessage;
+import net.sourceforge.transfile.operations.messages.ChunkHashesRequestMessage;
+import net.sourceforge.transfile.operations.messages.DataCreditMessage;
 import net.sourceforge.transfile.operations.messages.DataOfferMessage;
 import net.sourceforge.transfile.operations.messages.DataRequestMessage;
+import net.sourceforge.transfile.operations.messages.FileDigestMessage;
+import net.sourceforge.transfile.operations.messages.ManifestMessage;
+import net.sourceforge.transfile.operations.messages.ManifestRequestMessage;
 import net.sourceforge.transfile.operations.messages.OperationMessage;
+import net.sourceforge.jenerics.Tools;
 
 /**
  * TODO doc
@@ -38,6 +50,12 @@ public class SendOperation extends AbstractOperation {
 	
 	private final Controller controller;
 	
+	private final FileChannelCache sourceFileChannels;
+	
+	private final OfferCompressor offerCompressor;
+	
+	private boolean integrityChecked;
+	
 	/**
 	 * 
 	 * @param connection
@@ -48,12 +66,89 @@ public class SendOperation extends AbstractOperation {
 	 * <br>Shared parameter
 	 */
 	public SendOperation(final Connection connection, final File sourceFile) {
-		super(connection, sourceFile.getName());
+		this(connection, sourceFile, SOURCE_FILE_CHANNELS);
+	}
+	
+	/**
+	 * 
+	 * @param connection
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param sourceFileChannels
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public SendOperation(final Connection connection, final File sourceFile, final FileChannelCache sourceFileChannels) {
+		this(connection, sourceFile, sourceFileChannels, 0);
+	}
+	
+	/**
+	 * 
+	 * @param connection
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param sourceFileChannels
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param streamId the stream identifier allocated by {@code connection}, or {@code 0} to identify the operation by its source file
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public SendOperation(final Connection connection, final File sourceFile, final FileChannelCache sourceFileChannels, final int streamId) {
+		super(connection, sourceFile.getName(), streamId);
+		this.sourceFileChannels = sourceFileChannels;
+		this.offerCompressor = new OfferCompressor();
 		this.controller = this.new Controller();
 		
 		this.setLocalFile(sourceFile);
 	}
 	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final FileChannelCache getSourceFileChannels() {
+		return this.sourceFileChannels;
+	}
+	
+	/**
+	 * The data offers are compressed when compression has been negotiated on the connection
+	 * (see {@link Connection#isCompressionNegotiated()}).
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final OfferCompressor getOfferCompressor() {
+		return this.offerCompressor;
+	}
+	
+	public final synchronized boolean isIntegrityChecked() {
+		return this.integrityChecked;
+	}
+	
+	/**
+	 * If the transfer is integrity-checked, each data offer carries the CRC-32C of its bytes,
+	 * and the digest of the source file, computed from the offered bytes, is sent when all the bytes have been received;
+	 * the offered bytes must then be read into memory, so the connection cannot send them directly from the source file.
+	 * <br>The remote receive operation must have been created from a file offer that is integrity-checked too
+	 * (see {@link net.sourceforge.transfile.operations.messages.FileOfferMessage#isIntegrityChecked()}).
+	 * <br>The mode must not be changed once data has been sent.
+	 * 
+	 * @param integrityChecked
+	 * <br>Range: any boolean
+	 */
+	public final synchronized void setIntegrityChecked(final boolean integrityChecked) {
+		this.integrityChecked = integrityChecked;
+	}
+	
 	/** 
 	 * {@inheritDoc}
 	 */
@@ -63,18 +158,72 @@ public class SendOperation extends AbstractOperation {
 	}
 	
 	/**
-	 * TODO doc
+	 * Answers the data requests one by one, and streams the source file as long as it has credit
+	 * when the remote receive operation is in push mode.
+	 * <br>When the remote receive operation is in delta mode, it sends the signatures of its basis before its first request,
+	 * and the requests are answered with block copies and literal data offers.
+	 * <br>When the source file is a directory, its tree is scanned when the remote receive operation asks for the manifest,
+	 * and the requests are answered with the bytes of the stream of the tree (see {@link FileTree}).
 	 *
 	 * @author codistmonk (creation 2010-06-05)
 	 *
 	 */
 	private class Controller extends AbstractController {
 		
+		private long pushedByteCount;
+		
+		private long creditLimit;
+		
+		private FileDigest fileDigest;
+		
+		private BlockSignatures blockSignatures;
+		
+		private FileTree fileTree;
+		
+		private FileTreeScanner fileTreeScanner;
+		
+		private int requestedManifestEntryIndex;
+		
+		private final ArrayDeque<DataRequestMessage> delayedRequests;
+		
+		private boolean replying;
+		
+		private boolean pushDelayed;
+		
+		private ByteBuffer checksumBuffer;
+		
+		private ByteBuffer deltaBuffer;
+		
 		/**
 		 * Package-private default constructor to suppress visibility warnings.
 		 */
 		Controller() {
-			// Do nothing
+			this.requestedManifestEntryIndex = -1;
+			this.delayedRequests = new ArrayDeque<DataRequestMessage>();
+			
+			SendOperation.this.addOperationListener(new Listener() {
+				
+				@Override
+				public final void stateChanged() {
+					switch (SendOperation.this.getState()) {
+					case CANCELED:
+					case DONE:
+					case REMOVED:
+						SendOperation.this.getSourceFileChannels().close(Controller.this.getSourceFile());
+						SendOperation.this.getOfferCompressor().end();
+						Controller.this.stopScanning();
+						break;
+					default:
+						break;
+					}
+				}
+				
+				@Override
+				public final void progressChanged() {
+					// Do nothing
+				}
+				
+			});
 		}
 		
 		@Override
@@ -82,63 +231,533 @@ public class SendOperation extends AbstractOperation {
 			if (operationMessage instanceof DataRequestMessage && this.canTransferData()) {
 				final DataRequestMessage request = (DataRequestMessage) operationMessage;
 				
-				this.dataReceived(request.getFirstByteOffset(), this.getSourceFile().length());
+				this.dataReceived(request.getFirstByteOffset(), this.getSourceByteCount());
+				
+				if (request.getRequestedByteCount() > 0 && this.canTransferData()) {
+					this.replyWhenAllowed(request);
+				}
+			} else if (operationMessage instanceof DataCreditMessage && this.canTransferData()) {
+				final DataCreditMessage credit = (DataCreditMessage) operationMessage;
+				
+				this.dataReceived(credit.getFirstByteOffset(), this.getSourceByteCount());
 				
-				if (request.getRequestedByteCount() > 0) {
-					try {
-						this.reply(request);
-					} catch (final Exception exception) {
-						// TODO better error handling
-						exception.printStackTrace();
+				if (this.canTransferData()) {
+					this.push(credit);
+				}
+			} else if (operationMessage instanceof BlockSignaturesMessage) {
+				this.blockSignaturesReceived((BlockSignaturesMessage) operationMessage);
+			} else if (operationMessage instanceof ChunkHashesRequestMessage && this.canTransferData()) {
+				this.replyWithChunkHashes((ChunkHashesRequestMessage) operationMessage);
+			} else if (operationMessage instanceof ManifestRequestMessage && this.canTransferData()) {
+				this.manifestRequested((ManifestRequestMessage) operationMessage);
+			}
+		}
+		
+		/**
+		 * 
+		 * @return the tree of the source file if it is a directory
+		 * <br>A possibly null value
+		 * <br>A shared value
+		 */
+		private final synchronized FileTree getFileTree() {
+			if (this.fileTree == null && this.getSourceFile().isDirectory()) {
+				this.fileTree = new FileTree();
+				this.fileTreeScanner = new FileTreeScanner(this.getSourceFile(), this.fileTree, new Runnable() {
+					
+					@Override
+					public final void run() {
+						Controller.this.sendManifest();
 					}
+					
+				});
+			}
+			
+			return this.fileTree;
+		}
+		
+		/**
+		 * 
+		 * @return the size of the source file, or the size of the entries of its tree that have been scanned if it is a directory
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		private final long getSourceByteCount() {
+			final FileTree fileTree = this.getFileTree();
+			
+			return fileTree == null ? this.getSourceFile().length() : fileTree.getByteCount();
+		}
+		
+		/**
+		 * Starts scanning the tree of the source file the first time, and sends the requested entries
+		 * as soon as they are known.
+		 * 
+		 * @param request
+		 * <br>Should not be null
+		 */
+		private final synchronized void manifestRequested(final ManifestRequestMessage request) {
+			if (this.getFileTree() == null) {
+				return;
+			}
+			
+			this.requestedManifestEntryIndex = request.getFirstEntryIndex();
+			
+			this.fileTreeScanner.start();
+			this.sendManifest();
+		}
+		
+		/**
+		 * Sends at most {@link FileTree#MANIFEST_MESSAGE_ENTRY_COUNT} entries of the tree
+		 * if they have been requested and scanned.
+		 */
+		final synchronized void sendManifest() {
+			if (this.requestedManifestEntryIndex < 0) {
+				return;
+			}
+			
+			final ManifestMessage manifest = this.fileTree.toMessage(this.getSourceFile(), this.requestedManifestEntryIndex, FileTree.MANIFEST_MESSAGE_ENTRY_COUNT);
+			
+			if (manifest != null) {
+				this.requestedManifestEntryIndex = -1;
+				
+				this.sendMessage(manifest);
+			}
+		}
+		
+		final synchronized void stopScanning() {
+			if (this.fileTreeScanner != null) {
+				this.fileTreeScanner.stop();
+			}
+		}
+		
+		/**
+		 * The first message of a series creates new signatures, and the following ones complete them.
+		 * 
+		 * @param message
+		 * <br>Should not be null
+		 */
+		private final synchronized void blockSignaturesReceived(final BlockSignaturesMessage message) {
+			if (message.getFirstBlockIndex() == 0) {
+				this.blockSignatures = new BlockSignatures(message.getBlockSize(), message.getBasisByteCount());
+			}
+			
+			if (this.blockSignatures != null) {
+				this.blockSignatures.add(message);
+			}
+		}
+		
+		/**
+		 * 
+		 * @return the signatures of the remote basis if they have all been received
+		 * <br>A possibly null value
+		 * <br>A shared value
+		 */
+		private final synchronized BlockSignatures getBlockSignatures() {
+			return this.blockSignatures != null && this.blockSignatures.isComplete() ? this.blockSignatures : null;
+		}
+		
+		/**
+		 * Sends the bytes following the ones already pushed, in chunks of at most {@link #MAXIMUM_PUSHED_BYTE_COUNT} bytes,
+		 * until the credit limit or the end of the file is reached.
+		 * <br>A restarting credit makes the transfer continue from its first byte offset.
+		 * 
+		 * @param credit
+		 * <br>Should not be null
+		 */
+		private final synchronized void push(final DataCreditMessage credit) {
+			if (credit.isRestarting()) {
+				this.pushedByteCount = credit.getFirstByteOffset();
+				this.creditLimit = credit.getCreditLimit();
+			} else {
+				this.pushedByteCount = Math.max(this.pushedByteCount, credit.getFirstByteOffset());
+				this.creditLimit = Math.max(this.creditLimit, credit.getCreditLimit());
+			}
+			
+			if (!this.pushDelayed) {
+				this.push();
+			}
+		}
+		
+		/**
+		 * Sends the bytes following the ones already pushed up to the current credit limit,
+		 * as long as the rate limiter of the operation allows it; the rest is pushed later.
+		 */
+		final synchronized void push() {
+			final long end = Math.min(this.creditLimit, this.getSourceFile().length());
+			
+			this.pushDelayed = false;
+			
+			while (this.pushedByteCount < end && this.canTransferData()) {
+				final int byteCount = (int) Math.min(MAXIMUM_PUSHED_BYTE_COUNT, end - this.pushedByteCount);
+				final long delay = SendOperation.this.getRateLimiter().acquire(byteCount);
+				
+				if (0L < delay) {
+					this.pushDelayed = true;
+					
+					RateLimiter.defer(new Runnable() {
+						
+						@Override
+						public final void run() {
+							Controller.this.push();
+						}
+						
+					}, delay);
+					
+					return;
 				}
+				
+				this.sendDataOffer(new DataOfferMessage(
+						this.getSourceFile(),
+						this.pushedByteCount,
+						byteCount,
+						SendOperation.this.getSourceFileChannels()));
+				
+				this.pushedByteCount += byteCount;
 			}
 		}
 		
 		/**
-		 * TODO doc
+		 * Replies to {@code request} once the requests received before it have been answered
+		 * and the rate limiter of the operation allows it.
+		 * 
+		 * @param request
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		private final void replyWhenAllowed(final DataRequestMessage request) {
+			synchronized (this) {
+				this.delayedRequests.add(request);
+				
+				if (this.replying) {
+					return;
+				}
+				
+				this.replying = true;
+			}
+			
+			this.replyDelayedRequests();
+		}
+		
+		/**
+		 * Answers the delayed requests in order, until the rate limiter of the operation refuses one of them;
+		 * this method is then called again later.
+		 * <br>Only one thread answers the requests of the operation at a time.
+		 * <br>The requests are dropped if the data transfer is interrupted, since they are restarted when it resumes.
+		 */
+		final void replyDelayedRequests() {
+			while (true) {
+				final DataRequestMessage request;
+				
+				synchronized (this) {
+					if (!this.canTransferData()) {
+						this.delayedRequests.clear();
+					}
+					
+					request = this.delayedRequests.peek();
+					
+					if (request == null) {
+						this.replying = false;
+						
+						return;
+					}
+					
+					final long delay = SendOperation.this.getRateLimiter().acquire(request.getRequestedByteCount());
+					
+					if (0L < delay) {
+						RateLimiter.defer(new Runnable() {
+							
+							@Override
+							public final void run() {
+								Controller.this.replyDelayedRequests();
+							}
+							
+						}, delay);
+						
+						return;
+					}
+					
+					this.delayedRequests.poll();
+				}
+				
+				this.reply(request);
+			}
+		}
+		
+		/**
+		 * Offers the requested region of the source file; unless the offer is compressed, the bytes are not read here,
+		 * so that the connection can send them directly from the file if it is able to.
+		 * <br>In delta mode, the region is described with {@link BlockSignatures#encode(File, long, byte[], int, int)} instead.
 		 * 
 		 * @param request
 		 * <br>Should not be null
-		 * @throws IOException if the source file doesn't exist or cannot be read
 		 */
-		private final void reply(final DataRequestMessage request) throws IOException {
-			final byte[] buffer = new byte[request.getRequestedByteCount()];
-			final int readByteCount = this.readBytes(request.getFirstByteOffset(), buffer);
+		private final void reply(final DataRequestMessage request) {
+			final int byteCount = (int) Math.min(request.getRequestedByteCount(), this.getSourceByteCount() - request.getFirstByteOffset());
+			final BlockSignatures blockSignatures = this.getBlockSignatures();
 			
-			if (readByteCount > 0) {
-				SendOperation.this.getConnection().sendMessage(new DataOfferMessage(
+			if (byteCount > 0 && this.getFileTree() != null) {
+				this.replyFromFileTree(request.getFirstByteOffset(), byteCount);
+			} else if (byteCount > 0 && blockSignatures != null) {
+				this.replyWithDelta(request.getFirstByteOffset(), byteCount, blockSignatures);
+			} else if (byteCount > 0) {
+				this.sendDataOffer(new DataOfferMessage(
 						this.getSourceFile(),
 						request.getFirstByteOffset(),
-						Arrays.copyOfRange(buffer, 0, readByteCount)));
+						byteCount,
+						SendOperation.this.getSourceFileChannels()));
 			}
 		}
 		
 		/**
-		 * TODO doc
+		 * Reads the region of the source file and sends the block copies and literal data offers describing it;
+		 * the literal data offers contain at most {@link #MAXIMUM_PUSHED_BYTE_COUNT} bytes.
+		 * <br>The region is read into a buffer reused by the operation (the requests are answered by one thread at a time),
+		 * since the literal data offers copy their bytes.
 		 * 
 		 * @param firstByteOffset
 		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
-		 * @param buffer
+		 * @param byteCount
+		 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+		 * @param blockSignatures
 		 * <br>Should not be null
-		 * <br>Input-output parameter
-		 * @return the total number of bytes read into the buffer, or {@code -1} if there is no more data because the end of the file has been reached
-		 * <br>Range: {@code [-1 .. buffer.length]}
-		 * @throws IOException if the source file doesn't exist or cannot be read
 		 */
-		private final int readBytes(final long firstByteOffset, final byte[] buffer) throws IOException {
-			FileInputStream input = null;
+		private final void replyWithDelta(final long firstByteOffset, final int byteCount, final BlockSignatures blockSignatures) {
+			if (this.deltaBuffer == null || this.deltaBuffer.capacity() < byteCount) {
+				this.deltaBuffer = ByteBuffer.allocate(byteCount);
+			}
+			
+			final ByteBuffer buffer = this.deltaBuffer;
+			
+			buffer.clear();
+			buffer.limit(byteCount);
 			
 			try {
-				input = new FileInputStream(this.getSourceFile());
+				if (SendOperation.this.getSourceFileChannels().read(this.getSourceFile(), firstByteOffset, buffer) < byteCount) {
+					throw new IOException(this.getSourceFile() + " is shorter than " + (firstByteOffset + byteCount) + " bytes");
+				}
+				
+				if (SendOperation.this.isIntegrityChecked()) {
+					// The copied bytes are digested here because they are not offered
+					this.getFileDigest().update(this.getSourceFile(), firstByteOffset);
+					this.getFileDigest().update(firstByteOffset, buffer.array(), byteCount);
+				}
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot read the bytes of " + this.getSourceFile() + " copied from offset " + firstByteOffset, exception);
 				
-				input.skip(firstByteOffset);
+				return;
+			}
+			
+			for (final AbstractDataMessage message : blockSignatures.encode(this.getSourceFile(), firstByteOffset, buffer.array(), byteCount, MAXIMUM_PUSHED_BYTE_COUNT)) {
+				if (message instanceof DataOfferMessage) {
+					this.sendDataOffer((DataOfferMessage) message);
+				} else {
+					this.sendMessage(message);
+				}
+			}
+		}
+		
+		/**
+		 * Reads the region of the stream of the source tree, which may span several files, and offers it.
+		 * 
+		 * @param firstByteOffset
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param byteCount
+		 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+		 */
+		private final void replyFromFileTree(final long firstByteOffset, final int byteCount) {
+			final ByteBuffer buffer = ByteBuffer.allocate(byteCount);
+			
+			try {
+				this.getFileTree().read(this.getSourceFile(), firstByteOffset, buffer, SendOperation.this.getSourceFileChannels());
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot read the bytes of " + this.getSourceFile() + " at offset " + firstByteOffset, exception);
+				
+				return;
+			}
+			
+			this.sendDataOffer(new DataOfferMessage(this.getSourceFile(), firstByteOffset, buffer.array()));
+		}
+		
+		/**
+		 * Splits the requested region of the source file into content-defined chunks and sends their hashes;
+		 * the last chunk starting in the region can end after it, so up to {@link ContentDefinedChunker#MAXIMUM_CHUNK_SIZE}
+		 * more bytes are read.
+		 * 
+		 * @param request
+		 * <br>Should not be null
+		 */
+		private final void replyWithChunkHashes(final ChunkHashesRequestMessage request) {
+			final long sourceByteCount = this.getSourceFile().length();
+			final long offset = request.getFirstByteOffset();
+			final int byteCount = (int) Math.min((long) request.getByteCount() + ContentDefinedChunker.MAXIMUM_CHUNK_SIZE, sourceByteCount - offset);
+			
+			if (byteCount <= 0) {
+				return;
+			}
+			
+			final ByteBuffer buffer = ByteBuffer.allocate(byteCount);
+			
+			try {
+				if (SendOperation.this.getSourceFileChannels().read(this.getSourceFile(), offset, buffer) < byteCount) {
+					throw new IOException(this.getSourceFile() + " is shorter than " + (offset + byteCount) + " bytes");
+				}
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot read the bytes of " + this.getSourceFile() + " at offset " + offset, exception);
+				
+				return;
+			}
+			
+			final byte[] bytes = buffer.array();
+			final boolean endOfFile = offset + byteCount == sourceByteCount;
+			final ByteArrayOutputStream hashes = new ByteArrayOutputStream();
+			int[] chunkByteCounts = new int[request.getByteCount() / ContentDefinedChunker.AVERAGE_CHUNK_SIZE + 1];
+			int chunkCount = 0;
+			
+			for (int start = 0; start < request.getByteCount() && start < byteCount;) {
+				// The end is always found because at least ContentDefinedChunker.MAXIMUM_CHUNK_SIZE bytes follow the start
+				final int end = ContentDefinedChunker.getChunkEnd(bytes, start, byteCount, endOfFile);
+				final byte[] hash = ChunkStore.computeHash(bytes, start, end - start);
+				
+				if (chunkCount == chunkByteCounts.length) {
+					chunkByteCounts = Arrays.copyOf(chunkByteCounts, 2 * chunkCount);
+				}
+				
+				chunkByteCounts[chunkCount++] = end - start;
+				hashes.write(hash, 0, hash.length);
+				start = end;
+			}
+			
+			this.sendMessage(new ChunkHashesMessage(this.getSourceFile(), offset, Arrays.copyOf(chunkByteCounts, chunkCount), hashes.toByteArray()));
+		}
+		
+		/**
+		 * Compresses {@code dataOffer} if compression has been negotiated on the connection, and sends it;
+		 * if the transfer is integrity-checked, the offered bytes are checksummed and added to the digest of the source file first.
+		 * 
+		 * @param dataOffer
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		private final void sendDataOffer(final DataOfferMessage dataOffer) {
+			final boolean integrityChecked = SendOperation.this.isIntegrityChecked();
+			final int checksum = integrityChecked ? this.checksum(dataOffer) : 0;
+			final DataOfferMessage message = SendOperation.this.getConnection().isCompressionNegotiated() ?
+					SendOperation.this.getOfferCompressor().compress(dataOffer) : dataOffer;
+			
+			if (integrityChecked) {
+				message.setChecksum(checksum);
+			}
+			
+			SendOperation.this.countDataOffer(message);
+			
+			this.sendMessage(message);
+		}
+		
+		/**
+		 * Reads the bytes of {@code dataOffer} and adds them to the digest of the source file, unless it is a directory.
+		 * <br>If the bytes are still in the source file, they are read through a buffer of {@link #CHECKSUM_BUFFER_SIZE} bytes
+		 * reused by this operation instead of being loaded into {@code dataOffer}, so that the offer can still be sent
+		 * directly from the source file.
+		 * 
+		 * @param dataOffer
+		 * <br>Should not be null
+		 * <br>Input-output parameter
+		 * @return the CRC-32C of the offered bytes
+		 * <br>Range: any int
+		 */
+		private final synchronized int checksum(final DataOfferMessage dataOffer) {
+			if (dataOffer.isInSourceFile() && this.getFileTree() == null) {
+				return this.checksumSourceFile(dataOffer.getFirstByteOffset(), dataOffer.getByteCount());
+			}
+			
+			final byte[] bytes = dataOffer.getBytes();
+			
+			if (this.getFileTree() != null) {
+				return Crc32c.compute(bytes);
+			}
+			
+			try {
+				// The source file is read directly if some bytes before the offered ones haven't been offered yet
+				this.getFileDigest().update(this.getSourceFile(), dataOffer.getFirstByteOffset());
+				this.getFileDigest().update(dataOffer.getFirstByteOffset(), bytes);
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot digest the bytes of " + this.getSourceFile() + " before offset " + dataOffer.getFirstByteOffset(), exception);
+			}
+			
+			return Crc32c.compute(bytes);
+		}
+		
+		/**
+		 * Reads {@code byteCount} bytes of the source file starting at {@code firstByteOffset} through the checksum buffer,
+		 * and adds them to the digest of the source file.
+		 * 
+		 * @param firstByteOffset
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param byteCount
+		 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+		 * @return the CRC-32C of the bytes
+		 * <br>Range: any int
+		 */
+		private final int checksumSourceFile(final long firstByteOffset, final int byteCount) {
+			final Crc32c crc = new Crc32c();
+			final FileDigest fileDigest = this.getFileDigest();
+			final File sourceFile = this.getSourceFile();
+			final long end = firstByteOffset + byteCount;
+			
+			if (this.checksumBuffer == null) {
+				this.checksumBuffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+			}
+			
+			try {
+				// The source file is read directly if some bytes before the offered ones haven't been offered yet
+				fileDigest.update(sourceFile, firstByteOffset);
 				
-				return input.read(buffer);
-			} finally {
-				if (input != null) {
-					input.close();
+				for (long position = firstByteOffset; position < end;) {
+					this.checksumBuffer.clear();
+					this.checksumBuffer.limit((int) Math.min(this.checksumBuffer.capacity(), end - position));
+					
+					final int readByteCount = SendOperation.this.getSourceFileChannels().read(sourceFile, position, this.checksumBuffer);
+					
+					if (readByteCount <= 0) {
+						throw new IOException(sourceFile + " is shorter than " + end + " bytes");
+					}
+					
+					crc.update(this.checksumBuffer.array(), 0, readByteCount);
+					fileDigest.update(position, this.checksumBuffer.array(), readByteCount);
+					position += readByteCount;
 				}
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot checksum the bytes of " + sourceFile + " before offset " + end, exception);
+			}
+			
+			return (int) crc.getValue();
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		private final synchronized FileDigest getFileDigest() {
+			if (this.fileDigest == null) {
+				this.fileDigest = new FileDigest();
+			}
+			
+			return this.fileDigest;
+		}
+		
+		/**
+		 * Completes the digest of the source file with the bytes that have never been offered, if any, and sends it.
+		 * 
+		 * @param totalByteCount
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		private final synchronized void sendFileDigest(final long totalByteCount) {
+			try {
+				this.getFileDigest().update(this.getSourceFile(), totalByteCount);
+				
+				this.sendMessage(new FileDigestMessage(this.getSourceFile(), this.getFileDigest().digest()));
+			} catch (final IOException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot send the digest of " + this.getSourceFile(), exception);
 			}
 		}
 		
@@ -151,13 +770,45 @@ public class SendOperation extends AbstractOperation {
 		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
 		 */
 		private final void dataReceived(final long byteCount, final long totalByteCount) {
-			SendOperation.this.setProgress((double) byteCount / totalByteCount);
+			SendOperation.this.setProgress(byteCount, totalByteCount);
+			
+			final FileTree fileTree = this.getFileTree();
 			
-			if (byteCount == totalByteCount) {
+			if (byteCount == totalByteCount && (fileTree == null || fileTree.isComplete())) {
+				// The digest of a tree is not computed, but its data offers are checksummed
+				if (SendOperation.this.isIntegrityChecked() && fileTree == null) {
+					this.sendFileDigest(totalByteCount);
+				}
+				
 				this.done();
 			}
 		}
 		
 	}
 	
+	/**
+	 * Maximum size of the data offers sent in push mode.
+	 */
+	public static final int MAXIMUM_PUSHED_BYTE_COUNT = 65536;
+	
+	/**
+	 * Maximum number of source files kept open by {@link #SOURCE_FILE_CHANNELS}.
+	 */
+	public static final int MAXIMUM_OPEN_SOURCE_FILE_COUNT = 64;
+	
+	/**
+	 * Time in milliseconds after which an unused source file is closed by {@link #SOURCE_FILE_CHANNELS}.
+	 */
+	public static final long SOURCE_FILE_IDLE_TIMEOUT = 30000L;
+	
+	/**
+	 * Source file channels shared by default by all send operations.
+	 */
+	public static final FileChannelCache SOURCE_FILE_CHANNELS = new FileChannelCache(MAXIMUM_OPEN_SOURCE_FILE_COUNT, SOURCE_FILE_IDLE_TIMEOUT);
+	
+	/**
+	 * Size of the buffer through which the bytes of the source file are checksummed.
+	 */
+	private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+	
 }
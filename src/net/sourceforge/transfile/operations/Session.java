@@ -22,9 +22,13 @@ package net.sourceforge.transfile.operations;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import net.sourceforge.transfile.operations.ReceiveOperation.DestinationFileProvider;
 import net.sourceforge.transfile.operations.messages.FileOfferMessage;
+import net.sourceforge.transfile.operations.messages.FileOffersMessage;
 import net.sourceforge.transfile.operations.messages.Message;
 
 /**
@@ -41,6 +45,26 @@ public class Session {
 	
 	private final DestinationFileProvider destinationFileProvider;
 	
+	private final OperationScheduler scheduler;
+	
+	private TransferJournal transferJournal;
+	
+	private boolean integrityChecked;
+	
+	private boolean deltaEnabled;
+	
+	private ChunkStore chunkStore;
+	
+	private long operationRate;
+	
+	private int requestWindowSize;
+	
+	private boolean chunkSizeAdaptive;
+	
+	private boolean destinationMapped;
+	
+	private boolean pushMode;
+	
 	/**
 	 * 
 	 * @param connection
@@ -54,25 +78,129 @@ public class Session {
 		this.listeners = new ArrayList<Listener>();
 		this.connection = connection;
 		this.destinationFileProvider = destinationFileProvider;
+		this.scheduler = new OperationScheduler();
+		this.requestWindowSize = ReceiveOperation.DEFAULT_REQUEST_WINDOW_SIZE;
 		
 		this.getConnection().addConnectionListener(this.new FileOfferReceiver());
 	}
 	
 	/**
-	 * TODO doc
+	 * The transfer is integrity-checked if {@code this.isIntegrityChecked()}.
 	 * 
 	 * @param file
 	 * <br>Should not be null
 	 * <br>Shared parameter
 	 */
 	public final void offerFile(final File file) {
-		final SendOperation sendOperation = new SendOperation(this.getConnection(), file);
+		this.offer(file, false);
+	}
+	
+	/**
+	 * Offers a directory with all its entries: the remote receive operation recreates its tree,
+	 * and the bytes of all its files are transferred as a single stream (see {@link FileTree}),
+	 * so that each small file doesn't cost a file offer, an operation and a data request.
+	 * <br>The tree is scanned in parallel when the remote receive operation starts,
+	 * and it is sent in manifest messages as it is scanned.
+	 * <br>If {@code this.isIntegrityChecked()}, the data offers are checksummed, but the digests of the files are not verified.
+	 * 
+	 * @param directory
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public final void offerDirectory(final File directory) {
+		this.offer(directory, true);
+	}
+	
+	/**
+	 * Offers several files and directories with as few messages as possible (see {@link FileOffersMessage}):
+	 * the remote session creates all the receive operations at once,
+	 * and the destination chosen for the first of them that starts is used for the others.
+	 * <br>The transfers are integrity-checked if {@code this.isIntegrityChecked()}.
+	 * 
+	 * @param files
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public final void offerFiles(final Collection<File> files) {
+		final List<FileOfferMessage> fileOffers = new ArrayList<FileOfferMessage>();
+		final int batchId = this.getConnection().newStreamId();
+		int pathLength = 0;
+		
+		for (final File file : files) {
+			if (!fileOffers.isEmpty() && (MAXIMUM_BATCHED_OFFER_COUNT <= fileOffers.size() || MAXIMUM_BATCHED_PATH_LENGTH < pathLength + file.getPath().length())) {
+				this.sendFileOffers(batchId, fileOffers, false);
+				pathLength = 0;
+			}
+			
+			fileOffers.add(this.newFileOffer(file, file.isDirectory()));
+			pathLength += file.getPath().length();
+		}
+		
+		if (!fileOffers.isEmpty()) {
+			this.sendFileOffers(batchId, fileOffers, true);
+		}
+	}
+	
+	/**
+	 * Sends {@code fileOffers} and clears it.
+	 * 
+	 * @param batchId
+	 * <br>Range: any int
+	 * @param fileOffers
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param last
+	 * <br>Range: any boolean
+	 */
+	private final void sendFileOffers(final int batchId, final List<FileOfferMessage> fileOffers, final boolean last) {
+		this.getConnection().sendMessage(new FileOffersMessage(batchId, fileOffers.toArray(new FileOfferMessage[fileOffers.size()]), last));
+		
+		fileOffers.clear();
+	}
+	
+	/**
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param directory
+	 * <br>Range: any boolean
+	 */
+	private final void offer(final File file, final boolean directory) {
+		this.getConnection().sendMessage(this.newFileOffer(file, directory));
+	}
+	
+	/**
+	 * Creates the send operation for {@code file} and notifies the listeners.
+	 * <br>The operation gets a new stream identifier from the connection,
+	 * so that the messages concerning it are dispatched directly to it.
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param directory
+	 * <br>Range: any boolean
+	 * @return the offer to send for the new operation
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private final FileOfferMessage newFileOffer(final File file, final boolean directory) {
+		final SendOperation sendOperation = new SendOperation(this.getConnection(), file, SendOperation.SOURCE_FILE_CHANNELS, this.getConnection().newStreamId());
+		final boolean integrityChecked = this.isIntegrityChecked();
+		
+		sendOperation.setIntegrityChecked(integrityChecked);
+		sendOperation.getRateLimiter().setRate(this.getOperationRate());
+		this.getScheduler().add(sendOperation);
 		
 		for (final Listener listener : this.getListeners()) {
 			listener.sendOperationAdded(sendOperation);
 		}
 		
-		this.getConnection().sendMessage(new FileOfferMessage(file));
+		final FileOfferMessage result = new FileOfferMessage(file, directory ? 0L : file.length(), integrityChecked, directory);
+		
+		result.setStreamId(sendOperation.getStreamId());
+		
+		return result;
 	}
 	
 	/**
@@ -95,6 +223,197 @@ public class Session {
 		return this.destinationFileProvider;
 	}
 	
+	/**
+	 * The operations of this session are added to the scheduler when they are created,
+	 * but they are only started by it once they are scheduled.
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final OperationScheduler getScheduler() {
+		return this.scheduler;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	public final synchronized TransferJournal getTransferJournal() {
+		return this.transferJournal;
+	}
+	
+	/**
+	 * The journal is given to the receive operations created after this call.
+	 * 
+	 * @param transferJournal
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 * @see ReceiveOperation#setTransferJournal(TransferJournal)
+	 */
+	public final synchronized void setTransferJournal(final TransferJournal transferJournal) {
+		this.transferJournal = transferJournal;
+	}
+	
+	public final synchronized boolean isIntegrityChecked() {
+		return this.integrityChecked;
+	}
+	
+	/**
+	 * Applies to the files offered after this call.
+	 * 
+	 * @param integrityChecked
+	 * <br>Range: any boolean
+	 * @see SendOperation#setIntegrityChecked(boolean)
+	 */
+	public final synchronized void setIntegrityChecked(final boolean integrityChecked) {
+		this.integrityChecked = integrityChecked;
+	}
+	
+	public final synchronized boolean isDeltaEnabled() {
+		return this.deltaEnabled;
+	}
+	
+	/**
+	 * Applies to the files received after this call.
+	 * 
+	 * @param deltaEnabled
+	 * <br>Range: any boolean
+	 * @see ReceiveOperation#setDeltaEnabled(boolean)
+	 */
+	public final synchronized void setDeltaEnabled(final boolean deltaEnabled) {
+		this.deltaEnabled = deltaEnabled;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 */
+	public final synchronized ChunkStore getChunkStore() {
+		return this.chunkStore;
+	}
+	
+	/**
+	 * The chunk store is given to the receive operations created after this call.
+	 * 
+	 * @param chunkStore
+	 * <br>Can be null
+	 * <br>Shared parameter
+	 * @see ReceiveOperation#setChunkStore(ChunkStore)
+	 */
+	public final synchronized void setChunkStore(final ChunkStore chunkStore) {
+		this.chunkStore = chunkStore;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getRequestWindowSize() {
+		return this.requestWindowSize;
+	}
+	
+	/**
+	 * Applies to the files received after this call.
+	 * 
+	 * @param requestWindowSize
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @throws IllegalArgumentException if {@code requestWindowSize < 1}
+	 * @see ReceiveOperation#setRequestWindowSize(int)
+	 */
+	public final synchronized void setRequestWindowSize(final int requestWindowSize) {
+		if (requestWindowSize < 1) {
+			throw new IllegalArgumentException("Invalid request window size: " + requestWindowSize);
+		}
+		
+		this.requestWindowSize = requestWindowSize;
+	}
+	
+	public final synchronized boolean isChunkSizeAdaptive() {
+		return this.chunkSizeAdaptive;
+	}
+	
+	/**
+	 * If {@code chunkSizeAdaptive}, each file received after this call gets its own {@link ChunkSizer};
+	 * otherwise, the data requests ask for {@link ReceiveOperation#PREFERRED_TRANSFERRED_BYTE_COUNT} bytes.
+	 * 
+	 * @param chunkSizeAdaptive
+	 * <br>Range: any boolean
+	 * @see ReceiveOperation#setChunkSizer(ChunkSizer)
+	 */
+	public final synchronized void setChunkSizeAdaptive(final boolean chunkSizeAdaptive) {
+		this.chunkSizeAdaptive = chunkSizeAdaptive;
+	}
+	
+	public final synchronized boolean isDestinationMapped() {
+		return this.destinationMapped;
+	}
+	
+	/**
+	 * Applies to the files received after this call.
+	 * 
+	 * @param destinationMapped
+	 * <br>Range: any boolean
+	 * @see ReceiveOperation#setDestinationMapped(boolean)
+	 */
+	public final synchronized void setDestinationMapped(final boolean destinationMapped) {
+		this.destinationMapped = destinationMapped;
+	}
+	
+	public final synchronized boolean isPushMode() {
+		return this.pushMode;
+	}
+	
+	/**
+	 * Applies to the files received after this call.
+	 * 
+	 * @param pushMode
+	 * <br>Range: any boolean
+	 * @see ReceiveOperation#setPushMode(boolean)
+	 */
+	public final synchronized void setPushMode(final boolean pushMode) {
+		this.pushMode = pushMode;
+	}
+	
+	/**
+	 * 
+	 * @return the maximum rate of each operation in bytes per second, or {@code 0L} for no limit
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final synchronized long getOperationRate() {
+		return this.operationRate;
+	}
+	
+	/**
+	 * Applies to the operations of this session that have not been removed and to the ones created after this call.
+	 * <br>The rate of the whole connection is set with {@code this.getConnection().getRateLimiter()}.
+	 * 
+	 * @param operationRate in bytes per second, or {@code 0L} for no limit
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @throws IllegalArgumentException if {@code operationRate < 0L}
+	 * @see RateLimiter#setRate(long)
+	 */
+	public final void setOperationRate(final long operationRate) {
+		if (operationRate < 0L) {
+			throw new IllegalArgumentException("Invalid rate: " + operationRate);
+		}
+		
+		synchronized (this) {
+			this.operationRate = operationRate;
+		}
+		
+		for (final Operation operation : this.getScheduler().getOperations()) {
+			if (operation instanceof AbstractOperation) {
+				((AbstractOperation) operation).getRateLimiter().setRate(operationRate);
+			}
+		}
+	}
+	
 	/**
 	 * 
 	 * @param listener
@@ -132,26 +451,146 @@ public class Session {
 	 */
 	private final class FileOfferReceiver extends Connection.AbstractListener {
 		
+		private final Map<Integer, BatchDestinationFileProvider> batchDestinationFileProviders;
+		
 		/**
 		 * Package-private default contructor to suppress visibility warnings.
 		 */
 		FileOfferReceiver() {
-			// Do nothing
+			this.batchDestinationFileProviders = new HashMap<Integer, BatchDestinationFileProvider>();
 		}
 		
 		@Override
 		public final void doMessageReceived(final Message message) {
 			if (message instanceof FileOfferMessage) {
-				final ReceiveOperation receiveOperation = new ReceiveOperation(Session.this.getConnection(), (FileOfferMessage) message, Session.this.getDestinationFileProvider());
+				this.receiveOperationsAdded(this.newReceiveOperation((FileOfferMessage) message, Session.this.getDestinationFileProvider()));
+			} else if (message instanceof FileOffersMessage) {
+				this.fileOffersReceived((FileOffersMessage) message);
+			}
+		}
+		
+		/**
+		 * Creates the receive operations of the batch, which share a single destination decision,
+		 * before notifying the listeners.
+		 * 
+		 * @param fileOffers
+		 * <br>Should not be null
+		 */
+		private final void fileOffersReceived(final FileOffersMessage fileOffers) {
+			BatchDestinationFileProvider destinationFileProvider = this.batchDestinationFileProviders.get(fileOffers.getBatchId());
+			
+			if (destinationFileProvider == null) {
+				destinationFileProvider = new BatchDestinationFileProvider(Session.this.getDestinationFileProvider());
 				
-				for (final Listener listener : Session.this.getListeners()) {
+				if (!fileOffers.isLast()) {
+					this.batchDestinationFileProviders.put(fileOffers.getBatchId(), destinationFileProvider);
+				}
+			} else if (fileOffers.isLast()) {
+				this.batchDestinationFileProviders.remove(fileOffers.getBatchId());
+			}
+			
+			final ReceiveOperation[] receiveOperations = new ReceiveOperation[fileOffers.getFileOffers().length];
+			
+			for (int i = 0; i < receiveOperations.length; ++i) {
+				receiveOperations[i] = this.newReceiveOperation(fileOffers.getFileOffers()[i], destinationFileProvider);
+			}
+			
+			this.receiveOperationsAdded(receiveOperations);
+		}
+		
+		/**
+		 * 
+		 * @param fileOffer
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @param destinationFileProvider
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @return
+		 * <br>A non-null value
+		 * <br>A new value
+		 */
+		private final ReceiveOperation newReceiveOperation(final FileOfferMessage fileOffer, final DestinationFileProvider destinationFileProvider) {
+			final ReceiveOperation result = new ReceiveOperation(Session.this.getConnection(), fileOffer, destinationFileProvider);
+			
+			result.setTransferJournal(Session.this.getTransferJournal());
+			result.setRequestWindowSize(Session.this.getRequestWindowSize());
+			result.setDestinationMapped(Session.this.isDestinationMapped());
+			result.setPushMode(Session.this.isPushMode());
+			result.setDeltaEnabled(Session.this.isDeltaEnabled());
+			result.setChunkStore(Session.this.getChunkStore());
+			result.getRateLimiter().setRate(Session.this.getOperationRate());
+			
+			if (Session.this.isChunkSizeAdaptive()) {
+				result.setChunkSizer(new ChunkSizer());
+			}
+			
+			Session.this.getScheduler().add(result);
+			
+			return result;
+		}
+		
+		/**
+		 * 
+		 * @param receiveOperations
+		 * <br>Should not be null
+		 */
+		private final void receiveOperationsAdded(final ReceiveOperation... receiveOperations) {
+			final Listener[] listeners = Session.this.getListeners();
+			
+			for (final ReceiveOperation receiveOperation : receiveOperations) {
+				for (final Listener listener : listeners) {
 					listener.receiveOperationAdded(receiveOperation);
 				}
 			}
 		}
 		
 	}
-
+	
+	/**
+	 * Asks another provider for the destination of the first file of a batch, and puts the other files of the batch
+	 * in the same directory.
+	 * <br>If the other provider gives no destination, it is asked again for the next file.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private static final class BatchDestinationFileProvider implements DestinationFileProvider {
+		
+		private final DestinationFileProvider destinationFileProvider;
+		
+		private File destinationDirectory;
+		
+		/**
+		 * 
+		 * @param destinationFileProvider
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		BatchDestinationFileProvider(final DestinationFileProvider destinationFileProvider) {
+			this.destinationFileProvider = destinationFileProvider;
+		}
+		
+		/**
+		 * Blocks while the other provider is choosing the destination of the batch.
+		 */
+		@Override
+		public final synchronized File getDestinationFile(final String fileName) {
+			if (this.destinationDirectory != null) {
+				return new File(this.destinationDirectory, fileName);
+			}
+			
+			final File result = this.destinationFileProvider.getDestinationFile(fileName);
+			
+			if (result != null) {
+				this.destinationDirectory = result.getAbsoluteFile().getParentFile();
+			}
+			
+			return result;
+		}
+		
+	}
+	
 	/**
 	 * TODO doc
 	 *
@@ -178,4 +617,15 @@ public class Session {
 		
 	}
 	
+	/**
+	 * Maximum number of file offers in a {@link FileOffersMessage}.
+	 */
+	public static final int MAXIMUM_BATCHED_OFFER_COUNT = 1024;
+	
+	/**
+	 * Maximum total length of the paths in a {@link FileOffersMessage} (unless it contains a single offer),
+	 * so that its header is not considered corrupted (see {@link BinaryMessageCodec#MAXIMUM_HEADER_LENGTH}).
+	 */
+	public static final int MAXIMUM_BATCHED_PATH_LENGTH = 256 * 1024;
+	
 }
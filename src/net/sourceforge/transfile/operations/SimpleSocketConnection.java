@@ -19,32 +19,36 @@
 
 package net.sourceforge.transfile.operations;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.logging.Level;
 
 import net.sourceforge.transfile.operations.messages.DisconnectMessage;
 import net.sourceforge.transfile.operations.messages.Message;
 import net.sourceforge.jenerics.Tools;
 
 /**
- * TODO doc
+ * Sends serialized messages through a buffered object output stream;
+ * the messages are written by an {@link AsynchronousMessageWriter}, so that sending a message doesn't wait for the socket
+ * unless too many messages are already waiting.
+ * <br>If a message cannot be written, the connection error is set and the connection is closed.
  *
  * @author codistmonk (creation 2010-06-15)
  *
  */
-public class SimpleSocketConnection extends AbstractConnection {
+public class SimpleSocketConnection extends AbstractSocketConnection {
 	
-	private ExecutorService executor;
+	private AsynchronousMessageWriter output;
 	
-	private ObjectOutputStream output;
+	private int resetMessageCount;
+	
+	private long resetByteCount;
 	
 	public SimpleSocketConnection() {
-		// Do nothing
+		this(DEFAULT_LOCAL_PEER, DEFAULT_REMOTE_PEER);
 	}
 	
 	/**
@@ -58,213 +62,139 @@ public class SimpleSocketConnection extends AbstractConnection {
 	 */
 	public SimpleSocketConnection(final String localPeer, final String remotePeer) {
 		super(localPeer, remotePeer);
+		this.resetMessageCount = AsynchronousMessageWriter.DEFAULT_RESET_MESSAGE_COUNT;
+		this.resetByteCount = AsynchronousMessageWriter.DEFAULT_RESET_BYTE_COUNT;
 	}
 	
-	@Override
-	public final void connect() {
-		if (this.getState() == State.DISCONNECTED) {
-			this.setConnectionError(null);
-			this.setState(State.CONNECTING);
-			Tools.debugPrint("Connecting", this.getLocalPeer(), "to", this.getRemotePeer());
-			this.getExecutor().execute(this.new ConnectionTask());
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getResetMessageCount() {
+		return this.resetMessageCount;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1L .. Long.MAX_VALUE]}
+	 */
+	public final synchronized long getResetByteCount() {
+		return this.resetByteCount;
+	}
+	
+	/**
+	 * The object output stream is reset after {@code resetMessageCount} messages or {@code resetByteCount} bytes of data offers,
+	 * whichever comes first, so that the sent messages don't stay reachable from its handle table;
+	 * the remote object input stream clears its own handle table when it reads the reset marker.
+	 * <br>Takes effect at the next connection.
+	 * 
+	 * @param resetMessageCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param resetByteCount
+	 * <br>Range: {@code [1L .. Long.MAX_VALUE]}
+	 * @throws IllegalArgumentException if {@code resetMessageCount < 1} or {@code resetByteCount < 1L}
+	 */
+	public final synchronized void setResetPolicy(final int resetMessageCount, final long resetByteCount) {
+		if (resetMessageCount < 1 || resetByteCount < 1L) {
+			throw new IllegalArgumentException("Invalid reset policy: " + resetMessageCount + " messages, " + resetByteCount + " bytes");
 		}
+		
+		this.resetMessageCount = resetMessageCount;
+		this.resetByteCount = resetByteCount;
 	}
 	
 	@Override
-	public final void disconnect() {
-		try {
-			if (this.output != null) {
-				this.sendMessage(new DisconnectMessage());
-			}
-		} finally {
-			this.setExecutor(null);
-		}
+	protected final synchronized boolean hasOutput() {
+		return this.output != null;
 	}
 	
 	@Override
-	public final synchronized void doSendMessage(final Message message) {
-		try {
-			if (this.output != null) {
-				this.output.writeObject(message);
-				this.output.flush();
-			}
-		} catch (final IOException exception) {
-			exception.printStackTrace();
-		}
+	protected final void closeOutput() {
+		this.setOutput(null);
 	}
 	
-	/**
-	 * 
-	 * @param output
-	 * <br>Should not be null
-	 * <br>Shared parameter
-	 */
-	final void setOutput(final ObjectOutputStream output) {
-		synchronized (this) {
-			if (output != this.output && this.output != null) {
-				try {
-					this.output.close();
-				} catch (final Exception exception) {
-					this.setConnectionError(exception);
-				}
+	@Override
+	protected final void prepareToReadAndWrite(final Socket socket) throws IOException {
+		final ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE));
+		
+		// The stream header must reach the remote peer before its input stream can be created
+		output.flush();
+		
+		this.setOutput(new AsynchronousMessageWriter(output, this.getResetMessageCount(), this.getResetByteCount()) {
+			
+			@Override
+			protected final void writingFailed(final IOException error) {
+				SimpleSocketConnection.this.outputFailed(this, error);
 			}
 			
-			this.output = output;
-		}
-		
-		if (this.output != null) {
-			this.setState(State.CONNECTED);
-		}
+		});
+		this.startReceptionTask(this.new ReceptionTask(socket));
 	}
 	
-	/**
-	 * 
-	 * @return
-	 * <br>A non-null value
-	 * <br>A shared value
-	 */
-	final synchronized ExecutorService getExecutor() {
-		if (this.executor == null) {
-			this.executor = Executors.newSingleThreadExecutor();
+	@Override
+	public final void doSendMessage(final Message message) {
+		final AsynchronousMessageWriter output;
+		
+		synchronized (this) {
+			output = this.output;
 		}
 		
-		return this.executor;
+		if (output != null) {
+			output.write(message);
+		}
 	}
 	
 	/**
+	 * Closes the connection if {@code output} is still its output.
+	 * <br>Called in the writer thread.
 	 * 
-	 * @param executor
-	 * <br>Can be null
+	 * @param output
+	 * <br>Should not be null
+	 * @param error
+	 * <br>Should not be null
 	 * <br>Shared parameter
 	 */
-	final void setExecutor(final ExecutorService executor) {
-		if (executor != this.getExecutor() && this.getExecutor() != null) {
-			try {
-				synchronized (this) {
-					this.getExecutor().shutdownNow();
-				}
-				
-				this.setState(State.DISCONNECTED);
-			} finally {
-				this.setOutput(null);
+	final void outputFailed(final AsynchronousMessageWriter output, final IOException error) {
+		synchronized (this) {
+			if (this.output != output) {
+				return;
 			}
 		}
 		
-		this.executor = executor;
+		Tools.getLoggerForThisMethod().log(Level.WARNING, "Cannot write to " + this.getRemotePeer(), error);
+		
+		this.setConnectionError(error);
+		this.disconnect();
 	}
 	
 	/**
-	 * TODO doc
-	 *
-	 * @author codistmonk (creation 2010-06-15)
-	 *
+	 * 
+	 * @param output
+	 * <br>Should not be null
+	 * <br>Shared parameter
 	 */
-	private class ConnectionTask implements Runnable {
+	final void setOutput(final AsynchronousMessageWriter output) {
+		final AsynchronousMessageWriter oldOutput;
 		
-		/**
-		 * Package-private default constructor to suppress visibility warnings.
-		 */
-		ConnectionTask() {
-			// Do nothing
+		synchronized (this) {
+			oldOutput = this.output;
+			this.output = output;
 		}
 		
-		@Override
-		public final void run() {
-			// TODO find a better fix
-			// If a connection is canceled (using disconnect()) while the socket is trying to connect,
-			// then the socket will still be able to connect before timing out, thus preventing a new
-			// connection with the same port to be established, and also making the peer connection
-			// unavailable (connected to an unused socket)
-			// The following call to sleep() is a quick fix to this problem encountered during testing
-			try {
-				Thread.sleep(2 * CONNECT_INTERVAL);
-			} catch (final InterruptedException exception1) {
-				return;
-			}
+		if (oldOutput != null && oldOutput != output) {
+			// The queued messages (including the disconnect message) are written before the socket is closed
+			oldOutput.close(OUTPUT_CLOSE_TIMEOUT);
 			
-			final long maximumTime = System.currentTimeMillis() + CONNECT_TIMEOUT;
-			final InetSocketAddress localAddress = new InetSocketAddress(getPort(SimpleSocketConnection.this.getLocalPeer()));
-			final InetSocketAddress remoteAddress = getInetSocketAddress(SimpleSocketConnection.this.getRemotePeer());
-			
-			if (this.connect(maximumTime, localAddress, remoteAddress) == null) {
-				SimpleSocketConnection.this.setExecutor(null);
+			if (oldOutput.getError() != null) {
+				this.setConnectionError(oldOutput.getError());
 			}
 		}
-
-		/**
-		 * TODO doc
-		 * <br>Blocking.
-		 * 
-		 * @param maximumTime
-		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
-		 * @param localAddress
-		 * <br>Not null
-		 * <br>Shared
-		 * @param remoteAddress
-		 * <br>Not null
-		 * <br>Shared
-		 * @return
-		 * <br>Not null
-		 * <br>New
-		 */
-		private final Socket connect(final long maximumTime, final InetSocketAddress localAddress, final InetSocketAddress remoteAddress) {
-			do {
-				SimpleSocketConnection.this.setConnectionError(null);
-				
-				try {
-					return this.prepareToReadAndWrite(this.connect(localAddress, remoteAddress));
-				} catch (final Exception exception) {
-					SimpleSocketConnection.this.setConnectionError(exception);
-				}
-			} while (System.currentTimeMillis() < maximumTime && !Thread.currentThread().isInterrupted());
-			
-			return null;
-		}
 		
-		/**
-		 * TODO doc
-		 * 
-		 * @param socket
-		 * <br>Not null
-		 * @return {@code socket}
-		 * <br>Not null
-		 * @throws IOException if an I/O error occurs
-		 */
-		private final Socket prepareToReadAndWrite(final Socket socket) throws IOException {
-			SimpleSocketConnection.this.setOutput(new ObjectOutputStream(socket.getOutputStream()));
-			SimpleSocketConnection.this.getExecutor().execute(SimpleSocketConnection.this.new ReceptionTask(socket));
-			
-			return socket;
-		}
-		
-		/**
-		 * TODO doc
-		 * <br>Blocking.
-		 * 
-		 * @param localAddress
-		 * <br>Not null
-		 * <br>Shared
-		 * @param remoteAddress
-		 * <br>Not null
-		 * <br>Shared
-		 * @return
-		 * <br>Not null
-		 * <br>New
-		 * @throws Exception if an error occurs
-		 */
-		private final Socket connect(final InetSocketAddress localAddress, final InetSocketAddress remoteAddress) throws Exception {
-			final Socket result = new Socket();
-			
-			result.setReuseAddress(true);
-			result.setSoTimeout(0);
-			result.bind(localAddress);
-			result.connect(remoteAddress, CONNECT_INTERVAL);
-			
-			Tools.debugPrint(SimpleSocketConnection.this, result);
-			
-			return result;
+		if (this.output != null) {
+			this.setState(State.CONNECTED);
 		}
-		
 	}
 	
 	/**
@@ -290,12 +220,8 @@ public class SimpleSocketConnection extends AbstractConnection {
 		
 		@Override
 		public final void run() {
-			try {
-				this.setInput();
-				this.receiveAndProcessObjects();
-			} finally {
-				SimpleSocketConnection.this.setExecutor(null);
-			}
+			this.setInput();
+			this.receiveAndProcessObjects();
 		}
 
 		/**
@@ -333,6 +259,8 @@ public class SimpleSocketConnection extends AbstractConnection {
 		
 		/**
 		 * Waits for an object and then dispatches it if it is an instance of {@link Message}.
+		 * <br>The objects read don't stay reachable from the input stream after the next reset marker
+		 * written by the remote {@link AsynchronousMessageWriter}.
 		 * <br>Blocking.
 		 * 
 		 * @return
@@ -353,35 +281,14 @@ public class SimpleSocketConnection extends AbstractConnection {
 		
 	}
 	
-	static final Object STOP = null;
-	
-	static final Object RETRY = "retry";
-	
 	/**
-	 * Time in milliseconds.
+	 * Size in bytes of the output buffer; a full buffer is written to the socket without waiting for the queue to be empty.
 	 */
-	public static final int CONNECT_INTERVAL = 100;
+	public static final int OUTPUT_BUFFER_SIZE = 65536;
 	
 	/**
 	 * Time in milliseconds.
 	 */
-	public static final long CONNECT_TIMEOUT = 20000L;
-	
-	/**
-	 * TODO doc
-	 * 
-	 * @param peer
-	 * <br>Should not be null
-	 * @return
-	 * <br>A non-null value
-	 * <br>A new value
-	 */
-	public static final InetSocketAddress getInetSocketAddress(final String peer) {
-		final String[] protocolHostPort = getProtocolHostPort(peer);
-		final String host = protocolHostPort[1];
-		final int port = Integer.parseInt(protocolHostPort[2]);
-		
-		return new InetSocketAddress(host, port);
-	}
+	public static final long OUTPUT_CLOSE_TIMEOUT = 1000L;
 	
 }
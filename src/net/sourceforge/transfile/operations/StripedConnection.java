@@ -0,0 +1,669 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+
+import net.sourceforge.jenerics.Tools;
+import net.sourceforge.transfile.operations.messages.AbstractDataMessage;
+import net.sourceforge.transfile.operations.messages.BlockCopyMessage;
+import net.sourceforge.transfile.operations.messages.DataCreditMessage;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DataRequestMessage;
+import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+
+/**
+ * Spreads the data offers over several parallel connections (the lanes) to the same peer,
+ * so that a long fat link can be filled even if a single TCP stream cannot fill it.
+ * <br>Lane {@code i} uses the ports of the local and remote peers plus {@code i}.
+ * <br>The control messages are sent on the first lane, and consecutive data offers are sent on consecutive lanes.
+ * <br>On the receiving side, the data offers of each stream are dispatched in the order of the requests sent on this connection,
+ * or in offset order after a credit has been sent (offers arriving early are kept until the previous ones have arrived),
+ * so that a receive operation writing sequentially sees the same order as with a single stream.
+ * <br>The messages received on all lanes are dispatched by one thread at a time.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class StripedConnection extends AbstractConnection {
+	
+	private final LaneFactory laneFactory;
+	
+	private int laneCount;
+	
+	private boolean autoTuning;
+	
+	private Connection[] lanes;
+	
+	private Listener[] laneListeners;
+	
+	private String laneLocalPeer;
+	
+	private String laneRemotePeer;
+	
+	private LaneTuner tuner;
+	
+	private int nextDataLane;
+	
+	private boolean disconnecting;
+	
+	private boolean disconnectMessageForwarded;
+	
+	private final List<Message> deliveries;
+	
+	private boolean delivering;
+	
+	private final IntHashMap<Reassembly> reassemblies;
+	
+	public StripedConnection() {
+		this(DEFAULT_LOCAL_PEER, DEFAULT_REMOTE_PEER, DEFAULT_LANE_COUNT, SOCKET_LANES);
+	}
+	
+	/**
+	 * 
+	 * @param localPeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param remotePeer
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param laneCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param laneFactory
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public StripedConnection(final String localPeer, final String remotePeer, final int laneCount, final LaneFactory laneFactory) {
+		super(localPeer, remotePeer);
+		this.laneFactory = laneFactory;
+		this.laneCount = laneCount;
+		this.deliveries = new ArrayList<Message>();
+		this.reassemblies = new IntHashMap<Reassembly>();
+		
+		this.createLanes();
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final synchronized int getLaneCount() {
+		return this.laneCount;
+	}
+	
+	/**
+	 * The lanes are created again at the next connection.
+	 * 
+	 * @param laneCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @throws IllegalStateException if this connection is not disconnected
+	 */
+	public final synchronized void setLaneCount(final int laneCount) {
+		if (this.getState() != State.DISCONNECTED) {
+			throw new IllegalStateException(this.getState().toString());
+		}
+		
+		this.laneCount = laneCount;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: any boolean
+	 */
+	public final synchronized boolean isAutoTuning() {
+		return this.autoTuning;
+	}
+	
+	/**
+	 * When auto-tuning is enabled, all the lanes are connected,
+	 * but the data offers are only sent on the number of lanes chosen by a {@link LaneTuner} from the measured throughput.
+	 * <br>Takes effect at the next connection.
+	 * 
+	 * @param autoTuning
+	 * <br>Range: any boolean
+	 */
+	public final synchronized void setAutoTuning(final boolean autoTuning) {
+		this.autoTuning = autoTuning;
+	}
+	
+	/**
+	 * 
+	 * @return the number of lanes on which the data offers are currently sent
+	 * <br>Range: {@code [1 .. this.getLaneCount()]}
+	 */
+	public final synchronized int getActiveLaneCount() {
+		return this.tuner == null ? this.lanes.length : Math.min(this.tuner.getLaneCount(), this.lanes.length);
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	final synchronized Connection[] getLanes() {
+		return this.lanes;
+	}
+	
+	@Override
+	public final void connect() {
+		final Connection[] lanes;
+		
+		synchronized (this) {
+			if (this.getState() != State.DISCONNECTED) {
+				return;
+			}
+			
+			if (this.lanes.length != this.getLaneCount() ||
+					!this.getLocalPeer().equals(this.laneLocalPeer) || !this.getRemotePeer().equals(this.laneRemotePeer)) {
+				this.createLanes();
+			}
+			
+			lanes = this.lanes;
+			this.tuner = this.isAutoTuning() ? new LaneTuner(lanes.length) : null;
+			this.nextDataLane = 0;
+			this.disconnecting = false;
+			this.disconnectMessageForwarded = false;
+		}
+		
+		synchronized (this.deliveries) {
+			this.deliveries.clear();
+			this.reassemblies.clear();
+		}
+		
+		this.setConnectionError(null);
+		this.setState(State.CONNECTING);
+		
+		for (final Connection lane : lanes) {
+			if (this.getState() != State.CONNECTING) {
+				break;
+			}
+			
+			lane.connect();
+		}
+	}
+	
+	@Override
+	public final void disconnect() {
+		if (this.getState() == State.DISCONNECTED) {
+			return;
+		}
+		
+		synchronized (this) {
+			this.disconnecting = true;
+		}
+		
+		this.sendMessage(new DisconnectMessage());
+		this.disconnectLanes();
+		this.setState(State.DISCONNECTED);
+	}
+	
+	@Override
+	protected final void doSendMessage(final Message message) {
+		if (message instanceof DataOfferMessage) {
+			final DataOfferMessage dataOffer = (DataOfferMessage) message;
+			final Connection lane;
+			
+			synchronized (this) {
+				if (this.tuner != null) {
+					this.tuner.bytesSent(dataOffer.getByteCount(), System.nanoTime());
+				}
+				
+				final int activeLaneCount = this.getActiveLaneCount();
+				
+				this.nextDataLane = (this.nextDataLane + 1) % activeLaneCount;
+				lane = this.lanes[this.nextDataLane];
+			}
+			
+			lane.sendMessage(message);
+			
+			return;
+		}
+		
+		if (message instanceof DataRequestMessage) {
+			this.dataRequestSent((DataRequestMessage) message);
+		} else if (message instanceof DataCreditMessage) {
+			this.dataCreditSent((DataCreditMessage) message);
+		}
+		
+		this.getLanes()[0].sendMessage(message);
+	}
+	
+	/**
+	 * Creates the lanes for the current peers and lane count.
+	 */
+	private final synchronized void createLanes() {
+		if (this.lanes != null) {
+			for (int i = 0; i < this.lanes.length; ++i) {
+				this.lanes[i].removeConnectionListener(this.laneListeners[i]);
+			}
+		}
+		
+		this.laneLocalPeer = this.getLocalPeer();
+		this.laneRemotePeer = this.getRemotePeer();
+		this.lanes = new Connection[this.getLaneCount()];
+		this.laneListeners = new Listener[this.lanes.length];
+		
+		for (int i = 0; i < this.lanes.length; ++i) {
+			this.lanes[i] = this.laneFactory.createLane(getLanePeer(this.laneLocalPeer, i), getLanePeer(this.laneRemotePeer, i));
+			this.laneListeners[i] = this.new LaneListener(i);
+			this.lanes[i].addConnectionListener(this.laneListeners[i]);
+		}
+	}
+	
+	private final void disconnectLanes() {
+		for (final Connection lane : this.getLanes()) {
+			lane.disconnect();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param laneIndex
+	 * <br>Range: {@code [0 .. this.getLanes().length - 1]}
+	 */
+	final void laneStateChanged(final int laneIndex) {
+		final Connection[] lanes = this.getLanes();
+		final Connection lane = lanes[laneIndex];
+		
+		switch (lane.getState()) {
+		case DISCONNECTED:
+			if (this.getState() != State.DISCONNECTED) {
+				if (this.getConnectionError() == null) {
+					this.setConnectionError(lane.getConnectionError());
+				}
+				
+				this.disconnectLanes();
+				this.setState(State.DISCONNECTED);
+			}
+			break;
+		case CONNECTED:
+			if (this.getState() == State.CONNECTING) {
+				for (final Connection otherLane : lanes) {
+					if (otherLane.getState() != State.CONNECTED) {
+						return;
+					}
+				}
+				
+				this.setState(State.CONNECTED);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Only the first disconnect message received on the first lane is dispatched,
+	 * since the lanes also exchange disconnect messages when they are closed.
+	 * <br>A data offer received from the lane's input is either dispatched in the calling thread,
+	 * or its bytes are loaded before this method returns.
+	 * 
+	 * @param laneIndex
+	 * <br>Range: {@code [0 .. this.getLanes().length - 1]}
+	 * @param message
+	 * <br>Should not be null
+	 * <br>Maybe shared parameter
+	 */
+	final void laneMessageReceived(final int laneIndex, final Message message) {
+		if (message instanceof DisconnectMessage) {
+			synchronized (this) {
+				if (laneIndex != 0 || this.disconnecting || this.disconnectMessageForwarded) {
+					return;
+				}
+				
+				this.disconnectMessageForwarded = true;
+			}
+		}
+		
+		synchronized (this.deliveries) {
+			if (message instanceof DataOfferMessage && ((DataOfferMessage) message).getStreamId() != 0) {
+				this.getReassembly(((DataOfferMessage) message).getStreamId()).offerReceived((DataOfferMessage) message);
+			} else if (message instanceof BlockCopyMessage && ((BlockCopyMessage) message).getStreamId() != 0) {
+				this.getReassembly(((BlockCopyMessage) message).getStreamId()).offerReceived((BlockCopyMessage) message);
+			} else {
+				this.deliveries.add(message);
+			}
+		}
+		
+		this.deliver();
+		
+		if (message instanceof DataOfferMessage) {
+			((DataOfferMessage) message).detachFromPayloadSource();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param request
+	 * <br>Should not be null
+	 */
+	private final void dataRequestSent(final DataRequestMessage request) {
+		if (request.getStreamId() != 0) {
+			synchronized (this.deliveries) {
+				this.getReassembly(-request.getStreamId()).requested(request.getFirstByteOffset());
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param credit
+	 * <br>Should not be null
+	 */
+	private final void dataCreditSent(final DataCreditMessage credit) {
+		if (credit.getStreamId() != 0) {
+			synchronized (this.deliveries) {
+				this.getReassembly(-credit.getStreamId()).credited(credit.getFirstByteOffset(), credit.isRestarting());
+			}
+		}
+	}
+	
+	/**
+	 * Must be called while holding the lock on {@code this.deliveries}.
+	 * 
+	 * @param streamId
+	 * <br>Range: any non-zero integer
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	private final Reassembly getReassembly(final int streamId) {
+		Reassembly result = this.reassemblies.get(streamId);
+		
+		if (result == null) {
+			result = this.new Reassembly(streamId);
+			this.reassemblies.put(streamId, result);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Dispatches the pending deliveries in order, unless another thread is already doing it.
+	 * <br>If a delivery fails, the connection is closed with the exception as error,
+	 * so that the operations don't wait for the lost message.
+	 */
+	private final void deliver() {
+		synchronized (this.deliveries) {
+			if (this.delivering) {
+				return;
+			}
+			
+			this.delivering = true;
+		}
+		
+		while (true) {
+			final Message message;
+			
+			synchronized (this.deliveries) {
+				if (this.deliveries.isEmpty()) {
+					this.delivering = false;
+					
+					return;
+				}
+				
+				message = this.deliveries.remove(0);
+			}
+			
+			try {
+				this.dispatchMessage(message);
+			} catch (final RuntimeException exception) {
+				Tools.getLoggerForThisMethod().log(Level.SEVERE, "Cannot dispatch " + message, exception);
+				
+				this.setConnectionError(exception);
+				this.disconnect();
+			}
+		}
+	}
+	
+	/**
+	 * Keeps the data offers of one stream that arrive before the offers requested earlier,
+	 * or in push mode before the offers for the previous bytes.
+	 * <br>When a request doesn't follow the previous ones, or a credit is restarting (the receive operation restarted its requests),
+	 * the kept offers are released in offset order and the previous requests are forgotten,
+	 * because some of them may never be answered.
+	 * <br>All the methods must be called while holding the lock on {@code StripedConnection.this.deliveries}.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class Reassembly {
+		
+		private final int streamId;
+		
+		private final TreeSet<Long> expectedOffsets;
+		
+		private final TreeMap<Long, AbstractDataMessage> earlyOffers;
+		
+		private long lastRequestedOffset;
+		
+		private long nextPushedOffset;
+		
+		/**
+		 * 
+		 * @param streamId
+		 * <br>Range: any non-zero integer
+		 */
+		Reassembly(final int streamId) {
+			this.streamId = streamId;
+			this.expectedOffsets = new TreeSet<Long>();
+			this.earlyOffers = new TreeMap<Long, AbstractDataMessage>();
+			this.lastRequestedOffset = -1L;
+			this.nextPushedOffset = -1L;
+		}
+		
+		/**
+		 * 
+		 * @param offset
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		final void requested(final long offset) {
+			if (offset <= this.lastRequestedOffset) {
+				this.releaseEarlyOffers();
+			}
+			
+			this.expectedOffsets.add(offset);
+			this.lastRequestedOffset = offset;
+		}
+		
+		/**
+		 * 
+		 * @param offset
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param restarting
+		 * <br>Range: any boolean
+		 */
+		final void credited(final long offset, final boolean restarting) {
+			if (restarting) {
+				this.releaseEarlyOffers();
+				this.nextPushedOffset = offset;
+			} else if (this.nextPushedOffset < 0L) {
+				this.nextPushedOffset = offset;
+			}
+		}
+		
+		/**
+		 * A block copy (sent in delta mode instead of a data offer, on the first lane) answers a request like a data offer,
+		 * but it is never pushed.
+		 * 
+		 * @param dataOffer a data offer or a block copy
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		final void offerReceived(final AbstractDataMessage dataOffer) {
+			final Long offset = dataOffer.getFirstByteOffset();
+			
+			if (!this.expectedOffsets.contains(offset)) {
+				if (dataOffer instanceof DataOfferMessage) {
+					this.pushedOfferReceived((DataOfferMessage) dataOffer);
+				} else {
+					StripedConnection.this.deliveries.add(dataOffer);
+				}
+			} else if (offset.equals(this.expectedOffsets.first())) {
+				this.expectedOffsets.remove(offset);
+				StripedConnection.this.deliveries.add(dataOffer);
+				
+				while (!this.expectedOffsets.isEmpty() && this.earlyOffers.containsKey(this.expectedOffsets.first())) {
+					StripedConnection.this.deliveries.add(this.earlyOffers.remove(this.expectedOffsets.pollFirst()));
+				}
+			} else {
+				this.earlyOffers.put(offset, dataOffer);
+			}
+			
+			if (this.expectedOffsets.isEmpty() && this.earlyOffers.isEmpty() && this.nextPushedOffset < 0L) {
+				StripedConnection.this.reassemblies.remove(this.streamId);
+			}
+		}
+		
+		/**
+		 * Offers that were neither requested nor pushed after a credit are dispatched at once.
+		 * 
+		 * @param dataOffer
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		private final void pushedOfferReceived(final DataOfferMessage dataOffer) {
+			final long offset = dataOffer.getFirstByteOffset();
+			
+			if (0L <= this.nextPushedOffset && this.nextPushedOffset < offset) {
+				this.earlyOffers.put(offset, dataOffer);
+			} else if (offset == this.nextPushedOffset) {
+				StripedConnection.this.deliveries.add(dataOffer);
+				this.nextPushedOffset += dataOffer.getByteCount();
+				
+				while (this.earlyOffers.get(this.nextPushedOffset) instanceof DataOfferMessage) {
+					final DataOfferMessage earlyOffer = (DataOfferMessage) this.earlyOffers.remove(this.nextPushedOffset);
+					
+					StripedConnection.this.deliveries.add(earlyOffer);
+					this.nextPushedOffset += earlyOffer.getByteCount();
+				}
+			} else {
+				StripedConnection.this.deliveries.add(dataOffer);
+			}
+		}
+		
+		private final void releaseEarlyOffers() {
+			StripedConnection.this.deliveries.addAll(this.earlyOffers.values());
+			this.earlyOffers.clear();
+			this.expectedOffsets.clear();
+		}
+		
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private class LaneListener extends AbstractListener {
+		
+		private final int laneIndex;
+		
+		/**
+		 * 
+		 * @param laneIndex
+		 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+		 */
+		LaneListener(final int laneIndex) {
+			this.laneIndex = laneIndex;
+		}
+		
+		@Override
+		protected final void doStateChanged() {
+			StripedConnection.this.laneStateChanged(this.laneIndex);
+		}
+		
+		@Override
+		protected final void doMessageReceived(final Message message) {
+			StripedConnection.this.laneMessageReceived(this.laneIndex, message);
+		}
+		
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	public static interface LaneFactory {
+		
+		/**
+		 * 
+		 * @param localPeer
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @param remotePeer
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @return a disconnected connection
+		 * <br>A non-null value
+		 * <br>A new value
+		 */
+		public abstract Connection createLane(String localPeer, String remotePeer);
+		
+	}
+	
+	public static final int DEFAULT_LANE_COUNT = 4;
+	
+	/**
+	 * Creates {@link SimpleSocketConnection}s.
+	 */
+	public static final LaneFactory SOCKET_LANES = new LaneFactory() {
+		
+		@Override
+		public final Connection createLane(final String localPeer, final String remotePeer) {
+			return new SimpleSocketConnection(localPeer, remotePeer);
+		}
+		
+	};
+	
+	/**
+	 * 
+	 * @param peer
+	 * <br>Should not be null
+	 * @param laneIndex
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @return {@code peer} with its port increased by {@code laneIndex}
+	 * <br>A non-null value
+	 * <br>A new value or a shared value
+	 */
+	public static final String getLanePeer(final String peer, final int laneIndex) {
+		if (laneIndex == 0) {
+			return peer;
+		}
+		
+		final String[] protocolHostPort = getProtocolHostPort(peer);
+		
+		protocolHostPort[2] = Integer.toString(Integer.parseInt(protocolHostPort[2]) + laneIndex);
+		
+		return protocolHostPort[0].length() == 0 ? getPeer(protocolHostPort[1], protocolHostPort[2]) : getPeer(protocolHostPort);
+	}
+	
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Runs tasks in a fixed number of threads, called stripes, choosing the stripe of each task from a key:
+ * the tasks with the same key are run one after the other in the order in which they were submitted,
+ * and the tasks with keys in different stripes are run in parallel.
+ * <br>The queues of the stripes are not bounded; a task that throws an exception is logged
+ * and doesn't prevent the following tasks of its stripe from running.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class StripedExecutor {
+	
+	private final ExecutorService[] stripes;
+	
+	private final Thread[] threads;
+	
+	/**
+	 * 
+	 * @param stripeCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param threadName
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public StripedExecutor(final int stripeCount, final String threadName) {
+		this.stripes = new ExecutorService[stripeCount];
+		this.threads = new Thread[stripeCount];
+		
+		for (int i = 0; i < stripeCount; ++i) {
+			final int stripeIndex = i;
+			
+			this.stripes[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				
+				@Override
+				public final Thread newThread(final Runnable task) {
+					final Thread result = new Thread(task, threadName);
+					
+					result.setDaemon(true);
+					
+					// Read by the new thread itself in isInStripe(int), after Thread.start()
+					StripedExecutor.this.threads[stripeIndex] = result;
+					
+					return result;
+				}
+				
+			});
+		}
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final int getStripeCount() {
+		return this.stripes.length;
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * <br>Range: any int
+	 * @return the index of the stripe running the tasks of {@code key}
+	 * <br>Range: {@code [0 .. this.getStripeCount() - 1]}
+	 */
+	public final int getStripeIndex(final int key) {
+		return (key & Integer.MAX_VALUE) % this.stripes.length;
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * <br>Range: any int
+	 * @param task
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public final void execute(final int key, final Runnable task) {
+		this.stripes[this.getStripeIndex(key)].execute(new Runnable() {
+			
+			@Override
+			public final void run() {
+				try {
+					task.run();
+				} catch (final RuntimeException exception) {
+					Tools.getLoggerForThisMethod().log(Level.SEVERE, "Task failed in stripe " + StripedExecutor.this.getStripeIndex(key), exception);
+				}
+			}
+			
+		});
+	}
+	
+	/**
+	 * Runs {@code task} in the stripe of {@code key} after the tasks already submitted with the same stripe,
+	 * and waits until it is done; if the current thread is the thread of that stripe, {@code task} is run directly.
+	 * <br>Blocking.
+	 * 
+	 * @param key
+	 * <br>Range: any int
+	 * @param task
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public final void executeAndWait(final int key, final Runnable task) {
+		if (this.isInStripe(key)) {
+			task.run();
+			
+			return;
+		}
+		
+		final CountDownLatch done = new CountDownLatch(1);
+		
+		this.execute(key, new Runnable() {
+			
+			@Override
+			public final void run() {
+				try {
+					task.run();
+				} finally {
+					done.countDown();
+				}
+			}
+			
+		});
+		
+		boolean interrupted = false;
+		
+		while (done.getCount() != 0L) {
+			try {
+				done.await();
+			} catch (final InterruptedException exception) {
+				interrupted = true;
+			}
+		}
+		
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param key
+	 * <br>Range: any int
+	 * @return {@code true} if the current thread is the thread running the tasks of {@code key}
+	 */
+	public final boolean isInStripe(final int key) {
+		return Thread.currentThread() == this.threads[this.getStripeIndex(key)];
+	}
+	
+	/**
+	 * Shared by the connections that dispatch their messages asynchronously.
+	 * <br>The threads are only created when tasks are submitted.
+	 */
+	public static final StripedExecutor MESSAGE_DISPATCHER = new StripedExecutor(2 * Runtime.getRuntime().availableProcessors(), "MessageDispatcher");
+	
+}
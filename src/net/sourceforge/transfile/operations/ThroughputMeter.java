@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+/**
+ * Computes a smoothed throughput from samples of a byte counter, such as {@link Operation#getProgressByteCount()},
+ * and the time remaining until a number of bytes has been reached.
+ * <br>The throughput is an exponential moving average weighted by time, so that irregular sampling intervals are handled:
+ * a throughput measured over an interval of {@link #getSmoothingTime()} counts for about 63% of the new average.
+ * <br>A sample with a smaller byte count than the previous one (for example when a transfer restarts)
+ * starts the measurement again.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ThroughputMeter {
+	
+	private final long smoothingTime;
+	
+	private boolean sampled;
+	
+	private long lastByteCount;
+	
+	private long lastTime;
+	
+	private double byteRate;
+	
+	private boolean measured;
+	
+	public ThroughputMeter() {
+		this(DEFAULT_SMOOTHING_TIME);
+	}
+	
+	/**
+	 * 
+	 * @param smoothingTime in nanoseconds
+	 * <br>Range: {@code [1L .. Long.MAX_VALUE]}
+	 */
+	public ThroughputMeter(final long smoothingTime) {
+		this.smoothingTime = smoothingTime;
+	}
+	
+	/**
+	 * 
+	 * @return in nanoseconds
+	 * <br>Range: {@code [1L .. Long.MAX_VALUE]}
+	 */
+	public final long getSmoothingTime() {
+		return this.smoothingTime;
+	}
+	
+	/**
+	 * Forgets the samples; the throughput is unknown until two samples have been taken.
+	 */
+	public final synchronized void reset() {
+		this.sampled = false;
+		this.measured = false;
+		this.byteRate = 0.0;
+	}
+	
+	/**
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param time in nanoseconds (see {@link System#nanoTime()})
+	 * <br>Range: any long
+	 */
+	public final synchronized void sample(final long byteCount, final long time) {
+		if (!this.sampled || byteCount < this.lastByteCount) {
+			this.reset();
+			this.sampled = true;
+		} else {
+			final long elapsedTime = time - this.lastTime;
+			
+			if (elapsedTime <= 0L) {
+				return;
+			}
+			
+			final double byteRate = (byteCount - this.lastByteCount) * NANOSECONDS_PER_SECOND / elapsedTime;
+			
+			if (this.measured) {
+				this.byteRate += (1.0 - Math.exp(-(double) elapsedTime / this.getSmoothingTime())) * (byteRate - this.byteRate);
+			} else {
+				this.byteRate = byteRate;
+				this.measured = true;
+			}
+		}
+		
+		this.lastByteCount = byteCount;
+		this.lastTime = time;
+	}
+	
+	/**
+	 * 
+	 * @return {@code true} if at least two samples have been taken since the last reset
+	 */
+	public final synchronized boolean isMeasured() {
+		return this.measured;
+	}
+	
+	/**
+	 * 
+	 * @return the smoothed throughput in bytes per second, or {@code 0.0} if it is not measured yet
+	 * <br>Range: {@code [0.0 .. Double.MAX_VALUE]}
+	 */
+	public final synchronized double getByteRate() {
+		return this.byteRate;
+	}
+	
+	/**
+	 * 
+	 * @param totalByteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @return the time needed to reach {@code totalByteCount} from the last sample at the current throughput in nanoseconds,
+	 * or {@code -1L} if the throughput is not known or zero
+	 * <br>Range: {@code [-1L .. Long.MAX_VALUE]}
+	 */
+	public final synchronized long getRemainingTime(final long totalByteCount) {
+		if (this.byteRate <= 0.0) {
+			return -1L;
+		}
+		
+		return (long) Math.min(Long.MAX_VALUE, Math.max(0L, totalByteCount - this.lastByteCount) * NANOSECONDS_PER_SECOND / this.byteRate);
+	}
+	
+	/**
+	 * In nanoseconds.
+	 */
+	public static final long DEFAULT_SMOOTHING_TIME = 3000000000L;
+	
+	private static final double NANOSECONDS_PER_SECOND = 1.0E9;
+	
+}
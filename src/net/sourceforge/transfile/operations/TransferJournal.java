@@ -0,0 +1,339 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import net.sourceforge.transfile.operations.messages.FileOfferMessage;
+
+/**
+ * Remembers on disk how much of each unfinished incoming file has been received,
+ * so that a transfer interrupted by a lost connection or by the end of the application can resume where it stopped.
+ * <br>There is one small properties file per destination file in the journal directory;
+ * it records the identity of the source (path and size), and the length and CRC-32 of the prefix of the destination
+ * that had been written when the entry was saved.
+ * <br>Entries are replaced atomically (written to a temporary file that is then renamed),
+ * so a crash while saving leaves the previous entry.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class TransferJournal {
+	
+	private final File directory;
+	
+	/**
+	 * 
+	 * @param directory created if necessary when the first entry is saved
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public TransferJournal(final File directory) {
+		this.directory = directory;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final File getDirectory() {
+		return this.directory;
+	}
+	
+	/**
+	 * 
+	 * @param destinationFile
+	 * <br>Should not be null
+	 * @return the entry of {@code destinationFile}, or null if there is none or if it cannot be read
+	 * <br>A possibly null value
+	 * <br>A new value
+	 */
+	public final synchronized Entry get(final File destinationFile) {
+		final File entryFile = this.getEntryFile(destinationFile);
+		
+		if (!entryFile.isFile()) {
+			return null;
+		}
+		
+		final Properties properties = new Properties();
+		
+		try {
+			final InputStream input = new FileInputStream(entryFile);
+			
+			try {
+				properties.load(input);
+			} finally {
+				input.close();
+			}
+			
+			final Entry result = new Entry(
+					new File(properties.getProperty(SOURCE_FILE)),
+					Long.parseLong(properties.getProperty(SOURCE_BYTE_COUNT)),
+					new File(properties.getProperty(DESTINATION_FILE)),
+					Long.parseLong(properties.getProperty(VERIFIED_BYTE_COUNT)),
+					Long.parseLong(properties.getProperty(CHECKSUM)));
+			
+			// Different destination files can share an entry file name
+			return result.getDestinationFile().equals(destinationFile.getAbsoluteFile()) ? result : null;
+		} catch (final Exception exception) {
+			// An unreadable entry only means that the transfer starts over
+			return null;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param entry
+	 * <br>Should not be null
+	 * @throws IOException if the entry cannot be saved
+	 */
+	public final synchronized void put(final Entry entry) throws IOException {
+		final File entryFile = this.getEntryFile(entry.getDestinationFile());
+		final File temporaryFile = new File(entryFile.getPath() + ".tmp");
+		final Properties properties = new Properties();
+		
+		properties.setProperty(SOURCE_FILE, entry.getSourceFile().getPath());
+		properties.setProperty(SOURCE_BYTE_COUNT, Long.toString(entry.getSourceByteCount()));
+		properties.setProperty(DESTINATION_FILE, entry.getDestinationFile().getPath());
+		properties.setProperty(VERIFIED_BYTE_COUNT, Long.toString(entry.getVerifiedByteCount()));
+		properties.setProperty(CHECKSUM, Long.toString(entry.getChecksum()));
+		
+		if (!this.getDirectory().isDirectory() && !this.getDirectory().mkdirs()) {
+			throw new IOException("Cannot create journal directory " + this.getDirectory());
+		}
+		
+		final OutputStream output = new FileOutputStream(temporaryFile);
+		
+		try {
+			properties.store(output, "TransFile partial transfer");
+		} finally {
+			output.close();
+		}
+		
+		// On some platforms, renaming doesn't replace an existing file
+		if (!temporaryFile.renameTo(entryFile) && !(entryFile.delete() && temporaryFile.renameTo(entryFile))) {
+			throw new IOException("Cannot replace journal entry " + entryFile);
+		}
+	}
+	
+	/**
+	 * Does nothing if there is no entry for {@code destinationFile}.
+	 * 
+	 * @param destinationFile
+	 * <br>Should not be null
+	 */
+	public final synchronized void remove(final File destinationFile) {
+		final File entryFile = this.getEntryFile(destinationFile);
+		
+		if (entryFile.exists() && this.get(destinationFile) != null) {
+			entryFile.delete();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param destinationFile
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private final File getEntryFile(final File destinationFile) {
+		return new File(this.getDirectory(), Integer.toHexString(destinationFile.getAbsolutePath().hashCode()) + ".journal");
+	}
+	
+	/**
+	 * Property name.
+	 */
+	private static final String SOURCE_FILE = "source";
+	
+	/**
+	 * Property name.
+	 */
+	private static final String SOURCE_BYTE_COUNT = "sourceByteCount";
+	
+	/**
+	 * Property name.
+	 */
+	private static final String DESTINATION_FILE = "destination";
+	
+	/**
+	 * Property name.
+	 */
+	private static final String VERIFIED_BYTE_COUNT = "verifiedByteCount";
+	
+	/**
+	 * Property name.
+	 */
+	private static final String CHECKSUM = "checksum";
+	
+	/**
+	 * Bytes read at once by {@link #updateChecksum(CRC32, File, long, long)}.
+	 */
+	private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * Adds the bytes of {@code file} in {@code [start .. end[} to {@code checksum}.
+	 * <br>Blocking.
+	 * 
+	 * @param checksum
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param file
+	 * <br>Should not be null
+	 * @param start
+	 * <br>Range: {@code [0L .. end]}
+	 * @param end
+	 * <br>Range: {@code [start .. file.length()]}
+	 * @throws IOException if {@code file} cannot be read or is too short
+	 */
+	public static final void updateChecksum(final CRC32 checksum, final File file, final long start, final long end) throws IOException {
+		final FileInputStream input = new FileInputStream(file);
+		
+		try {
+			final byte[] buffer = new byte[(int) Math.min(CHECKSUM_BUFFER_SIZE, end - start)];
+			long remainingByteCount = end - start;
+			
+			input.getChannel().position(start);
+			
+			while (0L < remainingByteCount) {
+				final int n = input.read(buffer, 0, (int) Math.min(buffer.length, remainingByteCount));
+				
+				if (n < 0) {
+					throw new IOException(file + " is shorter than " + end + " bytes");
+				}
+				
+				checksum.update(buffer, 0, n);
+				remainingByteCount -= n;
+			}
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Immutable.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	public static final class Entry {
+		
+		private final File sourceFile;
+		
+		private final long sourceByteCount;
+		
+		private final File destinationFile;
+		
+		private final long verifiedByteCount;
+		
+		private final long checksum;
+		
+		/**
+		 * 
+		 * @param sourceFile the path of the file on the sending peer
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @param sourceByteCount
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 * @param destinationFile
+		 * <br>Should not be null
+		 * @param verifiedByteCount the number of bytes at the beginning of the destination file that are known to be correct
+		 * <br>Range: {@code [0L .. sourceByteCount]}
+		 * @param checksum the CRC-32 of the first {@code verifiedByteCount} bytes of the destination file
+		 * <br>Range: {@code [0L .. 0xFFFFFFFFL]}
+		 */
+		public Entry(final File sourceFile, final long sourceByteCount, final File destinationFile, final long verifiedByteCount, final long checksum) {
+			this.sourceFile = sourceFile;
+			this.sourceByteCount = sourceByteCount;
+			this.destinationFile = destinationFile.getAbsoluteFile();
+			this.verifiedByteCount = verifiedByteCount;
+			this.checksum = checksum;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		public final File getSourceFile() {
+			return this.sourceFile;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+		 */
+		public final long getSourceByteCount() {
+			return this.sourceByteCount;
+		}
+		
+		/**
+		 * 
+		 * @return an absolute path
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		public final File getDestinationFile() {
+			return this.destinationFile;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>Range: {@code [0L .. this.getSourceByteCount()]}
+		 */
+		public final long getVerifiedByteCount() {
+			return this.verifiedByteCount;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>Range: {@code [0L .. 0xFFFFFFFFL]}
+		 */
+		public final long getChecksum() {
+			return this.checksum;
+		}
+		
+		/**
+		 * 
+		 * @param fileOffer
+		 * <br>Should not be null
+		 * @return {@code true} if {@code fileOffer} offers the same source file as the one of this entry
+		 */
+		public final boolean concerns(final FileOfferMessage fileOffer) {
+			return this.getSourceFile().equals(fileOffer.getSourceFile()) && this.getSourceByteCount() == fileOffer.getSourceByteCount();
+		}
+		
+	}
+	
+}
@@ -32,6 +32,8 @@ public abstract class AbstractOperationMessage implements OperationMessage {
 	
 	private final File sourceFile;
 	
+	private int streamId;
+	
 	/**
 	 * 
 	 * @param sourceFile
@@ -50,4 +52,23 @@ public abstract class AbstractOperationMessage implements OperationMessage {
 		return this.sourceFile;
 	}
 	
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public final int getStreamId() {
+		return this.streamId;
+	}
+	
+	/**
+	 * Must be called before the message is sent.
+	 * <br>The stream identifier is not taken into account by {@link #equals(Object)}.
+	 * 
+	 * @param streamId
+	 * <br>Range: {@code [-Integer.MAX_VALUE .. Integer.MAX_VALUE]}
+	 */
+	public final void setStreamId(final int streamId) {
+		this.streamId = streamId;
+	}
+	
 }
\ No newline at end of file
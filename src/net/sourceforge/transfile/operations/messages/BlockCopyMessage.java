@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+import java.io.File;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sent by a send operation in delta mode instead of a data offer, when the bytes of the source file
+ * starting at the first byte offset are the same as the bytes of the remote basis starting at the specified block
+ * (see {@link BlockSignaturesMessage}): the receiver copies them from its basis.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class BlockCopyMessage extends AbstractDataMessage {
+	
+	private final int blockIndex;
+	
+	private final int byteCount;
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param blockIndex the index of the first block of the basis to copy
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @param byteCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public BlockCopyMessage(final File sourceFile, final long firstByteOffset, final int blockIndex, final int byteCount) {
+		super(sourceFile, firstByteOffset);
+		this.blockIndex = blockIndex;
+		this.byteCount = byteCount;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int getBlockIndex() {
+		return this.blockIndex;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final int getByteCount() {
+		return this.byteCount;
+	}
+	
+	@Override
+	public final int hashCode() {
+		return (int) (this.getSourceFile().hashCode() + this.getFirstByteOffset() + this.getBlockIndex());
+	}
+	
+	@Override
+	public final boolean equals(final Object object) {
+		final BlockCopyMessage that = Tools.cast(this.getClass(), object);
+		
+		return
+			this == that ||
+			that != null &&
+			this.getSourceFile().equals(that.getSourceFile()) &&
+			this.getFirstByteOffset() == that.getFirstByteOffset() &&
+			this.getBlockIndex() == that.getBlockIndex() &&
+			this.getByteCount() == that.getByteCount();
+	}
+	
+	@Override
+	public final String toString() {
+		return "BlockCopyMessage [sourceFile="
+				+ this.getSourceFile() + ", firstByteOffset="
+				+ this.getFirstByteOffset() + ", blockIndex="
+				+ this.getBlockIndex() + ", byteCount="
+				+ this.getByteCount() + "]";
+	}
+	
+	private static final long serialVersionUID = -4435162795232853427L;
+	
+}
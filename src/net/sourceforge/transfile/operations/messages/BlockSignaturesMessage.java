@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+import java.io.File;
+import java.util.Arrays;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sent by a receive operation in delta mode before its first data request:
+ * it contains the signatures of consecutive blocks of the existing destination file (the basis),
+ * so that the remote send operation can answer the data requests with references to these blocks
+ * ({@link BlockCopyMessage}) instead of their bytes wherever the source file contains the same bytes.
+ * <br>The signatures of a large basis are split into several messages, sent in order.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class BlockSignaturesMessage extends AbstractOperationMessage {
+	
+	private final int blockSize;
+	
+	private final long basisByteCount;
+	
+	private final int firstBlockIndex;
+	
+	private final int[] weakChecksums;
+	
+	private final byte[] strongChecksums;
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param blockSize
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param basisByteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param firstBlockIndex
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @param weakChecksums
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param strongChecksums the strong checksums of the blocks, one after the other
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public BlockSignaturesMessage(final File sourceFile, final int blockSize, final long basisByteCount, final int firstBlockIndex,
+			final int[] weakChecksums, final byte[] strongChecksums) {
+		super(sourceFile);
+		this.blockSize = blockSize;
+		this.basisByteCount = basisByteCount;
+		this.firstBlockIndex = firstBlockIndex;
+		this.weakChecksums = weakChecksums;
+		this.strongChecksums = strongChecksums;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final int getBlockSize() {
+		return this.blockSize;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public final long getBasisByteCount() {
+		return this.basisByteCount;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int getFirstBlockIndex() {
+		return this.firstBlockIndex;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final int[] getWeakChecksums() {
+		return this.weakChecksums;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final byte[] getStrongChecksums() {
+		return this.strongChecksums;
+	}
+	
+	@Override
+	public final int hashCode() {
+		return this.getSourceFile().hashCode() + this.getFirstBlockIndex() + Arrays.hashCode(this.getWeakChecksums());
+	}
+	
+	@Override
+	public final boolean equals(final Object object) {
+		final BlockSignaturesMessage that = Tools.cast(this.getClass(), object);
+		
+		return
+			this == that ||
+			that != null &&
+			this.getSourceFile().equals(that.getSourceFile()) &&
+			this.getBlockSize() == that.getBlockSize() &&
+			this.getBasisByteCount() == that.getBasisByteCount() &&
+			this.getFirstBlockIndex() == that.getFirstBlockIndex() &&
+			Arrays.equals(this.getWeakChecksums(), that.getWeakChecksums()) &&
+			Arrays.equals(this.getStrongChecksums(), that.getStrongChecksums());
+	}
+	
+	@Override
+	public final String toString() {
+		return "BlockSignaturesMessage [sourceFile="
+				+ this.getSourceFile() + ", blockSize="
+				+ this.getBlockSize() + ", basisByteCount="
+				+ this.getBasisByteCount() + ", firstBlockIndex="
+				+ this.getFirstBlockIndex() + ", blockCount="
+				+ this.getWeakChecksums().length + "]";
+	}
+	
+	private static final long serialVersionUID = 6203985528391166307L;
+	
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+import java.io.File;
+import java.util.Arrays;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sent by a send operation in answer to a {@link ChunkHashesRequestMessage}:
+ * it describes consecutive chunks of the source file starting at the first byte offset, with their sizes and hashes,
+ * so that the receive operation only requests the chunks that it doesn't already have.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ChunkHashesMessage extends AbstractDataMessage {
+	
+	private final int[] chunkByteCounts;
+	
+	private final byte[] hashes;
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param chunkByteCounts
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param hashes the hashes of the chunks, one after the other
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public ChunkHashesMessage(final File sourceFile, final long firstByteOffset, final int[] chunkByteCounts, final byte[] hashes) {
+		super(sourceFile, firstByteOffset);
+		this.chunkByteCounts = chunkByteCounts;
+		this.hashes = hashes;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final int[] getChunkByteCounts() {
+		return this.chunkByteCounts;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final byte[] getHashes() {
+		return this.hashes;
+	}
+	
+	@Override
+	public final int hashCode() {
+		return (int) (this.getSourceFile().hashCode() + this.getFirstByteOffset() + Arrays.hashCode(this.getChunkByteCounts()));
+	}
+	
+	@Override
+	public final boolean equals(final Object object) {
+		final ChunkHashesMessage that = Tools.cast(this.getClass(), object);
+		
+		return
+			this == that ||
+			that != null &&
+			this.getSourceFile().equals(that.getSourceFile()) &&
+			this.getFirstByteOffset() == that.getFirstByteOffset() &&
+			Arrays.equals(this.getChunkByteCounts(), that.getChunkByteCounts()) &&
+			Arrays.equals(this.getHashes(), that.getHashes());
+	}
+	
+	@Override
+	public final String toString() {
+		return "ChunkHashesMessage [sourceFile="
+				+ this.getSourceFile() + ", firstByteOffset="
+				+ this.getFirstByteOffset() + ", chunkCount="
+				+ this.getChunkByteCounts().length + "]";
+	}
+	
+	private static final long serialVersionUID = -1377046931187309713L;
+	
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+import java.io.File;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sent by a receive operation in deduplication mode to get the hashes of the chunks of the source file
+ * starting at the first byte offset, which is the beginning of a chunk;
+ * the answer ({@link ChunkHashesMessage}) describes the chunks starting in the following {@code byteCount} bytes.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ChunkHashesRequestMessage extends AbstractDataMessage {
+	
+	private final int byteCount;
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param byteCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public ChunkHashesRequestMessage(final File sourceFile, final long firstByteOffset, final int byteCount) {
+		super(sourceFile, firstByteOffset);
+		this.byteCount = byteCount;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 */
+	public final int getByteCount() {
+		return this.byteCount;
+	}
+	
+	@Override
+	public final int hashCode() {
+		return (int) (this.getSourceFile().hashCode() + this.getFirstByteOffset() + this.getByteCount());
+	}
+	
+	@Override
+	public final boolean equals(final Object object) {
+		final ChunkHashesRequestMessage that = Tools.cast(this.getClass(), object);
+		
+		return
+			this == that ||
+			that != null &&
+			this.getSourceFile().equals(that.getSourceFile()) &&
+			this.getFirstByteOffset() == that.getFirstByteOffset() &&
+			this.getByteCount() == that.getByteCount();
+	}
+	
+	@Override
+	public final String toString() {
+		return "ChunkHashesRequestMessage [sourceFile="
+				+ this.getSourceFile() + ", firstByteOffset="
+				+ this.getFirstByteOffset() + ", byteCount="
+				+ this.getByteCount() + "]";
+	}
+	
+	private static final long serialVersionUID = 2866148312906744283L;
+	
+}
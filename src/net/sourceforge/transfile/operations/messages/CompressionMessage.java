@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+/**
+ * Sent as soon as a connection is established by a peer that has enabled compression,
+ * to announce that it accepts compressed data offers.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class CompressionMessage implements ConnectionMessage {
+	
+	@Override
+	public final boolean equals(final Object object) {
+		return object != null && object instanceof CompressionMessage;
+	}
+	
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public final int hashCode() {
+		return super.hashCode();
+	}
+	
+	private static final long serialVersionUID = 3121787416410326431L;
+	
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+import java.io.File;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sent by a receive operation in push mode instead of data requests:
+ * the remote send operation may send the bytes of the source file up to the credit limit without waiting for requests.
+ * <br>The first byte offset is the number of bytes that have been received in order.
+ * <br>A restarting credit tells the sender to continue from the first byte offset,
+ * because the bytes sent after it may have been ignored (for instance while the operation was paused).
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class DataCreditMessage extends AbstractDataMessage {
+	
+	private final long creditLimit;
+	
+	private final boolean restarting;
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param creditLimit
+	 * <br>Range: {@code [firstByteOffset .. Long.MAX_VALUE]}
+	 * @param restarting
+	 * <br>Range: any boolean
+	 */
+	public DataCreditMessage(final File sourceFile, final long firstByteOffset, final long creditLimit, final boolean restarting) {
+		super(sourceFile, firstByteOffset);
+		this.creditLimit = creditLimit;
+		this.restarting = restarting;
+	}
+	
+	/**
+	 * 
+	 * @return the offset of the first byte that cannot be sent yet
+	 * <br>Range: {@code [this.getFirstByteOffset() .. Long.MAX_VALUE]}
+	 */
+	public final long getCreditLimit() {
+		return this.creditLimit;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: any boolean
+	 */
+	public final boolean isRestarting() {
+		return this.restarting;
+	}
+	
+	@Override
+	public final boolean equals(final Object object) {
+		final DataCreditMessage that = Tools.cast(this.getClass(), object);
+		
+		return
+			this == that ||
+			that != null &&
+			this.getSourceFile().equals(that.getSourceFile()) &&
+			this.getFirstByteOffset() == that.getFirstByteOffset() &&
+			this.getCreditLimit() == that.getCreditLimit() &&
+			this.isRestarting() == that.isRestarting();
+	}
+	
+	@Override
+	public final int hashCode() {
+		return (int) (this.getSourceFile().hashCode() + this.getFirstByteOffset() + this.getCreditLimit());
+	}
+	
+	@Override
+	public final String toString() {
+		return "DataCreditMessage [sourceFile="
+				+ this.getSourceFile() + ", firstByteOffset="
+				+ this.getFirstByteOffset() + ", creditLimit="
+				+ this.getCreditLimit() + ", restarting="
+				+ this.isRestarting() + "]";
+	}
+	
+	private static final long serialVersionUID = 2915706245719003346L;
+	
+}
@@ -19,20 +19,56 @@
 
 package net.sourceforge.transfile.operations.messages;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
+import net.sourceforge.transfile.operations.FileChannelCache;
 import net.sourceforge.jenerics.Tools;
 
 /**
  * TODO doc
+ * <br>An offer can be created from a region of the local source file instead of an array;
+ * in that case, the bytes are only read when {@link #getBytes()} is called or when the offer is serialized,
+ * and connections able to do so can send them directly from the file with {@link #transferBytesTo(WritableByteChannel)}.
+ * <br>On the receiving side, an offer can also be created while its bytes are still waiting in the connection's input channel;
+ * they can then be written directly to the destination file with {@link #transferBytesTo(FileChannel, long)}.
+ * <br>The payload of an offer (what is actually sent after the header) is either the offered bytes,
+ * or their Deflate compression if the offer is compressed; in that case, {@link #getBytes()} inflates the payload
+ * and the transfer methods write the inflated bytes, so that only the connections deal with compressed payloads.
+ * <br>An offer can carry the CRC-32C of its (uncompressed) bytes, so that the receiver can detect corrupted chunks.
  *
  * @author codistmonk (creation 2010-06-05)
  *
  */
 public class DataOfferMessage extends AbstractDataMessage {
 	
-	private final byte[] bytes;
+	private final int byteCount;
+	
+	private final int payloadByteCount;
+	
+	private byte[] bytes;
+	
+	private byte[] compressedBytes;
+	
+	private boolean checksummed;
+	
+	private int checksum;
+	
+	private transient FileChannelCache sourceFileChannels;
+	
+	private transient ReadableByteChannel payloadSource;
+	
+	private transient boolean transferredToFile;
 	
 	/**
 	 * 
@@ -47,36 +83,467 @@ public class DataOfferMessage extends AbstractDataMessage {
 	 */
 	public DataOfferMessage(final File sourceFile, final long firstByteOffset, final byte... bytes) {
 		super(sourceFile, firstByteOffset);
+		this.byteCount = bytes.length;
+		this.payloadByteCount = bytes.length;
 		this.bytes = bytes;
 	}
 	
+	/**
+	 * Creates a compressed offer for {@code byteCount} bytes whose Deflate compression is {@code compressedBytes}.
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param byteCount
+	 * <br>Range: {@code [compressedBytes.length + 1 .. Integer.MAX_VALUE]}
+	 * @param compressedBytes
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public DataOfferMessage(final File sourceFile, final long firstByteOffset, final int byteCount, final byte[] compressedBytes) {
+		super(sourceFile, firstByteOffset);
+		this.byteCount = byteCount;
+		this.payloadByteCount = compressedBytes.length;
+		this.compressedBytes = compressedBytes;
+	}
+	
+	/**
+	 * Creates an offer for {@code byteCount} bytes of {@code sourceFile}, which must be a local file.
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset
+	 * <br>Range: {@code [0L .. sourceFile.length()]}
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. sourceFile.length() - firstByteOffset]}
+	 * @param sourceFileChannels
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public DataOfferMessage(final File sourceFile, final long firstByteOffset, final int byteCount, final FileChannelCache sourceFileChannels) {
+		super(sourceFile, firstByteOffset);
+		this.byteCount = byteCount;
+		this.payloadByteCount = byteCount;
+		this.sourceFileChannels = sourceFileChannels;
+	}
+	
+	/**
+	 * Creates an offer whose {@code byteCount} bytes are the next bytes available in {@code payloadSource}.
+	 * <br>The bytes must be consumed (or loaded with {@link #detachFromPayloadSource()})
+	 * before anything else is read from {@code payloadSource}.
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @param payloadSource
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public DataOfferMessage(final File sourceFile, final long firstByteOffset, final int byteCount, final ReadableByteChannel payloadSource) {
+		this(sourceFile, firstByteOffset, byteCount, byteCount, payloadSource);
+	}
+	
+	/**
+	 * Creates an offer whose payload is made of the next {@code payloadByteCount} bytes available in {@code payloadSource};
+	 * the offer is compressed if {@code payloadByteCount != byteCount}.
+	 * <br>The payload must be consumed (or loaded with {@link #detachFromPayloadSource()})
+	 * before anything else is read from {@code payloadSource}.
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstByteOffset
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @param payloadByteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @param payloadSource
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public DataOfferMessage(final File sourceFile, final long firstByteOffset, final int byteCount, final int payloadByteCount, final ReadableByteChannel payloadSource) {
+		super(sourceFile, firstByteOffset);
+		this.byteCount = byteCount;
+		this.payloadByteCount = payloadByteCount;
+		this.payloadSource = payloadSource;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int getByteCount() {
+		return this.byteCount;
+	}
+	
+	/**
+	 * 
+	 * @return the number of bytes sent after the header of this offer
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int getPayloadByteCount() {
+		return this.payloadByteCount;
+	}
+	
+	public final boolean isCompressed() {
+		return this.getPayloadByteCount() != this.getByteCount();
+	}
+	
+	public final synchronized boolean isChecksummed() {
+		return this.checksummed;
+	}
+	
+	/**
+	 * 
+	 * @return the CRC-32C of the offered bytes, if this offer is checksummed
+	 * <br>Range: any int
+	 */
+	public final synchronized int getChecksum() {
+		return this.checksum;
+	}
+	
+	/**
+	 * Must be called before the message is sent.
+	 * <br>The checksum is not taken into account by {@link #equals(Object)}.
+	 * 
+	 * @param checksum the CRC-32C of the offered bytes
+	 * <br>Range: any int
+	 */
+	public final synchronized void setChecksum(final int checksum) {
+		this.checksum = checksum;
+		this.checksummed = true;
+	}
+	
+	/**
+	 * 
+	 * @return the Deflate compression of the offered bytes, or null if this offer is not compressed
+	 * <br>A possibly null value
+	 * <br>A shared value
+	 * @throws RuntimeException if the payload has to be read from the payload source and an I/O error occurs
+	 */
+	public final synchronized byte[] getCompressedBytes() {
+		if (this.isCompressed() && this.compressedBytes == null) {
+			final ByteBuffer buffer = ByteBuffer.allocate(this.getPayloadByteCount());
+			
+			try {
+				readFully(this.payloadSource, buffer);
+				this.payloadSource = null;
+			} catch (final IOException exception) {
+				Tools.throwUnchecked(exception);
+			}
+			
+			this.compressedBytes = buffer.array();
+		}
+		
+		return this.compressedBytes;
+	}
+	
 	/**
 	 * 
 	 * @return
 	 * <br>A non-null value
 	 * <br>A shared value
+	 * @throws RuntimeException if the bytes have to be read from the source file or the payload source and an I/O error occurs,
+	 * or if the compressed bytes are invalid
+	 * @throws IllegalStateException if the bytes have already been transferred to a file
 	 */
-	public final byte[] getBytes() {
+	public final synchronized byte[] getBytes() {
+		if (this.transferredToFile) {
+			throw new IllegalStateException("The bytes of " + this + " have already been transferred to a file");
+		}
+		
+		if (this.bytes == null && this.isCompressed()) {
+			this.bytes = inflate(this.getCompressedBytes(), this.getByteCount());
+		}
+		
+		if (this.bytes == null) {
+			final ByteBuffer buffer = ByteBuffer.allocate(this.getByteCount());
+			
+			try {
+				if (this.payloadSource != null) {
+					readFully(this.payloadSource, buffer);
+					this.payloadSource = null;
+				} else {
+					this.sourceFileChannels.read(this.getSourceFile(), this.getFirstByteOffset(), buffer);
+				}
+			} catch (final IOException exception) {
+				Tools.throwUnchecked(exception);
+			}
+			
+			this.bytes = buffer.array();
+		}
+		
 		return this.bytes;
 	}
 	
+	/**
+	 * Writes the offered bytes to {@code destination} at {@code position}; if they are still in the payload source
+	 * and not compressed, they go directly from the payload source to {@code destination}, and {@link #getBytes()} can no longer be used.
+	 * <br>Blocking.
+	 * 
+	 * @param destination
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param position
+	 * <br>Range: {@code [0L .. destination.size()]}
+	 * @throws IOException if an I/O error occurs or if the payload source ends before all the bytes have been transferred
+	 */
+	public final synchronized void transferBytesTo(final FileChannel destination, final long position) throws IOException {
+		if (this.payloadSource != null && !this.isCompressed()) {
+			final ReadableByteChannel payloadSource = this.payloadSource;
+			long transferredByteCount = 0L;
+			
+			this.payloadSource = null;
+			this.transferredToFile = true;
+			
+			while (transferredByteCount < this.getByteCount()) {
+				final long n = destination.transferFrom(payloadSource, position + transferredByteCount, this.getByteCount() - transferredByteCount);
+				
+				if (n <= 0L) {
+					throw new EOFException((this.getByteCount() - transferredByteCount) + " bytes missing in payload source");
+				}
+				
+				transferredByteCount += n;
+			}
+		} else {
+			final ByteBuffer buffer = ByteBuffer.wrap(this.getBytes());
+			
+			while (buffer.hasRemaining()) {
+				destination.write(buffer, position + buffer.position());
+			}
+		}
+	}
+	
+	/**
+	 * Puts the offered bytes in {@code target} starting at its position; if they are still in the payload source
+	 * and not compressed, they are read directly into {@code target}, and {@link #getBytes()} can no longer be used.
+	 * <br>Blocking.
+	 * 
+	 * @param target
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws IOException if an I/O error occurs or if the payload source ends before all the bytes have been transferred
+	 * @throws BufferOverflowException if {@code target.remaining() < this.getByteCount()}
+	 */
+	public final synchronized void transferBytesTo(final ByteBuffer target) throws IOException {
+		if (target.remaining() < this.getByteCount()) {
+			throw new BufferOverflowException();
+		}
+		
+		if (this.payloadSource != null && !this.isCompressed()) {
+			final ByteBuffer region = target.duplicate();
+			
+			region.limit(region.position() + this.getByteCount());
+			
+			readFully(this.payloadSource, region);
+			
+			this.payloadSource = null;
+			this.transferredToFile = true;
+			
+			target.position(region.position());
+		} else {
+			target.put(this.getBytes());
+		}
+	}
+	
+	/**
+	 * 
+	 * @return {@code true} if the bytes haven't been read from the source file,
+	 * so that they can still be sent directly from it
+	 */
+	public final synchronized boolean isInSourceFile() {
+		return this.bytes == null && this.sourceFileChannels != null;
+	}
+	
+	/**
+	 * 
+	 * @return {@code true} if the payload is still in the payload source
+	 * and must be consumed before anything else is read from it
+	 */
+	public final synchronized boolean isAttachedToPayloadSource() {
+		return this.payloadSource != null;
+	}
+	
+	/**
+	 * Loads the payload that is still in the payload source, so that the payload source can be used for other reads;
+	 * does nothing if the payload has already been loaded or transferred.
+	 * <br>A compressed payload is only inflated when the bytes are needed.
+	 * <br>Blocking.
+	 * 
+	 * @throws RuntimeException if an I/O error occurs
+	 */
+	public final synchronized void detachFromPayloadSource() {
+		if (this.payloadSource != null) {
+			if (this.isCompressed()) {
+				this.getCompressedBytes();
+			} else {
+				this.getBytes();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the payload to {@code target}; if the offered bytes haven't been read yet and are not compressed,
+	 * they are sent directly from the source file.
+	 * <br>Blocking.
+	 * 
+	 * @param target
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws IOException if an I/O error occurs
+	 */
+	public final void transferBytesTo(final WritableByteChannel target) throws IOException {
+		final byte[] bytes;
+		
+		synchronized (this) {
+			bytes = this.isCompressed() ? this.getCompressedBytes() : this.sourceFileChannels == null ? this.getBytes() : this.bytes;
+		}
+		
+		if (bytes != null) {
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			
+			while (buffer.hasRemaining()) {
+				target.write(buffer);
+			}
+		} else {
+			this.sourceFileChannels.transferTo(this.getSourceFile(), this.getFirstByteOffset(), this.getByteCount(), target);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return {@code true} if the bytes have been transferred directly from the payload source,
+	 * so that {@link #getBytes()} can no longer be used
+	 */
+	public final synchronized boolean isTransferredToFile() {
+		return this.transferredToFile;
+	}
+	
 	@Override
 	public final int hashCode() {
-		return (int) this.getFirstByteOffset() + Arrays.hashCode(this.bytes);
+		return (int) this.getFirstByteOffset() + this.getByteCount();
 	}
 	
+	/**
+	 * If the bytes of one of the offers have been transferred to a file,
+	 * the offers are compared using their checksums instead of their bytes.
+	 */
 	@Override
 	public final boolean equals(final Object object) {
 		final DataOfferMessage that = Tools.cast(this.getClass(), object);
 		
-		return this == that || that != null && this.getSourceFile().equals(that.getSourceFile()) && this.getFirstByteOffset() == that.getFirstByteOffset() && Arrays.equals(this.getBytes(), that.getBytes());
+		if (this == that) {
+			return true;
+		}
+		
+		if (that == null || !this.getSourceFile().equals(that.getSourceFile()) ||
+				this.getFirstByteOffset() != that.getFirstByteOffset() || this.getByteCount() != that.getByteCount()) {
+			return false;
+		}
+		
+		if (this.isTransferredToFile() || that.isTransferredToFile()) {
+			return this.isChecksummed() && that.isChecksummed() && this.getChecksum() == that.getChecksum();
+		}
+		
+		return Arrays.equals(this.getBytes(), that.getBytes());
 	}
 	
 	@Override
-	public final String toString() {
-		return "DataMessage [firstByteOffset=" + this.getFirstByteOffset() + ", data=" + Arrays.toString(this.bytes) + "]";
+	public final synchronized String toString() {
+		return "DataMessage [firstByteOffset=" + this.getFirstByteOffset() + ", data=" +
+				(this.bytes != null ? Arrays.toString(this.bytes) : this.getByteCount() + " bytes") +
+				(this.isCompressed() ? ", compressed to " + this.getPayloadByteCount() + " bytes" : "") + "]";
+	}
+	
+	/**
+	 * Reads the payload from the source file or the payload source if necessary before serializing {@code this}.
+	 * 
+	 * @param output
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws IOException if an I/O error occurs
+	 */
+	private final void writeObject(final ObjectOutputStream output) throws IOException {
+		if (this.isCompressed()) {
+			this.getCompressedBytes();
+		} else {
+			this.getBytes();
+		}
+		
+		output.defaultWriteObject();
 	}
 	
 	private static final long serialVersionUID = 8990157032564141377L;
 	
+	/**
+	 * 
+	 * @param compressedBytes
+	 * <br>Should not be null
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws RuntimeException if {@code compressedBytes} is not the Deflate compression of {@code byteCount} bytes
+	 */
+	private static final byte[] inflate(final byte[] compressedBytes, final int byteCount) {
+		final byte[] result = new byte[byteCount];
+		final Inflater inflater = new Inflater();
+		
+		try {
+			inflater.setInput(compressedBytes);
+			
+			int inflatedByteCount = 0;
+			
+			while (inflatedByteCount < byteCount) {
+				final int n = inflater.inflate(result, inflatedByteCount, byteCount - inflatedByteCount);
+				
+				if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				
+				inflatedByteCount += n;
+			}
+			
+			if (inflatedByteCount != byteCount) {
+				throw new DataFormatException("Expected " + byteCount + " inflated bytes");
+			}
+		} catch (final DataFormatException exception) {
+			Tools.throwUnchecked(exception);
+		} finally {
+			inflater.end();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Blocking.
+	 * 
+	 * @param input
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param buffer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @throws EOFException if the end of the stream is reached before {@code buffer} is full
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static final void readFully(final ReadableByteChannel input, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (input.read(buffer) < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+	
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+import java.io.File;
+import java.util.Arrays;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sent by a send operation whose file offer is integrity-checked (see {@link FileOfferMessage#isIntegrityChecked()}),
+ * after the remote receive operation has received all the bytes:
+ * it contains the digest of the whole source file, which the receive operation compares with the digest of the destination file.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileDigestMessage extends AbstractOperationMessage {
+	
+	private final byte[] digest;
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param digest
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	public FileDigestMessage(final File sourceFile, final byte[] digest) {
+		super(sourceFile);
+		this.digest = digest;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final byte[] getDigest() {
+		return this.digest;
+	}
+	
+	@Override
+	public final int hashCode() {
+		return this.getSourceFile().hashCode() + Arrays.hashCode(this.getDigest());
+	}
+	
+	@Override
+	public final boolean equals(final Object object) {
+		final FileDigestMessage that = Tools.cast(this.getClass(), object);
+		
+		return this == that || that != null && this.getSourceFile().equals(that.getSourceFile()) && Arrays.equals(this.getDigest(), that.getDigest());
+	}
+	
+	@Override
+	public final String toString() {
+		return "FileDigestMessage [sourceFile=" + this.getSourceFile() + ", digest=" + toHexString(this.getDigest()) + "]";
+	}
+	
+	private static final long serialVersionUID = -2784526480133560163L;
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public static final String toHexString(final byte[] bytes) {
+		final StringBuilder result = new StringBuilder(2 * bytes.length);
+		
+		for (final byte b : bytes) {
+			result.append(Character.forDigit((b >> 4) & 0x0F, 16)).append(Character.forDigit(b & 0x0F, 16));
+		}
+		
+		return result.toString();
+	}
+	
+}
@@ -33,6 +33,10 @@ public class FileOfferMessage extends AbstractOperationMessage {
 	
 	private final long sourceByteCount;
 	
+	private final boolean integrityChecked;
+	
+	private final boolean directory;
+	
 	/**
 	 * 
 	 * @param sourceFile
@@ -40,8 +44,52 @@ public class FileOfferMessage extends AbstractOperationMessage {
 	 * <br>Shared parameter
 	 */
 	public FileOfferMessage(final File sourceFile) {
+		this(sourceFile, sourceFile.length());
+	}
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param sourceByteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	public FileOfferMessage(final File sourceFile, final long sourceByteCount) {
+		this(sourceFile, sourceByteCount, false);
+	}
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param sourceByteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param integrityChecked
+	 * <br>Range: any boolean
+	 */
+	public FileOfferMessage(final File sourceFile, final long sourceByteCount, final boolean integrityChecked) {
+		this(sourceFile, sourceByteCount, integrityChecked, false);
+	}
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param sourceByteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param integrityChecked
+	 * <br>Range: any boolean
+	 * @param directory
+	 * <br>Range: any boolean
+	 */
+	public FileOfferMessage(final File sourceFile, final long sourceByteCount, final boolean integrityChecked, final boolean directory) {
 		super(sourceFile);
-		this.sourceByteCount = sourceFile.length();
+		this.sourceByteCount = sourceByteCount;
+		this.integrityChecked = integrityChecked;
+		this.directory = directory;
 	}
 	
 	/**
@@ -53,11 +101,36 @@ public class FileOfferMessage extends AbstractOperationMessage {
 		return this.sourceByteCount;
 	}
 	
+	/**
+	 * If the offer is integrity-checked, the data offers of the transfer carry the CRC-32C of their bytes
+	 * (see {@link DataOfferMessage#getChecksum()}), and the sender sends the digest of the whole file at the end
+	 * (see {@link FileDigestMessage}).
+	 * 
+	 * @return
+	 * <br>Range: any boolean
+	 */
+	public final boolean isIntegrityChecked() {
+		return this.integrityChecked;
+	}
+	
+	/**
+	 * If the offer is for a directory, the source byte count is {@code 0L}:
+	 * the files of the tree are described by {@link ManifestMessage}s, and their bytes are transferred
+	 * one file after the other as if they were a single file (see {@link net.sourceforge.transfile.operations.FileTree}).
+	 * 
+	 * @return
+	 * <br>Range: any boolean
+	 */
+	public final boolean isDirectory() {
+		return this.directory;
+	}
+	
 	@Override
 	public final boolean equals(final Object object) {
 		final FileOfferMessage that = Tools.cast(this.getClass(), object);
 		
-		return this == that || that != null && this.getSourceFile().equals(that.getSourceFile()) && this.getSourceByteCount() == that.getSourceByteCount();
+		return this == that || that != null && this.getSourceFile().equals(that.getSourceFile()) && this.getSourceByteCount() == that.getSourceByteCount() &&
+				this.isIntegrityChecked() == that.isIntegrityChecked() && this.isDirectory() == that.isDirectory();
 	}
 	
 	@Override
@@ -69,7 +142,9 @@ public class FileOfferMessage extends AbstractOperationMessage {
 	public final String toString() {
 		return "FileOfferMessage [sourceFile="
 				+ this.getSourceFile() + ", sourceByteCount="
-				+ this.getSourceByteCount() + "]";
+				+ this.getSourceByteCount() + ", integrityChecked="
+				+ this.isIntegrityChecked() + ", directory="
+				+ this.isDirectory() + "]";
 	}
 	
 	private static final long serialVersionUID = 1615168356494289103L;
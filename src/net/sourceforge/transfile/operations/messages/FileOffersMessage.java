@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+import java.util.Arrays;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Offers several files at once, each with the stream identifier of its send operation
+ * (see {@link AbstractOperationMessage#getStreamId()}).
+ * <br>A large batch is split into several messages with the same batch identifier,
+ * so that their headers stay small enough (see {@link net.sourceforge.transfile.operations.BinaryMessageCodec#MAXIMUM_HEADER_LENGTH});
+ * the receiver uses a single destination decision for all the files of a batch.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileOffersMessage implements Message {
+	
+	private final int batchId;
+	
+	private final FileOfferMessage[] fileOffers;
+	
+	private final boolean last;
+	
+	/**
+	 * 
+	 * @param batchId
+	 * <br>Range: any int
+	 * @param fileOffers
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param last {@code true} if the batch has no other files
+	 * <br>Range: any boolean
+	 */
+	public FileOffersMessage(final int batchId, final FileOfferMessage[] fileOffers, final boolean last) {
+		this.batchId = batchId;
+		this.fileOffers = fileOffers;
+		this.last = last;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: any int
+	 */
+	public final int getBatchId() {
+		return this.batchId;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final FileOfferMessage[] getFileOffers() {
+		return this.fileOffers;
+	}
+	
+	public final boolean isLast() {
+		return this.last;
+	}
+	
+	@Override
+	public final int hashCode() {
+		return this.getBatchId() + Arrays.hashCode(this.getFileOffers());
+	}
+	
+	@Override
+	public final boolean equals(final Object object) {
+		final FileOffersMessage that = Tools.cast(this.getClass(), object);
+		
+		return
+			this == that ||
+			that != null &&
+			this.getBatchId() == that.getBatchId() &&
+			Arrays.equals(this.getFileOffers(), that.getFileOffers()) &&
+			this.isLast() == that.isLast();
+	}
+	
+	@Override
+	public final String toString() {
+		return "FileOffersMessage [batchId="
+				+ this.getBatchId() + ", fileOfferCount="
+				+ this.getFileOffers().length + ", last="
+				+ this.isLast() + "]";
+	}
+	
+	private static final long serialVersionUID = 2493587216240583172L;
+	
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+import java.io.File;
+import java.util.Arrays;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Describes consecutive entries of the file tree of a directory offer (see {@link FileOfferMessage#isDirectory()}):
+ * each entry has a path relative to the offered directory, with {@code '/'} as separator,
+ * and a byte count, which is {@code -1L} for a directory.
+ * <br>A directory always comes before the entries it contains.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ManifestMessage extends AbstractOperationMessage {
+	
+	private final int firstEntryIndex;
+	
+	private final String[] paths;
+	
+	private final long[] byteCounts;
+	
+	private final boolean last;
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstEntryIndex
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @param paths
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param byteCounts
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param last {@code true} if the tree has no other entries
+	 * <br>Range: any boolean
+	 */
+	public ManifestMessage(final File sourceFile, final int firstEntryIndex, final String[] paths, final long[] byteCounts, final boolean last) {
+		super(sourceFile);
+		this.firstEntryIndex = firstEntryIndex;
+		this.paths = paths;
+		this.byteCounts = byteCounts;
+		this.last = last;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int getFirstEntryIndex() {
+		return this.firstEntryIndex;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final String[] getPaths() {
+		return this.paths;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public final long[] getByteCounts() {
+		return this.byteCounts;
+	}
+	
+	public final boolean isLast() {
+		return this.last;
+	}
+	
+	@Override
+	public final int hashCode() {
+		return this.getSourceFile().hashCode() + this.getFirstEntryIndex() + Arrays.hashCode(this.getPaths());
+	}
+	
+	@Override
+	public final boolean equals(final Object object) {
+		final ManifestMessage that = Tools.cast(this.getClass(), object);
+		
+		return
+			this == that ||
+			that != null &&
+			this.getSourceFile().equals(that.getSourceFile()) &&
+			this.getFirstEntryIndex() == that.getFirstEntryIndex() &&
+			Arrays.equals(this.getPaths(), that.getPaths()) &&
+			Arrays.equals(this.getByteCounts(), that.getByteCounts()) &&
+			this.isLast() == that.isLast();
+	}
+	
+	@Override
+	public final String toString() {
+		return "ManifestMessage [sourceFile="
+				+ this.getSourceFile() + ", firstEntryIndex="
+				+ this.getFirstEntryIndex() + ", entryCount="
+				+ this.getPaths().length + ", last="
+				+ this.isLast() + "]";
+	}
+	
+	private static final long serialVersionUID = -6007542118904618377L;
+	
+}
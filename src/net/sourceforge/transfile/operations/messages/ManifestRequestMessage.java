@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations.messages;
+
+import java.io.File;
+
+import net.sourceforge.jenerics.Tools;
+
+/**
+ * Sent by a receive operation for a directory to ask for the entries of the file tree
+ * starting at a given index; the send operation answers with a {@link ManifestMessage}
+ * as soon as it has scanned at least one of them, or the whole tree.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ManifestRequestMessage extends AbstractOperationMessage {
+	
+	private final int firstEntryIndex;
+	
+	/**
+	 * 
+	 * @param sourceFile
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @param firstEntryIndex
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public ManifestRequestMessage(final File sourceFile, final int firstEntryIndex) {
+		super(sourceFile);
+		this.firstEntryIndex = firstEntryIndex;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int getFirstEntryIndex() {
+		return this.firstEntryIndex;
+	}
+	
+	@Override
+	public final int hashCode() {
+		return this.getSourceFile().hashCode() + this.getFirstEntryIndex();
+	}
+	
+	@Override
+	public final boolean equals(final Object object) {
+		final ManifestRequestMessage that = Tools.cast(this.getClass(), object);
+		
+		return this == that || that != null && this.getSourceFile().equals(that.getSourceFile()) && this.getFirstEntryIndex() == that.getFirstEntryIndex();
+	}
+	
+	@Override
+	public final String toString() {
+		return "ManifestRequestMessage [sourceFile=" + this.getSourceFile() + ", firstEntryIndex=" + this.getFirstEntryIndex() + "]";
+	}
+	
+	private static final long serialVersionUID = 5520384171622367452L;
+	
+}
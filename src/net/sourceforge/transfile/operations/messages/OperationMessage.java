@@ -37,4 +37,15 @@ public interface OperationMessage extends Message {
 	 */
 	public abstract File getSourceFile();
 	
+	/**
+	 * The identifier of a stream is allocated by the connection of the peer that offers the file;
+	 * the messages sent by the offering operation carry the identifier,
+	 * and the messages sent by the receiving operation carry its opposite,
+	 * so that the streams offered by both peers of a connection cannot be confused.
+	 * 
+	 * @return the stream identifying the operation, or {@code 0} if the operation is only identified by its source file
+	 * <br>Range: {@code [-Integer.MAX_VALUE .. Integer.MAX_VALUE]}
+	 */
+	public abstract int getStreamId();
+	
 }
@@ -111,6 +111,21 @@ public final class Settings {
 	 */
 	public static final File LOG_PATH = new File(FileSystemTools.getUserApplicationDirectory(TransFile.USER_APPLICATION_DIRECTORY_NAME), "log.txt");
 	
+	/*
+	 * The directory where the progress of unfinished incoming transfers is saved so that they can be resumed
+	 */
+	public static final File JOURNAL_PATH = new File(LOG_PATH.getParentFile(), "journal");
+	
+	/*
+	 * The directory where the chunks of the received files are kept for deduplication
+	 */
+	public static final File CHUNK_STORE_PATH = new File(LOG_PATH.getParentFile(), "chunks");
+	
+	/*
+	 * The maximum size in bytes of the chunks kept for deduplication
+	 */
+	public static final long CHUNK_STORE_CAPACITY = 1024L * 1024L * 1024L;
+	
 	/*
 	 * The defauls locale. Should only be used if there is neither a user preference nor a usable host default
 	 */
@@ -121,6 +136,81 @@ public final class Settings {
 	 */
 	public static final String REMOTE_PEERURLBAR_STATE_FILE_NAME = "peerurlbar_remote.state";
 	
+	/*
+	 * Whether data is compressed on connections where the remote peer accepts it too
+	 */
+	public static final boolean COMPRESSION_ENABLED = true;
+	
+	/*
+	 * The maximum number of data requests of a received file that can be waiting for an answer at the same time
+	 */
+	public static final int REQUEST_WINDOW_SIZE = 8;
+	
+	/*
+	 * Whether the size of the data requests of a received file follows the throughput and latency of the connection
+	 */
+	public static final boolean CHUNK_SIZE_ADAPTIVE = true;
+	
+	/*
+	 * Whether the received files are preallocated and mapped into memory, so that their chunks can be written in any order
+	 */
+	public static final boolean DESTINATION_MAPPED = false;
+	
+	/*
+	 * Whether the received files are streamed by the sender within a credit instead of being requested chunk by chunk
+	 */
+	public static final boolean PUSH_MODE = false;
+	
+	/*
+	 * Whether the chunks of the files sent carry a checksum, and whether the digest of the whole file is verified by the receiver
+	 */
+	public static final boolean INTEGRITY_CHECKED = true;
+	
+	/*
+	 * Whether only the differences with an existing destination file are transferred when a file is received
+	 */
+	public static final boolean DELTA_ENABLED = false;
+	
+	/*
+	 * Whether the chunks of the received files that are already in the chunk store are not transferred again
+	 */
+	public static final boolean DEDUPLICATION_ENABLED = false;
+	
+	/*
+	 * The maximum number of transfers started by the scheduler that can progress at the same time on a connection
+	 */
+	public static final int MAXIMUM_PROGRESSING_OPERATION_COUNT = 4;
+	
+	/*
+	 * Whether the scheduler starts the smallest files of a priority class first
+	 */
+	public static final boolean SHORTEST_FIRST = true;
+	
+	/*
+	 * The maximum rate of all the transfers of the application in bytes per second (0 for no limit)
+	 */
+	public static final long GLOBAL_RATE = 0L;
+	
+	/*
+	 * Daily schedule replacing the global rate when it is not empty, for example "07:00=1048576,22:00=0"
+	 */
+	public static final String GLOBAL_RATE_SCHEDULE = "";
+	
+	/*
+	 * The maximum rate of the transfers of a connection in bytes per second (0 for no limit)
+	 */
+	public static final long CONNECTION_RATE = 0L;
+	
+	/*
+	 * The maximum rate of each transfer in bytes per second (0 for no limit)
+	 */
+	public static final long OPERATION_RATE = 0L;
+	
+	/*
+	 * Whether the received messages of the transfers are processed outside of the thread reading the connection
+	 */
+	public static final boolean ASYNCHRONOUS_DISPATCH = true;
+	
 	
 	/**
 	 * Returns the user preferences for the application
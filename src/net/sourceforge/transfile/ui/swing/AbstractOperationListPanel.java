@@ -72,7 +72,7 @@ public abstract class AbstractOperationListPanel extends JPanel {
 	public final void addOperation(final Operation operation) {
 		GUITools.checkAWT();
 		
-		final OperationComponent operationComponent = new OperationComponent(this.getOperationListComponent().getSelectionModel(), operation);
+		final OperationComponent operationComponent = new OperationComponent(this.getOperationListComponent().getSelectionModel(), operation, this.getSession().getScheduler());
 		
 		this.getOperationListComponent().add(operationComponent, this.getOperationListComponent().getComponentCount() - this.getInsertionIndexFromBottom());
 		
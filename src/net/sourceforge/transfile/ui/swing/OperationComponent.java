@@ -17,6 +17,7 @@ import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Locale;
 
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
@@ -33,6 +34,8 @@ import javax.swing.TransferHandler;
 
 import net.sourceforge.transfile.operations.Operation;
 import net.sourceforge.transfile.operations.Operation.Controller;
+import net.sourceforge.transfile.operations.OperationScheduler;
+import net.sourceforge.transfile.operations.ThroughputMeter;
 
 /**
  * 
@@ -45,6 +48,16 @@ public class OperationComponent extends JPanel {
 	
 	private final Operation operation;
 	
+	private final OperationScheduler scheduler;
+	
+	private final ThroughputMeter throughputMeter;
+	
+	private JProgressBar progressBar;
+	
+	private Operation.State sampledState;
+	
+	private double sampledProgress;
+	
 	/**
 	 * 
 	 * @param selectionModel 
@@ -53,10 +66,15 @@ public class OperationComponent extends JPanel {
 	 * @param operation
 	 * <br>Should not be null
 	 * <br>Shared parameter
+	 * @param scheduler the scheduler through which the operation is started
+	 * <br>Can be null
+	 * <br>Shared parameter
 	 */
-	public OperationComponent(final SelectionModel selectionModel, final Operation operation) {
+	public OperationComponent(final SelectionModel selectionModel, final Operation operation, final OperationScheduler scheduler) {
 		this.selectionModel = selectionModel;
 		this.operation = operation;
+		this.scheduler = scheduler;
+		this.throughputMeter = new ThroughputMeter();
 		
 		this.addMouseListener(new MouseAdapter() {
 			
@@ -97,6 +115,100 @@ public class OperationComponent extends JPanel {
 		super.paint(graphics);
 	}
 	
+	@Override
+	public final void addNotify() {
+		super.addNotify();
+		
+		ProgressSampler.INSTANCE.register(this);
+	}
+	
+	@Override
+	public final void removeNotify() {
+		ProgressSampler.INSTANCE.unregister(this);
+		
+		super.removeNotify();
+	}
+	
+	/**
+	 * Updates the throughput and the progress bar from the current progress of the operation;
+	 * the progress bar is only modified if what it shows changes.
+	 * <br>Executed in the AWT Event Dispatching Thread.
+	 * 
+	 * @param time in nanoseconds (see {@link System#nanoTime()})
+	 * <br>Range: any long
+	 */
+	final void sample(final long time) {
+		final Operation operation = this.getOperation();
+		final Operation.State state = operation.getState();
+		
+		if (state == Operation.State.REMOVED || this.progressBar == null) {
+			return;
+		}
+		
+		this.sampledState = state;
+		this.sampledProgress = operation.getProgress();
+		
+		if (state == Operation.State.PROGRESSING) {
+			this.throughputMeter.sample(operation.getProgressByteCount(), time);
+		} else {
+			this.throughputMeter.reset();
+		}
+		
+		final int percentage = (int) (this.sampledProgress * 100.0);
+		final StringBuilder string = new StringBuilder(operation.getFileName());
+		
+		if (state == Operation.State.QUEUED) {
+			string.append(" (queued)");
+		} else {
+			string.append(" (").append(percentage).append('%');
+			
+			if (this.throughputMeter.isMeasured()) {
+				final long remainingTime = this.throughputMeter.getRemainingTime(operation.getTotalByteCount());
+				
+				string.append(", ").append(formatByteRate(this.throughputMeter.getByteRate()));
+				
+				if (0L <= remainingTime) {
+					string.append(", ").append(formatDuration(remainingTime)).append(" left");
+				}
+			}
+			
+			string.append(')');
+		}
+		
+		if (this.progressBar.getValue() != percentage) {
+			this.progressBar.setValue(percentage);
+		}
+		
+		if (!string.toString().equals(this.progressBar.getString())) {
+			this.progressBar.setString(string.toString());
+		}
+	}
+	
+	/**
+	 * Executed in the AWT Event Dispatching Thread.
+	 * 
+	 * @return {@code true} if the state and the progress of the operation haven't changed since the last sample
+	 */
+	final boolean isUpToDate() {
+		final Operation operation = this.getOperation();
+		
+		return this.sampledState == operation.getState() && this.sampledProgress == operation.getProgress();
+	}
+	
+	/**
+	 * Schedules the operation if it is queued, paused or canceled and if there is a scheduler;
+	 * otherwise, starts it directly.
+	 */
+	final void start() {
+		final Operation.State state = this.getOperation().getState();
+		
+		if (this.scheduler != null && (state == Operation.State.QUEUED || state == Operation.State.PAUSED || state == Operation.State.CANCELED)) {
+			this.scheduler.schedule(this.getOperation());
+		} else {
+			this.getOperation().getController().start();
+		}
+	}
+	
 	/**
 	 * Does nothing if the selection model is null.
 	 */
@@ -199,7 +311,7 @@ public class OperationComponent extends JPanel {
 			@Override
 			protected final void exportDone(final JComponent source, final Transferable data, final int action) {
 				if (TransferHandler.NONE == action) {
-					OperationComponent.this.getOperation().getController().start();
+					OperationComponent.this.start();
 				}
 			}
 			
@@ -228,61 +340,15 @@ public class OperationComponent extends JPanel {
 		result.setString(this.getOperation().getFileName() + " (queued)");
 		result.setStringPainted(true);
 		
+		this.progressBar = result;
+		
 		this.getOperation().addOperationListener(new AbstractOperationListener() {
 			
 			@Override
 			protected final void doStateChanged() {
 				super.doStateChanged();
 				
-				final Operation operation = OperationComponent.this.getOperation();
-				
-				switch (operation.getState()) {
-				case CANCELED:
-				case DONE:
-				case PAUSED:
-				case PROGRESSING:
-					this.setProgressingString(operation);
-					break;
-				case QUEUED:
-					result.setString(operation.getFileName() + " (queued)");
-					break;
-				case REMOVED:
-					break;
-				}
-				
-			}
-			
-			@Override
-			protected final void doProgressChanged() {
-				super.doProgressChanged();
-				
-				final Operation operation = OperationComponent.this.getOperation();
-				
-				result.setValue(this.getProgressPercentage(operation));
-				
-				this.setProgressingString(operation);
-			}
-			
-			/**
-			 * TODO doc
-			 * 
-			 * @param operation
-			 * <br>Should not be null
-			 */
-			private final void setProgressingString(final Operation operation) {
-				result.setString(operation.getFileName() + " (" + this.getProgressPercentage(operation) + "%)");
-			}
-			
-			/**
-			 * TODO doc
-			 * 
-			 * @param operation
-			 * <br>Should not be null
-			 * @return
-			 * <br>Range: {@code [0 .. 100]}
-			 */
-			private final int getProgressPercentage(final Operation operation) {
-				return (int) (operation.getProgress() * 100.0);
+				ProgressSampler.INSTANCE.stateChanged(OperationComponent.this);
 			}
 			
 		});
@@ -383,14 +449,7 @@ public class OperationComponent extends JPanel {
 		
 		@Override
 		public final void progressChanged() {
-			SwingUtilities.invokeLater(new Runnable() {
-				
-				@Override
-				public final void run() {
-					AbstractOperationListener.this.doProgressChanged();
-				}
-				
-			});
+			// Do nothing; the progress is sampled by ProgressSampler.INSTANCE
 		}
 		
 		@Override
@@ -405,15 +464,6 @@ public class OperationComponent extends JPanel {
 			});
 		}
 		
-		/**
-		 * Executed in the AWT Event Dispatching Thread.
-		 * 
-		 * @throws IllegalStateException if the current thread is not the AWT Event Dispatching Thread
-		 */
-		protected void doProgressChanged() {
-			GUITools.checkAWT();
-		}
-		
 		/**
 		 * Executed in the AWT Event Dispatching Thread.
 		 * 
@@ -446,7 +496,7 @@ public class OperationComponent extends JPanel {
 			case QUEUED:
 			case CANCELED:
 				try {
-					controller.start();
+					OperationComponent.this.start();
 				} catch (final Throwable exception) {
 					exception.printStackTrace();
 				}
@@ -549,6 +599,12 @@ public class OperationComponent extends JPanel {
 	
 	public static final Color DEFAULT_BORDER_COLOR = Color.BLACK;
 	
+	private static final String[] BYTE_RATE_UNITS = { "B/s", "KB/s", "MB/s", "GB/s" };
+	
+	private static final double BYTE_RATE_UNIT_SIZE = 1024.0;
+	
+	private static final long NANOSECONDS_PER_SECOND = 1000000000L;
+	
 	/**
 	 * Creates and returns a temporary file that will be deleted upon exit.
 	 *
@@ -608,6 +664,44 @@ public class OperationComponent extends JPanel {
 		return new JFileChooser().getIcon(temporaryFile);
 	}
 	
+	/**
+	 * 
+	 * @param byteRate in bytes per second
+	 * <br>Range: {@code [0.0 .. Double.MAX_VALUE]}
+	 * @return a string such as "1.2 MB/s"
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private static final String formatByteRate(final double byteRate) {
+		double value = byteRate;
+		int unitIndex = 0;
+		
+		while (BYTE_RATE_UNIT_SIZE <= value && unitIndex + 1 < BYTE_RATE_UNITS.length) {
+			value /= BYTE_RATE_UNIT_SIZE;
+			++unitIndex;
+		}
+		
+		return String.format(Locale.ENGLISH, unitIndex == 0 ? "%.0f %s" : "%.1f %s", value, BYTE_RATE_UNITS[unitIndex]);
+	}
+	
+	/**
+	 * 
+	 * @param duration in nanoseconds
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @return a string such as "00:35" or "2:05:00"
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private static final String formatDuration(final long duration) {
+		final long seconds = (duration + NANOSECONDS_PER_SECOND - 1L) / NANOSECONDS_PER_SECOND;
+		
+		if (seconds < 3600L) {
+			return String.format(Locale.ENGLISH, "%02d:%02d", seconds / 60L, seconds % 60L);
+		}
+		
+		return String.format(Locale.ENGLISH, "%d:%02d:%02d", seconds / 3600L, seconds / 60L % 60L, seconds % 60L);
+	}
+	
 	/**
 	 * 
 	 * TODO doc
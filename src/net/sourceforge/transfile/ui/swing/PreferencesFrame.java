@@ -103,6 +103,10 @@ public class PreferencesFrame extends JDialog {
 				Logger.getLogger(TransFile.PACKAGE_NAME).setLevel(Level.parse(value.toString()));
 			}
 		}
+		
+		if (this.getOwner() instanceof SwingGUI) {
+			SwingGUI.updateRates(((SwingGUI) this.getOwner()).getSession());
+		}
 	}
 	
 	/**
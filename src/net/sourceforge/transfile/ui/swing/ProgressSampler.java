@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.ui.swing;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.swing.Timer;
+
+import net.sourceforge.transfile.operations.Operation;
+
+/**
+ * Updates the progress of registered operation components at a fixed frame rate in the AWT Event Dispatching Thread,
+ * instead of once per progress notification.
+ * <br>Operations can notify their progress for every chunk, much faster than the screen can show it;
+ * sampling coalesces all the notifications of a frame into a single update of each visible component.
+ * <br>At each frame, the components of progressing operations are sampled if they are visible in their viewport,
+ * and the other components only if their operation has changed since they were last sampled.
+ * <br>The timer stops when no registered operation is progressing, and starts again when
+ * a registered component reports that its operation is progressing (see {@link #stateChanged(OperationComponent)}).
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ProgressSampler {
+	
+	private final Set<OperationComponent> components;
+	
+	private final Timer timer;
+	
+	/**
+	 * 
+	 * @param frameRate in samples per second
+	 * <br>Range: {@code [1 .. 1000]}
+	 */
+	public ProgressSampler(final int frameRate) {
+		this.components = new LinkedHashSet<OperationComponent>();
+		this.timer = new Timer(1000 / frameRate, new ActionListener() {
+			
+			@Override
+			public final void actionPerformed(final ActionEvent event) {
+				ProgressSampler.this.sample();
+			}
+			
+		});
+		
+		this.timer.setCoalesce(true);
+	}
+	
+	/**
+	 * Samples {@code component} immediately and then at each frame until it is unregistered;
+	 * does nothing if {@code component} is already registered.
+	 * <br>Must be called in the AWT Event Dispatching Thread.
+	 * 
+	 * @param component
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 * @throws IllegalStateException if the current thread is not the AWT Event Dispatching Thread
+	 */
+	public final void register(final OperationComponent component) {
+		GUITools.checkAWT();
+		
+		if (this.components.add(component)) {
+			this.stateChanged(component);
+		}
+	}
+	
+	/**
+	 * Does nothing if {@code component} is not registered.
+	 * <br>Must be called in the AWT Event Dispatching Thread.
+	 * 
+	 * @param component
+	 * <br>Can be null
+	 * @throws IllegalStateException if the current thread is not the AWT Event Dispatching Thread
+	 */
+	public final void unregister(final OperationComponent component) {
+		GUITools.checkAWT();
+		
+		this.components.remove(component);
+		
+		if (this.components.isEmpty()) {
+			this.timer.stop();
+		}
+	}
+	
+	/**
+	 * Samples {@code component} immediately, and starts the timer if its operation is progressing;
+	 * does nothing if {@code component} is not registered.
+	 * <br>Must be called in the AWT Event Dispatching Thread.
+	 * 
+	 * @param component
+	 * <br>Should not be null
+	 * @throws IllegalStateException if the current thread is not the AWT Event Dispatching Thread
+	 */
+	public final void stateChanged(final OperationComponent component) {
+		GUITools.checkAWT();
+		
+		if (!this.components.contains(component)) {
+			return;
+		}
+		
+		component.sample(System.nanoTime());
+		
+		if (component.getOperation().getState() == Operation.State.PROGRESSING && !this.timer.isRunning()) {
+			this.timer.start();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	public final int getComponentCount() {
+		return this.components.size();
+	}
+	
+	/**
+	 * 
+	 * @return {@code true} if the components are sampled at each frame
+	 */
+	public final boolean isRunning() {
+		return this.timer.isRunning();
+	}
+	
+	/**
+	 * Samples the registered components that need it, and stops the timer if no operation is progressing.
+	 * <br>Executed in the AWT Event Dispatching Thread.
+	 */
+	final void sample() {
+		final long time = System.nanoTime();
+		boolean progressing = false;
+		
+		for (final OperationComponent component : this.components) {
+			if (component.getOperation().getState() == Operation.State.PROGRESSING) {
+				progressing = true;
+				
+				if (!component.getVisibleRect().isEmpty()) {
+					component.sample(time);
+				}
+			} else if (!component.isUpToDate()) {
+				// Last update after the end of the progression, even if the component isn't visible
+				component.sample(time);
+			}
+		}
+		
+		if (!progressing) {
+			this.timer.stop();
+		}
+	}
+	
+	/**
+	 * In samples per second.
+	 */
+	public static final int FRAME_RATE = 20;
+	
+	/**
+	 * The sampler used by all the operation components.
+	 */
+	public static final ProgressSampler INSTANCE = new ProgressSampler(FRAME_RATE);
+	
+}
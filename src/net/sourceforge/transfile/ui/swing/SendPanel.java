@@ -31,6 +31,8 @@ import java.awt.dnd.DropTargetDropEvent;
 import java.awt.dnd.DropTargetEvent;
 import java.awt.event.ActionEvent;
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
@@ -83,7 +85,26 @@ public class SendPanel extends AbstractOperationListPanel {
 	 * <br>Shared parameter
 	 */
 	final void offerFile(final File file) {
-		this.getSession().offerFile(file);
+		if (file.isDirectory()) {
+			this.getSession().offerDirectory(file);
+		} else {
+			this.getSession().offerFile(file);
+		}
+	}
+	
+	/**
+	 * Several files are offered in a single batch, so that the remote peer chooses their destination only once.
+	 * 
+	 * @param files
+	 * <br>Should not be null
+	 * <br>Shared parameter
+	 */
+	final void offerFiles(final List<File> files) {
+		if (files.size() == 1) {
+			this.offerFile(files.get(0));
+		} else if (!files.isEmpty()) {
+			this.getSession().offerFiles(files);
+		}
 	}
 	
 	private final void setup() {
@@ -126,10 +147,11 @@ public class SendPanel extends AbstractOperationListPanel {
 		public final void actionPerformed(final ActionEvent event) {
 			final JFileChooser fileChooser = new JFileChooser();
 			
-			fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+			fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+			fileChooser.setMultiSelectionEnabled(true);
 			
-			if (JFileChooser.APPROVE_OPTION == fileChooser.showOpenDialog(SendPanel.this) && fileChooser.getSelectedFile() != null) {
-				SendPanel.this.offerFile(fileChooser.getSelectedFile());
+			if (JFileChooser.APPROVE_OPTION == fileChooser.showOpenDialog(SendPanel.this)) {
+				SendPanel.this.offerFiles(Arrays.asList(fileChooser.getSelectedFiles()));
 			}
 		}
 		
@@ -162,9 +184,7 @@ public class SendPanel extends AbstractOperationListPanel {
 		public final void drop(final DropTargetDropEvent event) {
 			this.componentToHighlight.setBorder(null);
 			
-			for (final File file : GUITools.getFiles(event)) {
-				SendPanel.this.offerFile(file);
-			}
+			SendPanel.this.offerFiles(GUITools.getFiles(event));
 		}
 		
 		@Override
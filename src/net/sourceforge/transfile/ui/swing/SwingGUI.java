@@ -58,9 +58,13 @@ import net.sourceforge.jmacadapter.eawtwrappers.ApplicationEvent;
 import net.sourceforge.transfile.backend.BackendEventHandler;
 import net.sourceforge.transfile.backend.ControllableBackend;
 import net.sourceforge.jenerics.i18n.Translator;
+import net.sourceforge.transfile.operations.ChunkStore;
+import net.sourceforge.transfile.operations.RateLimiter;
+import net.sourceforge.transfile.operations.RateSchedule;
 import net.sourceforge.transfile.operations.ReceiveOperation;
 import net.sourceforge.transfile.operations.Session;
 import net.sourceforge.transfile.operations.SimpleSocketConnection;
+import net.sourceforge.transfile.operations.TransferJournal;
 import net.sourceforge.transfile.settings.Settings;
 import net.sourceforge.transfile.settings.exceptions.IllegalConfigValueException;
 import net.sourceforge.transfile.ui.UserInterface;
@@ -589,7 +593,54 @@ public class SwingGUI extends JFrame implements UserInterface, BackendEventHandl
 	 * <br>New
 	 */
 	static final Session createSession() {
-		return new Session(new SimpleSocketConnection(), new DestinationFileProvider());
+		final SimpleSocketConnection connection = new SimpleSocketConnection();
+		
+		connection.setCompressionEnabled(Settings.getPreferences().getBoolean("compression_enabled", Settings.COMPRESSION_ENABLED));
+		connection.setAsynchronousDispatch(Settings.getPreferences().getBoolean("asynchronous_dispatch", Settings.ASYNCHRONOUS_DISPATCH));
+		
+		final Session result = new Session(connection, new DestinationFileProvider());
+		
+		result.setRequestWindowSize(Math.max(1, Settings.getPreferences().getInt("request_window_size", Settings.REQUEST_WINDOW_SIZE)));
+		result.setChunkSizeAdaptive(Settings.getPreferences().getBoolean("chunk_size_adaptive", Settings.CHUNK_SIZE_ADAPTIVE));
+		result.setDestinationMapped(Settings.getPreferences().getBoolean("destination_mapped", Settings.DESTINATION_MAPPED));
+		result.setPushMode(Settings.getPreferences().getBoolean("push_mode", Settings.PUSH_MODE));
+		result.setIntegrityChecked(Settings.getPreferences().getBoolean("integrity_checked", Settings.INTEGRITY_CHECKED));
+		result.setDeltaEnabled(Settings.getPreferences().getBoolean("delta_enabled", Settings.DELTA_ENABLED));
+		result.getScheduler().setMaximumProgressingOperationCount(Settings.getPreferences().getInt("maximum_progressing_operation_count", Settings.MAXIMUM_PROGRESSING_OPERATION_COUNT));
+		result.getScheduler().setShortestFirst(Settings.getPreferences().getBoolean("shortest_first", Settings.SHORTEST_FIRST));
+		result.setTransferJournal(new TransferJournal(new File(Settings.getPreferences().get("journal_path", Settings.JOURNAL_PATH.getAbsolutePath()))));
+		
+		if (Settings.getPreferences().getBoolean("deduplication_enabled", Settings.DEDUPLICATION_ENABLED)) {
+			result.setChunkStore(new ChunkStore(new File(Settings.getPreferences().get("chunk_store_path", Settings.CHUNK_STORE_PATH.getAbsolutePath())),
+					Settings.getPreferences().getLong("chunk_store_capacity", Settings.CHUNK_STORE_CAPACITY)));
+		}
+		
+		updateRates(result);
+		
+		return result;
+	}
+	
+	/**
+	 * Applies the rate settings to the global rate limiter, to the connection of {@code session} and to its operations;
+	 * called again when the preferences are saved, so that the changes take effect immediately.
+	 * 
+	 * @param session
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 */
+	static final void updateRates(final Session session) {
+		RateLimiter.GLOBAL.setRate(Math.max(0L, Settings.getPreferences().getLong("global_rate", Settings.GLOBAL_RATE)));
+		
+		try {
+			RateLimiter.GLOBAL.setSchedule(RateSchedule.parse(Settings.getPreferences().get("global_rate_schedule", Settings.GLOBAL_RATE_SCHEDULE)));
+		} catch (final IllegalArgumentException exception) {
+			getLoggerForThisMethod().log(Level.WARNING, "Ignoring invalid rate schedule", exception);
+			
+			RateLimiter.GLOBAL.setSchedule(null);
+		}
+		
+		session.getConnection().getRateLimiter().setRate(Math.max(0L, Settings.getPreferences().getLong("connection_rate", Settings.CONNECTION_RATE)));
+		session.setOperationRate(Math.max(0L, Settings.getPreferences().getLong("operation_rate", Settings.OPERATION_RATE)));
 	}
 	
 	/**
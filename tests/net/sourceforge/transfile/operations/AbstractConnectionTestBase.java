@@ -29,6 +29,7 @@ import java.util.List;
 import net.sourceforge.transfile.operations.messages.DataOfferMessage;
 import net.sourceforge.transfile.operations.messages.DisconnectMessage;
 import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.transfile.operations.messages.StateMessage;
 
 import org.junit.Test;
 
@@ -135,6 +136,49 @@ public abstract class AbstractConnectionTestBase extends AbstractTestWithConnect
 		), this.getConnectionRecorder2().getEvents());
 	}
 	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testStreamListener() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final List<Message> streamMessages = new ArrayList<Message>();
+		final StateMessage streamMessage = new StateMessage(new File("dummy"), Operation.State.PROGRESSING);
+		final StateMessage otherStreamMessage = new StateMessage(new File("dummy"), Operation.State.PAUSED);
+		
+		streamMessage.setStreamId(-42);
+		otherStreamMessage.setStreamId(42);
+		
+		this.getConnection2().addStreamListener(-42, new Connection.AbstractListener() {
+			
+			@Override
+			protected final void doMessageReceived(final Message message) {
+				streamMessages.add(message);
+			}
+			
+		});
+		
+		this.getConnection1().sendMessage(streamMessage);
+		this.getConnection1().sendMessage(otherStreamMessage);
+		this.waitUntilMatchingConnectionPairAreReady();
+		this.getConnection2().removeStreamListener(-42);
+		this.getConnection1().sendMessage(streamMessage);
+		this.waitUntilMatchingConnectionPairAreReady();
+		this.getConnection1().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(streamMessage), streamMessages);
+		assertEquals(-42, ((StateMessage) streamMessages.get(0)).getStreamId());
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				streamMessage,
+				otherStreamMessage,
+				streamMessage,
+				Connection.State.DISCONNECTED,
+				new DisconnectMessage()
+		), this.getConnectionRecorder2().getEvents());
+	}
+	
 	/**
 	 * TODO doc
 	 * 
@@ -21,16 +21,25 @@ package net.sourceforge.transfile.operations;
 
 import static org.junit.Assert.*;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.util.Arrays;
 import org.junit.Test;
 
 import net.sourceforge.transfile.operations.Operation.State;
+import net.sourceforge.transfile.operations.messages.BlockCopyMessage;
+import net.sourceforge.transfile.operations.messages.ChunkHashesMessage;
+import net.sourceforge.transfile.operations.messages.ChunkHashesRequestMessage;
+import net.sourceforge.transfile.operations.messages.DataCreditMessage;
 import net.sourceforge.transfile.operations.messages.DataOfferMessage;
 import net.sourceforge.transfile.operations.messages.DataRequestMessage;
 import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+import net.sourceforge.transfile.operations.messages.FileDigestMessage;
 import net.sourceforge.transfile.operations.messages.FileOfferMessage;
+import net.sourceforge.transfile.operations.messages.ManifestMessage;
+import net.sourceforge.transfile.operations.messages.ManifestRequestMessage;
 import net.sourceforge.transfile.operations.messages.Message;
 import net.sourceforge.transfile.operations.messages.StateMessage;
 import net.sourceforge.jenerics.Tools;
@@ -139,6 +148,133 @@ public abstract class AbstractReceiveOperationTestBase extends AbstractOperation
 		assertEquals(sourceFile.length(), destinationFile.length());
 	}
 	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReceiveDataWithRequestWindow() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = this.createOperation(this.getConnection1(), sourceFile);
+		final File destinationFile = operation.getDestinationFileProvider().getDestinationFile("");
+		final OperationRecorder operationRecorder = new OperationRecorder(operation);
+		final Message acceptMessage = new StateMessage(sourceFile, State.PROGRESSING);
+		
+		operation.setRequestWindowSize(2);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(acceptMessage);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 0L, (byte) '4'));
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 1L, (byte) '2'));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataRequestMessage(sourceFile, 0L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 1L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(Arrays.asList(
+				(Object) Operation.State.PROGRESSING,
+				0.5,
+				1.0,
+				Operation.State.DONE
+		), operationRecorder.getEvents());
+		assertEquals(sourceFile.length(), destinationFile.length());
+	}
+		
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReceiveDataOutOfOrderWithMappedDestination() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = this.createOperation(this.getConnection1(), sourceFile);
+		final File destinationFile = operation.getDestinationFileProvider().getDestinationFile("");
+		final OperationRecorder operationRecorder = new OperationRecorder(operation);
+		final Message acceptMessage = new StateMessage(sourceFile, State.PROGRESSING);
+		
+		operation.setRequestWindowSize(2);
+		operation.setDestinationMapped(true);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(acceptMessage);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 1L, (byte) '2'));
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 0L, (byte) '4'));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataRequestMessage(sourceFile, 0L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 1L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(Arrays.asList(
+				(Object) Operation.State.PROGRESSING,
+				0.5,
+				1.0,
+				Operation.State.DONE
+		), operationRecorder.getEvents());
+		assertEquals("42", new BufferedReader(new FileReader(destinationFile)).readLine());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReceiveDataInPushMode() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = this.createOperation(this.getConnection1(), sourceFile);
+		final File destinationFile = operation.getDestinationFileProvider().getDestinationFile("");
+		final OperationRecorder operationRecorder = new OperationRecorder(operation);
+		final Message acceptMessage = new StateMessage(sourceFile, State.PROGRESSING);
+		
+		operation.setRequestWindowSize(2);
+		operation.setPushMode(true);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(acceptMessage);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 0L, (byte) '4'));
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 1L, (byte) '2'));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataCreditMessage(sourceFile, 0L, 2L, true),
+				new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(Arrays.asList(
+				(Object) Operation.State.PROGRESSING,
+				0.5,
+				1.0,
+				Operation.State.DONE
+		), operationRecorder.getEvents());
+		assertEquals(sourceFile.length(), destinationFile.length());
+	}
+	
 	@Test(timeout = TEST_TIMEOUT)
 	public final void testReceiveDataWithPause() {
 		this.createAndConnectMatchingConnectionPair();
@@ -206,6 +342,361 @@ public abstract class AbstractReceiveOperationTestBase extends AbstractOperation
 		assertEquals(sourceFile.length(), destinationFile.length());
 	}
 	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testResumeFromJournal() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = this.createOperation(this.getConnection1(), sourceFile);
+		final File destinationFile = operation.getDestinationFileProvider().getDestinationFile("");
+		final OperationRecorder operationRecorder = new OperationRecorder(operation);
+		final Message acceptMessage = new StateMessage(sourceFile, State.PROGRESSING);
+		final TransferJournal journal = new TransferJournal(TransferJournalTest.createTemporaryDirectory());
+		
+		// The first byte has been received before, and the second one is a leftover that must be removed
+		TransferJournalTest.write(destinationFile, "4X");
+		journal.put(new TransferJournal.Entry(sourceFile, sourceFile.length(), destinationFile, 1L, TransferJournalTest.checksum("4")));
+		operation.setTransferJournal(journal);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(acceptMessage);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 1L, (byte) '2'));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataRequestMessage(sourceFile, 1L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(Arrays.asList(
+				(Object) 0.5,
+				Operation.State.PROGRESSING,
+				1.0,
+				Operation.State.DONE
+		), operationRecorder.getEvents());
+		assertEquals("42", new BufferedReader(new FileReader(destinationFile)).readLine());
+		assertEquals(sourceFile.length(), destinationFile.length());
+		assertNull(journal.get(destinationFile));
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testRestartWithInvalidJournalEntry() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = this.createOperation(this.getConnection1(), sourceFile);
+		final File destinationFile = operation.getDestinationFileProvider().getDestinationFile("");
+		final Message acceptMessage = new StateMessage(sourceFile, State.PROGRESSING);
+		final TransferJournal journal = new TransferJournal(TransferJournalTest.createTemporaryDirectory());
+		
+		// The destination file has been modified since the entry was saved
+		TransferJournalTest.write(destinationFile, "5");
+		journal.put(new TransferJournal.Entry(sourceFile, sourceFile.length(), destinationFile, 1L, TransferJournalTest.checksum("4")));
+		operation.setTransferJournal(journal);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(acceptMessage);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 0L, (byte) '4'));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 1L, (byte) '2'));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(new DataRequestMessage(sourceFile, 0L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT), this.getConnectionRecorder2().getEvents().get(3));
+		assertEquals("42", new BufferedReader(new FileReader(destinationFile)).readLine());
+		assertEquals(sourceFile.length(), destinationFile.length());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReceiveDataWithIntegrityCheck() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = new ReceiveOperation(this.getConnection1(),
+				new FileOfferMessage(sourceFile, sourceFile.length(), true), new TemporaryDestinationFileProvider(sourceFile));
+		final File destinationFile = operation.getDestinationFileProvider().getDestinationFile("");
+		final OperationRecorder operationRecorder = new OperationRecorder(operation);
+		final Message acceptMessage = new StateMessage(sourceFile, State.PROGRESSING);
+		final DataOfferMessage corruptedOffer = new DataOfferMessage(sourceFile, 0L, (byte) '5');
+		
+		corruptedOffer.setChecksum(Crc32c.compute(new byte[] { '4' }));
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(acceptMessage);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(corruptedOffer);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(checksummed(new DataOfferMessage(sourceFile, 0L, (byte) '4')));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(checksummed(new DataOfferMessage(sourceFile, 1L, (byte) '2')));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		
+		assertEquals(State.PROGRESSING, operation.getState());
+		
+		this.getConnection2().sendMessage(new FileDigestMessage(sourceFile, FileDigestTest.digest("42")));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataRequestMessage(sourceFile, 0L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 0L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 1L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(Arrays.asList(
+				(Object) Operation.State.PROGRESSING,
+				0.5,
+				1.0,
+				Operation.State.DONE
+		), operationRecorder.getEvents());
+		assertEquals(1, operation.getCorruptedChunkCount());
+		assertEquals("42", new BufferedReader(new FileReader(destinationFile)).readLine());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReceiveDataWithIntegrityCheckAndRequestWindow() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = new ReceiveOperation(this.getConnection1(),
+				new FileOfferMessage(sourceFile, sourceFile.length(), true), new TemporaryDestinationFileProvider(sourceFile));
+		final File destinationFile = operation.getDestinationFileProvider().getDestinationFile("");
+		final DataOfferMessage corruptedOffer = new DataOfferMessage(sourceFile, 0L, (byte) '5');
+		
+		corruptedOffer.setChecksum(Crc32c.compute(new byte[] { '4' }));
+		
+		operation.setRequestWindowSize(2);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new StateMessage(sourceFile, State.PROGRESSING));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(corruptedOffer);
+		// Answer to the request that was in flight when the corrupted chunk was received
+		this.getConnection2().sendMessage(checksummed(new DataOfferMessage(sourceFile, 1L, (byte) '2')));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(checksummed(new DataOfferMessage(sourceFile, 0L, (byte) '4')));
+		this.getConnection2().sendMessage(checksummed(new DataOfferMessage(sourceFile, 1L, (byte) '2')));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new FileDigestMessage(sourceFile, FileDigestTest.digest("42")));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataRequestMessage(sourceFile, 0L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 1L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 0L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 1L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(1, operation.getCorruptedChunkCount());
+		assertEquals("42", new BufferedReader(new FileReader(destinationFile)).readLine());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReceiveDataWithWrongDigest() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = new ReceiveOperation(this.getConnection1(),
+				new FileOfferMessage(sourceFile, sourceFile.length(), true), new TemporaryDestinationFileProvider(sourceFile));
+		
+		operation.setDestinationMapped(true);
+		operation.setRequestWindowSize(2);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new StateMessage(sourceFile, State.PROGRESSING));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(checksummed(new DataOfferMessage(sourceFile, 1L, (byte) '2')));
+		this.getConnection2().sendMessage(checksummed(new DataOfferMessage(sourceFile, 0L, (byte) '4')));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new FileDigestMessage(sourceFile, FileDigestTest.digest("43")));
+		waitUntilState(operation, State.CANCELED);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(0, operation.getCorruptedChunkCount());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReceiveDataInDeltaMode() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = this.createOperation(this.getConnection1(), sourceFile);
+		final File destinationFile = operation.getDestinationFileProvider().getDestinationFile("");
+		final OperationRecorder operationRecorder = new OperationRecorder(operation);
+		
+		// The older version only contains the first byte
+		TransferJournalTest.write(destinationFile, "4");
+		operation.setDeltaEnabled(true);
+		
+		final BlockSignatures basisSignatures = BlockSignatures.compute(destinationFile);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new StateMessage(sourceFile, State.PROGRESSING));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		// The literal byte arrives before the copied byte that precedes it
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 1L, (byte) '2'));
+		this.getConnection2().sendMessage(new BlockCopyMessage(sourceFile, 0L, 0, 1));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				basisSignatures.toMessages(sourceFile).get(0),
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataRequestMessage(sourceFile, 0L, 2),
+				new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(Arrays.asList(
+				(Object) Operation.State.PROGRESSING,
+				0.5,
+				1.0,
+				Operation.State.DONE
+		), operationRecorder.getEvents());
+		assertEquals(1L, operation.getCopiedByteCount());
+		assertEquals("42", new BufferedReader(new FileReader(destinationFile)).readLine());
+		assertFalse(new File(destinationFile.getPath() + ReceiveOperation.DELTA_FILE_SUFFIX).exists());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReceiveDataInDeduplicationMode() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final ReceiveOperation operation = this.createOperation(this.getConnection1(), sourceFile);
+		final File destinationFile = operation.getDestinationFileProvider().getDestinationFile("");
+		final OperationRecorder operationRecorder = new OperationRecorder(operation);
+		final ChunkStore chunkStore = new ChunkStore(ChunkStoreTest.createTemporaryDirectory(), 1024L * 1024L);
+		final byte[] chunk1 = { '4' };
+		final byte[] chunk2 = { '2' };
+		final byte[] hashes = new byte[2 * ChunkStore.HASH_LENGTH];
+		
+		// The first chunk is already in the store
+		chunkStore.put(ChunkStoreTest.hash(chunk1), chunk1);
+		System.arraycopy(ChunkStoreTest.hash(chunk1), 0, hashes, 0, ChunkStore.HASH_LENGTH);
+		System.arraycopy(ChunkStoreTest.hash(chunk2), 0, hashes, ChunkStore.HASH_LENGTH, ChunkStore.HASH_LENGTH);
+		operation.setChunkStore(chunkStore);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new StateMessage(sourceFile, State.PROGRESSING));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new ChunkHashesMessage(sourceFile, 0L, new int[] { 1, 1 }, hashes));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 1L, (byte) '2'));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new ChunkHashesRequestMessage(sourceFile, 0L, 2),
+				new DataRequestMessage(sourceFile, 1L, 1),
+				new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(Arrays.asList(
+				(Object) Operation.State.PROGRESSING,
+				0.5,
+				1.0,
+				Operation.State.DONE
+		), operationRecorder.getEvents());
+		assertEquals(1L, operation.getDeduplicatedByteCount());
+		assertEquals("42", new BufferedReader(new FileReader(destinationFile)).readLine());
+		assertArrayEquals(chunk2, chunkStore.get(ChunkStoreTest.hash(chunk2)));
+		assertFalse(chunkStore.isModified());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReceiveDirectory() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final FileOfferMessage directoryOffer = new FileOfferMessage(sourceFile, 0L, false, true);
+		final ReceiveOperation operation = new ReceiveOperation(this.getConnection1(), directoryOffer, new TemporaryDestinationFileProvider(sourceFile));
+		final File destinationDirectory = operation.getDestinationFileProvider().getDestinationFile("");
+		final OperationRecorder operationRecorder = new OperationRecorder(operation);
+		
+		destinationDirectory.delete();
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new StateMessage(sourceFile, State.PROGRESSING));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new ManifestMessage(sourceFile, 0, new String[] { "a", "a/b.txt", "a/empty.txt", "c.txt" }, new long[] { -1L, 1L, 0L, 1L }, true));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		// The tree is requested in chunks, so both files are in the same offer
+		this.getConnection2().sendMessage(new DataOfferMessage(sourceFile, 0L, (byte) '4', (byte) '2'));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new ManifestRequestMessage(sourceFile, 0),
+				new DataRequestMessage(sourceFile, 0L, 2),
+				new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(Arrays.asList(
+				(Object) Operation.State.PROGRESSING,
+				1.0,
+				Operation.State.DONE
+		), operationRecorder.getEvents());
+		assertEquals("4", new BufferedReader(new FileReader(new File(destinationDirectory, "a/b.txt"))).readLine());
+		assertEquals(0L, new File(destinationDirectory, "a/empty.txt").length());
+		assertTrue(new File(destinationDirectory, "a/empty.txt").isFile());
+		assertEquals("2", new BufferedReader(new FileReader(new File(destinationDirectory, "c.txt"))).readLine());
+		
+		FileTreeTest.delete(destinationDirectory);
+	}
+	
 	@Override
 	protected final ReceiveOperation createOperation(final Connection connection, final File file) {
 		try {
@@ -215,6 +706,21 @@ public abstract class AbstractReceiveOperationTestBase extends AbstractOperation
 		}
 	}
 	
+	/**
+	 * 
+	 * @param offer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return {@code offer}, with the checksum of its bytes
+	 * <br>A non-null value
+	 * <br>A shared value
+	 */
+	public static final DataOfferMessage checksummed(final DataOfferMessage offer) {
+		offer.setChecksum(Crc32c.compute(offer.getBytes()));
+		
+		return offer;
+	}
+	
 	/**
 	 * TODO doc
 	 *
@@ -20,14 +20,26 @@
 package net.sourceforge.transfile.operations;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
+import net.sourceforge.transfile.operations.AbstractConnectionTestBase.ConnectionRecorder;
 import net.sourceforge.transfile.operations.Operation.State;
+import net.sourceforge.transfile.operations.messages.BlockCopyMessage;
+import net.sourceforge.transfile.operations.messages.BlockSignaturesMessage;
+import net.sourceforge.transfile.operations.messages.ChunkHashesMessage;
+import net.sourceforge.transfile.operations.messages.ChunkHashesRequestMessage;
+import net.sourceforge.transfile.operations.messages.DataCreditMessage;
 import net.sourceforge.transfile.operations.messages.DataOfferMessage;
 import net.sourceforge.transfile.operations.messages.DataRequestMessage;
 import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+import net.sourceforge.transfile.operations.messages.FileDigestMessage;
+import net.sourceforge.transfile.operations.messages.ManifestMessage;
+import net.sourceforge.transfile.operations.messages.ManifestRequestMessage;
 import net.sourceforge.transfile.operations.messages.Message;
 import net.sourceforge.transfile.operations.messages.StateMessage;
 
@@ -97,9 +109,251 @@ public abstract class AbstractSendOperationTestBase extends AbstractOperationTes
 		), operationRecorder.getEvents());
 	}
 	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testSendDataInPushMode() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final Operation operation = this.createOperation(this.getConnection1(), sourceFile);
+		final OperationRecorder operationRecorder = new OperationRecorder(operation);
+		final Message accept = new StateMessage(sourceFile, State.PROGRESSING);
+		final Message credit1 = new DataCreditMessage(sourceFile, 0L, 1L, true);
+		final Message credit2 = new DataCreditMessage(sourceFile, 1L, 2L, false);
+		final Message done = new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(accept);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(credit1);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(credit2);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(done);
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataOfferMessage(sourceFile, 0L, (byte) '4'),
+				new DataOfferMessage(sourceFile, 1L, (byte) '2'),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+		assertEquals(Arrays.asList(
+				(Object) Operation.State.PROGRESSING,
+				0.5,
+				1.0,
+				Operation.State.DONE
+		), operationRecorder.getEvents());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testSendDataWithIntegrityCheck() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final SendOperation operation = (SendOperation) this.createOperation(this.getConnection1(), sourceFile);
+		final Message accept = new StateMessage(sourceFile, State.PROGRESSING);
+		final Message done = new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT);
+		
+		operation.setIntegrityChecked(true);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(accept);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataRequestMessage(sourceFile, 0L, 2));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		// As if the first chunk had been corrupted
+		this.getConnection2().sendMessage(new DataRequestMessage(sourceFile, 0L, 2));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(done);
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		final List<Object> events = this.getConnectionRecorder2().getEvents();
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataOfferMessage(sourceFile, 0L, (byte) '4', (byte) '2'),
+				new DataOfferMessage(sourceFile, 0L, (byte) '4', (byte) '2'),
+				new FileDigestMessage(sourceFile, FileDigestTest.digest("42")),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), events);
+		
+		for (final Object event : events) {
+			if (event instanceof DataOfferMessage) {
+				assertTrue(((DataOfferMessage) event).isChecksummed());
+				assertEquals(Crc32c.compute(new byte[] { '4', '2' }), ((DataOfferMessage) event).getChecksum());
+			}
+		}
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testSendDataInDeltaMode() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final SendOperation operation = (SendOperation) this.createOperation(this.getConnection1(), sourceFile);
+		// The older version only contains the last byte, which is copied from it
+		final File basis = BlockSignaturesTest.createTemporaryFile(new byte[] { '2' });
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		
+		for (final BlockSignaturesMessage message : BlockSignatures.compute(basis).toMessages(sourceFile)) {
+			this.getConnection2().sendMessage(message);
+		}
+		
+		this.getConnection2().sendMessage(new StateMessage(sourceFile, State.PROGRESSING));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataRequestMessage(sourceFile, 0L, ReceiveOperation.DELTA_REQUEST_BYTE_COUNT));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new DataOfferMessage(sourceFile, 0L, (byte) '4'),
+				new BlockCopyMessage(sourceFile, 1L, 0, 1),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testSendChunkHashes() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = SOURCE_FILE;
+		final SendOperation operation = (SendOperation) this.createOperation(this.getConnection1(), sourceFile);
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new StateMessage(sourceFile, State.PROGRESSING));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new ChunkHashesRequestMessage(sourceFile, 0L, ReceiveOperation.DEDUPLICATION_REQUEST_BYTE_COUNT));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataRequestMessage(sourceFile, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		// The whole file is a single chunk
+		assertEquals(Arrays.asList(
+				Connection.State.CONNECTING,
+				Connection.State.CONNECTED,
+				new StateMessage(sourceFile, Operation.State.PROGRESSING),
+				new ChunkHashesMessage(sourceFile, 0L, new int[] { 2 }, ChunkStoreTest.hash(new byte[] { '4', '2' })),
+				new StateMessage(sourceFile, Operation.State.DONE),
+				Connection.State.DISCONNECTED
+		), this.getConnectionRecorder2().getEvents());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testSendDirectory() throws IOException, InterruptedException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceDirectory = new File(ChunkStoreTest.createTemporaryDirectory(), "tree");
+		
+		FileTreeWriter.createDirectory(new File(sourceDirectory, "a"));
+		TransferJournalTest.write(new File(sourceDirectory, "a/b.txt"), "4");
+		TransferJournalTest.write(new File(sourceDirectory, "c.txt"), "2");
+		
+		final SendOperation operation = (SendOperation) this.createOperation(this.getConnection1(), sourceDirectory);
+		final FileTree fileTree = new FileTree();
+		
+		operation.getController().start();
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new StateMessage(sourceDirectory, State.PROGRESSING));
+		
+		// The manifest is sent while the directory is scanned, so it may come in several parts
+		for (int manifestCount = 0; !fileTree.isComplete(); ++manifestCount) {
+			this.getConnection2().sendMessage(new ManifestRequestMessage(sourceDirectory, fileTree.getEntryCount()));
+			
+			assertTrue(fileTree.add(waitForMessage(this.getConnectionRecorder2(), ManifestMessage.class, manifestCount)));
+		}
+		
+		assertEquals(3, fileTree.getEntryCount());
+		assertEquals(2L, fileTree.getByteCount());
+		assertTrue(fileTree.isDirectory(Arrays.asList(fileTree.getPath(0), fileTree.getPath(1), fileTree.getPath(2)).indexOf("a")));
+		
+		this.getConnection2().sendMessage(new DataRequestMessage(sourceDirectory, 0L, 2));
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().sendMessage(new DataRequestMessage(sourceDirectory, 2L, ReceiveOperation.PREFERRED_TRANSFERRED_BYTE_COUNT));
+		waitUntilState(operation, State.DONE);
+		this.waitUntilConnectionsAreReady(this.getConnections());
+		this.getConnection2().disconnect();
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		final List<Object> events = this.getConnectionRecorder2().getEvents();
+		final byte[] expectedBytes = "c.txt".equals(fileTree.getPath(1)) ? new byte[] { '2', '4' } : new byte[] { '4', '2' };
+		
+		assertEquals(new DataOfferMessage(sourceDirectory, 0L, expectedBytes), events.get(events.size() - 3));
+		assertEquals(new StateMessage(sourceDirectory, Operation.State.DONE), events.get(events.size() - 2));
+		
+		FileTreeTest.delete(sourceDirectory);
+	}
+	
 	@Override
 	protected final Operation createOperation(final Connection connection, final File file) {
 		return new SendOperation(connection, file);
 	}
 	
+	/**
+	 * Waits until {@code connectionRecorder} has received more than {@code count} instances of {@code messageClass}.
+	 * 
+	 * @param <M> the type of the expected messages
+	 * @param connectionRecorder
+	 * <br>Should not be null
+	 * @param messageClass
+	 * <br>Should not be null
+	 * @param count
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @return the last received instance of {@code messageClass}
+	 * <br>A non-null value
+	 * <br>A shared value
+	 * @throws InterruptedException if the current thread is interrupted
+	 */
+	public static final <M extends Message> M waitForMessage(final ConnectionRecorder connectionRecorder, final Class<M> messageClass, final int count) throws InterruptedException {
+		final List<Object> events = connectionRecorder.getEvents();
+		
+		while (true) {
+			final int eventCount = events.size();
+			M result = null;
+			int resultCount = 0;
+			
+			for (int i = 0; i < eventCount; ++i) {
+				final Object event = events.get(i);
+				
+				if (messageClass.isInstance(event)) {
+					result = messageClass.cast(event);
+					++resultCount;
+				}
+			}
+			
+			if (count < resultCount) {
+				return result;
+			}
+			
+			Thread.sleep(ATOMIC_WAIT_DURATION);
+		}
+	}
+	
 }
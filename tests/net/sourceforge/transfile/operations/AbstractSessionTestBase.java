@@ -22,10 +22,13 @@ package net.sourceforge.transfile.operations;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import net.sourceforge.transfile.operations.messages.DisconnectMessage;
 import net.sourceforge.transfile.operations.messages.FileOfferMessage;
@@ -92,8 +95,14 @@ public abstract class AbstractSessionTestBase extends AbstractTestWithConnection
 		Tools.debugPrint(localSessionRecorder.getEvents());
 		Tools.debugPrint(remoteSessionRecorder.getEvents());
 		
-		final Thread localUser = new LocalUser((SendOperation) localSessionRecorder.getEvents().get(0));
-		final Thread remoteUser = new RemoteUser((ReceiveOperation) remoteSessionRecorder.getEvents().get(0));
+		final SendOperation sendOperation = (SendOperation) localSessionRecorder.getEvents().get(0);
+		final ReceiveOperation receiveOperation = (ReceiveOperation) remoteSessionRecorder.getEvents().get(0);
+		
+		assertTrue(0 < sendOperation.getStreamId());
+		assertEquals(-sendOperation.getStreamId(), receiveOperation.getStreamId());
+		
+		final Thread localUser = new LocalUser(sendOperation);
+		final Thread remoteUser = new RemoteUser(receiveOperation);
 		
 		localUser.start();
 		remoteUser.start();
@@ -108,6 +117,487 @@ public abstract class AbstractSessionTestBase extends AbstractTestWithConnection
 		assertEquals(sourceFile.length(), destinationFileProvider.getDestinationFile("").length());
 	}
 	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testOfferAndTransferCompressed() throws IOException {
+		this.setConnections(this.createMatchingConnectionPair());
+		
+		for (final Connection connection : this.getConnections()) {
+			connection.setCompressionEnabled(true);
+			connection.connect();
+		}
+		
+		waitAndAssertState(Connection.State.CONNECTED, this.getConnections());
+		
+		final File sourceFile = createCompressibleFile();
+		final Session localSession = new Session(this.getConnection1(), new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile));
+		final SessionRecorder localSessionRecorder = new SessionRecorder(localSession);
+		final ReceiveOperationTest.TemporaryDestinationFileProvider destinationFileProvider = new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile);
+		final Session remoteSession = new Session(this.getConnection2(), destinationFileProvider);
+		final SessionRecorder remoteSessionRecorder = new SessionRecorder(remoteSession);
+		
+		remoteSession.setRequestWindowSize(4);
+		remoteSession.setChunkSizeAdaptive(true);
+		localSession.offerFile(sourceFile);
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		final SendOperation sendOperation = (SendOperation) localSessionRecorder.getEvents().get(0);
+		final ReceiveOperation receiveOperation = (ReceiveOperation) remoteSessionRecorder.getEvents().get(0);
+		
+		assertEquals(4, receiveOperation.getRequestWindowSize());
+		assertNotNull(receiveOperation.getChunkSizer());
+		
+		sendOperation.getController().start();
+		receiveOperation.getController().start();
+		
+		AbstractOperationTestBase.waitUntilState(receiveOperation, Operation.State.DONE);
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		assertTrue(this.getConnection1().isCompressionNegotiated());
+		assertTrue(this.getConnection2().isCompressionNegotiated());
+		
+		localSession.getConnection().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertFalse(this.getConnection1().isCompressionNegotiated());
+		assertArrayEquals(readAll(sourceFile), readAll(destinationFileProvider.getDestinationFile("")));
+		assertTrue(2.0 < sendOperation.getCompressionRatio());
+		assertTrue(2.0 < receiveOperation.getCompressionRatio());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testOfferAndTransferInPushMode() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = createCompressibleFile();
+		final Session localSession = new Session(this.getConnection1(), new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile));
+		final SessionRecorder localSessionRecorder = new SessionRecorder(localSession);
+		final ReceiveOperationTest.TemporaryDestinationFileProvider destinationFileProvider = new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile);
+		final Session remoteSession = new Session(this.getConnection2(), destinationFileProvider);
+		final SessionRecorder remoteSessionRecorder = new SessionRecorder(remoteSession);
+		
+		remoteSession.setRequestWindowSize(4);
+		remoteSession.setChunkSizeAdaptive(true);
+		remoteSession.setPushMode(true);
+		localSession.offerFile(sourceFile);
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		final SendOperation sendOperation = (SendOperation) localSessionRecorder.getEvents().get(0);
+		final ReceiveOperation receiveOperation = (ReceiveOperation) remoteSessionRecorder.getEvents().get(0);
+		
+		assertTrue(receiveOperation.isPushMode());
+		
+		sendOperation.getController().start();
+		receiveOperation.getController().start();
+		
+		AbstractOperationTestBase.waitUntilState(receiveOperation, Operation.State.DONE);
+		AbstractOperationTestBase.waitUntilState(sendOperation, Operation.State.DONE);
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		localSession.getConnection().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertArrayEquals(readAll(sourceFile), readAll(destinationFileProvider.getDestinationFile("")));
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testOfferAndTransferIntegrityChecked() throws IOException {
+		this.setConnections(this.createMatchingConnectionPair());
+		
+		for (final Connection connection : this.getConnections()) {
+			connection.setCompressionEnabled(true);
+			connection.connect();
+		}
+		
+		waitAndAssertState(Connection.State.CONNECTED, this.getConnections());
+		
+		final File sourceFile = createCompressibleFile();
+		final Session localSession = new Session(this.getConnection1(), new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile));
+		final SessionRecorder localSessionRecorder = new SessionRecorder(localSession);
+		final ReceiveOperationTest.TemporaryDestinationFileProvider destinationFileProvider = new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile);
+		final Session remoteSession = new Session(this.getConnection2(), destinationFileProvider);
+		final SessionRecorder remoteSessionRecorder = new SessionRecorder(remoteSession);
+		
+		localSession.setIntegrityChecked(true);
+		remoteSession.setRequestWindowSize(4);
+		remoteSession.setChunkSizeAdaptive(true);
+		remoteSession.setDestinationMapped(true);
+		localSession.offerFile(sourceFile);
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		final SendOperation sendOperation = (SendOperation) localSessionRecorder.getEvents().get(0);
+		final ReceiveOperation receiveOperation = (ReceiveOperation) remoteSessionRecorder.getEvents().get(0);
+		
+		assertTrue(sendOperation.isIntegrityChecked());
+		assertTrue(receiveOperation.getFileOffer().isIntegrityChecked());
+		assertTrue(receiveOperation.isDestinationMapped());
+		
+		sendOperation.getController().start();
+		receiveOperation.getController().start();
+		
+		AbstractOperationTestBase.waitUntilState(receiveOperation, Operation.State.DONE);
+		AbstractOperationTestBase.waitUntilState(sendOperation, Operation.State.DONE);
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		localSession.getConnection().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertArrayEquals(readAll(sourceFile), readAll(destinationFileProvider.getDestinationFile("")));
+		assertEquals(0, receiveOperation.getCorruptedChunkCount());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testOfferAndTransferDelta() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = createCompressibleFile();
+		final Session localSession = new Session(this.getConnection1(), new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile));
+		final SessionRecorder localSessionRecorder = new SessionRecorder(localSession);
+		final ReceiveOperationTest.TemporaryDestinationFileProvider destinationFileProvider = new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile);
+		final Session remoteSession = new Session(this.getConnection2(), destinationFileProvider);
+		final SessionRecorder remoteSessionRecorder = new SessionRecorder(remoteSession);
+		final String source = new String(readAll(sourceFile), "UTF-8");
+		
+		// The older version has an extra line at the beginning and a different line in the middle
+		TransferJournalTest.write(destinationFileProvider.getDestinationFile(""),
+				"older version\n" + source.replace("5000;transfile;2;", "5000;older;2;"));
+		
+		remoteSession.setDeltaEnabled(true);
+		localSession.setIntegrityChecked(true);
+		localSession.offerFile(sourceFile);
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		final SendOperation sendOperation = (SendOperation) localSessionRecorder.getEvents().get(0);
+		final ReceiveOperation receiveOperation = (ReceiveOperation) remoteSessionRecorder.getEvents().get(0);
+		
+		assertTrue(receiveOperation.isDeltaEnabled());
+		
+		sendOperation.getController().start();
+		receiveOperation.getController().start();
+		
+		AbstractOperationTestBase.waitUntilState(receiveOperation, Operation.State.DONE);
+		AbstractOperationTestBase.waitUntilState(sendOperation, Operation.State.DONE);
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		localSession.getConnection().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertArrayEquals(readAll(sourceFile), readAll(destinationFileProvider.getDestinationFile("")));
+		assertTrue(sourceFile.length() * 9L / 10L < receiveOperation.getCopiedByteCount());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testOfferAndTransferDeduplicated() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceFile = createCompressibleFile();
+		final Session localSession = new Session(this.getConnection1(), new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile));
+		final SessionRecorder localSessionRecorder = new SessionRecorder(localSession);
+		final ReceiveOperationTest.TemporaryDestinationFileProvider destinationFileProvider = new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceFile);
+		final Session remoteSession = new Session(this.getConnection2(), destinationFileProvider);
+		final SessionRecorder remoteSessionRecorder = new SessionRecorder(remoteSession);
+		final String source = new String(readAll(sourceFile), "UTF-8");
+		final ChunkStore chunkStore = new ChunkStore(ChunkStoreTest.createTemporaryDirectory(), 1024L * 1024L);
+		// Another file shares most chunks with the source file
+		final byte[] other = ("other file\n" + source.replace("5000;transfile;2;", "5000;other;2;")).getBytes("UTF-8");
+		
+		for (int start = 0; start < other.length;) {
+			final int end = ContentDefinedChunker.getChunkEnd(other, start, other.length, true);
+			final byte[] chunk = Arrays.copyOfRange(other, start, end);
+			
+			chunkStore.put(ChunkStoreTest.hash(chunk), chunk);
+			start = end;
+		}
+		
+		final int chunkCount = chunkStore.getChunkCount();
+		
+		remoteSession.setChunkStore(chunkStore);
+		localSession.setIntegrityChecked(true);
+		localSession.offerFile(sourceFile);
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		final SendOperation sendOperation = (SendOperation) localSessionRecorder.getEvents().get(0);
+		final ReceiveOperation receiveOperation = (ReceiveOperation) remoteSessionRecorder.getEvents().get(0);
+		
+		sendOperation.getController().start();
+		receiveOperation.getController().start();
+		
+		AbstractOperationTestBase.waitUntilState(receiveOperation, Operation.State.DONE);
+		AbstractOperationTestBase.waitUntilState(sendOperation, Operation.State.DONE);
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		localSession.getConnection().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertArrayEquals(readAll(sourceFile), readAll(destinationFileProvider.getDestinationFile("")));
+		assertTrue(sourceFile.length() * 8L / 10L < receiveOperation.getDeduplicatedByteCount());
+		assertTrue(chunkCount < chunkStore.getChunkCount());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testOfferAndTransferDirectory() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceDirectory = FileTreeTest.createTemporaryTree(500);
+		final Session localSession = new Session(this.getConnection1(), new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceDirectory));
+		final SessionRecorder localSessionRecorder = new SessionRecorder(localSession);
+		final ReceiveOperationTest.TemporaryDestinationFileProvider destinationFileProvider = new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceDirectory);
+		final Session remoteSession = new Session(this.getConnection2(), destinationFileProvider);
+		final SessionRecorder remoteSessionRecorder = new SessionRecorder(remoteSession);
+		final File destinationDirectory = destinationFileProvider.getDestinationFile("");
+		
+		destinationDirectory.delete();
+		
+		localSession.setIntegrityChecked(true);
+		remoteSession.setRequestWindowSize(4);
+		localSession.offerDirectory(sourceDirectory);
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		final SendOperation sendOperation = (SendOperation) localSessionRecorder.getEvents().get(0);
+		final ReceiveOperation receiveOperation = (ReceiveOperation) remoteSessionRecorder.getEvents().get(0);
+		
+		assertEquals(4, receiveOperation.getRequestWindowSize());
+		
+		sendOperation.getController().start();
+		receiveOperation.getController().start();
+		
+		AbstractOperationTestBase.waitUntilState(receiveOperation, Operation.State.DONE);
+		AbstractOperationTestBase.waitUntilState(sendOperation, Operation.State.DONE);
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		localSession.getConnection().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		FileTreeTest.assertTreeEquals(sourceDirectory, destinationDirectory);
+		// The tree is requested in chunks even though the session does not set a chunk sizer
+		assertNotNull(receiveOperation.getChunkSizer());
+		
+		FileTreeTest.delete(sourceDirectory);
+		FileTreeTest.delete(destinationDirectory);
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testOfferFiles() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceDirectory = ChunkStoreTest.createTemporaryDirectory();
+		final List<File> sourceFiles = new ArrayList<File>();
+		
+		// More files than a single batched offer message can contain
+		for (int i = 0; i < Session.MAXIMUM_BATCHED_OFFER_COUNT + 10; ++i) {
+			final File sourceFile = new File(sourceDirectory, "file" + i + ".txt");
+			
+			TransferJournalTest.write(sourceFile, Integer.toString(i));
+			sourceFiles.add(sourceFile);
+		}
+		
+		final Session localSession = new Session(this.getConnection1(), new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceDirectory));
+		final SessionRecorder localSessionRecorder = new SessionRecorder(localSession);
+		final DirectoryDestinationFileProvider destinationFileProvider = new DirectoryDestinationFileProvider(ChunkStoreTest.createTemporaryDirectory());
+		final Session remoteSession = new Session(this.getConnection2(), destinationFileProvider);
+		final SessionRecorder remoteSessionRecorder = new SessionRecorder(remoteSession);
+		
+		localSession.offerFiles(sourceFiles);
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		assertEquals(sourceFiles.size(), localSessionRecorder.getEvents().size());
+		assertEquals(sourceFiles.size(), remoteSessionRecorder.getEvents().size());
+		
+		// The files of both messages are received in the same directory
+		for (final int i : new int[] { 0, Session.MAXIMUM_BATCHED_OFFER_COUNT + 9 }) {
+			final SendOperation sendOperation = (SendOperation) localSessionRecorder.getEvents().get(i);
+			final ReceiveOperation receiveOperation = (ReceiveOperation) remoteSessionRecorder.getEvents().get(i);
+			
+			assertEquals(sourceFiles.get(i).getName(), receiveOperation.getFileName());
+			
+			sendOperation.getController().start();
+			receiveOperation.getController().start();
+			
+			AbstractOperationTestBase.waitUntilState(receiveOperation, Operation.State.DONE);
+			AbstractOperationTestBase.waitUntilState(sendOperation, Operation.State.DONE);
+			
+			assertArrayEquals(readAll(sourceFiles.get(i)), readAll(new File(destinationFileProvider.getDirectory(), sourceFiles.get(i).getName())));
+		}
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		localSession.getConnection().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(1, destinationFileProvider.getRequestCount());
+		
+		FileTreeTest.delete(sourceDirectory);
+		FileTreeTest.delete(destinationFileProvider.getDirectory());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testScheduledTransfers() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceDirectory = ChunkStoreTest.createTemporaryDirectory();
+		final List<File> sourceFiles = new ArrayList<File>();
+		
+		for (int i = 0; i < 8; ++i) {
+			final File sourceFile = new File(sourceDirectory, "file" + i + ".txt");
+			
+			TransferJournalTest.write(sourceFile, Integer.toString(i));
+			sourceFiles.add(sourceFile);
+		}
+		
+		final Session localSession = new Session(this.getConnection1(), new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceDirectory));
+		final SessionRecorder localSessionRecorder = new SessionRecorder(localSession);
+		final DirectoryDestinationFileProvider destinationFileProvider = new DirectoryDestinationFileProvider(ChunkStoreTest.createTemporaryDirectory());
+		final Session remoteSession = new Session(this.getConnection2(), destinationFileProvider);
+		final SessionRecorder remoteSessionRecorder = new SessionRecorder(remoteSession);
+		
+		localSession.getScheduler().setMaximumProgressingOperationCount(2);
+		remoteSession.getScheduler().setMaximumProgressingOperationCount(2);
+		localSession.offerFiles(sourceFiles);
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		// Both peers schedule the operations in opposite orders, and their schedulers must not wait for each other
+		for (int i = 0; i < sourceFiles.size(); ++i) {
+			localSession.getScheduler().schedule((Operation) localSessionRecorder.getEvents().get(i));
+			remoteSession.getScheduler().schedule((Operation) remoteSessionRecorder.getEvents().get(sourceFiles.size() - 1 - i));
+		}
+		
+		for (int i = 0; i < sourceFiles.size(); ++i) {
+			AbstractOperationTestBase.waitUntilState((Operation) remoteSessionRecorder.getEvents().get(i), Operation.State.DONE);
+			AbstractOperationTestBase.waitUntilState((Operation) localSessionRecorder.getEvents().get(i), Operation.State.DONE);
+			
+			assertArrayEquals(readAll(sourceFiles.get(i)), readAll(new File(destinationFileProvider.getDirectory(), sourceFiles.get(i).getName())));
+		}
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		localSession.getConnection().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(0, localSession.getScheduler().getProgressingOperationCount());
+		assertEquals(0, remoteSession.getScheduler().getProgressingOperationCount());
+		
+		FileTreeTest.delete(sourceDirectory);
+		FileTreeTest.delete(destinationFileProvider.getDirectory());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testRateLimitedTransfers() throws IOException {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File sourceDirectory = ChunkStoreTest.createTemporaryDirectory();
+		final List<File> sourceFiles = new ArrayList<File>();
+		final Random random = new Random(0L);
+		
+		for (int i = 0; i < 2; ++i) {
+			final File sourceFile = new File(sourceDirectory, "file" + i + ".bin");
+			final byte[] bytes = new byte[256 * 1024];
+			final FileOutputStream output = new FileOutputStream(sourceFile);
+			
+			random.nextBytes(bytes);
+			
+			try {
+				output.write(bytes);
+			} finally {
+				output.close();
+			}
+			
+			sourceFiles.add(sourceFile);
+		}
+		
+		final Session localSession = new Session(this.getConnection1(), new ReceiveOperationTest.TemporaryDestinationFileProvider(sourceDirectory));
+		final SessionRecorder localSessionRecorder = new SessionRecorder(localSession);
+		final DirectoryDestinationFileProvider destinationFileProvider = new DirectoryDestinationFileProvider(ChunkStoreTest.createTemporaryDirectory());
+		final Session remoteSession = new Session(this.getConnection2(), destinationFileProvider);
+		final SessionRecorder remoteSessionRecorder = new SessionRecorder(remoteSession);
+		final long rate = 512L * 1024L;
+		
+		// The sender limits its connection and the receiver limits each of its operations
+		localSession.getConnection().getRateLimiter().setRate(rate);
+		remoteSession.setOperationRate(3L * rate / 4L);
+		localSession.offerFiles(sourceFiles);
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		final long startTime = System.nanoTime();
+		
+		for (int i = 0; i < sourceFiles.size(); ++i) {
+			((Operation) localSessionRecorder.getEvents().get(i)).getController().start();
+			((Operation) remoteSessionRecorder.getEvents().get(i)).getController().start();
+		}
+		
+		for (int i = 0; i < sourceFiles.size(); ++i) {
+			AbstractOperationTestBase.waitUntilState((Operation) remoteSessionRecorder.getEvents().get(i), Operation.State.DONE);
+			AbstractOperationTestBase.waitUntilState((Operation) localSessionRecorder.getEvents().get(i), Operation.State.DONE);
+			
+			assertArrayEquals(readAll(sourceFiles.get(i)), readAll(new File(destinationFileProvider.getDirectory(), sourceFiles.get(i).getName())));
+		}
+		
+		final double transferDuration = (System.nanoTime() - startTime) / 1.0E9;
+		
+		// The first bytes of each limiter are allowed at once
+		assertTrue(transferDuration >= (2.0 * 256.0 * 1024.0 - 2.0 * rate * RateLimiter.BURST_DURATION / 1.0E9) / rate);
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		localSession.getConnection().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		FileTreeTest.delete(sourceDirectory);
+		FileTreeTest.delete(destinationFileProvider.getDirectory());
+	}
+	
+	/**
+	 * 
+	 * @return a temporary text file that compresses well
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if the file cannot be created
+	 */
+	private static final File createCompressibleFile() throws IOException {
+		final File result = File.createTempFile("compressible", ".csv");
+		final FileOutputStream output = new FileOutputStream(result);
+		
+		result.deleteOnExit();
+		
+		try {
+			for (int i = 0; i < 10000; ++i) {
+				output.write((i + ";transfile;" + (i % 7) + ";compressible line\n").getBytes("UTF-8"));
+			}
+		} finally {
+			output.close();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if {@code file} cannot be read
+	 */
+	public static final byte[] readAll(final File file) throws IOException {
+		final RandomAccessFile input = new RandomAccessFile(file, "r");
+		
+		try {
+			final byte[] result = new byte[(int) input.length()];
+			
+			input.readFully(result);
+			
+			return result;
+		} finally {
+			input.close();
+		}
+	}
+	
 	/**
 	 * 
 	 * TODO doc
@@ -250,4 +740,54 @@ public abstract class AbstractSessionTestBase extends AbstractTestWithConnection
 		
 	}
 	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	public static class DirectoryDestinationFileProvider implements ReceiveOperation.DestinationFileProvider {
+		
+		private final File directory;
+		
+		private int requestCount;
+		
+		/**
+		 * 
+		 * @param directory
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		public DirectoryDestinationFileProvider(final File directory) {
+			this.directory = directory;
+		}
+		
+		/**
+		 * 
+		 * @return
+		 * <br>A non-null value
+		 * <br>A shared value
+		 */
+		public final File getDirectory() {
+			return this.directory;
+		}
+		
+		/**
+		 * 
+		 * @return the number of calls to {@link #getDestinationFile(String)}
+		 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+		 */
+		public final synchronized int getRequestCount() {
+			return this.requestCount;
+		}
+		
+		@Override
+		public final synchronized File getDestinationFile(final String fileName) {
+			++this.requestCount;
+			
+			return new File(this.getDirectory(), fileName);
+		}
+		
+	}
+	
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import net.sourceforge.transfile.operations.Operation.State;
+import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.transfile.operations.messages.StateMessage;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class AsynchronousMessageWriterTest {
+	
+	@Test(timeout = AbstractTestWithConnections.TEST_TIMEOUT)
+	public final void testCoalescedFlushes() throws Exception {
+		final GatedOutputStream sink = new GatedOutputStream();
+		final AsynchronousMessageWriter writer = new AsynchronousMessageWriter(new ObjectOutputStream(new BufferedOutputStream(sink)));
+		final List<Message> messages = new ArrayList<Message>();
+		
+		for (int i = 0; i < 100; ++i) {
+			messages.add(new StateMessage(AbstractOperationTestBase.SOURCE_FILE, State.values()[i % State.values().length]));
+		}
+		
+		writer.write(messages.get(0));
+		sink.waitUntilBlocked();
+		
+		for (final Message message : messages.subList(1, messages.size())) {
+			writer.write(message);
+		}
+		
+		sink.open();
+		writer.close(AbstractTestWithConnections.TEST_TIMEOUT);
+		
+		assertNull(writer.getError());
+		// One write for the first message, and one for all the messages queued meanwhile
+		assertEquals(2, sink.getWriteCount());
+		
+		final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(sink.toByteArray()));
+		
+		for (final Message message : messages) {
+			assertEquals(message, input.readObject());
+		}
+	}
+	
+	@Test(timeout = AbstractTestWithConnections.TEST_TIMEOUT)
+	public final void testBackPressure() throws Exception {
+		final GatedOutputStream sink = new GatedOutputStream();
+		final AsynchronousMessageWriter writer = new AsynchronousMessageWriter(new ObjectOutputStream(new BufferedOutputStream(sink)));
+		final Message message = new StateMessage(AbstractOperationTestBase.SOURCE_FILE, State.PROGRESSING);
+		
+		writer.write(message);
+		sink.waitUntilBlocked();
+		
+		final Thread producer = new Thread() {
+			
+			@Override
+			public final void run() {
+				for (int i = 0; i <= AsynchronousMessageWriter.MAXIMUM_QUEUED_MESSAGE_COUNT; ++i) {
+					writer.write(message);
+				}
+			}
+			
+		};
+		
+		producer.start();
+		producer.join(200L);
+		
+		assertTrue(producer.isAlive());
+		
+		sink.open();
+		producer.join();
+		writer.close(AbstractTestWithConnections.TEST_TIMEOUT);
+		
+		assertNull(writer.getError());
+	}
+	
+	@Test(timeout = AbstractTestWithConnections.TEST_TIMEOUT)
+	public final void testResetPolicy() throws Exception {
+		final Message message = new StateMessage(AbstractOperationTestBase.SOURCE_FILE, State.PROGRESSING);
+		
+		final ObjectInputStream inputWithoutReset = writeTwice(message, 2);
+		
+		// Without reset, the second message is a back reference to the first one
+		assertSame(inputWithoutReset.readObject(), inputWithoutReset.readObject());
+		
+		final ObjectInputStream inputWithReset = writeTwice(message, 1);
+		
+		assertNotSame(inputWithReset.readObject(), inputWithReset.readObject());
+	}
+	
+	@Test(timeout = AbstractTestWithConnections.TEST_TIMEOUT)
+	public final void testWritingFailed() throws Exception {
+		final OutputStream brokenSink = new OutputStream() {
+			
+			@Override
+			public final void write(final int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+			
+		};
+		final CountDownLatch failed = new CountDownLatch(1);
+		final IOException[] reportedError = new IOException[1];
+		// The stream header stays in the buffer, so the error occurs when the first message is flushed
+		final AsynchronousMessageWriter writer = new AsynchronousMessageWriter(new ObjectOutputStream(new BufferedOutputStream(brokenSink))) {
+			
+			@Override
+			protected final void writingFailed(final IOException error) {
+				reportedError[0] = error;
+				failed.countDown();
+			}
+			
+		};
+		
+		writer.write(new StateMessage(AbstractOperationTestBase.SOURCE_FILE, State.PROGRESSING));
+		failed.await();
+		
+		// The owner is notified instead of finding out when it closes the writer
+		assertNotNull(reportedError[0]);
+		assertSame(reportedError[0], writer.getError());
+		
+		writer.close(AbstractTestWithConnections.TEST_TIMEOUT);
+	}
+	
+	/**
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * @param resetMessageCount
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @return a stream containing {@code message} written twice with the specified reset policy
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static final ObjectInputStream writeTwice(final Message message, final int resetMessageCount) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final AsynchronousMessageWriter writer = new AsynchronousMessageWriter(new ObjectOutputStream(bytes), resetMessageCount, Long.MAX_VALUE);
+		
+		writer.write(message);
+		writer.write(message);
+		writer.close(AbstractTestWithConnections.TEST_TIMEOUT);
+		
+		return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+	
+	/**
+	 * Blocks the writes until it is opened, and counts them.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private static final class GatedOutputStream extends OutputStream {
+		
+		private final ByteArrayOutputStream bytes;
+		
+		private final CountDownLatch blocked;
+		
+		private final CountDownLatch opened;
+		
+		private int writeCount;
+		
+		/**
+		 * Package-private default constructor to suppress visibility warnings.
+		 */
+		GatedOutputStream() {
+			this.bytes = new ByteArrayOutputStream();
+			this.blocked = new CountDownLatch(1);
+			this.opened = new CountDownLatch(1);
+		}
+		
+		final void waitUntilBlocked() throws InterruptedException {
+			this.blocked.await();
+		}
+		
+		final void open() {
+			this.opened.countDown();
+		}
+		
+		final synchronized int getWriteCount() {
+			return this.writeCount;
+		}
+		
+		final synchronized byte[] toByteArray() {
+			return this.bytes.toByteArray();
+		}
+		
+		@Override
+		public final void write(final int b) throws IOException {
+			this.write(new byte[] { (byte) b }, 0, 1);
+		}
+		
+		@Override
+		public final void write(final byte[] buffer, final int offset, final int length) throws IOException {
+			this.blocked.countDown();
+			
+			try {
+				this.opened.await();
+			} catch (final InterruptedException exception) {
+				throw new IOException("Interrupted");
+			}
+			
+			synchronized (this) {
+				this.bytes.write(buffer, offset, length);
+				++this.writeCount;
+			}
+		}
+		
+	}
+	
+}
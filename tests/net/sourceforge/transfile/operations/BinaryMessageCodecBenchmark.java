@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.channels.Channels;
+
+import net.sourceforge.transfile.operations.Operation.State;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DataRequestMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.transfile.operations.messages.StateMessage;
+
+/**
+ * Compares {@link BinaryMessageCodec} with the Java serialization used by {@link SimpleSocketConnection}
+ * (one long-lived {@link ObjectOutputStream}): bytes on the wire per message,
+ * and encoding and decoding times per message.
+ * <br>Not a unit test; run it with {@link #main(String[])}.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public final class BinaryMessageCodecBenchmark {
+	
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private BinaryMessageCodecBenchmark() {
+		// Do nothing
+	}
+	
+	/**
+	 * Messages per measurement.
+	 */
+	public static final int MESSAGE_COUNT = 100000;
+	
+	/**
+	 * Measurements made before the printed one, to let the JIT compiler do its work.
+	 */
+	public static final int WARMUP_COUNT = 5;
+	
+	/**
+	 * 
+	 * @param arguments
+	 * <br>Unused
+	 * @throws Exception if an error occurs
+	 */
+	public static final void main(final String[] arguments) throws Exception {
+		final File file = new File("/home/user/Downloads/some-large-file.iso");
+		
+		System.out.println("message\tcodec\tbytes/message\tencode ns/message\tdecode ns/message");
+		
+		benchmark(new StateMessage(file, State.PROGRESSING));
+		benchmark(new DataRequestMessage(file, 123456789L, 65536));
+		benchmark(new DataOfferMessage(file, 123456789L, new byte[1024]));
+	}
+	
+	/**
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * @throws Exception if an error occurs
+	 */
+	private static final void benchmark(final Message message) throws Exception {
+		final String name = message.getClass().getSimpleName();
+		
+		for (int i = 0; i < WARMUP_COUNT; ++i) {
+			measureSerialization(message);
+			measureBinaryCodec(message);
+		}
+		
+		System.out.println(name + "\tserialization\t" + measureSerialization(message));
+		System.out.println(name + "\tbinary\t" + measureBinaryCodec(message));
+	}
+	
+	/**
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if an I/O error occurs
+	 * @throws ClassNotFoundException if a class cannot be found
+	 */
+	private static final String measureSerialization(final Message message) throws IOException, ClassNotFoundException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream output = new ObjectOutputStream(bytes);
+		final int streamHeaderLength = bytes.size();
+		final long encodingStartTime = System.nanoTime();
+		
+		for (int i = 0; i < MESSAGE_COUNT; ++i) {
+			output.writeObject(copy(message));
+		}
+		
+		output.flush();
+		
+		final long encodingTime = System.nanoTime() - encodingStartTime;
+		final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		final long decodingStartTime = System.nanoTime();
+		
+		for (int i = 0; i < MESSAGE_COUNT; ++i) {
+			input.readObject();
+		}
+		
+		final long decodingTime = System.nanoTime() - decodingStartTime;
+		
+		return format(bytes.size() - streamHeaderLength, encodingTime, decodingTime);
+	}
+	
+	/**
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if an I/O error occurs
+	 * @throws ClassNotFoundException if a class cannot be found
+	 */
+	private static final String measureBinaryCodec(final Message message) throws IOException, ClassNotFoundException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryMessageCodec.Encoder encoder = new BinaryMessageCodec.Encoder(Channels.newChannel(bytes));
+		final long encodingStartTime = System.nanoTime();
+		
+		for (int i = 0; i < MESSAGE_COUNT; ++i) {
+			encoder.write(copy(message));
+		}
+		
+		final long encodingTime = System.nanoTime() - encodingStartTime;
+		final BinaryMessageCodec.Decoder decoder = new BinaryMessageCodec.Decoder(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+		final long decodingStartTime = System.nanoTime();
+		
+		for (int i = 0; i < MESSAGE_COUNT; ++i) {
+			final Message decodedMessage = decoder.read();
+			
+			if (decodedMessage instanceof DataOfferMessage) {
+				((DataOfferMessage) decodedMessage).detachFromPayloadSource();
+			}
+		}
+		
+		final long decodingTime = System.nanoTime() - decodingStartTime;
+		
+		return format(bytes.size(), encodingTime, decodingTime);
+	}
+	
+	/**
+	 * Each message is a new object, as in a real transfer, so that serialization cannot replace it with a back reference;
+	 * like in a real transfer, all the messages refer to the same file object.
+	 * 
+	 * @param message
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private static final Message copy(final Message message) {
+		if (message instanceof StateMessage) {
+			final StateMessage stateMessage = (StateMessage) message;
+			
+			return new StateMessage(stateMessage.getSourceFile(), stateMessage.getState());
+		}
+		
+		if (message instanceof DataRequestMessage) {
+			final DataRequestMessage request = (DataRequestMessage) message;
+			
+			return new DataRequestMessage(request.getSourceFile(), request.getFirstByteOffset(), request.getRequestedByteCount());
+		}
+		
+		final DataOfferMessage offer = (DataOfferMessage) message;
+		
+		return new DataOfferMessage(offer.getSourceFile(), offer.getFirstByteOffset(), offer.getBytes().clone());
+	}
+	
+	/**
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param encodingTime
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param decodingTime
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private static final String format(final long byteCount, final long encodingTime, final long decodingTime) {
+		return byteCount / MESSAGE_COUNT + "\t" + encodingTime / MESSAGE_COUNT + "\t" + decodingTime / MESSAGE_COUNT;
+	}
+	
+}
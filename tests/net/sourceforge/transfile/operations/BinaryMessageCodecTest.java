@@ -0,0 +1,235 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sourceforge.transfile.operations.Operation.State;
+import net.sourceforge.transfile.operations.messages.BlockCopyMessage;
+import net.sourceforge.transfile.operations.messages.BlockSignaturesMessage;
+import net.sourceforge.transfile.operations.messages.CompressionMessage;
+import net.sourceforge.transfile.operations.messages.DataCreditMessage;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DataRequestMessage;
+import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+import net.sourceforge.transfile.operations.messages.FileDigestMessage;
+import net.sourceforge.transfile.operations.messages.FileOfferMessage;
+import net.sourceforge.transfile.operations.messages.FileOffersMessage;
+import net.sourceforge.transfile.operations.messages.ManifestMessage;
+import net.sourceforge.transfile.operations.messages.ManifestRequestMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.transfile.operations.messages.OperationMessage;
+import net.sourceforge.transfile.operations.messages.StateMessage;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class BinaryMessageCodecTest {
+	
+	@Test
+	public final void testVarint() throws StreamCorruptedException {
+		for (final long value : new long[] { 0L, 1L, 127L, 128L, 300L, Integer.MAX_VALUE, Long.MAX_VALUE }) {
+			final ByteBuffer buffer = BinaryMessageCodec.putVarint(ByteBuffer.allocate(1), value);
+			
+			buffer.flip();
+			
+			assertEquals(value, BinaryMessageCodec.getVarint(buffer));
+			assertFalse(buffer.hasRemaining());
+		}
+	}
+	
+	@Test
+	public final void testWriteAndReadMessages() throws IOException, ClassNotFoundException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final List<Message> messages = Arrays.asList(
+				new FileOfferMessage(file),
+				new FileOfferMessage(file, 2L, true),
+				new FileOfferMessage(file, 0L, false, true),
+				new FileOfferMessage(file, 0L, true, true),
+				new ManifestRequestMessage(file, 2),
+				new FileOffersMessage(3, new FileOfferMessage[] { new FileOfferMessage(file), new FileOfferMessage(file, 0L, true, true) }, true),
+				new ManifestMessage(file, 0, new String[] { "a", "a/b.txt" }, new long[] { -1L, 2L }, true),
+				new StateMessage(file, State.PROGRESSING),
+				new DataRequestMessage(file, 1L, 1),
+				new DataCreditMessage(file, 1L, 42L, true),
+				new BlockCopyMessage(file, 3L, 2, 1024),
+				new BlockSignaturesMessage(file, 1024, 2048L, 0, new int[] { 42, -1 }, new byte[2 * BlockSignatures.STRONG_CHECKSUM_LENGTH]),
+				new DataOfferMessage(file, 0L, (byte) '4', (byte) '2'),
+				new DataOfferMessage(file, 1L, 1, new FileChannelCache(1, 60000L)),
+				new OfferCompressor().compress(new DataOfferMessage(file, 2L, new byte[OfferCompressor.MINIMUM_BYTE_COUNT])),
+				AbstractReceiveOperationTestBase.checksummed(new DataOfferMessage(file, 0L, (byte) '4', (byte) '2')),
+				AbstractReceiveOperationTestBase.checksummed(new OfferCompressor().compress(new DataOfferMessage(file, 2L, new byte[OfferCompressor.MINIMUM_BYTE_COUNT]))),
+				new FileDigestMessage(file, FileDigestTest.digest("42")),
+				new CompressionMessage(),
+				new DisconnectMessage(),
+				new UnknownMessage());
+		final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		final BinaryMessageCodec.Encoder encoder = new BinaryMessageCodec.Encoder(Channels.newChannel(frames));
+		
+		for (final Message message : messages) {
+			encoder.write(message);
+		}
+		
+		final BinaryMessageCodec.Decoder decoder = new BinaryMessageCodec.Decoder(Channels.newChannel(new ByteArrayInputStream(frames.toByteArray())));
+		
+		for (final Message message : messages) {
+			final Message decodedMessage = decoder.read();
+			
+			assertEquals(message, decodedMessage);
+			
+			if (message instanceof DataOfferMessage) {
+				assertEquals(((DataOfferMessage) message).isCompressed(), ((DataOfferMessage) decodedMessage).isCompressed());
+				assertEquals(((DataOfferMessage) message).isChecksummed(), ((DataOfferMessage) decodedMessage).isChecksummed());
+				assertEquals(((DataOfferMessage) message).getChecksum(), ((DataOfferMessage) decodedMessage).getChecksum());
+			}
+			
+			if (message instanceof FileOfferMessage) {
+				assertEquals(((FileOfferMessage) message).isIntegrityChecked(), ((FileOfferMessage) decodedMessage).isIntegrityChecked());
+				assertEquals(((FileOfferMessage) message).isDirectory(), ((FileOfferMessage) decodedMessage).isDirectory());
+			}
+		}
+	}
+	
+	@Test
+	public final void testCompactness() throws IOException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		
+		final BinaryMessageCodec.Encoder encoder = new BinaryMessageCodec.Encoder(Channels.newChannel(frame));
+		
+		encoder.write(new DataRequestMessage(file, 1L, 1));
+		
+		// Header length, tag, new file marker, path length, path, offset, count, stream
+		assertEquals(1 + 1 + 1 + 1 + file.getPath().length() + 1 + 1 + 1, frame.size());
+		
+		frame.reset();
+		encoder.write(new DataRequestMessage(file, 2L, 1));
+		
+		// Header length, tag, file index, offset, count, stream
+		assertEquals(1 + 1 + 1 + 1 + 1 + 1, frame.size());
+	}
+	
+	@Test
+	public final void testDataCredit() throws IOException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		final BinaryMessageCodec.Encoder encoder = new BinaryMessageCodec.Encoder(Channels.newChannel(frame));
+		
+		encoder.write(new DataRequestMessage(file, 0L, 1));
+		frame.reset();
+		encoder.write(new DataCreditMessage(file, 1L, 42L, true));
+		
+		assertEquals(BinaryMessageCodec.DATA_CREDIT, frame.toByteArray()[1]);
+		// Header length, tag, file index, offset, credit, restarting, stream
+		assertEquals(1 + 1 + 1 + 1 + 1 + 1 + 1, frame.size());
+	}
+	
+	@Test
+	public final void testDeltaMessages() throws IOException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		final BinaryMessageCodec.Encoder encoder = new BinaryMessageCodec.Encoder(Channels.newChannel(frame));
+		
+		encoder.write(new DataRequestMessage(file, 0L, 1));
+		frame.reset();
+		encoder.write(new BlockCopyMessage(file, 3L, 2, 100));
+		
+		assertEquals(BinaryMessageCodec.BLOCK_COPY, frame.toByteArray()[1]);
+		// Header length, tag, file index, offset, block index, count, stream
+		assertEquals(1 + 1 + 1 + 1 + 1 + 1 + 1, frame.size());
+		
+		frame.reset();
+		encoder.write(new BlockSignaturesMessage(file, 100, 200L, 0, new int[2], new byte[2 * BlockSignatures.STRONG_CHECKSUM_LENGTH]));
+		
+		assertEquals(BinaryMessageCodec.BLOCK_SIGNATURES, frame.toByteArray()[1]);
+		// Header length, tag, file index, block size, basis size, first block, weak count, weak checksums, strong count, strong checksums, stream
+		assertEquals(1 + 1 + 1 + 1 + 2 + 1 + 1 + 2 * 4 + 1 + 2 * BlockSignatures.STRONG_CHECKSUM_LENGTH + 1, frame.size());
+	}
+	
+	@Test
+	public final void testStreamIds() throws IOException, ClassNotFoundException {
+		final int[] streamIds = { 0, 1, -1, 1000, -1000, Integer.MAX_VALUE, -Integer.MAX_VALUE };
+		final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		final BinaryMessageCodec.Encoder encoder = new BinaryMessageCodec.Encoder(Channels.newChannel(frames));
+		
+		for (final int streamId : streamIds) {
+			final StateMessage message = new StateMessage(AbstractOperationTestBase.SOURCE_FILE, State.PROGRESSING);
+			
+			message.setStreamId(streamId);
+			encoder.write(message);
+		}
+		
+		final BinaryMessageCodec.Decoder decoder = new BinaryMessageCodec.Decoder(Channels.newChannel(new ByteArrayInputStream(frames.toByteArray())));
+		
+		for (final int streamId : streamIds) {
+			assertEquals(streamId, ((OperationMessage) decoder.read()).getStreamId());
+		}
+	}
+	
+	@Test(expected = StreamCorruptedException.class)
+	public final void testInvalidTag() throws IOException, ClassNotFoundException {
+		new BinaryMessageCodec.Decoder(Channels.newChannel(new ByteArrayInputStream(new byte[] { 1, 42 }))).read();
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private static final class UnknownMessage implements Message {
+		
+		/**
+		 * Package-private default constructor to suppress visibility warnings.
+		 */
+		UnknownMessage() {
+			// Do nothing
+		}
+		
+		@Override
+		public final boolean equals(final Object object) {
+			return object instanceof UnknownMessage;
+		}
+		
+		@Override
+		public final int hashCode() {
+			return 0;
+		}
+		
+		private static final long serialVersionUID = 4357391412624563734L;
+		
+	}
+	
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static net.sourceforge.transfile.operations.AbstractConnection.DEFAULT_LOCAL_PEER;
+import static net.sourceforge.transfile.operations.AbstractConnection.DEFAULT_REMOTE_PEER;
+import static net.sourceforge.jenerics.collections.CollectionsTools.array;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class BinarySocketConnectionTest extends AbstractConnectionTestBase {
+	
+	@Override
+	protected final Connection createUnmatchedConnection() {
+		return new BinarySocketConnection();
+	}
+	
+	@Override
+	protected final Connection[] createMatchingConnectionPair() {
+		return array(new BinarySocketConnection(DEFAULT_LOCAL_PEER, DEFAULT_REMOTE_PEER), new BinarySocketConnection(DEFAULT_REMOTE_PEER, DEFAULT_LOCAL_PEER));
+	}
+	
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.sourceforge.transfile.operations.messages.AbstractDataMessage;
+import net.sourceforge.transfile.operations.messages.BlockCopyMessage;
+import net.sourceforge.transfile.operations.messages.BlockSignaturesMessage;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class BlockSignaturesTest {
+	
+	@Test
+	public final void testRoll() {
+		final byte[] bytes = randomBytes(1000, 42L);
+		final int length = 100;
+		int weakChecksum = BlockSignatures.weakChecksum(bytes, 0, length);
+		
+		for (int i = 1; i + length <= bytes.length; ++i) {
+			weakChecksum = BlockSignatures.roll(weakChecksum, bytes[i - 1], bytes[i + length - 1], length);
+			
+			assertEquals(BlockSignatures.weakChecksum(bytes, i, length), weakChecksum);
+		}
+	}
+	
+	@Test
+	public final void testGetBlockSize() {
+		assertEquals(BlockSignatures.MINIMUM_BLOCK_SIZE, BlockSignatures.getBlockSize(0L));
+		assertEquals(1000, BlockSignatures.getBlockSize(1000000L));
+		assertEquals(BlockSignatures.MAXIMUM_BLOCK_SIZE, BlockSignatures.getBlockSize(20L * 1024L * 1024L * 1024L));
+	}
+	
+	@Test
+	public final void testCompute() throws IOException {
+		final byte[] basis = randomBytes(2 * BlockSignatures.MINIMUM_BLOCK_SIZE + 1, 42L);
+		final BlockSignatures signatures = BlockSignatures.compute(createTemporaryFile(basis));
+		
+		assertEquals(BlockSignatures.MINIMUM_BLOCK_SIZE, signatures.getBlockSize());
+		assertEquals(basis.length, signatures.getBasisByteCount());
+		assertEquals(3, signatures.getBlockCount());
+		assertEquals(1, signatures.getBlockByteCount(2));
+		assertTrue(signatures.isComplete());
+		
+		final int offset = BlockSignatures.MINIMUM_BLOCK_SIZE;
+		
+		assertEquals(1, signatures.find(BlockSignatures.weakChecksum(basis, offset, offset), basis, offset, offset, -1));
+		assertEquals(2, signatures.find(BlockSignatures.weakChecksum(basis, 2 * offset, 1), basis, 2 * offset, 1, -1));
+		assertEquals(-1, signatures.find(BlockSignatures.weakChecksum(basis, 1, offset), basis, 1, offset, -1));
+	}
+	
+	@Test
+	public final void testMessages() {
+		final int blockCount = BlockSignatures.MESSAGE_BLOCK_COUNT + 1;
+		final File sourceFile = new File("source");
+		final int[] weakChecksums = new int[blockCount];
+		final byte[] strongChecksums = randomBytes(blockCount * BlockSignatures.STRONG_CHECKSUM_LENGTH, 42L);
+		
+		for (int i = 0; i < blockCount; ++i) {
+			weakChecksums[i] = i;
+		}
+		
+		final List<BlockSignaturesMessage> messages = Arrays.asList(
+				new BlockSignaturesMessage(sourceFile, 1, blockCount, 0,
+						Arrays.copyOf(weakChecksums, BlockSignatures.MESSAGE_BLOCK_COUNT),
+						Arrays.copyOf(strongChecksums, BlockSignatures.MESSAGE_BLOCK_COUNT * BlockSignatures.STRONG_CHECKSUM_LENGTH)),
+				new BlockSignaturesMessage(sourceFile, 1, blockCount, BlockSignatures.MESSAGE_BLOCK_COUNT,
+						Arrays.copyOfRange(weakChecksums, BlockSignatures.MESSAGE_BLOCK_COUNT, blockCount),
+						Arrays.copyOfRange(strongChecksums, BlockSignatures.MESSAGE_BLOCK_COUNT * BlockSignatures.STRONG_CHECKSUM_LENGTH, strongChecksums.length)));
+		final BlockSignatures signatures = new BlockSignatures(1, blockCount);
+		
+		// Ignored because it doesn't follow the known signatures
+		signatures.add(messages.get(1));
+		
+		assertFalse(signatures.isComplete());
+		
+		signatures.add(messages.get(0));
+		signatures.add(messages.get(1));
+		
+		assertTrue(signatures.isComplete());
+		assertEquals(messages, signatures.toMessages(sourceFile));
+	}
+	
+	@Test
+	public final void testEncode() throws IOException {
+		final byte[] basis = randomBytes(10 * BlockSignatures.MINIMUM_BLOCK_SIZE + 100, 42L);
+		final byte[] source = new byte[basis.length + 3];
+		
+		// 3 bytes are inserted at the beginning and 1 byte is modified in the middle
+		System.arraycopy(basis, 0, source, 3, basis.length);
+		source[3 + basis.length / 2] ^= 1;
+		
+		final BlockSignatures signatures = BlockSignatures.compute(createTemporaryFile(basis));
+		final File sourceFile = new File("source");
+		final List<AbstractDataMessage> messages = signatures.encode(sourceFile, 1000L, source, 256);
+		
+		assertEquals(Arrays.asList(
+				new DataOfferMessage(sourceFile, 1000L, Arrays.copyOfRange(source, 0, 3)),
+				new BlockCopyMessage(sourceFile, 1003L, 0, 5 * BlockSignatures.MINIMUM_BLOCK_SIZE),
+				new DataOfferMessage(sourceFile, 1003L + 5 * BlockSignatures.MINIMUM_BLOCK_SIZE, Arrays.copyOfRange(source, 3 + 5 * BlockSignatures.MINIMUM_BLOCK_SIZE, 3 + 5 * BlockSignatures.MINIMUM_BLOCK_SIZE + 256)),
+				new DataOfferMessage(sourceFile, 1003L + 5 * BlockSignatures.MINIMUM_BLOCK_SIZE + 256, Arrays.copyOfRange(source, 3 + 5 * BlockSignatures.MINIMUM_BLOCK_SIZE + 256, 3 + 6 * BlockSignatures.MINIMUM_BLOCK_SIZE)),
+				new BlockCopyMessage(sourceFile, 1003L + 6 * BlockSignatures.MINIMUM_BLOCK_SIZE, 6, 4 * BlockSignatures.MINIMUM_BLOCK_SIZE + 100)
+		), messages);
+		assertArrayEquals(source, decode(basis, signatures.getBlockSize(), 1000L, source.length, messages));
+	}
+	
+	@Test
+	public final void testEncodeFromReusedBuffer() throws IOException {
+		final byte[] basis = randomBytes(10 * BlockSignatures.MINIMUM_BLOCK_SIZE + 100, 42L);
+		final byte[] buffer = Arrays.copyOf(basis, basis.length + BlockSignatures.MINIMUM_BLOCK_SIZE);
+		final BlockSignatures signatures = BlockSignatures.compute(createTemporaryFile(basis));
+		final File sourceFile = new File("source");
+		
+		// The bytes after the region are ignored
+		System.arraycopy(randomBytes(BlockSignatures.MINIMUM_BLOCK_SIZE, 43L), 0, buffer, basis.length, BlockSignatures.MINIMUM_BLOCK_SIZE);
+		
+		assertEquals(signatures.encode(sourceFile, 0L, basis, 256), signatures.encode(sourceFile, 0L, buffer, basis.length, 256));
+	}
+	
+	@Test
+	public final void testEncodeWithoutMatch() throws IOException {
+		final BlockSignatures signatures = BlockSignatures.compute(createTemporaryFile(randomBytes(2 * BlockSignatures.MINIMUM_BLOCK_SIZE, 42L)));
+		final File sourceFile = new File("source");
+		final byte[] source = randomBytes(BlockSignatures.MINIMUM_BLOCK_SIZE, 43L);
+		
+		assertEquals(Arrays.asList(new DataOfferMessage(sourceFile, 0L, source)),
+				signatures.encode(sourceFile, 0L, source, BlockSignatures.MINIMUM_BLOCK_SIZE));
+	}
+	
+	/**
+	 * 
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @param seed
+	 * <br>Range: any long
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public static final byte[] randomBytes(final int byteCount, final long seed) {
+		final byte[] result = new byte[byteCount];
+		
+		new Random(seed).nextBytes(result);
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @return a temporary file containing {@code bytes}
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if the file cannot be created
+	 */
+	public static final File createTemporaryFile(final byte[] bytes) throws IOException {
+		final File result = File.createTempFile("basis", null);
+		final OutputStream output = new FileOutputStream(result);
+		
+		result.deleteOnExit();
+		
+		try {
+			output.write(bytes);
+		} finally {
+			output.close();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param basis
+	 * <br>Should not be null
+	 * @param blockSize
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param firstByteOffset
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @param byteCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @param messages
+	 * <br>Should not be null
+	 * @return the region described by {@code messages}
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private static final byte[] decode(final byte[] basis, final int blockSize, final long firstByteOffset, final int byteCount,
+			final List<AbstractDataMessage> messages) {
+		final byte[] result = new byte[byteCount];
+		int offset = 0;
+		
+		for (final AbstractDataMessage message : messages) {
+			assertEquals(firstByteOffset + offset, message.getFirstByteOffset());
+			
+			if (message instanceof BlockCopyMessage) {
+				final BlockCopyMessage blockCopy = (BlockCopyMessage) message;
+				
+				System.arraycopy(basis, blockCopy.getBlockIndex() * blockSize, result, offset, blockCopy.getByteCount());
+				offset += blockCopy.getByteCount();
+			} else {
+				final byte[] bytes = ((DataOfferMessage) message).getBytes();
+				
+				System.arraycopy(bytes, 0, result, offset, bytes.length);
+				offset += bytes.length;
+			}
+		}
+		
+		assertEquals(byteCount, offset);
+		
+		return result;
+	}
+	
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ChunkSizerTest {
+	
+	@Test
+	public final void testGrowWhileThroughputIncreases() {
+		final ChunkSizer chunkSizer = new ChunkSizer(1024, 8192, 1024L * 1024L);
+		
+		assertEquals(1024, chunkSizer.getChunkSize(1));
+		
+		// Latency-bound link: each chunk takes 1 ms whatever its size
+		final long time = this.receiveSample(chunkSizer, 0L, MILLISECOND);
+		
+		assertEquals(2048, chunkSizer.getChunkSize(1));
+		
+		this.receiveSample(chunkSizer, time, MILLISECOND);
+		
+		assertEquals(4096, chunkSizer.getChunkSize(1));
+	}
+	
+	@Test
+	public final void testStopGrowingWhenThroughputIsStable() {
+		final ChunkSizer chunkSizer = new ChunkSizer(1024, 8192, 1024L * 1024L);
+		long time = this.receiveSample(chunkSizer, 0L, MILLISECOND);
+		
+		assertEquals(2048, chunkSizer.getChunkSize(1));
+		
+		// Bandwidth-bound link: the time is proportional to the chunk size
+		time = this.receiveSample(chunkSizer, time, 2L * MILLISECOND);
+		
+		assertEquals(2048, chunkSizer.getChunkSize(1));
+		
+		this.receiveSample(chunkSizer, time, 2L * MILLISECOND);
+		
+		assertEquals(2048, chunkSizer.getChunkSize(1));
+	}
+	
+	@Test
+	public final void testShrinkWhenThroughputDrops() {
+		final ChunkSizer chunkSizer = new ChunkSizer(1024, 8192, 1024L * 1024L);
+		long time = this.receiveSample(chunkSizer, 0L, MILLISECOND);
+		
+		assertEquals(2048, chunkSizer.getChunkSize(1));
+		
+		this.receiveSample(chunkSizer, time, 4L * MILLISECOND);
+		
+		assertEquals(1024, chunkSizer.getChunkSize(1));
+	}
+	
+	@Test
+	public final void testMemoryCap() {
+		final ChunkSizer chunkSizer = new ChunkSizer(1024, 8192, 4096L);
+		long time = 0L;
+		
+		for (int i = 0; i < 4; ++i) {
+			time = this.receiveSample(chunkSizer, time, MILLISECOND);
+		}
+		
+		assertEquals(4096, chunkSizer.getChunkSize(1));
+		assertEquals(2048, chunkSizer.getChunkSize(2));
+		assertEquals(1024, chunkSizer.getChunkSize(8));
+	}
+	
+	/**
+	 * Simulates the reception of one sample of chunks of the current size.
+	 * 
+	 * @param chunkSizer
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param startTime
+	 * <br>Range: any long
+	 * @param chunkTime
+	 * <br>Range: {@code [1L .. Long.MAX_VALUE]}
+	 * @return the time at the end of the sample
+	 * <br>Range: any long
+	 */
+	private final long receiveSample(final ChunkSizer chunkSizer, final long startTime, final long chunkTime) {
+		final int chunkSize = chunkSizer.getChunkSize(1);
+		long time = startTime;
+		
+		if (startTime == 0L) {
+			chunkSizer.chunkReceived(chunkSize, chunkTime, 0L, time);
+		}
+		
+		for (int i = 0; i < ChunkSizer.SAMPLE_CHUNK_COUNT; ++i) {
+			time += chunkTime;
+			
+			chunkSizer.chunkReceived(chunkSize, chunkTime, 0L, time);
+		}
+		
+		return time;
+	}
+	
+	/**
+	 * Time in nanoseconds.
+	 */
+	private static final long MILLISECOND = 1000000L;
+	
+}
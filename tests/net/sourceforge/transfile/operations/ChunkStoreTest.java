@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ChunkStoreTest {
+	
+	@Test
+	public final void testPutAndGet() throws IOException {
+		final ChunkStore chunkStore = new ChunkStore(createTemporaryDirectory(), 1024L * 1024L);
+		final byte[] chunk1 = BlockSignaturesTest.randomBytes(1000, 1L);
+		final byte[] chunk2 = BlockSignaturesTest.randomBytes(5000, 2L);
+		
+		assertFalse(chunkStore.contains(hash(chunk1)));
+		assertNull(chunkStore.get(hash(chunk1)));
+		assertTrue(chunkStore.put(hash(chunk1), chunk1));
+		assertTrue(chunkStore.put(hash(chunk2), chunk2));
+		assertTrue(chunkStore.put(hash(chunk2), chunk2));
+		assertEquals(2, chunkStore.getChunkCount());
+		assertEquals(1024L + 8192L, chunkStore.getAllocatedByteCount());
+		assertArrayEquals(chunk1, chunkStore.get(hash(chunk1)));
+		assertArrayEquals(chunk2, chunkStore.get(hash(chunk2)));
+		
+		// Too large
+		assertFalse(chunkStore.put(hash(new byte[ContentDefinedChunker.MAXIMUM_CHUNK_SIZE + 1]), new byte[ContentDefinedChunker.MAXIMUM_CHUNK_SIZE + 1]));
+		
+		chunkStore.close();
+	}
+	
+	@Test
+	public final void testLeastRecentlyUsedEviction() throws IOException {
+		final ChunkStore chunkStore = new ChunkStore(createTemporaryDirectory(), 2L * ChunkStore.MINIMUM_SLOT_SIZE);
+		final byte[] chunk1 = BlockSignaturesTest.randomBytes(100, 1L);
+		final byte[] chunk2 = BlockSignaturesTest.randomBytes(100, 2L);
+		final byte[] chunk3 = BlockSignaturesTest.randomBytes(100, 3L);
+		
+		chunkStore.put(hash(chunk1), chunk1);
+		chunkStore.put(hash(chunk2), chunk2);
+		chunkStore.get(hash(chunk1));
+		chunkStore.put(hash(chunk3), chunk3);
+		
+		assertTrue(chunkStore.contains(hash(chunk1)));
+		assertFalse(chunkStore.contains(hash(chunk2)));
+		assertArrayEquals(chunk3, chunkStore.get(hash(chunk3)));
+		assertEquals(2L * ChunkStore.MINIMUM_SLOT_SIZE, chunkStore.getAllocatedByteCount());
+		
+		// No slot of this size class can be allocated or taken
+		assertFalse(chunkStore.put(hash(new byte[2000]), new byte[2000]));
+		
+		chunkStore.close();
+	}
+	
+	@Test
+	public final void testSaveAndLoad() throws IOException {
+		final File directory = createTemporaryDirectory();
+		final ChunkStore chunkStore = new ChunkStore(directory, 2L * ChunkStore.MINIMUM_SLOT_SIZE);
+		final byte[] chunk1 = BlockSignaturesTest.randomBytes(100, 1L);
+		final byte[] chunk2 = BlockSignaturesTest.randomBytes(100, 2L);
+		final byte[] chunk3 = BlockSignaturesTest.randomBytes(100, 3L);
+		
+		chunkStore.put(hash(chunk1), chunk1);
+		chunkStore.put(hash(chunk2), chunk2);
+		chunkStore.get(hash(chunk1));
+		
+		assertTrue(chunkStore.isModified());
+		
+		chunkStore.save();
+		chunkStore.close();
+		
+		assertFalse(chunkStore.isModified());
+		
+		final ChunkStore loadedChunkStore = new ChunkStore(directory, 2L * ChunkStore.MINIMUM_SLOT_SIZE);
+		
+		assertEquals(2, loadedChunkStore.getChunkCount());
+		assertFalse(loadedChunkStore.isModified());
+		
+		// The order of use is kept
+		loadedChunkStore.put(hash(chunk3), chunk3);
+		
+		assertArrayEquals(chunk1, loadedChunkStore.get(hash(chunk1)));
+		assertFalse(loadedChunkStore.contains(hash(chunk2)));
+		assertArrayEquals(chunk3, loadedChunkStore.get(hash(chunk3)));
+		
+		loadedChunkStore.close();
+	}
+	
+	@Test
+	public final void testOverwrittenSlot() throws IOException {
+		final File directory = createTemporaryDirectory();
+		final ChunkStore chunkStore = new ChunkStore(directory, 1024L * 1024L);
+		final byte[] chunk = BlockSignaturesTest.randomBytes(100, 1L);
+		
+		chunkStore.put(hash(chunk), chunk);
+		chunkStore.close();
+		
+		final RandomAccessFile slotFile = new RandomAccessFile(new File(directory, "slots-" + ChunkStore.MINIMUM_SLOT_SIZE + ".chunks"), "rw");
+		
+		try {
+			slotFile.write(~chunk[0]);
+		} finally {
+			slotFile.close();
+		}
+		
+		assertNull(chunkStore.get(hash(chunk)));
+		assertFalse(chunkStore.contains(hash(chunk)));
+		assertEquals(0, chunkStore.getChunkCount());
+		
+		chunkStore.close();
+	}
+	
+	@Test
+	public final void testManyChunks() throws IOException {
+		final File directory = createTemporaryDirectory();
+		final int chunkCount = 20000;
+		final ChunkStore chunkStore = new ChunkStore(directory, (long) chunkCount * ChunkStore.MINIMUM_SLOT_SIZE);
+		
+		for (int i = 0; i < chunkCount; ++i) {
+			final byte[] chunk = BlockSignaturesTest.randomBytes(16, i);
+			
+			assertTrue(chunkStore.put(hash(chunk), chunk));
+		}
+		
+		chunkStore.save();
+		chunkStore.close();
+		
+		final ChunkStore loadedChunkStore = new ChunkStore(directory, (long) chunkCount * ChunkStore.MINIMUM_SLOT_SIZE);
+		
+		assertEquals(chunkCount, loadedChunkStore.getChunkCount());
+		
+		for (int i = 0; i < chunkCount; ++i) {
+			assertTrue(loadedChunkStore.contains(hash(BlockSignaturesTest.randomBytes(16, i))));
+		}
+		
+		loadedChunkStore.close();
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public static final byte[] hash(final byte[] bytes) {
+		return ChunkStore.computeHash(bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * 
+	 * @return an empty directory that is deleted when the virtual machine exits, with its entries
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if the directory cannot be created
+	 */
+	public static final File createTemporaryDirectory() throws IOException {
+		final File result = File.createTempFile("transfile", "chunks");
+		
+		if (!result.delete() || !result.mkdir()) {
+			throw new IOException("Cannot create temporary directory " + result);
+		}
+		
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			
+			@Override
+			public final void run() {
+				FileTreeTest.delete(result);
+			}
+			
+		});
+		
+		return result;
+	}
+	
+}
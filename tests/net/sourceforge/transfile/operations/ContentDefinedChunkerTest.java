@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static net.sourceforge.transfile.operations.ContentDefinedChunker.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ContentDefinedChunkerTest {
+	
+	@Test
+	public final void testGetChunkEnd() {
+		final byte[] bytes = BlockSignaturesTest.randomBytes(MINIMUM_CHUNK_SIZE, 42L);
+		
+		assertEquals(-1, getChunkEnd(bytes, 0, bytes.length, false));
+		assertEquals(bytes.length, getChunkEnd(bytes, 0, bytes.length, true));
+		assertEquals(bytes.length, getChunkEnd(bytes, 1, bytes.length, true));
+		
+		// Bytes without content-defined boundaries are cut at the maximum chunk size
+		assertEquals(MAXIMUM_CHUNK_SIZE, getChunkEnd(new byte[2 * MAXIMUM_CHUNK_SIZE], 0, 2 * MAXIMUM_CHUNK_SIZE, false));
+	}
+	
+	@Test
+	public final void testChunkSizes() {
+		final byte[] bytes = BlockSignaturesTest.randomBytes(4 * 1024 * 1024, 42L);
+		final List<Integer> chunkEnds = chunk(bytes, 0);
+		int start = 0;
+		
+		for (final int end : chunkEnds.subList(0, chunkEnds.size() - 1)) {
+			assertTrue(MINIMUM_CHUNK_SIZE <= end - start);
+			assertTrue(end - start <= MAXIMUM_CHUNK_SIZE);
+			
+			start = end;
+		}
+		
+		assertEquals(bytes.length, (int) chunkEnds.get(chunkEnds.size() - 1));
+		
+		final int averageChunkSize = bytes.length / chunkEnds.size();
+		
+		assertTrue("" + averageChunkSize, AVERAGE_CHUNK_SIZE / 2 <= averageChunkSize && averageChunkSize <= 2 * AVERAGE_CHUNK_SIZE);
+	}
+	
+	@Test
+	public final void testBoundariesFollowContent() {
+		final byte[] bytes = BlockSignaturesTest.randomBytes(1024 * 1024, 42L);
+		final byte[] shiftedBytes = new byte[bytes.length + 100];
+		
+		System.arraycopy(bytes, 0, shiftedBytes, 100, bytes.length);
+		
+		final Set<Integer> chunkEnds = new HashSet<Integer>(chunk(bytes, 0));
+		final List<Integer> shiftedChunkEnds = chunk(shiftedBytes, 100);
+		int commonChunkEndCount = 0;
+		
+		for (final int end : shiftedChunkEnds) {
+			if (chunkEnds.contains(end - 100)) {
+				++commonChunkEndCount;
+			}
+		}
+		
+		// Only the first chunks differ
+		assertTrue(shiftedChunkEnds.size() - 3 <= commonChunkEndCount);
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 * <br>Should not be null
+	 * @param start
+	 * <br>Range: {@code [0 .. bytes.length]}
+	 * @return the ends of the chunks of {@code bytes}, starting at {@code start}
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private static final List<Integer> chunk(final byte[] bytes, final int start) {
+		final List<Integer> result = new ArrayList<Integer>();
+		
+		for (int end = start; end < bytes.length;) {
+			end = getChunkEnd(bytes, end, bytes.length, true);
+			
+			result.add(end);
+		}
+		
+		return result;
+	}
+	
+}
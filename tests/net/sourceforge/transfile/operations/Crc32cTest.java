@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class Crc32cTest {
+	
+	@Test
+	public final void testKnownValues() throws UnsupportedEncodingException {
+		assertEquals(0x00000000, Crc32c.compute(new byte[0]));
+		assertEquals(0xE3069283, Crc32c.compute("123456789".getBytes("US-ASCII")));
+		assertEquals(0x8A9136AA, Crc32c.compute(new byte[32]));
+	}
+	
+	@Test
+	public final void testBulkUpdateMatchesByteUpdate() {
+		final Random random = new Random(42L);
+		
+		for (int length = 0; length < 100; ++length) {
+			final byte[] bytes = new byte[length];
+			
+			random.nextBytes(bytes);
+			
+			final Crc32c bulk = new Crc32c();
+			final Crc32c bytewise = new Crc32c();
+			final int split = length / 3;
+			
+			bulk.update(bytes, 0, split);
+			bulk.update(bytes, split, length - split);
+			
+			for (final byte b : bytes) {
+				bytewise.update(b);
+			}
+			
+			assertEquals(bytewise.getValue(), bulk.getValue());
+			
+			bulk.reset();
+			bulk.update(bytes);
+			
+			assertEquals(bytewise.getValue(), bulk.getValue());
+		}
+	}
+	
+}
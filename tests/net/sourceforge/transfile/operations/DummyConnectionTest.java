@@ -50,6 +50,23 @@ public class DummyConnectionTest extends AbstractConnectionTestBase {
 		return new DummyConnection();
 	}
 	
+	/**
+	 * 
+	 * @return two connected dummy connections that dispatch the messages of the streams asynchronously
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @see AbstractConnection#setAsynchronousDispatch(boolean)
+	 */
+	public static final Connection[] createAsynchronousMatchingConnectionPair() {
+		final Connection[] result = new DummyConnectionTest().createMatchingConnectionPair();
+		
+		for (final Connection connection : result) {
+			((AbstractConnection) connection).setAsynchronousDispatch(true);
+		}
+		
+		return result;
+	}
+	
 	/**
 	 * TODO doc
 	 * 
@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import net.sourceforge.transfile.operations.Operation.State;
+import net.sourceforge.transfile.operations.messages.Message;
+import net.sourceforge.transfile.operations.messages.StateMessage;
+
+/**
+ * Counts the bytes allocated by the current thread per event fired by {@link AbstractConnection} and {@link AbstractOperation},
+ * with {@link #LISTENER_COUNT} listeners; the listeners themselves allocate nothing.
+ * <br>The allocations are measured with {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)},
+ * so the benchmark needs a JVM that supports it.
+ * <br>Not a unit test; run it with {@link #main(String[])}.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public final class EventAllocationBenchmark {
+	
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private EventAllocationBenchmark() {
+		// Do nothing
+	}
+	
+	/**
+	 * Events per measurement.
+	 */
+	public static final int EVENT_COUNT = 1000000;
+	
+	/**
+	 * Measurements made before the printed one, to let the JIT compiler do its work.
+	 */
+	public static final int WARMUP_COUNT = 5;
+	
+	/**
+	 * Listeners of the connection and of the operation.
+	 */
+	public static final int LISTENER_COUNT = 4;
+	
+	/**
+	 * 
+	 * @param arguments
+	 * <br>Unused
+	 */
+	public static final void main(final String[] arguments) {
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.err.println("The allocated memory cannot be measured on this JVM");
+			
+			return;
+		}
+		
+		threads.setThreadAllocatedMemoryEnabled(true);
+		
+		System.out.println("event\tbytes/event\tns/event");
+		
+		for (final Runnable event : createEvents()) {
+			for (int i = 0; i < WARMUP_COUNT; ++i) {
+				measure(threads, event, EVENT_COUNT);
+			}
+			
+			final long startTime = System.nanoTime();
+			final long byteCount = measure(threads, event, EVENT_COUNT);
+			final long time = System.nanoTime() - startTime;
+			
+			System.out.println(event + "\t" + (double) byteCount / EVENT_COUNT + "\t" + (double) time / EVENT_COUNT);
+		}
+	}
+	
+	/**
+	 * Creates a connection and an operation with {@link #LISTENER_COUNT} listeners each,
+	 * and returns the events to measure; each event describes itself with {@link Object#toString()}.
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	static final Runnable[] createEvents() {
+		final DummyConnection connection = new DummyConnection();
+		final AbstractOperation operation = new AbstractOperation(connection, "benchmark") {
+			
+			@Override
+			public final Controller getController() {
+				return null;
+			}
+			
+		};
+		
+		for (int i = 0; i < LISTENER_COUNT; ++i) {
+			connection.addConnectionListener(new Connection.AbstractListener() {
+				// Do nothing
+			});
+			operation.addOperationListener(new Operation.Listener() {
+				
+				@Override
+				public final void stateChanged() {
+					// Do nothing
+				}
+				
+				@Override
+				public final void progressChanged() {
+					// Do nothing
+				}
+				
+			});
+		}
+		
+		final Message message = new StateMessage(new File("benchmark"), State.PROGRESSING);
+		return new Runnable[] {
+				new Runnable() {
+					
+					@Override
+					public final void run() {
+						connection.dispatchMessage(message);
+					}
+					
+					@Override
+					public final String toString() {
+						return "connection message received";
+					}
+					
+				},
+				new Runnable() {
+					
+					private boolean connecting;
+					
+					@Override
+					public final void run() {
+						this.connecting = !this.connecting;
+						
+						connection.setState(this.connecting ? Connection.State.CONNECTING : Connection.State.DISCONNECTED);
+					}
+					
+					@Override
+					public final String toString() {
+						return "connection state changed";
+					}
+					
+				},
+				new Runnable() {
+					
+					private int i;
+					
+					@Override
+					public final void run() {
+						operation.setProgress((++this.i & 1) * 0.5);
+					}
+					
+					@Override
+					public final String toString() {
+						return "operation progress changed";
+					}
+					
+				},
+				new Runnable() {
+					
+					private boolean progressing;
+					
+					@Override
+					public final void run() {
+						this.progressing = !this.progressing;
+						
+						operation.setState(this.progressing ? State.PROGRESSING : State.PAUSED);
+					}
+					
+					@Override
+					public final String toString() {
+						return "operation state changed";
+					}
+					
+				}
+		};
+	}
+	
+	/**
+	 * 
+	 * @param threads
+	 * <br>Should not be null
+	 * @param event
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param eventCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @return the number of bytes allocated by the current thread while firing {@code event} {@code eventCount} times
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	static final long measure(final com.sun.management.ThreadMXBean threads, final Runnable event, final int eventCount) {
+		final long threadId = Thread.currentThread().getId();
+		final long startByteCount = threads.getThreadAllocatedBytes(threadId);
+		
+		for (int i = 0; i < eventCount; ++i) {
+			event.run();
+		}
+		
+		return threads.getThreadAllocatedBytes(threadId) - startByteCount;
+	}
+	
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Test;
+
+/**
+ * Checks that the events of {@link EventAllocationBenchmark} don't allocate once the JIT compiler has done its work;
+ * skipped if the JVM cannot measure the memory allocated by a thread.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class EventAllocationTest {
+	
+	@Test
+	public final void testEventsDontAllocate() {
+		final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		
+		assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+		
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) threadMXBean;
+		
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		
+		threads.setThreadAllocatedMemoryEnabled(true);
+		
+		for (final Runnable event : EventAllocationBenchmark.createEvents()) {
+			for (int i = 0; i < WARMUP_COUNT; ++i) {
+				EventAllocationBenchmark.measure(threads, event, EVENT_COUNT);
+			}
+			
+			assertEquals(event.toString(), 0L, EventAllocationBenchmark.measure(threads, event, EVENT_COUNT) / EVENT_COUNT);
+		}
+	}
+	
+	/**
+	 * Events per measurement.
+	 */
+	public static final int EVENT_COUNT = 100000;
+	
+	/**
+	 * Measurements made before the checked one.
+	 */
+	public static final int WARMUP_COUNT = 5;
+	
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileChannelCacheTest {
+	
+	@Test
+	public final void testRead() throws IOException {
+		final FileChannelCache cache = new FileChannelCache(1, TIMEOUT);
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final ByteBuffer buffer = ByteBuffer.allocate(4);
+		
+		assertEquals(2, cache.read(file, 0L, buffer));
+		assertEquals('4', buffer.get(0));
+		assertEquals('2', buffer.get(1));
+		
+		buffer.clear();
+		
+		assertEquals(1, cache.read(file, 1L, buffer));
+		assertEquals('2', buffer.get(0));
+		
+		buffer.clear();
+		
+		assertEquals(-1, cache.read(file, 2L, buffer));
+		assertEquals(1, cache.getOpenFileCount());
+		
+		cache.close(file);
+		
+		assertEquals(0, cache.getOpenFileCount());
+	}
+	
+	@Test
+	public final void testMaximumOpenFileCount() throws IOException {
+		final FileChannelCache cache = new FileChannelCache(2, TIMEOUT);
+		final ByteBuffer buffer = ByteBuffer.allocate(1);
+		
+		for (int i = 0; i < 3; ++i) {
+			final File file = File.createTempFile("test", null);
+			
+			file.deleteOnExit();
+			
+			buffer.clear();
+			
+			assertEquals(-1, cache.read(file, 0L, buffer));
+		}
+		
+		assertEquals(2, cache.getOpenFileCount());
+	}
+	
+	@Test
+	public final void testCloseIdleFiles() throws IOException, InterruptedException {
+		final FileChannelCache cache = new FileChannelCache(1, 1L);
+		
+		cache.read(AbstractOperationTestBase.SOURCE_FILE, 0L, ByteBuffer.allocate(1));
+		
+		Thread.sleep(10L);
+		
+		cache.closeIdleFiles();
+		
+		assertEquals(0, cache.getOpenFileCount());
+	}
+	
+	/**
+	 * Time in milliseconds.
+	 */
+	private static final long TIMEOUT = 60000L;
+	
+}
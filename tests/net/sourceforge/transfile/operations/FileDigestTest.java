@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileDigestTest {
+	
+	@Test
+	public final void testUpdateFromChunks() throws NoSuchAlgorithmException {
+		final FileDigest fileDigest = new FileDigest();
+		
+		fileDigest.update(0L, bytes("01"));
+		// Not following the digested bytes
+		fileDigest.update(3L, bytes("34"));
+		// Partly digested already
+		fileDigest.update(1L, bytes("123"));
+		fileDigest.update(4L, bytes("456789"));
+		
+		assertEquals(10L, fileDigest.getDigestedByteCount());
+		assertArrayEquals(MessageDigest.getInstance(FileDigest.ALGORITHM).digest(bytes("0123456789")), fileDigest.digest());
+	}
+	
+	@Test
+	public final void testUpdateFromReusedBuffer() throws NoSuchAlgorithmException {
+		final FileDigest fileDigest = new FileDigest();
+		final byte[] buffer = new byte[4];
+		
+		System.arraycopy(bytes("0123"), 0, buffer, 0, 4);
+		fileDigest.update(0L, buffer, 3);
+		// The end of the buffer is ignored
+		System.arraycopy(bytes("3456"), 0, buffer, 0, 4);
+		fileDigest.update(3L, buffer, 2);
+		
+		assertEquals(5L, fileDigest.getDigestedByteCount());
+		assertArrayEquals(MessageDigest.getInstance(FileDigest.ALGORITHM).digest(bytes("01234")), fileDigest.digest());
+	}
+	
+	@Test
+	public final void testUpdateFromFile() throws IOException, NoSuchAlgorithmException {
+		final File file = File.createTempFile("digest", null);
+		
+		file.deleteOnExit();
+		
+		TransferJournalTest.write(file, "0123456789");
+		
+		final FileDigest fileDigest = new FileDigest();
+		
+		fileDigest.update(file, 3L);
+		fileDigest.update(3L, bytes("34"));
+		fileDigest.update(file, 2L);
+		fileDigest.update(file, 10L);
+		
+		assertEquals(10L, fileDigest.getDigestedByteCount());
+		assertArrayEquals(MessageDigest.getInstance(FileDigest.ALGORITHM).digest(bytes("0123456789")), fileDigest.digest());
+	}
+	
+	/**
+	 * 
+	 * @param string
+	 * <br>Should not be null
+	 * @return the {@link FileDigest#ALGORITHM} digest of the bytes of {@code string}
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public static final byte[] digest(final String string) {
+		final FileDigest fileDigest = new FileDigest();
+		
+		fileDigest.update(0L, bytes(string));
+		
+		return fileDigest.digest();
+	}
+	
+	/**
+	 * 
+	 * @param string
+	 * <br>Should not be null
+	 * @return the ASCII bytes of {@code string}
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	public static final byte[] bytes(final String string) {
+		final byte[] result = new byte[string.length()];
+		
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = (byte) string.charAt(i);
+		}
+		
+		return result;
+	}
+	
+}
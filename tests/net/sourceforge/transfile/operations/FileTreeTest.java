@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+import net.sourceforge.transfile.operations.messages.ManifestMessage;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class FileTreeTest {
+	
+	@Test
+	public final void testAddAndGetEntryIndex() {
+		final FileTree fileTree = new FileTree();
+		
+		fileTree.add("a", -1L);
+		fileTree.add("a/b", 3L);
+		fileTree.add("a/empty", 0L);
+		fileTree.add("c", 2L);
+		
+		assertEquals(4, fileTree.getEntryCount());
+		assertEquals(5L, fileTree.getByteCount());
+		assertTrue(fileTree.isDirectory(0));
+		assertFalse(fileTree.isDirectory(2));
+		assertEquals(3L, fileTree.getOffset(2));
+		assertEquals(3L, fileTree.getOffset(3));
+		assertEquals(1, fileTree.getEntryIndex(0L));
+		assertEquals(1, fileTree.getEntryIndex(2L));
+		assertEquals(3, fileTree.getEntryIndex(3L));
+		assertEquals(3, fileTree.getEntryIndex(4L));
+	}
+	
+	@Test
+	public final void testMessages() {
+		final File sourceFile = AbstractOperationTestBase.SOURCE_FILE;
+		final FileTree fileTree = new FileTree();
+		
+		assertNull(fileTree.toMessage(sourceFile, 0, 2));
+		
+		fileTree.add("a", -1L);
+		fileTree.add("a/b", 3L);
+		fileTree.add("c", 2L);
+		
+		assertEquals(new ManifestMessage(sourceFile, 0, new String[] { "a", "a/b" }, new long[] { -1L, 3L }, false), fileTree.toMessage(sourceFile, 0, 2));
+		assertEquals(new ManifestMessage(sourceFile, 2, new String[] { "c" }, new long[] { 2L }, false), fileTree.toMessage(sourceFile, 2, 2));
+		assertNull(fileTree.toMessage(sourceFile, 3, 2));
+		
+		fileTree.setComplete();
+		
+		assertEquals(new ManifestMessage(sourceFile, 2, new String[] { "c" }, new long[] { 2L }, true), fileTree.toMessage(sourceFile, 2, 2));
+		assertEquals(new ManifestMessage(sourceFile, 3, new String[0], new long[0], true), fileTree.toMessage(sourceFile, 3, 2));
+		
+		final FileTree receivedFileTree = new FileTree();
+		
+		assertFalse(receivedFileTree.add(fileTree.toMessage(sourceFile, 2, 2)));
+		assertTrue(receivedFileTree.add(fileTree.toMessage(sourceFile, 0, 2)));
+		assertFalse(receivedFileTree.isComplete());
+		assertTrue(receivedFileTree.add(fileTree.toMessage(sourceFile, 2, 2)));
+		assertTrue(receivedFileTree.isComplete());
+		assertEquals(5L, receivedFileTree.getByteCount());
+	}
+	
+	@Test
+	public final void testCheckPath() {
+		FileTree.checkPath("a");
+		FileTree.checkPath("a/b.c");
+		FileTree.checkPath("a/..b");
+		
+		for (final String path : new String[] { "", "/a", "a/", "a//b", "..", "a/../b", "./a", "a\\b", "c:a" }) {
+			try {
+				FileTree.checkPath(path);
+				
+				fail("Accepted path: " + path);
+			} catch (final IllegalArgumentException exception) {
+				// Expected
+			}
+		}
+	}
+	
+	@Test
+	public final void testScanReadAndWrite() throws IOException, InterruptedException {
+		final File sourceDirectory = createTemporaryTree(100);
+		final FileTree fileTree = new FileTree();
+		final Semaphore completion = new Semaphore(0);
+		final FileTreeScanner fileTreeScanner = new FileTreeScanner(sourceDirectory, fileTree, new Runnable() {
+			
+			@Override
+			public final void run() {
+				if (fileTree.isComplete()) {
+					completion.release();
+				}
+			}
+			
+		});
+		
+		fileTreeScanner.start();
+		completion.acquire();
+		
+		final Set<String> paths = new HashSet<String>();
+		
+		for (int i = 0; i < fileTree.getEntryCount(); ++i) {
+			final String path = fileTree.getPath(i);
+			final int parentEnd = path.lastIndexOf('/');
+			
+			// A directory comes before its entries
+			assertTrue(parentEnd < 0 || paths.contains(path.substring(0, parentEnd)));
+			
+			paths.add(path);
+		}
+		
+		assertEquals(100 + 2 * 10 + 2, fileTree.getEntryCount());
+		
+		final ByteBuffer stream = ByteBuffer.allocate((int) fileTree.getByteCount());
+		
+		fileTree.read(sourceDirectory, 0L, stream, new FileChannelCache(4, 60000L));
+		
+		final File destinationDirectory = new File(ChunkStoreTest.createTemporaryDirectory(), sourceDirectory.getName());
+		final FileTreeWriter fileTreeWriter = new FileTreeWriter(destinationDirectory, fileTree);
+		
+		fileTreeWriter.createEntries(0, 50);
+		fileTreeWriter.createEntries(50, fileTree.getEntryCount());
+		stream.flip();
+		
+		// The stream is written in several parts that don't end with the files
+		while (stream.hasRemaining()) {
+			final ByteBuffer part = stream.slice();
+			
+			part.limit(Math.min(part.remaining(), 7));
+			fileTreeWriter.write(stream.position(), part);
+			stream.position(stream.position() + part.position());
+		}
+		
+		fileTreeWriter.close();
+		
+		assertTreeEquals(sourceDirectory, destinationDirectory);
+		
+		delete(sourceDirectory);
+		delete(destinationDirectory);
+	}
+	
+	/**
+	 * Creates {@code fileCount} files of various sizes, some of them empty, in 10 subdirectories,
+	 * with an empty directory and an empty file at the root.
+	 * 
+	 * @param fileCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if the tree cannot be created
+	 */
+	public static final File createTemporaryTree(final int fileCount) throws IOException {
+		final File result = new File(ChunkStoreTest.createTemporaryDirectory(), "tree");
+		
+		for (int i = 0; i < 10; ++i) {
+			FileTreeWriter.createDirectory(new File(result, "directory" + i + "/subdirectory"));
+		}
+		
+		for (int i = 0; i < fileCount; ++i) {
+			final File file = new File(result, "directory" + (i % 10) + (i % 3 == 0 ? "/subdirectory" : "") + "/file" + i);
+			
+			TransferJournalTest.write(file, new String(BlockSignaturesTest.randomBytes(i % 7 == 0 ? 0 : i * 10, i), "ISO-8859-1"));
+		}
+		
+		FileTreeWriter.createDirectory(new File(result, "empty"));
+		TransferJournalTest.write(new File(result, "empty.txt"), "");
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param expected
+	 * <br>Should not be null
+	 * @param actual
+	 * <br>Should not be null
+	 * @throws IOException if a file cannot be read
+	 */
+	public static final void assertTreeEquals(final File expected, final File actual) throws IOException {
+		if (expected.isDirectory()) {
+			assertTrue(actual.isDirectory());
+			
+			final String[] names = expected.list();
+			final String[] actualNames = actual.list();
+			
+			Arrays.sort(names);
+			Arrays.sort(actualNames);
+			
+			assertArrayEquals(names, actualNames);
+			
+			for (final String name : names) {
+				assertTreeEquals(new File(expected, name), new File(actual, name));
+			}
+		} else {
+			assertArrayEquals(AbstractSessionTestBase.readAll(expected), AbstractSessionTestBase.readAll(actual));
+		}
+	}
+	
+	/**
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 */
+	public static final void delete(final File file) {
+		final File[] files = file.listFiles();
+		
+		if (files != null) {
+			for (final File child : files) {
+				delete(child);
+			}
+		}
+		
+		file.delete();
+	}
+	
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class IntHashMapTest {
+	
+	@Test
+	public final void testPutGetRemove() {
+		final IntHashMap<String> map = new IntHashMap<String>();
+		
+		assertNull(map.put(1, "1"));
+		assertNull(map.put(-1, "-1"));
+		assertEquals("1", map.put(1, "one"));
+		assertEquals(2, map.size());
+		assertEquals("one", map.get(1));
+		assertEquals("-1", map.get(-1));
+		assertNull(map.get(2));
+		assertNull(map.get(0));
+		assertEquals("-1", map.remove(-1));
+		assertNull(map.remove(-1));
+		assertNull(map.get(-1));
+		assertEquals(1, map.size());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public final void testZeroKey() {
+		new IntHashMap<String>().put(0, "0");
+	}
+	
+	@Test
+	public final void testAgainstHashMap() {
+		final IntHashMap<Integer> map = new IntHashMap<Integer>();
+		final Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+		final Random random = new Random(42L);
+		
+		for (int i = 0; i < 100000; ++i) {
+			final int key = random.nextInt(2001) - 1000;
+			
+			if (key == 0) {
+				continue;
+			}
+			
+			if (random.nextBoolean()) {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			} else {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			
+			assertEquals(expected.size(), map.size());
+		}
+		
+		for (int key = -1000; key <= 1000; ++key) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+	
+}
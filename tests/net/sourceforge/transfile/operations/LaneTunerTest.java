@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class LaneTunerTest {
+	
+	@Test
+	public final void testAddLanesWhileThroughputIncreases() {
+		final LaneTuner tuner = new LaneTuner(4, INTERVAL);
+		
+		assertEquals(1, tuner.getLaneCount());
+		
+		for (int i = 1; i <= 3; ++i) {
+			measure(tuner, i, 100L * i);
+			
+			assertEquals(i + 1, tuner.getLaneCount());
+		}
+		
+		measure(tuner, 4, 400L);
+		
+		assertEquals(4, tuner.getLaneCount());
+	}
+	
+	@Test
+	public final void testRemoveLaneThatDoesntHelp() {
+		final LaneTuner tuner = new LaneTuner(4, INTERVAL);
+		
+		measure(tuner, 1, 100L);
+		measure(tuner, 2, 200L);
+		measure(tuner, 3, 205L);
+		
+		assertEquals(2, tuner.getLaneCount());
+		
+		// Adding a lane is tried again after the hold intervals
+		for (int i = 0; i <= LaneTuner.HOLD_INTERVAL_COUNT; ++i) {
+			assertEquals(2, tuner.getLaneCount());
+			
+			measure(tuner, 4 + i, 200L);
+		}
+		
+		assertEquals(3, tuner.getLaneCount());
+	}
+	
+	/**
+	 * Time unit for the tests.
+	 */
+	private static final long INTERVAL = 1000L;
+	
+	/**
+	 * Reports {@code byteCount} bytes sent during the interval ending at {@code intervalIndex * INTERVAL}.
+	 * 
+	 * @param tuner
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @param intervalIndex
+	 * <br>Range: {@code [1 .. Integer.MAX_VALUE]}
+	 * @param byteCount
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 */
+	private static final void measure(final LaneTuner tuner, final int intervalIndex, final long byteCount) {
+		if (intervalIndex == 1) {
+			tuner.bytesSent(0L, 0L);
+		}
+		
+		tuner.bytesSent(byteCount, intervalIndex * INTERVAL);
+	}
+	
+}
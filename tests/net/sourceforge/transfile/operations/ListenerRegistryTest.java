@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ListenerRegistryTest {
+	
+	@Test
+	public final void testAddAndRemove() {
+		final ListenerRegistry<String> registry = new ListenerRegistry<String>(new String[0]);
+		
+		assertArrayEquals(new String[0], registry.getListeners());
+		
+		registry.add("a");
+		registry.add("b");
+		registry.add("a");
+		
+		assertArrayEquals(new String[] { "a", "b", "a" }, registry.getListeners());
+		assertTrue(registry.remove("a"));
+		assertArrayEquals(new String[] { "b", "a" }, registry.getListeners());
+		assertFalse(registry.remove("c"));
+		assertFalse(registry.remove(null));
+		assertTrue(registry.remove("a"));
+		assertTrue(registry.remove("b"));
+		assertArrayEquals(new String[0], registry.getListeners());
+	}
+	
+	@Test
+	public final void testSnapshots() {
+		final ListenerRegistry<String> registry = new ListenerRegistry<String>(new String[0]);
+		
+		registry.add("a");
+		
+		final String[] snapshot = registry.getListeners();
+		
+		// The snapshot is reused until the listeners change, and it is not modified afterwards
+		assertSame(snapshot, registry.getListeners());
+		
+		registry.add("b");
+		registry.remove("a");
+		
+		assertArrayEquals(new String[] { "a" }, snapshot);
+		assertArrayEquals(new String[] { "b" }, registry.getListeners());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public final void testNonEmptyArray() {
+		new ListenerRegistry<String>(new String[] { "a" });
+	}
+	
+}
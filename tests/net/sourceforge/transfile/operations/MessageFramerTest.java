@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.util.Arrays;
+
+import net.sourceforge.transfile.operations.Operation.State;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DataRequestMessage;
+import net.sourceforge.transfile.operations.messages.StateMessage;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class MessageFramerTest {
+	
+	@Test
+	public final void testWriteAndReadMessages() throws IOException, ClassNotFoundException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final Pipe pipe = Pipe.open();
+		final StateMessage stateMessage = new StateMessage(file, State.PROGRESSING);
+		final DataRequestMessage request = new DataRequestMessage(file, 1L, 1);
+		final DataOfferMessage offer = new DataOfferMessage(file, 0L, (byte) '4', (byte) '2');
+		
+		MessageFramer.writeMessage(stateMessage, pipe.sink());
+		MessageFramer.writeMessage(request, pipe.sink());
+		MessageFramer.writeMessage(offer, pipe.sink());
+		
+		assertEquals(stateMessage, MessageFramer.readMessage(pipe.source()));
+		assertEquals(request, MessageFramer.readMessage(pipe.source()));
+		assertEquals(offer, MessageFramer.readMessage(pipe.source()));
+	}
+	
+	@Test
+	public final void testTransferFromSourceFile() throws IOException, ClassNotFoundException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final FileChannelCache sourceFileChannels = new FileChannelCache(1, 60000L);
+		final Pipe pipe = Pipe.open();
+		
+		final DataOfferMessage offer = new DataOfferMessage(file, 1L, 1, sourceFileChannels);
+		
+		// Logging an offer doesn't read its bytes
+		assertTrue(offer.toString().contains("1 bytes"));
+		assertTrue(offer.isInSourceFile());
+		
+		MessageFramer.writeMessage(offer, pipe.sink());
+		
+		assertEquals(new DataOfferMessage(file, 1L, (byte) '2'), MessageFramer.readMessage(pipe.source()));
+	}
+	
+	@Test
+	public final void testTransferToDestinationFile() throws IOException, ClassNotFoundException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final File destinationFile = File.createTempFile("test", null);
+		final Pipe pipe = Pipe.open();
+		
+		destinationFile.deleteOnExit();
+		
+		final DataOfferMessage offer = new DataOfferMessage(file, 0L, (byte) '4', (byte) '2');
+		
+		offer.setChecksum(Crc32c.compute(offer.getBytes()));
+		
+		MessageFramer.writeMessage(offer, pipe.sink());
+		MessageFramer.writeMessage(new StateMessage(file, State.DONE), pipe.sink());
+		
+		final FileChannel destination = new RandomAccessFile(destinationFile, "rw").getChannel();
+		
+		try {
+			final DataOfferMessage receivedOffer = (DataOfferMessage) MessageFramer.readMessage(pipe.source());
+			
+			receivedOffer.transferBytesTo(destination, 0L);
+			
+			assertTrue(receivedOffer.isTransferredToFile());
+			// Transferred offers can still be compared and hashed
+			assertEquals(offer, receivedOffer);
+			assertEquals(offer.hashCode(), receivedOffer.hashCode());
+			assertEquals(new StateMessage(file, State.DONE), MessageFramer.readMessage(pipe.source()));
+			
+			final ByteBuffer buffer = ByteBuffer.allocate(2);
+			
+			destination.read(buffer, 0L);
+			
+			assertArrayEquals(new byte[] { '4', '2' }, buffer.array());
+		} finally {
+			destination.close();
+		}
+	}
+	
+	@Test
+	public final void testChecksummedOffer() throws IOException, ClassNotFoundException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final Pipe pipe = Pipe.open();
+		final DataOfferMessage offer = new DataOfferMessage(file, 0L, (byte) '4', (byte) '2');
+		
+		offer.setChecksum(Crc32c.compute(offer.getBytes()));
+		
+		MessageFramer.writeMessage(offer, pipe.sink());
+		MessageFramer.writeMessage(new DataOfferMessage(file, 2L), pipe.sink());
+		
+		final DataOfferMessage receivedOffer = (DataOfferMessage) MessageFramer.readMessage(pipe.source());
+		
+		assertTrue(receivedOffer.isChecksummed());
+		assertEquals(offer.getChecksum(), receivedOffer.getChecksum());
+		assertEquals(offer, receivedOffer);
+		assertFalse(((DataOfferMessage) MessageFramer.readMessage(pipe.source())).isChecksummed());
+	}
+	
+	@Test
+	public final void testCompressedOffer() throws IOException, ClassNotFoundException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final Pipe pipe = Pipe.open();
+		final DataOfferMessage offer = new OfferCompressor().compress(new DataOfferMessage(file, 0L, new byte[OfferCompressor.MINIMUM_BYTE_COUNT]));
+		final StateMessage stateMessage = new StateMessage(file, State.DONE);
+		
+		assertTrue(offer.isCompressed());
+		
+		MessageFramer.writeMessage(offer, pipe.sink());
+		MessageFramer.writeMessage(stateMessage, pipe.sink());
+		
+		final DataOfferMessage receivedOffer = (DataOfferMessage) MessageFramer.readMessage(pipe.source());
+		
+		assertTrue(receivedOffer.isCompressed());
+		assertEquals(offer.getByteCount(), receivedOffer.getByteCount());
+		assertEquals(offer.getPayloadByteCount(), receivedOffer.getPayloadByteCount());
+		
+		receivedOffer.detachFromPayloadSource();
+		
+		assertEquals(stateMessage, MessageFramer.readMessage(pipe.source()));
+		assertEquals(offer, receivedOffer);
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public final void testTruncatedFrame() throws IOException, ClassNotFoundException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		
+		MessageFramer.writeMessage(new DataOfferMessage(file, 0L, (byte) '4', (byte) '2'), Channels.newChannel(frame));
+		
+		final byte[] truncatedFrame = Arrays.copyOf(frame.toByteArray(), frame.size() - 1);
+		
+		((DataOfferMessage) MessageFramer.readMessage(Channels.newChannel(new ByteArrayInputStream(truncatedFrame)))).getBytes();
+	}
+	
+	@Test(expected = EOFException.class)
+	public final void testSourceFileTooShort() throws IOException {
+		final File file = AbstractOperationTestBase.SOURCE_FILE;
+		
+		MessageFramer.writeMessage(new DataOfferMessage(file, 0L, 3, new FileChannelCache(1, 60000L)), Pipe.open().sink());
+	}
+	
+}
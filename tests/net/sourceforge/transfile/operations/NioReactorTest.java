@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class NioReactorTest {
+	
+	@Test(timeout = 5000L)
+	public final void testScheduleOrder() throws IOException, InterruptedException {
+		final NioReactor reactor = new NioReactor(1);
+		final List<Integer> events = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(4);
+		
+		reactor.schedule(new Recorder(events, 3, done), 200L);
+		reactor.schedule(new Recorder(events, 1, done), 50L);
+		reactor.schedule(new Recorder(events, 2, done), 50L);
+		reactor.execute(new Recorder(events, 0, done));
+		
+		assertTrue(done.await(4000L, TimeUnit.MILLISECONDS));
+		assertEquals(Arrays.asList(0, 1, 2, 3), events);
+	}
+	
+	@Test(timeout = 5000L)
+	public final void testTaskExceptionDoesNotStopTheReactor() throws IOException, InterruptedException {
+		final NioReactor reactor = new NioReactor(1);
+		final List<Integer> events = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(1);
+		
+		reactor.execute(new Runnable() {
+			
+			@Override
+			public final void run() {
+				throw new RuntimeException("Expected exception");
+			}
+			
+		});
+		reactor.execute(new Recorder(events, 42, done));
+		
+		assertTrue(done.await(4000L, TimeUnit.MILLISECONDS));
+		assertEquals(Arrays.asList(42), events);
+	}
+	
+	@Test(timeout = 5000L)
+	public final void testHandlerExceptionCancelsItsKey() throws IOException, InterruptedException {
+		final NioReactor reactor = new NioReactor(1);
+		final Pipe pipe = Pipe.open();
+		final CountDownLatch failed = new CountDownLatch(1);
+		final SelectionKey[] failedKey = new SelectionKey[1];
+		final NioReactor.Handler handler = new NioReactor.Handler() {
+			
+			@Override
+			public final void ready(final SelectionKey key) {
+				throw new RuntimeException("Expected exception");
+			}
+			
+			@Override
+			public final void failed(final SelectionKey key, final Exception error) {
+				failedKey[0] = key;
+				failed.countDown();
+			}
+			
+		};
+		
+		pipe.source().configureBlocking(false);
+		reactor.execute(new Runnable() {
+			
+			@Override
+			public final void run() {
+				try {
+					reactor.register(pipe.source(), SelectionKey.OP_READ, handler);
+				} catch (final ClosedChannelException exception) {
+					throw new RuntimeException(exception);
+				}
+			}
+			
+		});
+		pipe.sink().write(ByteBuffer.wrap(new byte[] { 42 }));
+		
+		assertTrue(failed.await(4000L, TimeUnit.MILLISECONDS));
+		assertFalse(failedKey[0].isValid());
+		
+		// The other tasks are still run
+		final CountDownLatch done = new CountDownLatch(1);
+		
+		reactor.execute(new Recorder(new ArrayList<Integer>(), 0, done));
+		
+		assertTrue(done.await(4000L, TimeUnit.MILLISECONDS));
+		assertTrue(reactor.isOpen());
+		
+		pipe.sink().close();
+		pipe.source().close();
+	}
+	
+	/**
+	 * TODO doc
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	private static final class Recorder implements Runnable {
+		
+		private final List<Integer> events;
+		
+		private final int event;
+		
+		private final CountDownLatch done;
+		
+		/**
+		 * 
+		 * @param events
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 * @param event
+		 * <br>Range: any integer
+		 * @param done
+		 * <br>Should not be null
+		 * <br>Shared parameter
+		 */
+		Recorder(final List<Integer> events, final int event, final CountDownLatch done) {
+			this.events = events;
+			this.event = event;
+			this.done = done;
+		}
+		
+		@Override
+		public final void run() {
+			this.events.add(this.event);
+			this.done.countDown();
+		}
+		
+	}
+	
+}
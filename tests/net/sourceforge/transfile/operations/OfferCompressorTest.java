@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Random;
+
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class OfferCompressorTest {
+	
+	@Test
+	public final void testCompressibleOffer() {
+		final OfferCompressor compressor = new OfferCompressor();
+		final byte[] bytes = new byte[4096];
+		
+		for (int i = 0; i < bytes.length; ++i) {
+			bytes[i] = (byte) "transfile;".charAt(i % 10);
+		}
+		
+		final DataOfferMessage offer = new DataOfferMessage(FILE, 42L, bytes);
+		
+		offer.setStreamId(7);
+		
+		final DataOfferMessage compressedOffer = compressor.compress(offer);
+		
+		assertTrue(compressedOffer.isCompressed());
+		assertEquals(42L, compressedOffer.getFirstByteOffset());
+		assertEquals(7, compressedOffer.getStreamId());
+		assertEquals(bytes.length, compressedOffer.getByteCount());
+		assertTrue(compressedOffer.getPayloadByteCount() < bytes.length / 10);
+		assertArrayEquals(bytes, new DataOfferMessage(FILE, 42L, bytes.length, compressedOffer.getCompressedBytes()).getBytes());
+		assertTrue(compressor.isCompressing());
+	}
+	
+	@Test
+	public final void testSmallOffer() {
+		final DataOfferMessage offer = new DataOfferMessage(FILE, 0L, new byte[OfferCompressor.MINIMUM_BYTE_COUNT - 1]);
+		
+		assertSame(offer, new OfferCompressor().compress(offer));
+	}
+	
+	@Test
+	public final void testIncompressibleOffers() {
+		final OfferCompressor compressor = new OfferCompressor();
+		final Random random = new Random(0L);
+		
+		for (int i = 0; i < OfferCompressor.INCOMPRESSIBLE_OFFER_COUNT; ++i) {
+			final DataOfferMessage offer = newRandomOffer(random);
+			
+			assertTrue(compressor.isCompressing());
+			assertSame(offer, compressor.compress(offer));
+		}
+		
+		assertFalse(compressor.isCompressing());
+		
+		for (int i = 0; i < OfferCompressor.SKIPPED_OFFER_COUNT; ++i) {
+			// Compressible, but not even looked at
+			final DataOfferMessage offer = new DataOfferMessage(FILE, 0L, new byte[4096]);
+			
+			assertSame(offer, compressor.compress(offer));
+		}
+		
+		assertTrue(compressor.isCompressing());
+		assertTrue(compressor.compress(new DataOfferMessage(FILE, 0L, new byte[4096])).isCompressed());
+	}
+	
+	private static final File FILE = new File("dummy");
+	
+	/**
+	 * 
+	 * @param random
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private static final DataOfferMessage newRandomOffer(final Random random) {
+		final byte[] bytes = new byte[4096];
+		
+		random.nextBytes(bytes);
+		
+		return new DataOfferMessage(FILE, 0L, bytes);
+	}
+	
+}
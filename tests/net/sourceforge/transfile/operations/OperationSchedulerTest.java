@@ -0,0 +1,253 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sourceforge.transfile.operations.Operation.State;
+import net.sourceforge.transfile.operations.OperationScheduler.Priority;
+import net.sourceforge.transfile.operations.messages.FileOfferMessage;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class OperationSchedulerTest {
+	
+	@Test
+	public final void testAdmissionLimit() throws IOException {
+		final OperationScheduler scheduler = new OperationScheduler(2);
+		final List<Operation> startedOperations = new ArrayList<Operation>();
+		final Operation[] operations = createOperations(startedOperations, 1, 1, 1, 1, 1);
+		
+		for (final Operation operation : operations) {
+			scheduler.schedule(operation);
+		}
+		
+		assertEquals(Arrays.asList(operations[0], operations[1]), startedOperations);
+		assertEquals(2, scheduler.getProgressingOperationCount());
+		assertEquals(3, scheduler.getWaitingOperationCount());
+		assertTrue(scheduler.isWaiting(operations[2]));
+		
+		operations[0].getController().done();
+		
+		assertEquals(Arrays.asList(operations[0], operations[1], operations[2]), startedOperations);
+		assertEquals(2, scheduler.getProgressingOperationCount());
+		
+		// A paused operation frees its slot, and a canceled waiting operation is not started anymore
+		operations[3].getController().cancel();
+		operations[1].getController().pause();
+		
+		assertEquals(Arrays.asList(operations[0], operations[1], operations[2], operations[4]), startedOperations);
+		assertEquals(0, scheduler.getWaitingOperationCount());
+		
+		// A larger limit starts the operations scheduled again
+		scheduler.schedule(operations[1]);
+		scheduler.schedule(operations[3]);
+		
+		assertEquals(2, scheduler.getWaitingOperationCount());
+		
+		scheduler.setMaximumProgressingOperationCount(4);
+		
+		assertEquals(Arrays.asList(operations[0], operations[1], operations[2], operations[4], operations[1], operations[3]), startedOperations);
+		assertEquals(4, scheduler.getProgressingOperationCount());
+	}
+	
+	@Test
+	public final void testPrioritiesAndShortestFirst() throws IOException {
+		final OperationScheduler scheduler = new OperationScheduler(1);
+		final List<Operation> startedOperations = new ArrayList<Operation>();
+		final Operation[] operations = createOperations(startedOperations, 5, 30, 10, 20, 1, 100);
+		
+		scheduler.setShortestFirst(true);
+		scheduler.schedule(operations[0]);
+		scheduler.schedule(operations[1]);
+		scheduler.schedule(operations[2]);
+		scheduler.schedule(operations[3]);
+		scheduler.schedule(operations[4], Priority.LOW);
+		scheduler.schedule(operations[5], Priority.HIGH);
+		
+		for (int i = 0; i < operations.length; ++i) {
+			startedOperations.get(i).getController().done();
+		}
+		
+		assertEquals(Arrays.asList(operations[0], operations[5], operations[2], operations[3], operations[1], operations[4]), startedOperations);
+		assertEquals(0, scheduler.getProgressingOperationCount());
+	}
+	
+	@Test
+	public final void testSchedulingOrder() throws IOException {
+		final OperationScheduler scheduler = new OperationScheduler(1);
+		final List<Operation> startedOperations = new ArrayList<Operation>();
+		final Operation[] operations = createOperations(startedOperations, 5, 30, 10, 20);
+		
+		scheduler.setShortestFirst(false);
+		
+		for (final Operation operation : operations) {
+			scheduler.schedule(operation);
+		}
+		
+		for (int i = 0; i < operations.length; ++i) {
+			startedOperations.get(i).getController().done();
+		}
+		
+		assertEquals(Arrays.asList(operations), startedOperations);
+	}
+	
+	@Test
+	public final void testRemotelyStartedOperationsFirst() throws IOException {
+		final OperationScheduler scheduler = new OperationScheduler(1);
+		final List<Operation> startedOperations = new ArrayList<Operation>();
+		final Operation[] operations = createOperations(startedOperations, 1, 1, 1);
+		
+		scheduler.schedule(operations[0]);
+		scheduler.schedule(operations[1]);
+		scheduler.schedule(operations[2]);
+		
+		assertEquals(Arrays.asList(operations[0]), startedOperations);
+		
+		// The remote peer has started the last operation while the first one is waiting for it
+		setRemoteState(scheduler, operations[2], State.PROGRESSING);
+		
+		assertEquals(Arrays.asList(operations[0], operations[2]), startedOperations);
+		assertEquals(2, scheduler.getProgressingOperationCount());
+		
+		// No slot is free while an operation is transferring data
+		setRemoteState(scheduler, operations[1], State.PROGRESSING);
+		
+		assertTrue(scheduler.isWaiting(operations[1]));
+		
+		operations[2].getController().done();
+		
+		assertEquals(Arrays.asList(operations[0], operations[2], operations[1]), startedOperations);
+	}
+	
+	@Test
+	public final void testUnscheduledAndUnstartableOperations() throws IOException {
+		final OperationScheduler scheduler = new OperationScheduler(1);
+		final List<Operation> startedOperations = new ArrayList<Operation>();
+		final Operation[] operations = createOperations(startedOperations, 1, 1);
+		final ReceiveOperation receiveOperation = new ReceiveOperation(new DummyConnection(), new FileOfferMessage(operations[0].getLocalFile()), new ReceiveOperation.DestinationFileProvider() {
+			
+			@Override
+			public final File getDestinationFile(final String fileName) {
+				return null;
+			}
+			
+		});
+		
+		scheduler.add(operations[0]);
+		operations[0].getController().start();
+		
+		assertEquals(1, scheduler.getProgressingOperationCount());
+		
+		scheduler.schedule(receiveOperation);
+		scheduler.schedule(operations[1]);
+		
+		assertEquals(Arrays.asList(operations[0]), startedOperations);
+		
+		// The receive operation has no destination file, so it cannot start
+		operations[0].getController().done();
+		
+		assertEquals(Arrays.asList(operations[0], operations[1]), startedOperations);
+		assertEquals(State.QUEUED, receiveOperation.getState());
+		assertFalse(scheduler.isWaiting(receiveOperation));
+		
+		try {
+			scheduler.schedule(operations[0]);
+			
+			fail("Scheduled an operation that is done");
+		} catch (final IllegalStateException exception) {
+			// Expected
+		}
+	}
+	
+	/**
+	 * Simulates the reception of a state message for {@code operation}.
+	 * 
+	 * @param scheduler
+	 * <br>Should not be null
+	 * @param operation
+	 * <br>Should not be null
+	 * @param remoteState
+	 * <br>Should not be null
+	 */
+	private static final void setRemoteState(final OperationScheduler scheduler, final Operation operation, final State remoteState) {
+		((AbstractOperation.AbstractController) operation.getController()).setRemoteState(remoteState);
+		scheduler.remoteStateChanged(operation);
+	}
+	
+	/**
+	 * 
+	 * @param startedOperations
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * <br>Shared parameter
+	 * @param byteCounts
+	 * <br>Should not be null
+	 * @return send operations for new temporary files with the specified sizes,
+	 * that are added to {@code startedOperations} whenever they start
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if a temporary file cannot be created
+	 */
+	private static final Operation[] createOperations(final List<Operation> startedOperations, final int... byteCounts) throws IOException {
+		final File directory = ChunkStoreTest.createTemporaryDirectory();
+		final Operation[] result = new Operation[byteCounts.length];
+		
+		for (int i = 0; i < byteCounts.length; ++i) {
+			final File file = new File(directory, "file" + i);
+			final Operation operation = new SendOperation(new DummyConnection(), file);
+			
+			TransferJournalTest.write(file, new String(new char[byteCounts[i]]));
+			
+			operation.addOperationListener(new Operation.Listener() {
+				
+				@Override
+				public final void stateChanged() {
+					if (operation.getState() == State.PROGRESSING) {
+						startedOperations.add(operation);
+					}
+				}
+				
+				@Override
+				public final void progressChanged() {
+					// Do nothing
+				}
+				
+			});
+			
+			result[i] = operation;
+		}
+		
+		return result;
+	}
+	
+}
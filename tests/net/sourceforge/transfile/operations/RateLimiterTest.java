@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class RateLimiterTest {
+	
+	@Test
+	public final void testUnlimited() {
+		final RateLimiter limiter = new RateLimiter();
+		
+		for (int i = 0; i < 1000; ++i) {
+			assertEquals(0L, limiter.acquire(Integer.MAX_VALUE));
+		}
+	}
+	
+	@Test
+	public final void testDebt() {
+		final RateLimiter limiter = new RateLimiter();
+		
+		limiter.setRate(1024L);
+		
+		// The first transfer is allowed even if it is larger than the bucket
+		assertEquals(0L, limiter.acquire(1024 * 1024));
+		
+		final long delay = limiter.acquire(1);
+		
+		assertTrue(0L < delay);
+		assertTrue(delay <= RateLimiter.MAXIMUM_DELAY);
+		
+		// Removing the limit cancels the debt
+		limiter.setRate(0L);
+		
+		assertEquals(0L, limiter.acquire(1));
+	}
+	
+	@Test
+	public final void testParent() {
+		final RateLimiter parent = new RateLimiter();
+		final RateLimiter child1 = new RateLimiter(parent);
+		final RateLimiter child2 = new RateLimiter(parent);
+		
+		parent.setRate(1024L);
+		child1.setRate(1024L * 1024L);
+		
+		assertEquals(0L, child1.acquire(1024 * 1024));
+		assertTrue(0L < child1.acquire(1));
+		assertTrue(0L < child2.acquire(1));
+		
+		parent.setRate(0L);
+		
+		// The debt of child1 doesn't concern child2
+		assertTrue(0L < child1.acquire(1));
+		assertEquals(0L, child2.acquire(1));
+	}
+	
+	@Test
+	public final void testRefusalTakesNothing() throws InterruptedException {
+		final RateLimiter parent = new RateLimiter();
+		final RateLimiter child = new RateLimiter(parent);
+		
+		parent.setRate(1024L * 1024L);
+		child.setRate(1024L);
+		
+		assertEquals(0L, child.acquire(2048));
+		
+		for (int i = 0; i < 100; ++i) {
+			assertTrue(0L < child.acquire(1024 * 1024));
+		}
+		
+		// The parent only has to pay back the first 2048 bytes
+		Thread.sleep(100L);
+		
+		// The bytes refused to the child are still available for its siblings
+		assertEquals(0L, new RateLimiter(parent).acquire(1024));
+	}
+	
+	@Test
+	public final void testRate() throws InterruptedException {
+		final long rate = 1024L * 1024L;
+		final RateLimiter limiter = new RateLimiter(new RateLimiter());
+		final long startTime = System.nanoTime();
+		long byteCount = 0L;
+		
+		limiter.getParent().setRate(rate);
+		
+		while (System.nanoTime() - startTime < DURATION) {
+			final long delay = limiter.acquire(CHUNK_SIZE);
+			
+			if (delay == 0L) {
+				byteCount += CHUNK_SIZE;
+			} else {
+				Thread.sleep(delay / 1000000L, (int) (delay % 1000000L));
+			}
+		}
+		
+		final double expectedByteCount = (double) rate * (System.nanoTime() - startTime) / 1.0E9;
+		
+		assertTrue(byteCount <= expectedByteCount + CHUNK_SIZE);
+		assertTrue(byteCount >= 0.8 * expectedByteCount);
+	}
+	
+	@Test
+	public final void testSchedule() {
+		final RateLimiter limiter = new RateLimiter();
+		final RateSchedule schedule = new RateSchedule();
+		
+		limiter.setRate(1024L);
+		limiter.setSchedule(schedule);
+		
+		assertEquals(1024L, limiter.getCurrentRate());
+		
+		schedule.put(0, 2048L);
+		
+		assertEquals(2048L, limiter.getCurrentRate());
+		
+		limiter.setSchedule(null);
+		
+		assertEquals(1024L, limiter.getCurrentRate());
+	}
+	
+	@Test
+	public final void testScheduleRates() {
+		final RateSchedule schedule = RateSchedule.parse(" 22:00=0, 07:30=1048576");
+		
+		assertEquals(2, schedule.getEntryCount());
+		assertEquals("07:30=1048576,22:00=0", schedule.toString());
+		assertEquals(0L, schedule.getRate(0));
+		assertEquals(0L, schedule.getRate(7 * 60 + 29));
+		assertEquals(1048576L, schedule.getRate(7 * 60 + 30));
+		assertEquals(1048576L, schedule.getRate(21 * 60 + 59));
+		assertEquals(0L, schedule.getRate(22 * 60));
+		assertEquals(0L, schedule.getRate(RateSchedule.MINUTES_PER_DAY - 1));
+		assertEquals(0, RateSchedule.parse("").getEntryCount());
+		assertEquals(0L, RateSchedule.parse("").getRate(0));
+	}
+	
+	@Test
+	public final void testInvalidSchedules() {
+		for (final String text : new String[] { "22:00", "22=0", "24:00=0", "12:60=0", "12:00=-1", "12:00=x" }) {
+			try {
+				RateSchedule.parse(text);
+				
+				fail("Should have thrown an exception: " + text);
+			} catch (final IllegalArgumentException exception) {
+				// Expected
+			}
+		}
+	}
+	
+	/**
+	 * Duration of {@link #testRate()} in nanoseconds.
+	 */
+	private static final long DURATION = 500000000L;
+	
+	private static final int CHUNK_SIZE = 16 * 1024;
+	
+}
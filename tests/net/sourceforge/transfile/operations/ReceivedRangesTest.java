@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ReceivedRangesTest {
+	
+	@Test
+	public final void testAddOutOfOrder() {
+		final ReceivedRanges ranges = new ReceivedRanges(10L, 4);
+		
+		assertEquals(3, ranges.getBlockCount());
+		assertEquals(0L, ranges.getFirstMissingOffset(0L));
+		
+		assertEquals(2L, ranges.add(8L, 2L));
+		assertEquals(0L, ranges.getFirstMissingOffset(0L));
+		assertEquals(8L, ranges.getNextReceivedOffset(0L));
+		assertTrue(ranges.contains(8L, 2L));
+		assertFalse(ranges.contains(4L, 5L));
+		
+		assertEquals(4L, ranges.add(0L, 4L));
+		assertEquals(4L, ranges.getFirstMissingOffset(0L));
+		assertEquals(6L, ranges.getReceivedByteCount());
+		assertFalse(ranges.isComplete());
+		
+		assertEquals(4L, ranges.add(2L, 8L));
+		assertEquals(10L, ranges.getFirstMissingOffset(0L));
+		assertTrue(ranges.isComplete());
+	}
+	
+	@Test
+	public final void testPartialBlocksAreNotReceived() {
+		final ReceivedRanges ranges = new ReceivedRanges(10L, 4);
+		
+		assertEquals(0L, ranges.add(1L, 6L));
+		assertEquals(0L, ranges.getReceivedByteCount());
+		assertEquals(4L, ranges.add(1L, 7L));
+		assertEquals(0L, ranges.getFirstMissingOffset(0L));
+		assertEquals(8L, ranges.getFirstMissingOffset(5L));
+	}
+	
+	@Test
+	public final void testEmptyFile() {
+		final ReceivedRanges ranges = new ReceivedRanges(0L, 4);
+		
+		assertTrue(ranges.isComplete());
+		assertEquals(0L, ranges.getFirstMissingOffset(0L));
+	}
+	
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DisconnectMessage;
+
+/**
+ * Pushes many gigabytes of data offers through the object streams used by {@link SimpleSocketConnection}
+ * over a loopback socket, and checks that the used heap stays flat.
+ * <br>Arguments: the number of gigabytes to send (default 4), and the reset byte count (default {@link AsynchronousMessageWriter#DEFAULT_RESET_BYTE_COUNT};
+ * use {@code 9223372036854775807} to see the heap grow without resets).
+ * <br>Not a unit test; run it with {@link #main(String[])}, preferably with a small heap such as {@code -Xmx256m}.
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public final class SimpleSocketConnectionSoakBenchmark {
+	
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private SimpleSocketConnectionSoakBenchmark() {
+		// Do nothing
+	}
+	
+	/**
+	 * Bytes per data offer.
+	 */
+	public static final int OFFER_BYTE_COUNT = 65536;
+	
+	/**
+	 * Number of bytes between two heap measurements.
+	 */
+	public static final long SAMPLING_BYTE_COUNT = 1L << 30;
+	
+	/**
+	 * Maximum growth in bytes of the used heap between the first and the last measurement.
+	 */
+	public static final long MAXIMUM_HEAP_GROWTH = 32L << 20;
+	
+	/**
+	 * 
+	 * @param arguments
+	 * <br>Should not be null
+	 * @throws Exception if an error occurs
+	 */
+	public static final void main(final String[] arguments) throws Exception {
+		final long totalByteCount = (arguments.length < 1 ? 4L : Long.parseLong(arguments[0])) << 30;
+		final long resetByteCount = arguments.length < 2 ? AsynchronousMessageWriter.DEFAULT_RESET_BYTE_COUNT : Long.parseLong(arguments[1]);
+		final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		final Socket sendingSocket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+		final Socket receivingSocket = server.accept();
+		final ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(sendingSocket.getOutputStream(), SimpleSocketConnection.OUTPUT_BUFFER_SIZE));
+		
+		output.flush();
+		
+		final AsynchronousMessageWriter writer = new AsynchronousMessageWriter(output, AsynchronousMessageWriter.DEFAULT_RESET_MESSAGE_COUNT, resetByteCount);
+		final Thread reader = new Thread() {
+			
+			@Override
+			public final void run() {
+				try {
+					final ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(receivingSocket.getInputStream()));
+					
+					while (!(input.readObject() instanceof DisconnectMessage)) {
+						// Do nothing
+					}
+				} catch (final Exception exception) {
+					exception.printStackTrace();
+				}
+			}
+			
+		};
+		
+		reader.start();
+		
+		final File file = new File("soak");
+		final long startTime = System.nanoTime();
+		long initialUsedHeap = -1L;
+		long usedHeap = 0L;
+		
+		System.out.println("gigabytes\tused heap (MiB)");
+		
+		for (long offset = 0L; offset < totalByteCount; offset += OFFER_BYTE_COUNT) {
+			writer.write(new DataOfferMessage(file, offset, new byte[OFFER_BYTE_COUNT]));
+			
+			if ((offset + OFFER_BYTE_COUNT) % SAMPLING_BYTE_COUNT == 0L) {
+				usedHeap = getUsedHeap();
+				
+				if (initialUsedHeap < 0L) {
+					initialUsedHeap = usedHeap;
+				}
+				
+				System.out.println(((offset + OFFER_BYTE_COUNT) >> 30) + "\t" + (usedHeap >> 20));
+			}
+		}
+		
+		writer.write(new DisconnectMessage());
+		reader.join();
+		writer.close(SimpleSocketConnection.OUTPUT_CLOSE_TIMEOUT);
+		receivingSocket.close();
+		sendingSocket.close();
+		server.close();
+		
+		System.out.println("throughput (MB/s)\t" + totalByteCount * 1000L / (System.nanoTime() - startTime));
+		
+		if (writer.getError() != null) {
+			final AssertionError assertionError = new AssertionError("Cannot write the messages");
+			
+			assertionError.initCause(writer.getError());
+			
+			throw assertionError;
+		}
+		
+		if (MAXIMUM_HEAP_GROWTH < usedHeap - initialUsedHeap) {
+			throw new AssertionError("The used heap grew from " + (initialUsedHeap >> 20) + " MiB to " + (usedHeap >> 20) + " MiB");
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the number of bytes used in the heap after a garbage collection
+	 * <br>Range: {@code [0L .. Long.MAX_VALUE]}
+	 * @throws InterruptedException if the current thread is interrupted
+	 */
+	private static final long getUsedHeap() throws InterruptedException {
+		final Runtime runtime = Runtime.getRuntime();
+		
+		for (int i = 0; i < 3; ++i) {
+			System.gc();
+			Thread.sleep(50L);
+		}
+		
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+}
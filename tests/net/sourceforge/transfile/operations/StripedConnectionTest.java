@@ -0,0 +1,349 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+import static net.sourceforge.transfile.operations.AbstractConnection.DEFAULT_LOCAL_PEER;
+import static net.sourceforge.transfile.operations.AbstractConnection.DEFAULT_REMOTE_PEER;
+import static net.sourceforge.jenerics.collections.CollectionsTools.array;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.transfile.operations.StripedConnection.LaneFactory;
+import net.sourceforge.transfile.operations.messages.BlockCopyMessage;
+import net.sourceforge.transfile.operations.messages.DataOfferMessage;
+import net.sourceforge.transfile.operations.messages.DataRequestMessage;
+import net.sourceforge.transfile.operations.messages.Message;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class StripedConnectionTest extends AbstractConnectionTestBase {
+	
+	@Test
+	public final void testGetLanePeer() {
+		assertEquals("transfile://0.0.0.0:12345", StripedConnection.getLanePeer("transfile://0.0.0.0:12345", 0));
+		assertEquals("transfile://0.0.0.0:12347", StripedConnection.getLanePeer("transfile://0.0.0.0:12345", 2));
+		assertEquals("localhost:8081", StripedConnection.getLanePeer("localhost:8080", 1));
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testStriping() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final List<Connection> usedLanes = new ArrayList<Connection>();
+		
+		for (final Connection lane : ((StripedConnection) this.getConnection2()).getLanes()) {
+			lane.addConnectionListener(new Connection.AbstractListener() {
+				
+				@Override
+				protected final void doMessageReceived(final Message message) {
+					if (message instanceof DataOfferMessage) {
+						synchronized (usedLanes) {
+							usedLanes.add(lane);
+						}
+					}
+				}
+				
+			});
+		}
+		
+		for (int i = 0; i < LANE_COUNT; ++i) {
+			this.getConnection1().sendMessage(new DataOfferMessage(new File("dummy"), i, (byte) i));
+		}
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		this.getConnection1().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		assertEquals(LANE_COUNT, usedLanes.size());
+		assertEquals(LANE_COUNT, new HashSet<Connection>(usedLanes).size());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testReassembly() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File file = new File("dummy");
+		final int streamId = 42;
+		final Connection[] senderLanes = ((StripedConnection) this.getConnection1()).getLanes();
+		final List<DataOfferMessage> offers = new ArrayList<DataOfferMessage>();
+		final AtomicInteger receivedOfferCount = countReceivedOffers((StripedConnection) this.getConnection2());
+		
+		for (int i = 0; i < 3; ++i) {
+			final DataRequestMessage request = new DataRequestMessage(file, i, 1);
+			
+			request.setStreamId(-streamId);
+			this.getConnection2().sendMessage(request);
+			
+			final DataOfferMessage offer = new DataOfferMessage(file, i, (byte) i);
+			
+			offer.setStreamId(streamId);
+			offers.add(offer);
+		}
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		// Sent directly on the lanes in reverse order, as if the last lanes had been faster
+		senderLanes[2].sendMessage(offers.get(2));
+		senderLanes[1].sendMessage(offers.get(1));
+		senderLanes[0].sendMessage(offers.get(0));
+		
+		final DataOfferMessage unrequestedOffer = new DataOfferMessage(file, 42L, (byte) 42);
+		
+		unrequestedOffer.setStreamId(streamId);
+		senderLanes[1].sendMessage(unrequestedOffer);
+		
+		waitUntilReceivedOfferCount(receivedOfferCount, 4);
+		
+		final List<Object> events = this.getConnectionRecorder2().getEvents();
+		
+		assertEquals(Arrays.asList(offers.get(0), offers.get(1), offers.get(2), unrequestedOffer), events.subList(events.size() - 4, events.size()));
+		
+		this.getConnection2().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testFailedDeliveryDisconnects() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final RuntimeException error = new RuntimeException("Expected exception");
+		
+		this.getConnection2().addConnectionListener(new Connection.AbstractListener() {
+			
+			@Override
+			protected final void doMessageReceived(final Message message) {
+				if (message instanceof DataOfferMessage) {
+					throw error;
+				}
+			}
+			
+		});
+		
+		this.getConnection1().sendMessage(new DataOfferMessage(new File("dummy"), 0L, (byte) 42));
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+		
+		// The operations are told that the message is lost instead of waiting for it
+		assertSame(error, this.getConnection2().getConnectionError());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testRestartedRequestsReleaseEarlyOffers() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File file = new File("dummy");
+		final int streamId = 42;
+		final Connection[] senderLanes = ((StripedConnection) this.getConnection1()).getLanes();
+		final AtomicInteger receivedOfferCount = countReceivedOffers((StripedConnection) this.getConnection2());
+		
+		for (int i = 0; i < 2; ++i) {
+			final DataRequestMessage request = new DataRequestMessage(file, i, 1);
+			
+			request.setStreamId(-streamId);
+			this.getConnection2().sendMessage(request);
+		}
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		final DataOfferMessage earlyOffer = new DataOfferMessage(file, 1L, (byte) 1);
+		final DataOfferMessage offer = new DataOfferMessage(file, 0L, (byte) 0);
+		
+		earlyOffer.setStreamId(streamId);
+		offer.setStreamId(streamId);
+		senderLanes[1].sendMessage(earlyOffer);
+		
+		waitUntilReceivedOfferCount(receivedOfferCount, 1);
+		
+		final DataRequestMessage restartedRequest = new DataRequestMessage(file, 0L, 1);
+		
+		restartedRequest.setStreamId(-streamId);
+		this.getConnection2().sendMessage(restartedRequest);
+		
+		senderLanes[0].sendMessage(offer);
+		
+		waitUntilReceivedOfferCount(receivedOfferCount, 2);
+		
+		final List<Object> events = this.getConnectionRecorder2().getEvents();
+		
+		assertEquals(Arrays.asList(earlyOffer, offer), events.subList(events.size() - 2, events.size()));
+		
+		this.getConnection2().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testBlockCopyAnswersRequest() {
+		this.createAndConnectMatchingConnectionPair();
+		
+		final File file = new File("dummy");
+		final int streamId = 42;
+		final Connection[] senderLanes = ((StripedConnection) this.getConnection1()).getLanes();
+		final AtomicInteger receivedOfferCount = countReceivedOffers((StripedConnection) this.getConnection2());
+		
+		for (int i = 0; i < 2; ++i) {
+			final DataRequestMessage request = new DataRequestMessage(file, i, 1);
+			
+			request.setStreamId(-streamId);
+			this.getConnection2().sendMessage(request);
+		}
+		
+		this.waitUntilMatchingConnectionPairAreReady();
+		
+		final BlockCopyMessage blockCopy = new BlockCopyMessage(file, 0L, 0, 1);
+		final DataOfferMessage offer = new DataOfferMessage(file, 1L, (byte) 1);
+		
+		blockCopy.setStreamId(streamId);
+		offer.setStreamId(streamId);
+		senderLanes[1].sendMessage(offer);
+		
+		waitUntilReceivedOfferCount(receivedOfferCount, 1);
+		
+		final AtomicInteger receivedBlockCopyCount = new AtomicInteger();
+		
+		((StripedConnection) this.getConnection2()).getLanes()[0].addConnectionListener(new Connection.AbstractListener() {
+			
+			@Override
+			protected final void doMessageReceived(final Message message) {
+				if (message instanceof BlockCopyMessage) {
+					receivedBlockCopyCount.incrementAndGet();
+				}
+			}
+			
+		});
+		
+		senderLanes[0].sendMessage(blockCopy);
+		
+		waitUntilReceivedOfferCount(receivedBlockCopyCount, 1);
+		
+		final List<Object> events = this.getConnectionRecorder2().getEvents();
+		
+		assertEquals(Arrays.asList(blockCopy, offer), events.subList(events.size() - 2, events.size()));
+		
+		this.getConnection2().disconnect();
+		
+		waitAndAssertState(Connection.State.DISCONNECTED, this.getConnections());
+	}
+	
+	@Override
+	protected final Connection createUnmatchedConnection() {
+		return new StripedConnection(DEFAULT_LOCAL_PEER, DEFAULT_REMOTE_PEER, LANE_COUNT, new DummyLaneFactory());
+	}
+	
+	@Override
+	protected final Connection[] createMatchingConnectionPair() {
+		final LaneFactory laneFactory = new DummyLaneFactory();
+		
+		return array(
+				new StripedConnection(DEFAULT_LOCAL_PEER, DEFAULT_REMOTE_PEER, LANE_COUNT, laneFactory),
+				new StripedConnection(DEFAULT_REMOTE_PEER, DEFAULT_LOCAL_PEER, LANE_COUNT, laneFactory));
+	}
+	
+	public static final int LANE_COUNT = 3;
+	
+	/**
+	 * 
+	 * @param connection
+	 * <br>Should not be null
+	 * <br>Input-output parameter
+	 * @return the number of data offers received by the lanes of {@code connection}, updated after they have been handled by {@code connection}
+	 * <br>A non-null value
+	 * <br>A new value
+	 */
+	private static final AtomicInteger countReceivedOffers(final StripedConnection connection) {
+		final AtomicInteger result = new AtomicInteger();
+		
+		for (final Connection lane : connection.getLanes()) {
+			lane.addConnectionListener(new Connection.AbstractListener() {
+				
+				@Override
+				protected final void doMessageReceived(final Message message) {
+					if (message instanceof DataOfferMessage) {
+						result.incrementAndGet();
+					}
+				}
+				
+			});
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param receivedOfferCount
+	 * <br>Should not be null
+	 * @param expectedCount
+	 * <br>Range: {@code [0 .. Integer.MAX_VALUE]}
+	 */
+	private static final void waitUntilReceivedOfferCount(final AtomicInteger receivedOfferCount, final int expectedCount) {
+		while (receivedOfferCount.get() < expectedCount) {
+			atomicWait();
+		}
+	}
+	
+	/**
+	 * Links the {@link DummyConnection}s created for matching peers.
+	 *
+	 * @author agent (creation 2026-10-17)
+	 *
+	 */
+	public static final class DummyLaneFactory implements LaneFactory {
+		
+		private final Map<String, DummyConnection> unmatchedLanes;
+		
+		public DummyLaneFactory() {
+			this.unmatchedLanes = new HashMap<String, DummyConnection>();
+		}
+		
+		@Override
+		public final synchronized Connection createLane(final String localPeer, final String remotePeer) {
+			final DummyConnection result = new DummyConnection();
+			final DummyConnection remoteLane = this.unmatchedLanes.remove(remotePeer + "->" + localPeer);
+			
+			if (remoteLane != null) {
+				result.setRemoteConnection(remoteLane);
+				remoteLane.setRemoteConnection(result);
+			} else {
+				this.unmatchedLanes.put(localPeer + "->" + remotePeer, result);
+			}
+			
+			return result;
+		}
+		
+	}
+	
+}
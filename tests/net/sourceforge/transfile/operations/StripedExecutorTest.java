@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class StripedExecutorTest {
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testOrderPerKey() throws InterruptedException {
+		final StripedExecutor executor = new StripedExecutor(4, "StripedExecutorTest");
+		final int keyCount = 10;
+		final int taskCount = 1000;
+		final List<List<Integer>> executedTasks = new ArrayList<List<Integer>>();
+		final CountDownLatch done = new CountDownLatch(keyCount * taskCount);
+		
+		for (int key = 0; key < keyCount; ++key) {
+			executedTasks.add(new ArrayList<Integer>());
+		}
+		
+		for (int i = 0; i < taskCount; ++i) {
+			for (int key = 0; key < keyCount; ++key) {
+				final List<Integer> tasks = executedTasks.get(key);
+				final int task = i;
+				
+				executor.execute(-key, new Runnable() {
+					
+					@Override
+					public final void run() {
+						synchronized (tasks) {
+							tasks.add(task);
+						}
+						
+						done.countDown();
+					}
+					
+				});
+			}
+		}
+		
+		done.await();
+		
+		for (final List<Integer> tasks : executedTasks) {
+			synchronized (tasks) {
+				assertEquals(taskCount, tasks.size());
+				
+				for (int i = 0; i < taskCount; ++i) {
+					assertEquals((Integer) i, tasks.get(i));
+				}
+			}
+		}
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testParallelStripes() throws InterruptedException {
+		final StripedExecutor executor = new StripedExecutor(2, "StripedExecutorTest");
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		
+		assertFalse(executor.getStripeIndex(0) == executor.getStripeIndex(1));
+		
+		// A blocked stripe doesn't prevent the other one from running its tasks
+		executor.execute(0, new Runnable() {
+			
+			@Override
+			public final void run() {
+				try {
+					blocked.await();
+				} catch (final InterruptedException exception) {
+					exception.printStackTrace();
+				}
+			}
+			
+		});
+		executor.execute(1, new Runnable() {
+			
+			@Override
+			public final void run() {
+				done.countDown();
+			}
+			
+		});
+		
+		assertTrue(done.await(TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+		
+		blocked.countDown();
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testFailingTask() throws InterruptedException {
+		final StripedExecutor executor = new StripedExecutor(1, "StripedExecutorTest");
+		final CountDownLatch done = new CountDownLatch(1);
+		
+		executor.execute(0, new Runnable() {
+			
+			@Override
+			public final void run() {
+				throw new RuntimeException("Expected exception");
+			}
+			
+		});
+		executor.execute(0, new Runnable() {
+			
+			@Override
+			public final void run() {
+				done.countDown();
+			}
+			
+		});
+		
+		done.await();
+	}
+	
+	@Test(timeout = TEST_TIMEOUT)
+	public final void testExecuteAndWait() {
+		final StripedExecutor executor = new StripedExecutor(1, "StripedExecutorTest");
+		final List<Integer> executedTasks = new ArrayList<Integer>();
+		
+		executor.execute(0, new Runnable() {
+			
+			@Override
+			public final void run() {
+				synchronized (executedTasks) {
+					executedTasks.add(0);
+				}
+			}
+			
+		});
+		executor.executeAndWait(0, new Runnable() {
+			
+			@Override
+			public final void run() {
+				assertTrue(executor.isInStripe(0));
+				
+				// Called from the stripe itself, the task is run directly instead of waiting for this one
+				executor.executeAndWait(0, new Runnable() {
+					
+					@Override
+					public final void run() {
+						synchronized (executedTasks) {
+							executedTasks.add(1);
+						}
+					}
+					
+				});
+				
+				synchronized (executedTasks) {
+					executedTasks.add(2);
+				}
+			}
+			
+		});
+		
+		assertFalse(executor.isInStripe(0));
+		
+		synchronized (executedTasks) {
+			assertEquals(Arrays.asList(0, 1, 2), executedTasks);
+		}
+	}
+	
+	/**
+	 * Timeout of the tests in milliseconds.
+	 */
+	private static final long TEST_TIMEOUT = 10000L;
+	
+}
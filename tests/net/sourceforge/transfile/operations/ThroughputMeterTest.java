@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class ThroughputMeterTest {
+	
+	@Test
+	public final void testConstantRate() {
+		final ThroughputMeter meter = new ThroughputMeter();
+		
+		assertFalse(meter.isMeasured());
+		assertEquals(-1L, meter.getRemainingTime(1000L));
+		
+		for (int i = 0; i <= 10; ++i) {
+			meter.sample(i * 1000L, i * SECOND);
+		}
+		
+		assertTrue(meter.isMeasured());
+		assertEquals(1000.0, meter.getByteRate(), 1.0E-6);
+		assertEquals(5L * SECOND, meter.getRemainingTime(15000L));
+		assertEquals(0L, meter.getRemainingTime(5000L));
+	}
+	
+	@Test
+	public final void testSmoothing() {
+		final ThroughputMeter meter = new ThroughputMeter(SECOND);
+		
+		meter.sample(0L, 0L);
+		meter.sample(1000L, SECOND);
+		
+		assertEquals(1000.0, meter.getByteRate(), 1.0E-6);
+		
+		// A burst only moves the average part of the way
+		meter.sample(4000L, 2L * SECOND);
+		
+		final double expectedByteRate = 1000.0 + (1.0 - Math.exp(-1.0)) * 2000.0;
+		
+		assertEquals(expectedByteRate, meter.getByteRate(), 1.0E-6);
+		
+		// Irregular intervals are weighted by their duration
+		meter.sample(4000L, 2L * SECOND + SECOND / 100L);
+		
+		assertTrue(expectedByteRate * 0.9 < meter.getByteRate());
+	}
+	
+	@Test
+	public final void testIgnoredSamples() {
+		final ThroughputMeter meter = new ThroughputMeter();
+		
+		meter.sample(0L, SECOND);
+		meter.sample(1000L, SECOND);
+		
+		assertFalse(meter.isMeasured());
+		
+		meter.sample(1000L, 2L * SECOND);
+		
+		assertTrue(meter.isMeasured());
+		assertEquals(1000.0, meter.getByteRate(), 1.0E-6);
+	}
+	
+	@Test
+	public final void testRestart() {
+		final ThroughputMeter meter = new ThroughputMeter();
+		
+		meter.sample(0L, 0L);
+		meter.sample(5000L, SECOND);
+		
+		assertTrue(meter.isMeasured());
+		
+		meter.sample(100L, 2L * SECOND);
+		
+		assertFalse(meter.isMeasured());
+		assertEquals(0.0, meter.getByteRate(), 0.0);
+		
+		meter.sample(600L, 3L * SECOND);
+		
+		assertEquals(500.0, meter.getByteRate(), 1.0E-6);
+		
+		meter.reset();
+		
+		assertFalse(meter.isMeasured());
+		assertEquals(-1L, meter.getRemainingTime(1000L));
+	}
+	
+	private static final long SECOND = 1000000000L;
+	
+}
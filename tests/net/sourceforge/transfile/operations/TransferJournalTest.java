@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2010 Martin Riedel
+ * 
+ * This file is part of TransFile.
+ *
+ * TransFile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * TransFile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with TransFile.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sourceforge.transfile.operations;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import net.sourceforge.transfile.operations.messages.FileOfferMessage;
+
+import org.junit.Test;
+
+/**
+ * TODO doc
+ *
+ * @author agent (creation 2026-10-17)
+ *
+ */
+public class TransferJournalTest {
+	
+	@Test
+	public final void testPutGetRemove() throws IOException {
+		final TransferJournal journal = new TransferJournal(createTemporaryDirectory());
+		final File sourceFile = new File("remote/data.txt");
+		final File destinationFile = new File(journal.getDirectory(), "data.txt");
+		
+		assertNull(journal.get(destinationFile));
+		
+		journal.put(new TransferJournal.Entry(sourceFile, 42L, destinationFile, 4L, 123L));
+		
+		TransferJournal.Entry entry = journal.get(destinationFile);
+		
+		assertEquals(sourceFile, entry.getSourceFile());
+		assertEquals(42L, entry.getSourceByteCount());
+		assertEquals(destinationFile.getAbsoluteFile(), entry.getDestinationFile());
+		assertEquals(4L, entry.getVerifiedByteCount());
+		assertEquals(123L, entry.getChecksum());
+		assertTrue(entry.concerns(new FileOfferMessage(sourceFile, 42L)));
+		assertFalse(entry.concerns(new FileOfferMessage(sourceFile, 43L)));
+		assertFalse(entry.concerns(new FileOfferMessage(new File("remote/other.txt"), 42L)));
+		
+		journal.put(new TransferJournal.Entry(sourceFile, 42L, destinationFile, 8L, 456L));
+		
+		entry = journal.get(destinationFile);
+		
+		assertEquals(8L, entry.getVerifiedByteCount());
+		assertEquals(456L, entry.getChecksum());
+		assertNull(journal.get(new File(journal.getDirectory(), "other.txt")));
+		
+		journal.remove(destinationFile);
+		
+		assertNull(journal.get(destinationFile));
+	}
+	
+	@Test
+	public final void testUpdateChecksum() throws IOException {
+		final File file = File.createTempFile("journal", null);
+		
+		file.deleteOnExit();
+		
+		write(file, "0123456789");
+		
+		final CRC32 checksum = new CRC32();
+		
+		TransferJournal.updateChecksum(checksum, file, 0L, 4L);
+		
+		assertEquals(checksum("0123"), checksum.getValue());
+		
+		TransferJournal.updateChecksum(checksum, file, 4L, 10L);
+		
+		assertEquals(checksum("0123456789"), checksum.getValue());
+		
+		try {
+			TransferJournal.updateChecksum(checksum, file, 10L, 11L);
+			
+			fail("Expected IOException");
+		} catch (final IOException exception) {
+			// Expected
+		}
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * <br>A non-null value
+	 * <br>A new value
+	 * @throws IOException if the directory cannot be created
+	 */
+	public static final File createTemporaryDirectory() throws IOException {
+		final File result = File.createTempFile("journal", null);
+		
+		if (!result.delete() || !result.mkdir()) {
+			throw new IOException("Cannot create directory " + result);
+		}
+		
+		result.deleteOnExit();
+		
+		return result;
+	}
+	
+	/**
+	 * Replaces the contents of {@code file} with the bytes of {@code string}.
+	 * 
+	 * @param file
+	 * <br>Should not be null
+	 * @param string
+	 * <br>Should not be null
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static final void write(final File file, final String string) throws IOException {
+		final OutputStream output = new FileOutputStream(file);
+		
+		try {
+			output.write(string.getBytes("UTF-8"));
+		} finally {
+			output.close();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param string
+	 * <br>Should not be null
+	 * @return the CRC-32 of the bytes of {@code string}
+	 * <br>Range: {@code [0L .. 0xFFFFFFFFL]}
+	 */
+	public static final long checksum(final String string) {
+		final CRC32 result = new CRC32();
+		
+		try {
+			result.update(string.getBytes("UTF-8"));
+		} catch (final IOException exception) {
+			throw new RuntimeException(exception);
+		}
+		
+		return result.getValue();
+	}
+	
+}